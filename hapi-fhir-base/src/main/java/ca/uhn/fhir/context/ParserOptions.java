@@ -42,6 +42,41 @@ public class ParserOptions {
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
+	private boolean myStreamingJsonParsing = false;
+
+	/**
+	 * If set to {@literal true} (default is {@literal false}), the JSON parser will build the resource
+	 * directly from the stream of JSON tokens instead of first reading the entire document into a
+	 * tree of JSON nodes. This reduces the memory allocated when parsing large resources such
+	 * as Bundles, and the resulting resource is identical.
+	 * <p>
+	 * Resources whose <code>resourceType</code> property is not the first property in the object
+	 * are still supported, but are parsed using the tree model.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to {@literal true} (default is {@literal false}), the JSON parser will build the resource
+	 * directly from the stream of JSON tokens instead of first reading the entire document into a
+	 * tree of JSON nodes. This reduces the memory allocated when parsing large resources such
+	 * as Bundles, and the resulting resource is identical.
+	 * <p>
+	 * Resources whose <code>resourceType</code> property is not the first property in the object
+	 * are still supported, but are parsed using the tree model.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this</code> parser so that method calls can be chained together
+	 * @since 7.2.0
+	 */
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -66,6 +66,8 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
@@ -332,11 +334,7 @@ public abstract class BaseParser implements IParser {
 		Validate.notNull(theWriter, "theWriter can not be null");
 		Validate.notNull(theEncodeContext, "theEncodeContext can not be null");
 
-		if (theResource.getStructureFhirVersionEnum() != myContext.getVersion().getVersion()) {
-			throw new IllegalArgumentException(Msg.code(1829) + "This parser is for FHIR version "
-					+ myContext.getVersion().getVersion() + " - Can not encode a structure for version "
-					+ theResource.getStructureFhirVersionEnum());
-		}
+		validateResourceVersion(theResource);
 
 		String resourceName =
 				myContext.getElementDefinition(theResource.getClass()).getName();
@@ -347,6 +345,45 @@ public abstract class BaseParser implements IParser {
 		theEncodeContext.popPath();
 	}
 
+	@Override
+	public void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream)
+			throws IOException, DataFormatException {
+		Validate.notNull(theResource, "theResource can not be null");
+		Validate.notNull(theOutputStream, "theOutputStream can not be null");
+
+		validateResourceVersion(theResource);
+
+		EncodeContext encodeContext = new EncodeContext();
+		String resourceName =
+				myContext.getElementDefinition(theResource.getClass()).getName();
+		encodeContext.pushPath(resourceName, true);
+
+		doEncodeResourceToOutputStream(theResource, theOutputStream, encodeContext);
+
+		encodeContext.popPath();
+	}
+
+	/**
+	 * Encodes a resource to a UTF-8 byte stream. The default implementation encodes the resource
+	 * as characters using {@link #doEncodeResourceToWriter(IBaseResource, Writer, EncodeContext)}
+	 * and converts them to bytes. Subclasses which can produce bytes directly should override this.
+	 */
+	protected void doEncodeResourceToOutputStream(
+			IBaseResource theResource, OutputStream theOutputStream, EncodeContext theEncodeContext)
+			throws IOException, DataFormatException {
+		Writer writer = new OutputStreamWriter(theOutputStream, Constants.CHARSET_UTF8);
+		doEncodeResourceToWriter(theResource, writer, theEncodeContext);
+		writer.flush();
+	}
+
+	private void validateResourceVersion(IBaseResource theResource) {
+		if (theResource.getStructureFhirVersionEnum() != myContext.getVersion().getVersion()) {
+			throw new IllegalArgumentException(Msg.code(1829) + "This parser is for FHIR version "
+					+ myContext.getVersion().getVersion() + " - Can not encode a structure for version "
+					+ theResource.getStructureFhirVersionEnum());
+		}
+	}
+
 	protected void encodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
 			throws IOException {
 		Validate.notNull(theElement, "theElement can not be null");
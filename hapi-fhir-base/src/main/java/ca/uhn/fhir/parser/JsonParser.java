@@ -54,6 +54,7 @@ import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
+import com.fasterxml.jackson.core.JsonToken;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.text.WordUtils;
@@ -71,14 +72,18 @@ import org.hl7.fhir.instance.model.api.INarrative;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum.ID_DATATYPE;
 import static ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum.PRIMITIVE_DATATYPE;
@@ -224,6 +229,15 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		eventWriter.close();
 	}
 
+	@Override
+	protected void doEncodeResourceToOutputStream(
+			IBaseResource theResource, OutputStream theOutputStream, EncodeContext theEncodeContext)
+			throws IOException {
+		BaseJsonLikeWriter eventWriter = new JacksonStructure().getJsonLikeWriter(theOutputStream);
+		doEncodeResourceToJsonLikeWriter(theResource, eventWriter, theEncodeContext);
+		eventWriter.close();
+	}
+
 	@Override
 	protected void doEncodeToWriter(IBase theElement, Writer theWriter, EncodeContext theEncodeContext)
 			throws IOException, DataFormatException {
@@ -236,6 +250,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (getContext().getParserOptions().isStreamingJsonParsing()) {
+			return doParseResourceStreaming(theResourceType, theReader);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -245,8 +263,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonLikeStructure theJsonStructure) {
-		BaseJsonLikeObject object = theJsonStructure.getRootObject();
+		return doParseResource(theResourceType, theJsonStructure.getRootObject());
+	}
 
+	private <T extends IBaseResource> T doParseResource(Class<T> theResourceType, BaseJsonLikeObject object) {
 		BaseJsonLikeValue resourceTypeObj = object.get("resourceType");
 		if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
 			throw new DataFormatException(
@@ -1223,13 +1243,253 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	/**
+	 * Parses a resource directly from the Jackson token stream, without building a
+	 * tree of the whole document first.
+	 *
+	 * @see ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsing(boolean)
+	 */
+	private <T extends IBaseResource> T doParseResourceStreaming(Class<T> theResourceType, Reader theReader) {
+		com.fasterxml.jackson.core.JsonParser tokens = JacksonStructure.createTokenStream(theReader);
+		try {
+			tokens.nextToken();
+
+			String resourceType = readLeadingResourceType(tokens);
+			if (isBlank(resourceType)) {
+				// The resourceType isn't the first property, so we can't create the
+				// resource until we have seen the whole thing
+				BaseJsonLikeObject object = JacksonStructure.readRemainingObject(tokens);
+				JacksonStructure.verifyEndOfContent(tokens);
+				return doParseResource(theResourceType, object);
+			}
+
+			ParserState<? extends IBaseResource> state =
+					ParserState.getPreResourceInstance(this, theResourceType, getContext(), true, getErrorHandler());
+			state.enteringNewElement(null, resourceType);
+
+			parseChildren(tokens, state);
+
+			state.endingElement();
+			state.endingElement();
+
+			JacksonStructure.verifyEndOfContent(tokens);
+
+			@SuppressWarnings("unchecked")
+			T retVal = (T) state.getObject();
+
+			return retVal;
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		} finally {
+			try {
+				tokens.close();
+			} catch (IOException e) {
+				ourLog.debug("Failed to close JSON token stream", e);
+			}
+		}
+	}
+
+	/**
+	 * Called with the stream positioned on the start of an object. If the first property
+	 * of the object is a <code>resourceType</code> with a non-blank value, it is consumed
+	 * and returned. Otherwise returns <code>null</code>, leaving the stream positioned on
+	 * the next property name (or the end of the object).
+	 */
+	private static String readLeadingResourceType(com.fasterxml.jackson.core.JsonParser theTokens) throws IOException {
+		JsonToken token = theTokens.nextToken();
+		if (token == JsonToken.FIELD_NAME && "resourceType".equals(theTokens.currentName())) {
+			token = theTokens.nextToken();
+			if (token == JsonToken.VALUE_STRING && isNotBlank(theTokens.getText())) {
+				return theTokens.getText();
+			}
+			theTokens.skipChildren();
+			theTokens.nextToken();
+		}
+		return null;
+	}
+
+	/**
+	 * Streaming equivalent of {@link #parseChildren(BaseJsonLikeObject, ParserState)}. Called
+	 * with the stream positioned so that the next token is the first remaining property name of
+	 * an object (or its end), and returns with the stream positioned on the end of the object.
+	 * <p>
+	 * Complex elements are passed to the parser state as soon as they are encountered. Primitive
+	 * elements are held until the end of the object, because the <code>_name</code> property
+	 * carrying their id and extensions may appear after (or before) the value itself.
+	 * </p>
+	 */
+	private void parseChildren(com.fasterxml.jackson.core.JsonParser theTokens, ParserState<?> theState)
+			throws IOException {
+		List<String> primitiveNames = null;
+		List<BaseJsonLikeValue> primitiveValues = null;
+		Map<String, BaseJsonLikeValue> alternates = null;
+		Set<String> complexNames = null;
+
+		for (JsonToken token = theTokens.nextToken(); token == JsonToken.FIELD_NAME; token = theTokens.nextToken()) {
+			String nextName = theTokens.currentName();
+			JsonToken valueToken = theTokens.nextToken();
+
+			if ("resourceType".equals(nextName)) {
+				if (theState.isToplevelResourceElement()) {
+					theTokens.skipChildren();
+					continue;
+				}
+			} else if ("extension".equals(nextName)) {
+				BaseJsonLikeArray array = grabJsonArray(JacksonStructure.readValue(theTokens), "extension");
+				parseExtension(theState, array, false);
+				continue;
+			} else if ("modifierExtension".equals(nextName)) {
+				BaseJsonLikeArray array = grabJsonArray(JacksonStructure.readValue(theTokens), "modifierExtension");
+				parseExtension(theState, array, true);
+				continue;
+			} else if (nextName.equals("fhir_comments")) {
+				parseFhirComments(JacksonStructure.readValue(theTokens), theState);
+				continue;
+			} else if (nextName.charAt(0) == '_') {
+				if (alternates == null) {
+					alternates = new LinkedHashMap<>();
+				}
+				alternates.put(nextName, JacksonStructure.readValue(theTokens));
+				continue;
+			}
+
+			BaseJsonLikeValue primitiveValue = null;
+			if (valueToken == JsonToken.START_OBJECT) {
+				parseObject(theTokens, theState, nextName, false);
+			} else if (valueToken == JsonToken.START_ARRAY) {
+				JsonToken firstElementToken = theTokens.nextToken();
+				if (firstElementToken == JsonToken.START_OBJECT) {
+					parseArrayOfObjects(theTokens, theState, nextName);
+				} else {
+					primitiveValue = JacksonStructure.readRemainingArray(theTokens);
+				}
+			} else {
+				primitiveValue = JacksonStructure.readValue(theTokens);
+			}
+
+			if (primitiveValue != null) {
+				if (primitiveNames == null) {
+					primitiveNames = new ArrayList<>();
+					primitiveValues = new ArrayList<>();
+				}
+				primitiveNames.add(nextName);
+				primitiveValues.add(primitiveValue);
+			} else {
+				if (complexNames == null) {
+					complexNames = new HashSet<>();
+				}
+				complexNames.add(nextName);
+			}
+		}
+
+		if (primitiveNames != null) {
+			for (int i = 0; i < primitiveNames.size(); i++) {
+				String nextName = primitiveNames.get(i);
+				String alternateName = '_' + nextName;
+				BaseJsonLikeValue alternateVal = alternates != null ? alternates.remove(alternateName) : null;
+				parseChildren(theState, nextName, primitiveValues.get(i), alternateVal, alternateName, false);
+			}
+		}
+
+		/*
+		 * This happens if an element has an extension but no actual value. I.e.
+		 * if a resource has a "_status" element but no corresponding "status"
+		 * element. This could be used to handle a null value with an extension
+		 * for example.
+		 */
+		if (alternates != null) {
+			for (Map.Entry<String, BaseJsonLikeValue> next : alternates.entrySet()) {
+				String alternateName = next.getKey();
+				if (alternateName.length() > 1) {
+					String nextName = alternateName.substring(1);
+					if (complexNames != null && complexNames.contains(nextName)) {
+						// Only primitive elements have a "_name" property in FHIR JSON
+						continue;
+					}
+					BaseJsonLikeValue nextValue = next.getValue();
+					if (nextValue.isObject()) {
+						theState.enteringNewElement(null, nextName);
+						parseAlternates(nextValue, theState, alternateName, alternateName);
+						theState.endingElement();
+					} else {
+						getErrorHandler()
+								.incorrectJsonType(
+										null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called with the stream positioned on the first object of an array, and returns with the
+	 * stream positioned on the end of the array.
+	 */
+	private void parseArrayOfObjects(
+			com.fasterxml.jackson.core.JsonParser theTokens, ParserState<?> theState, String theName)
+			throws IOException {
+		if (theName.equals("id")) {
+			getErrorHandler().incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.ARRAY, null);
+		}
+
+		for (JsonToken token = theTokens.currentToken();
+				token != null && token != JsonToken.END_ARRAY;
+				token = theTokens.nextToken()) {
+			if (token == JsonToken.START_OBJECT) {
+				parseObject(theTokens, theState, theName, true);
+			} else {
+				BaseJsonLikeValue value = JacksonStructure.readValue(theTokens);
+				parseChildren(theState, theName, value, null, '_' + theName, true);
+			}
+		}
+	}
+
+	/**
+	 * Streaming equivalent of the object handling in
+	 * {@link #parseChildren(ParserState, String, BaseJsonLikeValue, BaseJsonLikeValue, String, boolean)}.
+	 * Called with the stream positioned on the start of the object, and returns with the stream
+	 * positioned on its end.
+	 */
+	private void parseObject(
+			com.fasterxml.jackson.core.JsonParser theTokens,
+			ParserState<?> theState,
+			String theName,
+			boolean theInArray)
+			throws IOException {
+		if (theName.equals("id")) {
+			getErrorHandler()
+					.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.OBJECT, null);
+		}
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		theState.enteringNewElement(null, theName);
+		if (theState.isPreResource()) {
+			String resourceType = readLeadingResourceType(theTokens);
+			if (isNotBlank(resourceType)) {
+				theState.enteringNewElement(null, resourceType);
+				parseChildren(theTokens, theState);
+				theState.endingElement();
+			} else {
+				parseObjectContents(JacksonStructure.readRemainingObject(theTokens), theState);
+			}
+		} else {
+			parseChildren(theTokens, theState);
+		}
+		theState.endingElement();
+	}
+
 	@Override
 	public EncodingEnum getEncoding() {
 		return EncodingEnum.JSON;
 	}
 
 	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeObject theObject, String nextName, String thePosition) {
-		BaseJsonLikeValue object = theObject.get(nextName);
+		return grabJsonArray(theObject.get(nextName), thePosition);
+	}
+
+	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeValue object, String thePosition) {
 		if (object == null || object.isNull()) {
 			return null;
 		}
@@ -1425,21 +1685,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 			theState.enteringNewElement(null, theName);
 			parseAlternates(theAlternateVal, theState, theAlternateName, theAlternateName);
-			BaseJsonLikeObject nextObject = theJsonVal.getAsObject();
-			boolean preResource = false;
-			if (theState.isPreResource()) {
-				BaseJsonLikeValue resType = nextObject.get("resourceType");
-				if (resType == null || !resType.isString()) {
-					throw new DataFormatException(Msg.code(1843)
-							+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
-				}
-				theState.enteringNewElement(null, resType.getAsString());
-				preResource = true;
-			}
-			parseChildren(nextObject, theState);
-			if (preResource) {
-				theState.endingElement();
-			}
+			parseObjectContents(theJsonVal.getAsObject(), theState);
 			theState.endingElement();
 		} else if (theJsonVal.isNull()) {
 			theState.enteringNewElement(null, theName);
@@ -1455,6 +1701,28 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
+	/**
+	 * Parses the properties of an object whose element has already been entered. If the
+	 * element is a resource (e.g. <code>Bundle.entry.resource</code>), the resource itself
+	 * is entered first.
+	 */
+	private void parseObjectContents(BaseJsonLikeObject theObject, ParserState<?> theState) {
+		boolean preResource = false;
+		if (theState.isPreResource()) {
+			BaseJsonLikeValue resType = theObject.get("resourceType");
+			if (resType == null || !resType.isString()) {
+				throw new DataFormatException(Msg.code(1843)
+						+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+			}
+			theState.enteringNewElement(null, resType.getAsString());
+			preResource = true;
+		}
+		parseChildren(theObject, theState);
+		if (preResource) {
+			theState.endingElement();
+		}
+	}
+
 	private void parseExtension(ParserState<?> theState, BaseJsonLikeArray theValues, boolean theIsModifier) {
 		int allUnderscoreNames = 0;
 		int handledUnderscoreNames = 0;
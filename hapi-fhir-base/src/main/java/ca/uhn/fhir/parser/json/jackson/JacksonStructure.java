@@ -29,18 +29,23 @@ import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.DecimalNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ClassUtil;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.Writer;
@@ -54,6 +59,12 @@ import java.util.Map;
 public class JacksonStructure implements JsonLikeStructure {
 
 	private static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
+	/**
+	 * Reads individual values out of a token stream, so trailing tokens are expected
+	 */
+	private static final ObjectReader VALUE_READER =
+			OBJECT_MAPPER.readerFor(JsonNode.class).without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
 	private JacksonWriter jacksonWriter;
 	private ROOT_TYPE rootType = null;
 	private JsonNode nativeRoot = null;
@@ -81,34 +92,10 @@ public class JacksonStructure implements JsonLikeStructure {
 
 	@Override
 	public void load(Reader theReader, boolean allowArray) throws DataFormatException {
-		PushbackReader pbr = new PushbackReader(theReader);
-		int nextInt;
 		try {
-			while (true) {
-				nextInt = pbr.read();
-				if (nextInt == -1) {
-					throw new DataFormatException(Msg.code(1857) + "Did not find any content to parse");
-				}
-				if (nextInt == '{') {
-					pbr.unread(nextInt);
-					break;
-				}
-				if (Character.isWhitespace(nextInt)) {
-					continue;
-				}
-				if (allowArray) {
-					if (nextInt == '[') {
-						pbr.unread(nextInt);
-						break;
-					}
-					throw new DataFormatException(Msg.code(1858)
-							+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
-							+ (char) nextInt + "' (must be '{' or '[')");
-				}
-				throw new DataFormatException(Msg.code(1859)
-						+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
-						+ (char) nextInt + "' (must be '{')");
-			}
+			PushbackReader pbr = skipToStartOfContent(theReader, allowArray);
+			int nextInt = pbr.read();
+			pbr.unread(nextInt);
 
 			if (nextInt == '{') {
 				setNativeObject((ObjectNode) OBJECT_MAPPER.readTree(pbr));
@@ -116,39 +103,159 @@ public class JacksonStructure implements JsonLikeStructure {
 				setNativeArray((ArrayNode) OBJECT_MAPPER.readTree(pbr));
 			}
 		} catch (Exception e) {
-			String message;
-			if (e instanceof JsonProcessingException) {
-				/*
-				 * Currently there is no way of preventing Jackson from adding this
-				 * annoying REDACTED message from certain messages we get back from
-				 * the parser, so we just manually strip them. Hopefully Jackson
-				 * will accept this request at some point:
-				 * https://github.com/FasterXML/jackson-core/issues/1158
-				 */
-				JsonProcessingException jpe = (JsonProcessingException) e;
-				StringBuilder messageBuilder = new StringBuilder();
-				String originalMessage = jpe.getOriginalMessage();
-				originalMessage = originalMessage.replace(
-						"Source: REDACTED (`StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION` disabled); ", "");
-				messageBuilder.append(originalMessage);
-				if (jpe.getLocation() != null) {
-					messageBuilder.append("\n at [");
-					jpe.getLocation().appendOffsetDescription(messageBuilder);
-					messageBuilder.append("]");
-				}
-				message = messageBuilder.toString();
-			} else {
-				message = e.getMessage();
+			throw toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Creates a Jackson token stream over the given content, using the same parser configuration
+	 * as {@link #load(Reader)}. The content is verified to begin with a JSON object, and the
+	 * returned parser is positioned before its opening brace.
+	 *
+	 * @since 7.2.0
+	 */
+	public static JsonParser createTokenStream(Reader theReader) throws DataFormatException {
+		try {
+			return OBJECT_MAPPER.createParser(skipToStartOfContent(theReader, false));
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Reads the value at the current token of a stream created by {@link #createTokenStream(Reader)}
+	 * (including all of its children, if it is an object or an array) into an in-memory tree.
+	 *
+	 * @since 7.2.0
+	 */
+	public static BaseJsonLikeValue readValue(JsonParser theParser) throws IOException {
+		JsonNode value = VALUE_READER.readTree(theParser);
+		return new JacksonJsonValue(value);
+	}
+
+	/**
+	 * Reads the remainder of the object whose properties are currently being streamed by a
+	 * parser created by {@link #createTokenStream(Reader)}, into an in-memory tree. The
+	 * current token must be a property name or the end of the object.
+	 *
+	 * @since 7.2.0
+	 */
+	public static BaseJsonLikeObject readRemainingObject(JsonParser theParser) throws IOException {
+		ObjectNode retVal = OBJECT_MAPPER.createObjectNode();
+		for (JsonToken token = theParser.currentToken(); token == JsonToken.FIELD_NAME; token = theParser.nextToken()) {
+			String name = theParser.currentName();
+			theParser.nextToken();
+			JsonNode value = VALUE_READER.readTree(theParser);
+			retVal.set(name, value);
+		}
+		return new JacksonJsonObject(retVal);
+	}
+
+	/**
+	 * Reads the remainder of the array whose elements are currently being streamed by a
+	 * parser created by {@link #createTokenStream(Reader)}, into an in-memory tree. The
+	 * current token must be the first remaining element or the end of the array.
+	 *
+	 * @since 7.2.0
+	 */
+	public static BaseJsonLikeValue readRemainingArray(JsonParser theParser) throws IOException {
+		ArrayNode retVal = OBJECT_MAPPER.createArrayNode();
+		for (JsonToken token = theParser.currentToken();
+				token != null && token != JsonToken.END_ARRAY;
+				token = theParser.nextToken()) {
+			JsonNode value = VALUE_READER.readTree(theParser);
+			retVal.add(value);
+		}
+		return new JacksonJsonValue(retVal);
+	}
+
+	/**
+	 * Verifies that a stream created by {@link #createTokenStream(Reader)} has no further content
+	 * after the root object, which is the same rule {@link #load(Reader)} applies.
+	 *
+	 * @since 7.2.0
+	 */
+	public static void verifyEndOfContent(JsonParser theParser) throws IOException {
+		JsonToken trailingToken = theParser.nextToken();
+		if (trailingToken != null) {
+			throw MismatchedInputException.from(
+					theParser,
+					JsonNode.class,
+					"Trailing token (of type " + trailingToken + ") found after value (bound as "
+							+ ClassUtil.nameOf(JsonNode.class)
+							+ "): not allowed as per `DeserializationFeature.FAIL_ON_TRAILING_TOKENS`");
+		}
+	}
+
+	/**
+	 * Converts a failure while reading JSON content into the exception thrown by this structure
+	 *
+	 * @since 7.2.0
+	 */
+	public static DataFormatException toDataFormatException(Exception e) {
+		String message;
+		if (e instanceof JsonProcessingException) {
+			/*
+			 * Currently there is no way of preventing Jackson from adding this
+			 * annoying REDACTED message from certain messages we get back from
+			 * the parser, so we just manually strip them. Hopefully Jackson
+			 * will accept this request at some point:
+			 * https://github.com/FasterXML/jackson-core/issues/1158
+			 */
+			JsonProcessingException jpe = (JsonProcessingException) e;
+			StringBuilder messageBuilder = new StringBuilder();
+			String originalMessage = jpe.getOriginalMessage();
+			originalMessage = originalMessage.replace(
+					"Source: REDACTED (`StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION` disabled); ", "");
+			messageBuilder.append(originalMessage);
+			if (jpe.getLocation() != null) {
+				messageBuilder.append("\n at [");
+				jpe.getLocation().appendOffsetDescription(messageBuilder);
+				messageBuilder.append("]");
 			}
+			message = messageBuilder.toString();
+		} else {
+			message = e.getMessage();
+		}
 
-			if (message.startsWith("Unexpected char 39")) {
-				throw new DataFormatException(
-						Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + message + " - "
-								+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
-						e);
+		if (message.startsWith("Unexpected char 39")) {
+			return new DataFormatException(
+					Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + message + " - "
+							+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
+					e);
+		}
+		return new DataFormatException(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + message, e);
+	}
+
+	private static PushbackReader skipToStartOfContent(Reader theReader, boolean allowArray) throws IOException {
+		PushbackReader pbr = new PushbackReader(theReader);
+		int nextInt;
+		while (true) {
+			nextInt = pbr.read();
+			if (nextInt == -1) {
+				throw new DataFormatException(Msg.code(1857) + "Did not find any content to parse");
+			}
+			if (nextInt == '{') {
+				pbr.unread(nextInt);
+				break;
+			}
+			if (Character.isWhitespace(nextInt)) {
+				continue;
+			}
+			if (allowArray) {
+				if (nextInt == '[') {
+					pbr.unread(nextInt);
+					break;
+				}
+				throw new DataFormatException(Msg.code(1858)
+						+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
+						+ (char) nextInt + "' (must be '{' or '[')");
 			}
-			throw new DataFormatException(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + message, e);
+			throw new DataFormatException(Msg.code(1859)
+					+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
+					+ (char) nextInt + "' (must be '{')");
 		}
+		return pbr;
 	}
 
 	@Override
@@ -160,6 +267,20 @@ public class JacksonStructure implements JsonLikeStructure {
 		return jacksonWriter;
 	}
 
+	/**
+	 * Returns a writer which writes UTF-8 encoded bytes directly to the given stream, avoiding
+	 * the intermediate character encoding step of {@link #getJsonLikeWriter(Writer)}
+	 *
+	 * @since 7.2.0
+	 */
+	public BaseJsonLikeWriter getJsonLikeWriter(OutputStream theOutputStream) throws IOException {
+		if (null == jacksonWriter) {
+			jacksonWriter = new JacksonWriter(OBJECT_MAPPER.getFactory(), theOutputStream);
+		}
+
+		return jacksonWriter;
+	}
+
 	@Override
 	public BaseJsonLikeWriter getJsonLikeWriter() {
 		if (null == jacksonWriter) {
@@ -20,19 +20,33 @@
 package ca.uhn.fhir.parser.json.jackson;
 
 import ca.uhn.fhir.parser.json.BaseJsonLikeWriter;
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.Separators;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JacksonWriter extends BaseJsonLikeWriter {
 
+	/**
+	 * Property names are almost always element names from the structure definitions, so there
+	 * is a small and fixed set of them. Caching them as {@link SerializedString} means that each
+	 * one is quoted and encoded once, instead of every time it is written.
+	 */
+	private static final ConcurrentHashMap<String, SerializedString> ourFieldNames = new ConcurrentHashMap<>();
+
+	private static final int MAX_CACHED_FIELD_NAMES = 10000;
+
 	private JsonGenerator myJsonGenerator;
 
 	public JacksonWriter(JsonFactory theJsonFactory, Writer theWriter) throws IOException {
@@ -40,6 +54,15 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 		setWriter(theWriter);
 	}
 
+	/**
+	 * Creates a writer which writes UTF-8 encoded bytes directly to the given stream
+	 *
+	 * @since 7.2.0
+	 */
+	public JacksonWriter(JsonFactory theJsonFactory, OutputStream theOutputStream) throws IOException {
+		myJsonGenerator = theJsonFactory.createGenerator(theOutputStream, JsonEncoding.UTF8);
+	}
+
 	public JacksonWriter() {}
 
 	@Override
@@ -79,55 +102,57 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 
 	@Override
 	public BaseJsonLikeWriter beginObject(String name) throws IOException {
-		myJsonGenerator.writeObjectFieldStart(name);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeStartObject();
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter beginArray(String name) throws IOException {
-		myJsonGenerator.writeArrayFieldStart(name);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeStartArray();
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		myJsonGenerator.writeString(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(BigInteger value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(BigDecimal value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(long value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(double value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(Boolean value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		writeBoolean(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(boolean value) throws IOException {
-		myJsonGenerator.writeObject(value);
+		myJsonGenerator.writeBoolean(value);
 		return this;
 	}
 
@@ -139,43 +164,50 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 
 	@Override
 	public BaseJsonLikeWriter write(String name, String value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeString(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String name, BigInteger value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String name, BigDecimal value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String name, long value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String name, double value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeNumber(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String name, Boolean value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		writeBoolean(value);
 		return this;
 	}
 
 	@Override
 	public BaseJsonLikeWriter write(String name, boolean value) throws IOException {
-		myJsonGenerator.writeObjectField(name, value);
+		myJsonGenerator.writeFieldName(fieldName(name));
+		myJsonGenerator.writeBoolean(value);
 		return this;
 	}
 
@@ -196,4 +228,23 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 		myJsonGenerator.writeEndObject();
 		return this;
 	}
+
+	private void writeBoolean(Boolean theValue) throws IOException {
+		if (theValue == null) {
+			myJsonGenerator.writeNull();
+		} else {
+			myJsonGenerator.writeBoolean(theValue);
+		}
+	}
+
+	private static SerializableString fieldName(String theName) {
+		SerializedString retVal = ourFieldNames.get(theName);
+		if (retVal == null) {
+			retVal = new SerializedString(theName);
+			if (ourFieldNames.size() < MAX_CACHED_FIELD_NAMES) {
+				ourFieldNames.put(theName, retVal);
+			}
+		}
+		return retVal;
+	}
 }
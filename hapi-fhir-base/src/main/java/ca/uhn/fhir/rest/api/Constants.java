@@ -176,6 +176,13 @@ public class Constants {
 	public static final String PARAM_CONTENT = "_content";
 	public static final String PARAM_COUNT = "_count";
 	public static final String PARAM_OFFSET = "_offset";
+	/**
+	 * Opaque position marker added to the next page link of a keyset paginated search
+	 *
+	 * @since 7.2.0
+	 */
+	public static final String PARAM_CURSOR = "_cursor";
+
 	public static final String PARAM_DELETE = "_delete";
 	public static final String PARAM_ELEMENTS = "_elements";
 	public static final String PARAM_ELEMENTS_EXCLUDE_MODIFIER = ":exclude";
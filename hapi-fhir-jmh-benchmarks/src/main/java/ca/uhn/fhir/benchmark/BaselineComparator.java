@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (a baseline and a new run) and describes
+ * the throughput and allocation delta for every benchmark/parameter combination
+ * found in both. This is what gets pasted into a pull request to show the
+ * performance impact of a change.
+ * <p>
+ * Can also be invoked directly:
+ * <code>java ca.uhn.fhir.benchmark.BaselineComparator baseline.json result.json</code>
+ * </p>
+ */
+public class BaselineComparator {
+
+	static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+	private final Map<String, Result> myBaseline;
+	private final Map<String, Result> myCurrent;
+
+	public BaselineComparator(File theBaseline, File theCurrent) throws IOException {
+		myBaseline = load(theBaseline);
+		myCurrent = load(theCurrent);
+	}
+
+	/**
+	 * Returns a plain text table with one line per benchmark
+	 */
+	public String describe() {
+		StringBuilder b = new StringBuilder();
+		b.append(String.format(
+				"%-90s %14s %14s %8s %12s %12s %8s%n",
+				"Benchmark", "Base score", "New score", "Delta", "Base B/op", "New B/op", "Delta"));
+		for (Map.Entry<String, Result> next : new TreeMap<>(myCurrent).entrySet()) {
+			Result baseline = myBaseline.get(next.getKey());
+			Result current = next.getValue();
+			if (baseline == null) {
+				b.append(String.format("%-90s %14s %14.2f%n", next.getKey(), "(new)", current.myScore));
+				continue;
+			}
+			b.append(String.format(
+					"%-90s %14.2f %14.2f %8s %12.0f %12.0f %8s%n",
+					next.getKey(),
+					baseline.myScore,
+					current.myScore,
+					percent(baseline.myScore, current.myScore),
+					baseline.myAllocPerOp,
+					current.myAllocPerOp,
+					percent(baseline.myAllocPerOp, current.myAllocPerOp)));
+		}
+		return b.toString();
+	}
+
+	private static String percent(double theBaseline, double theCurrent) {
+		if (Double.isNaN(theBaseline) || Double.isNaN(theCurrent) || theBaseline == 0) {
+			return "n/a";
+		}
+		return String.format("%+.1f%%", ((theCurrent - theBaseline) / theBaseline) * 100.0);
+	}
+
+	private static Map<String, Result> load(File theFile) throws IOException {
+		Map<String, Result> retVal = new LinkedHashMap<>();
+		JsonNode root = new ObjectMapper().readTree(theFile);
+		for (JsonNode next : root) {
+			StringBuilder key = new StringBuilder(next.get("benchmark").asText());
+			JsonNode params = next.get("params");
+			if (params != null) {
+				for (Iterator<Map.Entry<String, JsonNode>> iter = params.fields(); iter.hasNext(); ) {
+					Map.Entry<String, JsonNode> param = iter.next();
+					key.append(':')
+							.append(param.getKey())
+							.append('=')
+							.append(param.getValue().asText());
+				}
+			}
+
+			Result result = new Result();
+			result.myScore = next.path("primaryMetric").path("score").asDouble(Double.NaN);
+			result.myAllocPerOp = Double.NaN;
+			for (Iterator<Map.Entry<String, JsonNode>> iter =
+							next.path("secondaryMetrics").fields();
+					iter.hasNext(); ) {
+				Map.Entry<String, JsonNode> metric = iter.next();
+				if (metric.getKey().endsWith(ALLOC_RATE_NORM)) {
+					result.myAllocPerOp = metric.getValue().path("score").asDouble(Double.NaN);
+				}
+			}
+			retVal.put(key.toString(), result);
+		}
+		return retVal;
+	}
+
+	public static void main(String[] theArgs) throws IOException {
+		if (theArgs.length != 2) {
+			System.err.println("Usage: BaselineComparator <baseline.json> <result.json>");
+			System.exit(1);
+		}
+		System.out.println(new BaselineComparator(new File(theArgs[0]), new File(theArgs[1])).describe());
+	}
+
+	private static class Result {
+		private double myScore;
+		private double myAllocPerOp;
+	}
+}
@@ -0,0 +1,256 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Narrative;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Builds deterministic, realistic R4 test data for the benchmarks. The content
+ * is modelled on a typical clinical feed: a Patient with a handful of Encounters,
+ * Conditions and vital-sign Observations (including components and extensions).
+ * The same seed always produces the same resources, so results are comparable
+ * between runs and against the published baseline.
+ */
+public class BenchmarkData {
+
+	public static final String SYSTEM_MRN = "http://example.org/fhir/mrn";
+	public static final String SYSTEM_LOINC = "http://loinc.org";
+	public static final String SYSTEM_SNOMED = "http://snomed.info/sct";
+	public static final String SYSTEM_UCUM = "http://unitsofmeasure.org";
+
+	private static final String[] FAMILY_NAMES = {"Smith", "Tremblay", "Nguyen", "Garcia", "Roy", "Wong", "Martin"};
+	private static final String[] GIVEN_NAMES = {"Alice", "Bob", "Chloé", "David", "Émilie", "Farid", "Grace"};
+	private static final String[][] VITALS = {
+		{"8867-4", "Heart rate", "/min", "60", "40"},
+		{"9279-1", "Respiratory rate", "/min", "12", "8"},
+		{"8310-5", "Body temperature", "Cel", "36", "2"},
+		{"29463-7", "Body weight", "kg", "50", "50"},
+		{"2708-6", "Oxygen saturation", "%", "90", "10"}
+	};
+	private static final String[][] CONDITIONS = {
+		{"44054006", "Diabetes mellitus type 2"},
+		{"38341003", "Hypertensive disorder"},
+		{"195967001", "Asthma"},
+		{"13645005", "Chronic obstructive lung disease"}
+	};
+
+	private BenchmarkData() {
+		// nothing
+	}
+
+	/**
+	 * Creates a <code>searchset</code> Bundle containing <code>thePatientCount</code>
+	 * patients, each followed by its clinical resources.
+	 */
+	public static Bundle createSearchBundle(int thePatientCount) {
+		Random random = new Random(thePatientCount);
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.SEARCHSET);
+		retVal.setId("bench-searchset-" + thePatientCount);
+		for (int i = 0; i < thePatientCount; i++) {
+			Patient patient = createPatient(random, i);
+			addEntry(retVal, patient);
+			for (Resource next : createClinicalResources(random, patient)) {
+				addEntry(retVal, next);
+			}
+		}
+		retVal.setTotal(retVal.getEntry().size());
+		return retVal;
+	}
+
+	/**
+	 * Creates a single Patient with identifiers, names, telecom and an address.
+	 */
+	public static Patient createPatient(Random theRandom, int theIndex) {
+		Patient retVal = new Patient();
+		retVal.setId("Patient/P" + theIndex);
+		retVal.getMeta().setVersionId("1").setLastUpdated(date(2024, 1, 1 + (theIndex % 28)));
+		retVal.getText()
+				.setStatus(Narrative.NarrativeStatus.GENERATED)
+				.setDivAsString("<div xmlns=\"http://www.w3.org/1999/xhtml\">Benchmark patient " + theIndex + "</div>");
+		retVal.addIdentifier()
+				.setUse(Identifier.IdentifierUse.OFFICIAL)
+				.setSystem(SYSTEM_MRN)
+				.setValue("MRN" + (100000 + theIndex));
+		retVal.addIdentifier().setSystem("http://example.org/fhir/ssn").setValue(Long.toString(theRandom.nextLong()));
+		retVal.addName()
+				.setUse(HumanName.NameUse.OFFICIAL)
+				.setFamily(FAMILY_NAMES[theIndex % FAMILY_NAMES.length])
+				.addGiven(GIVEN_NAMES[theIndex % GIVEN_NAMES.length])
+				.addGiven(GIVEN_NAMES[(theIndex + 3) % GIVEN_NAMES.length]);
+		retVal.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("555-" + theIndex);
+		retVal.addAddress()
+				.addLine(theIndex + " Queen Street West")
+				.setCity("Toronto")
+				.setState("ON")
+				.setPostalCode("M5H 2M9")
+				.setCountry("CA");
+		retVal.setGender(
+				theIndex % 2 == 0 ? Enumerations.AdministrativeGender.FEMALE : Enumerations.AdministrativeGender.MALE);
+		retVal.setBirthDateElement(new DateType(date(1940 + (theIndex % 60), 1 + (theIndex % 12), 15)));
+		retVal.addExtension(
+				"http://hl7.org/fhir/us/core/StructureDefinition/us-core-birthsex",
+				new StringType(retVal.getGender() == Enumerations.AdministrativeGender.FEMALE ? "F" : "M"));
+		return retVal;
+	}
+
+	/**
+	 * Creates the Encounters, Conditions and Observations belonging to a Patient.
+	 */
+	public static List<Resource> createClinicalResources(Random theRandom, Patient thePatient) {
+		List<Resource> retVal = new ArrayList<>();
+		String patientId = thePatient.getIdElement().toUnqualifiedVersionless().getValue();
+
+		for (int e = 0; e < 2; e++) {
+			Encounter encounter = new Encounter();
+			encounter.setId("Encounter/" + thePatient.getIdElement().getIdPart() + "-E" + e);
+			encounter.setStatus(Encounter.EncounterStatus.FINISHED);
+			encounter
+					.getClass_()
+					.setSystem("http://terminology.hl7.org/CodeSystem/v3-ActCode")
+					.setCode("AMB");
+			encounter.setSubject(new Reference(patientId));
+			encounter.setPeriod(new Period().setStart(date(2023, 1 + e, 10)).setEnd(date(2023, 1 + e, 11)));
+			retVal.add(encounter);
+
+			for (String[] nextVital : VITALS) {
+				Observation observation = createObservation(theRandom, patientId, encounter, nextVital, e);
+				observation.setId("Observation/" + encounter.getIdElement().getIdPart() + "-" + nextVital[0]);
+				retVal.add(observation);
+			}
+			retVal.add(createBloodPressure(theRandom, patientId, encounter, e));
+		}
+
+		String[] conditionCode = CONDITIONS[theRandom.nextInt(CONDITIONS.length)];
+		Condition condition = new Condition();
+		condition.setId("Condition/" + thePatient.getIdElement().getIdPart() + "-C");
+		condition
+				.getClinicalStatus()
+				.addCoding()
+				.setSystem("http://terminology.hl7.org/CodeSystem/condition-clinical")
+				.setCode("active");
+		condition.setCode(new CodeableConcept(new Coding(SYSTEM_SNOMED, conditionCode[0], conditionCode[1])));
+		condition.setSubject(new Reference(patientId));
+		condition.setOnset(new DateTimeType(date(2015, 6, 1)));
+		retVal.add(condition);
+
+		return retVal;
+	}
+
+	/**
+	 * Creates a single vital-sign Observation for the given patient reference. The
+	 * Observation has no ID, and the Encounter is optional.
+	 */
+	public static Observation createObservation(
+			Random theRandom, String thePatientId, Encounter theEncounter, String[] theVital, int theIndex) {
+		Observation retVal = new Observation();
+		retVal.setStatus(Observation.ObservationStatus.FINAL);
+		retVal.addCategory()
+				.addCoding()
+				.setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
+				.setCode("vital-signs");
+		retVal.setCode(new CodeableConcept(new Coding(SYSTEM_LOINC, theVital[0], theVital[1])).setText(theVital[1]));
+		retVal.setSubject(new Reference(thePatientId));
+		if (theEncounter != null) {
+			retVal.setEncounter(new Reference(
+					theEncounter.getIdElement().toUnqualifiedVersionless().getValue()));
+		}
+		retVal.setEffective(new DateTimeType(date(2023, 1 + theIndex, 10)));
+		retVal.setIssued(date(2023, 1 + theIndex, 10));
+		double value = Double.parseDouble(theVital[3]) + theRandom.nextDouble() * Double.parseDouble(theVital[4]);
+		retVal.setValue(new Quantity()
+				.setValue(Math.round(value * 10) / 10.0)
+				.setUnit(theVital[2])
+				.setSystem(SYSTEM_UCUM)
+				.setCode(theVital[2]));
+		retVal.addReferenceRange()
+				.setLow(new Quantity().setValue(Double.parseDouble(theVital[3])).setUnit(theVital[2]));
+		return retVal;
+	}
+
+	private static Observation createBloodPressure(
+			Random theRandom, String thePatientId, Encounter theEncounter, int theIndex) {
+		Observation retVal = new Observation();
+		retVal.setId("Observation/" + theEncounter.getIdElement().getIdPart() + "-BP");
+		retVal.setStatus(Observation.ObservationStatus.FINAL);
+		retVal.setCode(new CodeableConcept(new Coding(SYSTEM_LOINC, "85354-9", "Blood pressure panel")));
+		retVal.setSubject(new Reference(thePatientId));
+		retVal.setEffective(new DateTimeType(date(2023, 1 + theIndex, 10)));
+		retVal.addComponent()
+				.setCode(new CodeableConcept(new Coding(SYSTEM_LOINC, "8480-6", "Systolic blood pressure")))
+				.setValue(new Quantity()
+						.setValue(100 + theRandom.nextInt(60))
+						.setUnit("mm[Hg]")
+						.setSystem(SYSTEM_UCUM)
+						.setCode("mm[Hg]"));
+		retVal.addComponent()
+				.setCode(new CodeableConcept(new Coding(SYSTEM_LOINC, "8462-4", "Diastolic blood pressure")))
+				.setValue(new Quantity()
+						.setValue(60 + theRandom.nextInt(40))
+						.setUnit("mm[Hg]")
+						.setSystem(SYSTEM_UCUM)
+						.setCode("mm[Hg]"));
+		return retVal;
+	}
+
+	private static void addEntry(Bundle theBundle, Resource theResource) {
+		theBundle
+				.addEntry()
+				.setFullUrl(
+						"http://example.org/fhir/" + theResource.getIdElement().getValue())
+				.setResource(theResource)
+				.getSearch()
+				.setMode(Bundle.SearchEntryMode.MATCH);
+	}
+
+	private static Date date(int theYear, int theMonth, int theDay) {
+		GregorianCalendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+		cal.clear();
+		cal.set(theYear, theMonth - 1, theDay, 9, 30, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		return cal.getTime();
+	}
+}
@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point used by the <code>JMH</code> build profile. It runs the JMH
+ * harness with the GC profiler enabled (so that allocation per operation is
+ * always reported), writes the results as JSON, and then prints the delta
+ * against a previously recorded baseline.
+ * <p>
+ * Arguments:
+ * </p>
+ * <ul>
+ *    <li><code>--result &lt;file&gt;</code> - Where to write the JSON results</li>
+ *    <li><code>--baseline &lt;file&gt;</code> - The baseline to compare against (optional, skipped if missing)</li>
+ *    <li>Anything else is passed to JMH as-is, e.g. a benchmark regex or <code>-p encoding=JSON</code></li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BenchmarkRunner.class);
+
+	public static void main(String[] theArgs) throws RunnerException, CommandLineOptionException, IOException {
+		String resultFile = "jmh-result.json";
+		String baselineFile = null;
+		List<String> jmhArgs = new ArrayList<>();
+		for (int i = 0; i < theArgs.length; i++) {
+			if ("--result".equals(theArgs[i]) && i + 1 < theArgs.length) {
+				resultFile = theArgs[++i];
+			} else if ("--baseline".equals(theArgs[i]) && i + 1 < theArgs.length) {
+				baselineFile = theArgs[++i];
+			} else {
+				jmhArgs.add(theArgs[i]);
+			}
+		}
+
+		CommandLineOptions commandLineOptions = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLineOptions)
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile);
+		if (commandLineOptions.getProfilers().isEmpty()) {
+			options.addProfiler("gc");
+		}
+		if (commandLineOptions.getIncludes().isEmpty()) {
+			options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+		}
+
+		new Runner(options.build()).run();
+
+		if (baselineFile != null && new File(baselineFile).exists()) {
+			BaselineComparator comparator = new BaselineComparator(new File(baselineFile), new File(resultFile));
+			ourLog.info("Comparison against baseline {}:\n{}", baselineFile, comparator.describe());
+		} else {
+			ourLog.info("No baseline found at {} - Skipping comparison", baselineFile);
+		}
+	}
+}
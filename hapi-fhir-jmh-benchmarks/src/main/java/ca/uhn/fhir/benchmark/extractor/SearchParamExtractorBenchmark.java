@@ -0,0 +1,127 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark.extractor;
+
+import ca.uhn.fhir.benchmark.BenchmarkData;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.BaseSearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorR4;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link BaseSearchParamExtractor} index extraction for each search
+ * parameter type over the resources of a realistic Bundle. Each invocation
+ * extracts every index for all 16 resources belonging to one patient.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchParamExtractorBenchmark {
+
+	private BaseSearchParamExtractor myExtractor;
+	private List<Resource> myResources;
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forR4Cached();
+		myExtractor = new SearchParamExtractorR4(
+				new StorageSettings(), new PartitionSettings(), ctx, new FhirContextSearchParamRegistry(ctx));
+		myResources = new ArrayList<>();
+		for (Bundle.BundleEntryComponent next :
+				BenchmarkData.createSearchBundle(1).getEntry()) {
+			myResources.add(next.getResource());
+		}
+	}
+
+	@Benchmark
+	public int tokens() {
+		int retVal = 0;
+		for (Resource next : myResources) {
+			retVal += myExtractor
+					.extractSearchParamTokens(next, ISearchParamExtractor.ALL_PARAMS)
+					.size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int strings() {
+		int retVal = 0;
+		for (Resource next : myResources) {
+			retVal += myExtractor
+					.extractSearchParamStrings(next, ISearchParamExtractor.ALL_PARAMS)
+					.size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int dates() {
+		int retVal = 0;
+		for (Resource next : myResources) {
+			retVal += myExtractor
+					.extractSearchParamDates(next, ISearchParamExtractor.ALL_PARAMS)
+					.size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int quantities() {
+		int retVal = 0;
+		for (Resource next : myResources) {
+			retVal += myExtractor
+					.extractSearchParamQuantity(next, ISearchParamExtractor.ALL_PARAMS)
+					.size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int references() {
+		int retVal = 0;
+		for (Resource next : myResources) {
+			retVal += myExtractor.extractResourceLinks(next, false).size();
+		}
+		return retVal;
+	}
+}
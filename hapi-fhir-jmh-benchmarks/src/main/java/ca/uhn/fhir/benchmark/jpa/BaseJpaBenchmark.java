@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark.jpa;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.test.config.TestR4Config;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Base class for benchmarks that need a running JPA server. The same Spring
+ * configuration as the R4 JPA tests is started once per trial against an
+ * in-memory H2 database, so the numbers include Hibernate and the JDBC driver
+ * but no network round trips.
+ */
+public abstract class BaseJpaBenchmark {
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	protected FhirContext myFhirContext;
+	protected DaoRegistry myDaoRegistry;
+	protected JpaStorageSettings myStorageSettings;
+	protected SystemRequestDetails mySrd;
+
+	@Setup(Level.Trial)
+	public void startContext() {
+		myAppCtx = new AnnotationConfigApplicationContext(TestR4Config.class);
+		myFhirContext = myAppCtx.getBean(FhirContext.class);
+		myDaoRegistry = myAppCtx.getBean(DaoRegistry.class);
+		myStorageSettings = myAppCtx.getBean(JpaStorageSettings.class);
+		mySrd = new SystemRequestDetails();
+		afterContextStarted();
+	}
+
+	@TearDown(Level.Trial)
+	public void stopContext() {
+		if (myAppCtx != null) {
+			myAppCtx.close();
+			myAppCtx = null;
+		}
+	}
+
+	protected <T> T getBean(Class<T> theType) {
+		return myAppCtx.getBean(theType);
+	}
+
+	/**
+	 * Subclasses may override this to look up beans and seed data
+	 */
+	protected void afterContextStarted() {
+		// nothing by default
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark.jpa;
+
+import ca.uhn.fhir.benchmark.BenchmarkData;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.BaseHapiFhirResourceDao;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link BaseHapiFhirResourceDao#create create} and
+ * {@link BaseHapiFhirResourceDao#update update} write paths for a typical
+ * vital-sign Observation, including search parameter extraction, index
+ * persistence and the transaction commit against H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ResourceDaoBenchmark extends BaseJpaBenchmark {
+
+	private IFhirResourceDao<Observation> myObservationDao;
+	private String myPatientId;
+	private IdType myUpdateTargetId;
+	private Random myRandom;
+	private long myCounter;
+
+	@Override
+	protected void afterContextStarted() {
+		myRandom = new Random(0);
+		myObservationDao = myDaoRegistry.getResourceDao(Observation.class);
+
+		Patient patient = BenchmarkData.createPatient(myRandom, 0);
+		patient.setId((String) null);
+		myPatientId = myDaoRegistry
+				.getResourceDao(Patient.class)
+				.create(patient, mySrd)
+				.getId()
+				.toUnqualifiedVersionless()
+				.getValue();
+
+		Observation observation = newObservation();
+		myUpdateTargetId =
+				(IdType) myObservationDao.create(observation, mySrd).getId().toUnqualifiedVersionless();
+	}
+
+	@Benchmark
+	public MethodOutcome create() {
+		return myObservationDao.create(newObservation(), mySrd);
+	}
+
+	@Benchmark
+	public MethodOutcome update() {
+		Observation observation = newObservation();
+		observation.setId(myUpdateTargetId);
+		// Change the value every time so that the update isn't a no-op
+		((Quantity) observation.getValue()).setValue(myCounter++);
+		return myObservationDao.update(observation, mySrd);
+	}
+
+	private Observation newObservation() {
+		return BenchmarkData.createObservation(
+				myRandom, myPatientId, null, new String[] {"8867-4", "Heart rate", "/min", "60", "40"}, 0);
+	}
+}
@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark.jpa;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.search.builder.QueryStack;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.healthmarketscience.sqlbuilder.Condition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static ca.uhn.fhir.benchmark.BenchmarkData.SYSTEM_LOINC;
+import static ca.uhn.fhir.jpa.search.builder.QueryStack.SearchForIdsParams.with;
+
+/**
+ * Measures translation of a {@link SearchParameterMap} into SQL by
+ * {@link QueryStack} and {@link SearchQueryBuilder}, in the same way as
+ * <code>SearchBuilder.createQuery</code> does. No SQL is executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchQueryBuilderBenchmark extends BaseJpaBenchmark {
+
+	private PartitionSettings myPartitionSettings;
+	private SqlObjectFactory mySqlObjectFactory;
+	private HibernatePropertiesProvider myDialectProvider;
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	@Override
+	protected void afterContextStarted() {
+		myPartitionSettings = getBean(PartitionSettings.class);
+		mySqlObjectFactory = getBean(SqlObjectFactory.class);
+		myDialectProvider = getBean(HibernatePropertiesProvider.class);
+		mySearchParamRegistry = getBean(ISearchParamRegistry.class);
+	}
+
+	/**
+	 * <code>Observation?code=8867-4</code>
+	 */
+	@Benchmark
+	public GeneratedSql singleToken() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add("code", new TokenParam(SYSTEM_LOINC, "8867-4"));
+		return generate("Observation", map);
+	}
+
+	/**
+	 * <code>Observation?code=8867-4,9279-1&amp;date=ge2023-01-01&amp;date=lt2024-01-01&amp;_sort=-date</code>
+	 */
+	@Benchmark
+	public GeneratedSql tokenAndDateRangeSorted() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add(
+				"code",
+				new TokenOrListParam()
+						.addOr(new TokenParam(SYSTEM_LOINC, "8867-4"))
+						.addOr(new TokenParam(SYSTEM_LOINC, "9279-1")));
+		map.add("date", new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, "2023-01-01"));
+		map.add("date", new DateParam(ParamPrefixEnum.LESSTHAN, "2024-01-01"));
+		return generate("Observation", map, "date");
+	}
+
+	/**
+	 * <code>Patient?family=smith&amp;given=alice&amp;gender=female</code>
+	 */
+	@Benchmark
+	public GeneratedSql patientDemographics() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add("family", new StringParam("smith"));
+		map.add("given", new StringParam("alice"));
+		map.add("gender", new TokenParam("female"));
+		return generate("Patient", map);
+	}
+
+	private GeneratedSql generate(String theResourceType, SearchParameterMap theParams) {
+		return generate(theResourceType, theParams, null);
+	}
+
+	private GeneratedSql generate(String theResourceType, SearchParameterMap theParams, String theDescendingDateSort) {
+		RequestPartitionId partitionId = RequestPartitionId.allPartitions();
+		SearchQueryBuilder sqlBuilder = new SearchQueryBuilder(
+				myFhirContext,
+				myStorageSettings,
+				myPartitionSettings,
+				partitionId,
+				theResourceType,
+				mySqlObjectFactory,
+				myDialectProvider,
+				false);
+		QueryStack queryStack = new QueryStack(
+				theParams, myStorageSettings, myFhirContext, sqlBuilder, mySearchParamRegistry, myPartitionSettings);
+		if (theParams.keySet().size() > 1 || theDescendingDateSort != null) {
+			sqlBuilder.setNeedResourceTableRoot(true);
+		}
+
+		for (String nextParamName : theParams.keySet()) {
+			Condition predicate = queryStack.searchForIdsWithAndOr(with().setResourceName(theResourceType)
+					.setParamName(nextParamName)
+					.setAndOrParams(theParams.get(nextParamName))
+					.setRequest(mySrd)
+					.setRequestPartitionId(partitionId));
+			if (predicate != null) {
+				sqlBuilder.addPredicate(predicate);
+			}
+		}
+
+		if (theDescendingDateSort != null) {
+			queryStack.addSortOnDate(theResourceType, theDescendingDateSort, false);
+		}
+
+		return sqlBuilder.generate(0, 100);
+	}
+}
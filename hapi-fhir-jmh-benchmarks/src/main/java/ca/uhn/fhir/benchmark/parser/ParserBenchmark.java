@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark.parser;
+
+import ca.uhn.fhir.benchmark.BenchmarkData;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and parsing of a realistic <code>searchset</code> Bundle
+ * with the JSON and XML parsers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({"JSON", "XML"})
+	public EncodingEnum encoding;
+
+	/**
+	 * Number of patients in the Bundle. Each patient contributes 16 entries.
+	 */
+	@Param({"10", "100"})
+	public int patientCount;
+
+	private FhirContext myFhirContext;
+	private Bundle myBundle;
+	private String myEncodedBundle;
+
+	@Setup
+	public void setup() {
+		myFhirContext = FhirContext.forR4Cached();
+		myBundle = BenchmarkData.createSearchBundle(patientCount);
+		myEncodedBundle = newParser().encodeResourceToString(myBundle);
+	}
+
+	@Benchmark
+	public long encode() throws IOException {
+		CountingWriter writer = new CountingWriter();
+		newParser().encodeResourceToWriter(myBundle, writer);
+		return writer.getCount();
+	}
+
+	@Benchmark
+	public Bundle parse() {
+		return newParser().parseResource(Bundle.class, new StringReader(myEncodedBundle));
+	}
+
+	private IParser newParser() {
+		return encoding.newParser(myFhirContext);
+	}
+
+	/**
+	 * Discards everything written to it so that the benchmark measures the
+	 * encoder rather than the growth of a StringBuilder.
+	 */
+	private static class CountingWriter extends Writer {
+		private long myCount;
+
+		@Override
+		public void write(char[] theBuffer, int theOffset, int theLength) {
+			myCount += theLength;
+		}
+
+		@Override
+		public void write(String theString, int theOffset, int theLength) {
+			myCount += theLength;
+		}
+
+		@Override
+		public void write(int theChar) {
+			myCount++;
+		}
+
+		@Override
+		public void flush() {
+			// nothing
+		}
+
+		@Override
+		public void close() {
+			// nothing
+		}
+
+		long getCount() {
+			return myCount;
+		}
+	}
+}
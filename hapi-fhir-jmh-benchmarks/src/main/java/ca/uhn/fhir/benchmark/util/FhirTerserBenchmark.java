@@ -0,0 +1,114 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark.util;
+
+import ca.uhn.fhir.benchmark.BenchmarkData;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FhirTerser#getValues(IBase, String)} for the kind of paths
+ * used by search parameter extraction and reference handling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FhirTerserBenchmark {
+
+	private FhirTerser myTerser;
+	private List<Patient> myPatients;
+	private List<Observation> myObservations;
+	private Bundle myBundle;
+
+	@Setup
+	public void setup() {
+		myTerser = FhirContext.forR4Cached().newTerser();
+		myBundle = BenchmarkData.createSearchBundle(20);
+		myPatients = new ArrayList<>();
+		myObservations = new ArrayList<>();
+		for (Bundle.BundleEntryComponent next : myBundle.getEntry()) {
+			if (next.getResource() instanceof Patient) {
+				myPatients.add((Patient) next.getResource());
+			} else if (next.getResource() instanceof Observation) {
+				myObservations.add((Observation) next.getResource());
+			}
+		}
+	}
+
+	@Benchmark
+	public int observationCodeCoding() {
+		int retVal = 0;
+		for (Observation next : myObservations) {
+			retVal += myTerser.getValues(next, "Observation.code.coding.code").size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int observationComponentValue() {
+		int retVal = 0;
+		for (Observation next : myObservations) {
+			retVal += myTerser.getValues(next, "Observation.component.valueQuantity.value")
+					.size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int patientNameAndIdentifier() {
+		int retVal = 0;
+		for (Patient next : myPatients) {
+			retVal += myTerser.getValues(next, "Patient.name.given").size();
+			retVal += myTerser.getValues(next, "Patient.identifier.value").size();
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public int bundleEntryResources() {
+		return myTerser.getValues(myBundle, "Bundle.entry.resource").size();
+	}
+
+	@Benchmark
+	public int allReferences() {
+		return myTerser.getAllResourceReferences(myBundle).size();
+	}
+}
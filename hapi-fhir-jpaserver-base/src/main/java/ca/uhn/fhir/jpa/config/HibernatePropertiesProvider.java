@@ -79,4 +79,8 @@ public class HibernatePropertiesProvider {
 	public boolean isOracleDialect() {
 		return getDialect() instanceof org.hibernate.dialect.OracleDialect;
 	}
+
+	public boolean isPostgresDialect() {
+		return getDialect() instanceof org.hibernate.dialect.PostgreSQLDialect;
+	}
 }
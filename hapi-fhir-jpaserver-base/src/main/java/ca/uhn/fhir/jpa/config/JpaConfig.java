@@ -51,23 +51,33 @@ import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.ISearchBuilder;
 import ca.uhn.fhir.jpa.dao.JpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.MatchResourceUrlService;
+import ca.uhn.fhir.jpa.dao.ParsedResourceCache;
 import ca.uhn.fhir.jpa.dao.ResourceHistoryCalculator;
 import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.TransactionProcessor;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryProvenanceDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTagDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceModifiedDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceProjectionDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceSearchUrlDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeEverythingService;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeOperation;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
 import ca.uhn.fhir.jpa.dao.expunge.IExpungeEverythingService;
 import ca.uhn.fhir.jpa.dao.expunge.IResourceExpungeService;
 import ca.uhn.fhir.jpa.dao.expunge.JpaResourceExpungeService;
+import ca.uhn.fhir.jpa.dao.expunge.ResourceHistoryPartitionMaintenanceSvc;
 import ca.uhn.fhir.jpa.dao.expunge.ResourceTableFKProvider;
 import ca.uhn.fhir.jpa.dao.index.DaoResourceLinkResolver;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
+import ca.uhn.fhir.jpa.dao.tx.CreateGroupCommitSvc;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.ReadReplicaLagTracker;
 import ca.uhn.fhir.jpa.dao.validation.SearchParameterDaoValidator;
 import ca.uhn.fhir.jpa.delete.DeleteConflictFinderService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
@@ -79,6 +89,7 @@ import ca.uhn.fhir.jpa.interceptor.CascadingDeleteInterceptor;
 import ca.uhn.fhir.jpa.interceptor.JpaConsentContextServices;
 import ca.uhn.fhir.jpa.interceptor.OverridePathBasedReferentialIntegrityForDeletesInterceptor;
 import ca.uhn.fhir.jpa.interceptor.validation.RepositoryValidatingRuleBuilder;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.packages.IHapiPackageCacheManager;
@@ -105,11 +116,16 @@ import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
+import ca.uhn.fhir.jpa.search.ResourceProjectionSvc;
 import ca.uhn.fhir.jpa.search.ResourceSearchUrlSvc;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
 import ca.uhn.fhir.jpa.search.SearchUrlJobMaintenanceSvcImpl;
 import ca.uhn.fhir.jpa.search.SynchronousSearchSvcImpl;
+import ca.uhn.fhir.jpa.search.builder.ChainedSearchTargetPidCache;
 import ca.uhn.fhir.jpa.search.builder.QueryStack;
+import ca.uhn.fhir.jpa.search.builder.SearchPartitionFanOutSvc;
+import ca.uhn.fhir.jpa.search.builder.SearchResultParsingSvc;
+import ca.uhn.fhir.jpa.search.builder.SearchTotalEstimateCache;
 import ca.uhn.fhir.jpa.search.builder.predicate.ComboNonUniqueSearchParameterPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.ComboUniqueSearchParameterPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.CoordsPredicateBuilder;
@@ -135,6 +151,7 @@ import ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.search.cache.MemorySearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.elastic.IndexNamePrefixLayoutStrategy;
 import ca.uhn.fhir.jpa.search.reindex.IInstanceReindexService;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
@@ -362,7 +379,10 @@ public class JpaConfig {
 	}
 
 	@Bean
-	public ISearchResultCacheSvc searchResultCacheSvc() {
+	public ISearchResultCacheSvc searchResultCacheSvc(JpaStorageSettings theStorageSettings) {
+		if (theStorageSettings.getSearchResultMemoryCacheMaximumPids() > 0) {
+			return new MemorySearchResultCacheSvcImpl(theStorageSettings);
+		}
 		return new DatabaseSearchResultCacheSvcImpl();
 	}
 
@@ -431,6 +451,11 @@ public class JpaConfig {
 		return new JpaHapiTransactionService();
 	}
 
+	@Bean
+	public ReadReplicaLagTracker readReplicaLagTracker(JpaStorageSettings theStorageSettings) {
+		return new ReadReplicaLagTracker(theStorageSettings);
+	}
+
 	@Bean
 	public IInterceptorService jpaInterceptorService() {
 		return new InterceptorService("JPA");
@@ -531,6 +556,71 @@ public class JpaConfig {
 		return new SearchBuilderFactory();
 	}
 
+	@Bean
+	public ParsedResourceCache parsedResourceCache(JpaStorageSettings theStorageSettings) {
+		return new ParsedResourceCache(theStorageSettings);
+	}
+
+	@Bean
+	public ChainedSearchTargetPidCache chainedSearchTargetPidCache(JpaStorageSettings theStorageSettings) {
+		return new ChainedSearchTargetPidCache(theStorageSettings);
+	}
+
+	@Bean
+	public SearchTotalEstimateCache searchTotalEstimateCache(JpaStorageSettings theStorageSettings) {
+		return new SearchTotalEstimateCache(theStorageSettings);
+	}
+
+	@Bean
+	public SearchResultParsingSvc searchResultParsingSvc(JpaStorageSettings theStorageSettings) {
+		return new SearchResultParsingSvc(theStorageSettings);
+	}
+
+	@Bean
+	public ResourceHistoryPartitionMaintenanceSvc resourceHistoryPartitionMaintenanceSvc(
+			JpaStorageSettings theStorageSettings,
+			HibernatePropertiesProvider theHibernatePropertiesProvider,
+			IHapiTransactionService theTransactionService,
+			IResourceHistoryTableDao theResourceHistoryTableDao,
+			IResourceHistoryTagDao theResourceHistoryTagDao,
+			IResourceHistoryProvenanceDao theResourceHistoryProvenanceDao) {
+		return new ResourceHistoryPartitionMaintenanceSvc(
+				theStorageSettings,
+				theHibernatePropertiesProvider,
+				theTransactionService,
+				theResourceHistoryTableDao,
+				theResourceHistoryTagDao,
+				theResourceHistoryProvenanceDao);
+	}
+
+	@Bean
+	public CreateGroupCommitSvc createGroupCommitSvc(
+			JpaStorageSettings theStorageSettings,
+			PartitionSettings thePartitionSettings,
+			IHapiTransactionService theTransactionService) {
+		return new CreateGroupCommitSvc(theStorageSettings, thePartitionSettings, theTransactionService);
+	}
+
+	@Bean
+	public ResourceProjectionSvc resourceProjectionSvc(
+			FhirContext theFhirContext,
+			JpaStorageSettings theStorageSettings,
+			IResourceProjectionDao theResourceProjectionDao,
+			IResourceTagDao theResourceTagDao,
+			IJpaStorageResourceParser theJpaStorageResourceParser) {
+		return new ResourceProjectionSvc(
+				theFhirContext,
+				theStorageSettings,
+				theResourceProjectionDao,
+				theResourceTagDao,
+				theJpaStorageResourceParser);
+	}
+
+	@Bean
+	public SearchPartitionFanOutSvc searchPartitionFanOutSvc(JpaStorageSettings theStorageSettings) {
+		return new SearchPartitionFanOutSvc(theStorageSettings);
+	}
+
 	@Bean
 	public SqlObjectFactory sqlBuilderFactory() {
 		return new SqlObjectFactory();
@@ -33,6 +33,7 @@ import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
+import ca.uhn.fhir.jpa.search.AdaptiveSearchPreFetchSvc;
 import ca.uhn.fhir.jpa.search.ExceptionService;
 import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
@@ -131,7 +132,7 @@ public class SearchConfig {
 
 	@Bean
 	public ISearchCoordinatorSvc searchCoordinatorSvc() {
-		return new SearchCoordinatorSvcImpl(
+		SearchCoordinatorSvcImpl retVal = new SearchCoordinatorSvcImpl(
 				myContext,
 				myStorageSettings,
 				myInterceptorBroadcaster,
@@ -146,6 +147,13 @@ public class SearchConfig {
 				mySearchStrategyFactory,
 				exceptionService(),
 				myBeanFactory);
+		retVal.setAdaptiveSearchPreFetchSvc(adaptiveSearchPreFetchSvc());
+		return retVal;
+	}
+
+	@Bean
+	public AdaptiveSearchPreFetchSvc adaptiveSearchPreFetchSvc() {
+		return new AdaptiveSearchPreFetchSvc(myStorageSettings, mySearchCacheSvc);
 	}
 
 	@Bean
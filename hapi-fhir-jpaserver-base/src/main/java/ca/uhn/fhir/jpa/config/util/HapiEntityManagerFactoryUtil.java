@@ -23,6 +23,7 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.config.HapiFhirLocalContainerEntityManagerFactoryBean;
+import ca.uhn.fhir.jpa.model.dialect.SequenceBlockIdAllocator;
 import ca.uhn.fhir.jpa.util.ISequenceValueMassager;
 import ca.uhn.fhir.util.ReflectionUtil;
 import jakarta.persistence.spi.PersistenceUnitInfo;
@@ -84,7 +85,8 @@ public final class HapiEntityManagerFactoryUtil {
 
 		/**
 		 * This class extends the default hibernate EntityManagerFactoryBuilder in order to
-		 * register a custom service (the {@link ISequenceValueMassager}, which is used in
+		 * register custom services (the {@link ISequenceValueMassager} and the
+		 * {@link SequenceBlockIdAllocator}), which are used in
 		 * {@link ca.uhn.fhir.jpa.model.dialect.HapiSequenceStyleGenerator}.
 		 * <p>
 		 * In Hibernate 5 we didn't need to do this, since we could just register
@@ -102,6 +104,9 @@ public final class HapiEntityManagerFactoryUtil {
 				ISequenceValueMassager sequenceValueMassager =
 						ReflectionUtil.newInstance(myStorageSettings.getSequenceValueMassagerClass());
 				retVal.addService(ISequenceValueMassager.class, sequenceValueMassager);
+				retVal.addService(
+						SequenceBlockIdAllocator.class,
+						new SequenceBlockIdAllocator(myStorageSettings.getSequenceBlockAllocationSize()));
 				return retVal;
 			}
 		}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.config.util;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * DataSource which sends connections used by read-only transactions to one of a set of
+ * read replicas (chosen round-robin), and all other connections to the primary database.
+ * HAPI FHIR runs searches, and reads of individual resources, in read-only transactions.
+ * <p>
+ * The routing decision is made when the connection is obtained, which Hibernate normally does
+ * before the transaction has been marked as read-only. This DataSource should therefore always be
+ * wrapped in a {@link LazyConnectionDataSourceProxy} (see {@link #newLazyProxy(DataSource, List)}),
+ * which defers obtaining the connection until the first statement is executed.
+ * </p>
+ * <p>
+ * Replicas generally lag behind the primary. See {@link JpaStorageSettings#setReadReplicaLagMillis(long)}
+ * for a way of ensuring that clients can read their own changes.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	private static final String PRIMARY_KEY = "PRIMARY";
+
+	private final int myReplicaCount;
+	private final AtomicInteger myNextReplica = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param thePrimary  The primary (read/write) database
+	 * @param theReplicas The read replicas of the primary database
+	 */
+	public ReadReplicaRoutingDataSource(@Nonnull DataSource thePrimary, @Nonnull List<DataSource> theReplicas) {
+		Validate.notNull(thePrimary, "thePrimary must not be null");
+		Validate.notNull(theReplicas, "theReplicas must not be null");
+
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY_KEY, thePrimary);
+		for (int i = 0; i < theReplicas.size(); i++) {
+			targets.put(i, theReplicas.get(i));
+		}
+		myReplicaCount = theReplicas.size();
+
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(thePrimary);
+		setLenientFallback(false);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (myReplicaCount == 0 || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY_KEY;
+		}
+		return Math.floorMod(myNextReplica.getAndIncrement(), myReplicaCount);
+	}
+
+	/**
+	 * Creates a routing DataSource wrapped in the {@link LazyConnectionDataSourceProxy} it needs
+	 * in order to see whether the current transaction is read-only
+	 */
+	public static DataSource newLazyProxy(@Nonnull DataSource thePrimary, @Nonnull List<DataSource> theReplicas) {
+		return new LazyConnectionDataSourceProxy(new ReadReplicaRoutingDataSource(thePrimary, theReplicas));
+	}
+}
@@ -38,6 +38,7 @@ import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.api.svc.ISearchCoordinatorSvc;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceLinkDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
@@ -59,6 +60,7 @@ import ca.uhn.fhir.jpa.model.entity.BaseTag;
 import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryProvenanceEntity;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.entity.ResourceLink;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTag;
@@ -68,6 +70,7 @@ import ca.uhn.fhir.jpa.model.search.ExtendedHSearchIndexData;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.partition.IPartitionLookupSvc;
+import ca.uhn.fhir.jpa.search.ResourceProjectionSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.LogicalReferenceHelper;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
@@ -209,6 +212,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	@Autowired
 	protected IResourceLinkDao myResourceLinkDao;
 
+	@Autowired
+	protected IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
+
 	@Autowired
 	protected IResourceTagDao myResourceTagDao;
 
@@ -254,6 +260,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	@Autowired(required = false)
 	private IFulltextSearchSvc myFulltextSearchSvc;
 
+	@Autowired(required = false)
+	private ResourceProjectionSvc myResourceProjectionSvc;
+
 	@Autowired
 	private PlatformTransactionManager myTransactionManager;
 
@@ -1097,7 +1106,18 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 							() -> new IdentityHashMap<>());
 			existingParams = existingSearchParams.get(entity);
 			if (existingParams == null) {
-				existingParams = ResourceIndexedSearchParams.withLists(entity);
+				if (myStorageSettings.isSearchIndexHashOnlyDiffEnabled() && entity.isParamsTokenPopulated()) {
+					/*
+					 * Resources can have hundreds of token indexes, so rather than loading the
+					 * whole collection we only fetch the ID and hashes of each row, which is
+					 * all we need in order to figure out which rows have changed
+					 */
+					List<ResourceIndexedSearchParamToken> tokenHashes =
+							myResourceIndexedSearchParamTokenDao.findHashesForResourceId(entity.getId());
+					existingParams = ResourceIndexedSearchParams.withListsAndTokenHashes(entity, tokenHashes);
+				} else {
+					existingParams = ResourceIndexedSearchParams.withLists(entity);
+				}
 				/*
 				 * If we have lots of resource links, this proactively fetches the targets so
 				 * that we don't look them up one-by-one when comparing the new set to the
@@ -1217,6 +1237,10 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			createHistoryEntry(theRequest, theResource, entity, changed);
 		}
 
+		if (myResourceProjectionSvc != null) {
+			myResourceProjectionSvc.updateProjection(entity, theResource);
+		}
+
 		/*
 		 * Update the "search param present" table which is used for the
 		 * ?foo:missing=true queries
@@ -1938,6 +1962,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case LZ4:
+				resourceText = Lz4Util.decompress(theResourceBytes);
+				break;
 			case DEL:
 			case ESR:
 				break;
@@ -44,6 +44,7 @@ import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
 import ca.uhn.fhir.jpa.api.model.ExpungeOutcome;
 import ca.uhn.fhir.jpa.api.model.LazyDaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
+import ca.uhn.fhir.jpa.dao.tx.CreateGroupCommitSvc;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictUtil;
 import ca.uhn.fhir.jpa.model.cross.IBasePersistedResource;
@@ -51,7 +52,6 @@ import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.BaseHasResource;
 import ca.uhn.fhir.jpa.model.entity.BaseTag;
 import ca.uhn.fhir.jpa.model.entity.PartitionablePartitionId;
-import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.TagDefinition;
@@ -223,6 +223,9 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 	@Autowired
 	private IFhirSystemDao<?, ?> mySystemDao;
 
+	@Autowired(required = false)
+	private CreateGroupCommitSvc myCreateGroupCommitSvc;
+
 	@Nullable
 	public static <T extends IBaseResource> T invokeStoragePreShowResources(
 			IInterceptorBroadcaster theInterceptorBroadcaster, RequestDetails theRequest, T retVal) {
@@ -300,7 +303,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	@Override
 	public DaoMethodOutcome create(final T theResource, RequestDetails theRequestDetails) {
-		return create(theResource, null, true, theRequestDetails, new TransactionDetails());
+		return createWithGroupCommitIfEnabled(theResource, theRequestDetails);
 	}
 
 	/**
@@ -313,9 +316,24 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	@Override
 	public DaoMethodOutcome create(final T theResource, String theIfNoneExist, RequestDetails theRequestDetails) {
+		if (isBlank(theIfNoneExist)) {
+			return createWithGroupCommitIfEnabled(theResource, theRequestDetails);
+		}
 		return create(theResource, theIfNoneExist, true, theRequestDetails, new TransactionDetails());
 	}
 
+	/**
+	 * Non-conditional creates which aren't part of a larger transaction may be stored in the
+	 * same database transaction as other concurrent creates if group commit is enabled
+	 */
+	private DaoMethodOutcome createWithGroupCommitIfEnabled(T theResource, RequestDetails theRequestDetails) {
+		if (myCreateGroupCommitSvc != null && myCreateGroupCommitSvc.isEnabled()) {
+			return myCreateGroupCommitSvc.execute(
+					theTransactionDetails -> create(theResource, null, true, theRequestDetails, theTransactionDetails));
+		}
+		return create(theResource, null, true, theRequestDetails, new TransactionDetails());
+	}
+
 	@Override
 	public DaoMethodOutcome create(
 			T theResource,
@@ -1518,6 +1536,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 				.withRequest(theRequest)
 				.withTransactionDetails(transactionDetails)
 				.withRequestPartitionId(requestPartitionId)
+				.readOnly()
 				.read(() -> doReadInTransaction(theId, theRequest, theDeletedOk, requestPartitionId));
 	}
 
@@ -1682,13 +1701,18 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	private void reindexOptimizeStorageHistoryEntity(ResourceTable entity, ResourceHistoryTable historyEntity) {
 		boolean changed = false;
-		if (historyEntity.getEncoding() == ResourceEncodingEnum.JSONC
-				|| historyEntity.getEncoding() == ResourceEncodingEnum.JSON) {
+		if (ResourceHistoryCalculator.isBinaryEncoding(historyEntity.getEncoding())) {
 			byte[] resourceBytes = historyEntity.getResource();
 			if (resourceBytes != null) {
 				String resourceText = decodeResource(resourceBytes, historyEntity.getEncoding());
 				if (myResourceHistoryCalculator.conditionallyAlterHistoryEntity(entity, historyEntity, resourceText)) {
 					changed = true;
+				} else if (myResourceHistoryCalculator.conditionallyReencodeHistoryEntity(
+						entity,
+						historyEntity,
+						resourceText,
+						getStorageSettings().getResourceEncoding())) {
+					changed = true;
 				}
 			}
 		}
@@ -2003,6 +2027,11 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 				theParams.setOffset(offset);
 			}
 
+			String[] cursor = theRequest.getParameters().get(Constants.PARAM_CURSOR);
+			if (offset != null && cursor != null && cursor.length > 0) {
+				theParams.setSearchCursor(cursor[0]);
+			}
+
 			Integer count = RestfulServerUtils.extractCountParameter(theRequest);
 			if (count != null) {
 				Integer maxPageSize = theRequest.getServer().getMaximumPageSize();
@@ -2089,7 +2118,35 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	@Override
 	public List<T> searchForResources(SearchParameterMap theParams, RequestDetails theRequest) {
-		return searchForTransformedIds(theParams, theRequest, this::pidsToResource);
+		return searchForTransformedIds(theParams, theRequest, (r, s) -> pidsToResource(r, s, false));
+	}
+
+	@Override
+	public Stream<T> searchForResourceStream(SearchParameterMap theParams, RequestDetails theRequest) {
+
+		// the Stream is useless outside the bound connection time, so require our caller to have a session.
+		HapiTransactionService.requireTransaction();
+
+		RequestPartitionId requestPartitionId =
+				myRequestPartitionHelperService.determineReadPartitionForRequestForSearchType(
+						theRequest, myResourceName, theParams);
+
+		ISearchBuilder<JpaPid> builder =
+				mySearchBuilderFactory.newSearchBuilder(this, getResourceName(), getResourceType());
+
+		String uuid = UUID.randomUUID().toString();
+
+		SearchRuntimeDetails searchRuntimeDetails = new SearchRuntimeDetails(theRequest, uuid);
+		Stream<JpaPid> pidStream =
+				builder.createQueryStream(theParams, searchRuntimeDetails, theRequest, requestPartitionId);
+
+		/*
+		 * A read-only transaction can't have any pending changes, so it's safe to discard the
+		 * entities loaded for each chunk once the chunk has been converted to resources. This
+		 * keeps the persistence context from growing with the number of results.
+		 */
+		boolean detachLoadedEntities = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+		return pidsToResource(theRequest, pidStream, detachLoadedEntities);
 	}
 
 	@Override
@@ -2127,13 +2184,20 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 	 * Fetch the resources in chunks and apply PreAccess/PreShow interceptors.
 	 */
 	@Nonnull
-	private Stream<T> pidsToResource(RequestDetails theRequest, Stream<JpaPid> pidStream) {
+	private Stream<T> pidsToResource(
+			RequestDetails theRequest, Stream<JpaPid> pidStream, boolean theDetachLoadedEntities) {
 		ISearchBuilder<JpaPid> searchBuilder =
 				mySearchBuilderFactory.newSearchBuilder(this, getResourceName(), getResourceType());
 		@SuppressWarnings("unchecked")
 		Stream<T> resourceStream = (Stream<T>) new QueryChunker<>()
 				.chunk(pidStream, SearchBuilder.getMaximumPageSize())
-				.flatMap(pidChunk -> searchBuilder.loadResourcesByPid(pidChunk, theRequest).stream());
+				.flatMap(pidChunk -> {
+					List<IBaseResource> resources = searchBuilder.loadResourcesByPid(pidChunk, theRequest);
+					if (theDetachLoadedEntities) {
+						myEntityManager.clear();
+					}
+					return resources.stream();
+				});
 		// apply interceptors
 		return resourceStream
 				.flatMap(resource -> invokeStoragePreAccessResources(theRequest, resource).stream())
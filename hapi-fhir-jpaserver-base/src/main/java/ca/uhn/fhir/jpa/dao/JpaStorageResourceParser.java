@@ -103,6 +103,9 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	IMetaTagSorter myMetaTagSorter;
 
+	@Autowired(required = false)
+	private ParsedResourceCache myParsedResourceCache;
+
 	@Override
 	public IBaseResource toResource(IBasePersistedResource theEntity, boolean theForHistoryOperation) {
 		RuntimeResourceDefinition type = myFhirContext.getResourceDefinition(theEntity.getResourceType());
@@ -216,25 +219,53 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			return null;
 		}
 
-		// 2. get The text
-		String decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
-
-		// 3. Use the appropriate custom type if one is specified in the context
+		// 2. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = determineTypeToParse(theResourceType, tagList);
 
-		// 4. parse the text to FHIR
-		R retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		// 3. reuse a previously parsed copy of this version if we have one
+		boolean cacheable = myParsedResourceCache != null
+				&& myParsedResourceCache.isEnabled()
+				&& resourceEncoding != ResourceEncodingEnum.ESR
+				&& resourceEncoding != ResourceEncodingEnum.DEL;
+		R retVal = null;
+		long contentHash = 0;
+		if (cacheable) {
+			contentHash = ParsedResourceCache.hashContent(resourceEncoding, resourceBytes, resourceText);
+			retVal = myParsedResourceCache.get(
+					getContext(theEntity.getFhirVersion()),
+					theEntity.getResourceId(),
+					version,
+					contentHash,
+					resourceType);
+		}
+
+		if (retVal == null) {
+			// 4. get The text
+			String decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
+
+			// 5. parse the text to FHIR
+			retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+			if (cacheable) {
+				myParsedResourceCache.put(
+						getContext(theEntity.getFhirVersion()),
+						theEntity.getResourceId(),
+						version,
+						contentHash,
+						retVal,
+						decodedResourceText.length());
+			}
+		}
 
-		// 5. fill MetaData
+		// 6. fill MetaData
 		retVal = populateResourceMetadata(theEntity, theForHistoryOperation, tagList, version, retVal);
 
-		// 6. Handle source (provenance)
+		// 7. Handle source (provenance)
 		MetaUtil.populateResourceSource(myFhirContext, provenanceSourceUri, provenanceRequestId, retVal);
 
-		// 7. Add partition information
+		// 8. Add partition information
 		populateResourcePartitionInformation(theEntity, retVal);
 
-		// 8. sort tags, security labels and profiles
+		// 9. sort tags, security labels and profiles
 		myMetaTagSorter.sort(retVal.getMeta());
 
 		return retVal;
@@ -0,0 +1,249 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import ca.uhn.fhir.util.TerserUtil;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional cache of parsed resource bodies, keyed by resource PID, version and a hash of the
+ * stored body, which is used by {@link JpaStorageResourceParser} to avoid decompressing and parsing
+ * the same resource version over and over. Because the key includes the version and the body hash,
+ * entries never need to be invalidated when a resource is updated, or when the body of an existing
+ * version is rewritten in place (e.g. by <code>$meta</code> operations, reindexing or history
+ * rewrite). Only the body is cached - metadata such as tags, versions and partition information is
+ * populated from the entity as usual.
+ * <p>
+ * Cached resources are never handed out directly, since callers are free to modify the
+ * resources they get back. A copy is stored when a resource is added and a copy is returned
+ * for every hit, which is still considerably cheaper than parsing.
+ * </p>
+ *
+ * @see JpaStorageSettings#setParsedResourceCacheMaximumBytes(long)
+ * @since 7.2.0
+ */
+public class ParsedResourceCache {
+
+	/**
+	 * A parsed resource takes up several times more heap than its encoded JSON, so
+	 * entries are weighed by the encoded length multiplied by this factor.
+	 */
+	static final int ESTIMATED_BYTES_PER_ENCODED_CHAR = 4;
+
+	private static final Map<Class<?>, Optional<Method>> ourCopyMethods = new ConcurrentHashMap<>();
+	private final JpaStorageSettings myStorageSettings;
+	private volatile Cache<ParsedResourceCacheKey, CachedResource> myCache;
+
+	/**
+	 * Constructor
+	 */
+	public ParsedResourceCache(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.getParsedResourceCacheMaximumBytes() > 0
+				&& !myStorageSettings.isUpdateWithHistoryRewriteEnabled();
+	}
+
+	/**
+	 * Returns a copy of the cached resource for the given PID, version and body, or
+	 * <code>null</code> if it is not cached (or the cache is disabled)
+	 *
+	 * @param theContentHash  The hash of the stored body, as returned by {@link #hashContent(ResourceEncodingEnum, byte[], String)}
+	 * @param theResourceType The type the resource should be parsed into. This can vary for the same
+	 *                        version if custom types are registered for profiles and the tags change.
+	 */
+	@Nullable
+	public <R extends IBaseResource> R get(
+			FhirContext theContext,
+			Long theResourcePid,
+			long theVersion,
+			long theContentHash,
+			Class<R> theResourceType) {
+		if (!isEnabled()) {
+			return null;
+		}
+		CachedResource cached =
+				getCache().getIfPresent(new ParsedResourceCacheKey(theResourcePid, theVersion, theContentHash));
+		if (cached == null || !cached.myResource.getClass().equals(theResourceType)) {
+			return null;
+		}
+		return theResourceType.cast(copy(theContext, cached.myResource));
+	}
+
+	/**
+	 * Stores a copy of the given freshly parsed resource (which must not yet have had any metadata
+	 * populated) for the given PID, version and body
+	 *
+	 * @param theContentHash   The hash of the stored body, as returned by {@link #hashContent(ResourceEncodingEnum, byte[], String)}
+	 * @param theEncodedLength The length of the encoded resource text, used to estimate the size of the entry
+	 */
+	public void put(
+			FhirContext theContext,
+			Long theResourcePid,
+			long theVersion,
+			long theContentHash,
+			IBaseResource theResource,
+			int theEncodedLength) {
+		if (!isEnabled()) {
+			return;
+		}
+		long weight = (long) theEncodedLength * ESTIMATED_BYTES_PER_ENCODED_CHAR;
+		CachedResource value =
+				new CachedResource(copy(theContext, theResource), (int) Math.min(weight, Integer.MAX_VALUE));
+		getCache().put(new ParsedResourceCacheKey(theResourcePid, theVersion, theContentHash), value);
+	}
+
+	/**
+	 * Returns a hash of the stored (possibly compressed) body of a resource version. Hashing the
+	 * stored body is much cheaper than decompressing and parsing it.
+	 */
+	public static long hashContent(
+			ResourceEncodingEnum theEncoding, @Nullable byte[] theResourceBytes, @Nullable String theResourceText) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putInt(theEncoding.ordinal());
+		if (theResourceBytes != null) {
+			hasher.putBytes(theResourceBytes);
+		}
+		if (theResourceText != null) {
+			hasher.putString(theResourceText, StandardCharsets.UTF_8);
+		}
+		return hasher.hash().asLong();
+	}
+
+	public void invalidateAll() {
+		Cache<ParsedResourceCacheKey, CachedResource> cache = myCache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	@Nonnull
+	private Cache<ParsedResourceCacheKey, CachedResource> getCache() {
+		Cache<ParsedResourceCacheKey, CachedResource> retVal = myCache;
+		if (retVal == null) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null) {
+					retVal = CacheFactory.buildWeighted(
+							TimeUnit.HOURS.toMillis(1),
+							myStorageSettings.getParsedResourceCacheMaximumBytes(),
+							(theKey, theValue) -> theValue.myWeight);
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Structures for DSTU3 and later (and HL7org DSTU2) provide a generated <code>copy()</code>
+	 * method which is much faster than a generic terser based clone, so use that where available.
+	 */
+	private static IBaseResource copy(FhirContext theContext, IBaseResource theResource) {
+		Optional<Method> copyMethod = ourCopyMethods.computeIfAbsent(theResource.getClass(), t -> {
+			try {
+				return Optional.of(t.getMethod("copy"));
+			} catch (NoSuchMethodException e) {
+				return Optional.empty();
+			}
+		});
+		if (copyMethod.isPresent()) {
+			try {
+				return (IBaseResource) copyMethod.get().invoke(theResource);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				// fall through to the terser
+			}
+		}
+		return TerserUtil.clone(theContext, theResource);
+	}
+
+	private static class ParsedResourceCacheKey {
+		private final Long myResourcePid;
+		private final long myVersion;
+		private final long myContentHash;
+		private final int myHashCode;
+
+		private ParsedResourceCacheKey(Long theResourcePid, long theVersion, long theContentHash) {
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+			myContentHash = theContentHash;
+			myHashCode = new HashCodeBuilder()
+					.append(myResourcePid)
+					.append(myVersion)
+					.append(myContentHash)
+					.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+
+			if (theO == null || getClass() != theO.getClass()) {
+				return false;
+			}
+
+			ParsedResourceCacheKey that = (ParsedResourceCacheKey) theO;
+
+			return new EqualsBuilder()
+					.append(myResourcePid, that.myResourcePid)
+					.append(myVersion, that.myVersion)
+					.append(myContentHash, that.myContentHash)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+
+	private static class CachedResource {
+		private final IBaseResource myResource;
+		private final int myWeight;
+
+		private CachedResource(IBaseResource theResource, int theWeight) {
+			myResource = theResource;
+			myWeight = theWeight;
+		}
+	}
+}
@@ -92,6 +92,39 @@ public class ResourceHistoryCalculator {
 		return false;
 	}
 
+	/**
+	 * On Oracle, where resource bodies are stored as binaries, re-encodes the body of the given history
+	 * entity if it was stored using a different encoding than <code>theEncoding</code> (e.g. because
+	 * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setResourceEncoding(ResourceEncodingEnum)}
+	 * has been changed since it was written). If the entity is the current version, the resource hash
+	 * is updated to match so that the next update is not mistaken for a change.
+	 *
+	 * @return <code>true</code> if the history entity was modified
+	 */
+	boolean conditionallyReencodeHistoryEntity(
+			ResourceTable theEntity,
+			ResourceHistoryTable theHistoryEntity,
+			String theResourceText,
+			ResourceEncodingEnum theEncoding) {
+		if (!myIsOracleDialect || theHistoryEntity.getEncoding() == theEncoding || !isBinaryEncoding(theEncoding)) {
+			return false;
+		}
+
+		ourLog.debug(
+				"Re-encoding resource {} version {} from {} to {}",
+				theEntity.getResourceId(),
+				theHistoryEntity.getVersion(),
+				theHistoryEntity.getEncoding(),
+				theEncoding);
+		byte[] resourceBinary = getResourceBinary(theEncoding, theResourceText);
+		theHistoryEntity.setResource(resourceBinary);
+		theHistoryEntity.setEncoding(theEncoding);
+		if (theHistoryEntity.getVersion() == theEntity.getVersion()) {
+			theEntity.setHashSha256(SHA_256.hashBytes(resourceBinary).toString());
+		}
+		return true;
+	}
+
 	boolean isResourceHistoryChanged(
 			ResourceHistoryTable theCurrentHistoryVersion,
 			@Nullable byte[] theResourceBinary,
@@ -124,11 +157,28 @@ public class ResourceHistoryCalculator {
 				return theEncodedResource.getBytes(StandardCharsets.UTF_8);
 			case JSONC:
 				return GZipUtil.compress(theEncodedResource);
+			case LZ4:
+				return Lz4Util.compress(theEncodedResource);
 			default:
 				return new byte[0];
 		}
 	}
 
+	/**
+	 * Is the given encoding one that holds a JSON resource body as a binary (as opposed to
+	 * a deleted or externally stored resource)?
+	 */
+	static boolean isBinaryEncoding(ResourceEncodingEnum theEncoding) {
+		switch (theEncoding) {
+			case JSON:
+			case JSONC:
+			case LZ4:
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	void populateEncodedResource(
 			EncodedResource theEncodedResource,
 			String theEncodedResourceString,
@@ -28,6 +28,7 @@ import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
@@ -68,6 +69,7 @@ import org.springframework.context.ApplicationContext;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -78,6 +80,7 @@ import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.util.UrlUtil.determineResourceTypeInResourceUrl;
 import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class TransactionProcessor extends BaseTransactionProcessor {
@@ -197,6 +200,16 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		preFetchConditionalUrls(
 				theTransactionDetails, theEntries, theVersionAdapter, theRequestPartitionId, idsToPreFetch);
 
+		/*
+		 * Pre-resolve the targets of any references to existing resources, so that
+		 * they don't each need to be looked up individually during indexing
+		 */
+		if (!myPartitionSettings.isPartitioningEnabled()
+				|| myPartitionSettings.getAllowReferencesAcrossPartitions()
+						== PartitionSettings.CrossPartitionReferenceMode.NOT_ALLOWED) {
+			preFetchReferenceTargets(theTransactionDetails, theEntries, theVersionAdapter, theRequestPartitionId);
+		}
+
 		IFhirSystemDao<?, ?> systemDao = myApplicationContext.getBean(IFhirSystemDao.class);
 		systemDao.preFetchResources(JpaPid.fromLongList(idsToPreFetch), true);
 	}
@@ -242,6 +255,69 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	private void preFetchReferenceTargets(
+			TransactionDetails theTransactionDetails,
+			List<IBase> theEntries,
+			ITransactionProcessorVersionAdapter theVersionAdapter,
+			RequestPartitionId theRequestPartitionId) {
+		Map<String, IIdType> idsToPreResolve = new HashMap<>();
+		for (IBase nextEntry : theEntries) {
+			String verb = theVersionAdapter.getEntryRequestVerb(myFhirContext, nextEntry);
+			if ("DELETE".equals(verb)) {
+				// Deletes are processed before writes, so a target resolved now might be gone by the time it is linked
+				return;
+			}
+
+			IBaseResource resource = theVersionAdapter.getResource(nextEntry);
+			if (resource != null) {
+				List<ResourceReferenceInfo> references =
+						myFhirContext.newTerser().getAllResourceReferences(resource);
+				for (ResourceReferenceInfo next : references) {
+					IIdType targetId = next.getResourceReference().getReferenceElement();
+					if (isPreResolvableReference(targetId)) {
+						targetId = targetId.toUnqualifiedVersionless();
+						if (!theTransactionDetails.hasResolvedResourceId(targetId)) {
+							idsToPreResolve.put(targetId.getValue(), targetId);
+						}
+					}
+				}
+			}
+		}
+
+		if (idsToPreResolve.isEmpty()) {
+			return;
+		}
+
+		Map<String, ? extends IResourceLookup> outcome =
+				myIdHelperService.resolveResourceIdentities(theRequestPartitionId, idsToPreResolve.values(), false);
+		for (Map.Entry<String, ? extends IResourceLookup> next : outcome.entrySet()) {
+			IResourceLookup lookup = next.getValue();
+			if (lookup.getDeleted() == null) {
+				IIdType targetId = idsToPreResolve.get(next.getKey());
+				JpaPid pid = JpaPid.fromId(((JpaPid) lookup.getPersistentId()).getId());
+				pid.setAssociatedResourceId(targetId);
+				theTransactionDetails.addResolvedResourceId(targetId, pid);
+			}
+		}
+		ourLog.debug("Pre-resolved {} of {} reference targets", outcome.size(), idsToPreResolve.size());
+	}
+
+	/**
+	 * Only plain relative references to a known resource type (e.g. <code>Patient/123</code>)
+	 * are pre-resolved. Contained, placeholder, conditional and absolute references are
+	 * left for the normal reference resolution.
+	 */
+	private boolean isPreResolvableReference(IIdType theTargetId) {
+		String value = theTargetId.getValue();
+		if (isBlank(value) || value.startsWith("#") || value.startsWith("urn:") || value.contains("?")) {
+			return false;
+		}
+		if (theTargetId.isAbsolute() || !theTargetId.hasResourceType() || !theTargetId.hasIdPart()) {
+			return false;
+		}
+		return myFhirContext.getResourceTypes().contains(theTargetId.getResourceType());
+	}
+
 	private void preFetchConditionalUrls(
 			TransactionDetails theTransactionDetails,
 			List<IBase> theEntries,
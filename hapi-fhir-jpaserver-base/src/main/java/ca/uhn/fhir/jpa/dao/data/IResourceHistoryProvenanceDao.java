@@ -25,10 +25,17 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
+
 public interface IResourceHistoryProvenanceDao
 		extends JpaRepository<ResourceHistoryProvenanceEntity, Long>, IHapiFhirJpaRepository {
 
 	@Modifying
 	@Query("DELETE FROM ResourceHistoryProvenanceEntity t WHERE t.myId = :pid")
 	void deleteByPid(@Param("pid") Long theId);
+
+	@Modifying
+	@Query(
+			"DELETE FROM ResourceHistoryProvenanceEntity t WHERE t.myId IN (SELECT v.myId FROM ResourceHistoryTable v WHERE v.myUpdated >= :low AND v.myUpdated < :high)")
+	int deleteForVersionsUpdatedBetween(@Param("low") Date theLow, @Param("high") Date theHigh);
 }
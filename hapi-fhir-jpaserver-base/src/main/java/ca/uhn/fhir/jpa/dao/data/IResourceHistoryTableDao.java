@@ -27,6 +27,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
 import java.util.List;
 
 public interface IResourceHistoryTableDao extends JpaRepository<ResourceHistoryTable, Long>, IHapiFhirJpaRepository {
@@ -70,6 +71,12 @@ public interface IResourceHistoryTableDao extends JpaRepository<ResourceHistoryT
 			+ "WHERE v.myResourceVersion <> t.myVersion")
 	Slice<Long> findIdsOfPreviousVersionsOfResources(Pageable thePage);
 
+	@Query("" + "SELECT COUNT(v) FROM ResourceHistoryTable v "
+			+ "JOIN ResourceTable t ON (v.myResourceId = t.myId) "
+			+ "WHERE v.myResourceVersion = t.myVersion AND "
+			+ "v.myUpdated >= :low AND v.myUpdated < :high")
+	long countCurrentVersionsUpdatedBetween(@Param("low") Date theLow, @Param("high") Date theHigh);
+
 	@Modifying
 	@Query(
 			"UPDATE ResourceHistoryTable r SET r.myResourceVersion = :newVersion WHERE r.myResourceId = :id AND r.myResourceVersion = :oldVersion")
@@ -25,9 +25,16 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
+
 public interface IResourceHistoryTagDao extends JpaRepository<ResourceHistoryTag, Long>, IHapiFhirJpaRepository {
 
 	@Modifying
 	@Query("DELETE FROM ResourceHistoryTag t WHERE t.myResourceHistoryPid = :historyPid")
 	void deleteByPid(@Param("historyPid") Long theResourceHistoryTablePid);
+
+	@Modifying
+	@Query(
+			"DELETE FROM ResourceHistoryTag t WHERE t.myResourceHistoryPid IN (SELECT v.myId FROM ResourceHistoryTable v WHERE v.myUpdated >= :low AND v.myUpdated < :high)")
+	int deleteForVersionsUpdatedBetween(@Param("low") Date theLow, @Param("high") Date theHigh);
 }
@@ -25,6 +25,9 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface IResourceIndexedSearchParamTokenDao
 		extends JpaRepository<ResourceIndexedSearchParamToken, Long>, IHapiFhirJpaRepository {
 
@@ -34,4 +37,19 @@ public interface IResourceIndexedSearchParamTokenDao
 	@Modifying
 	@Query("delete from ResourceIndexedSearchParamToken t WHERE t.myResourcePid = :resid")
 	void deleteByResourceId(@Param("resid") Long theResourcePid);
+
+	/**
+	 * Loads the ID and hashes of every token index row belonging to the given resource,
+	 * without loading the rows themselves.
+	 *
+	 * @see ResourceIndexedSearchParamToken#ResourceIndexedSearchParamToken(Long, String, Long, Long, Long)
+	 */
+	@Query("select new ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken("
+			+ "t.myId, t.myResourceType, t.myHashSystem, t.myHashValue, t.myHashSystemAndValue) "
+			+ "from ResourceIndexedSearchParamToken t WHERE t.myResourcePid = :resid")
+	List<ResourceIndexedSearchParamToken> findHashesForResourceId(@Param("resid") Long theResourcePid);
+
+	@Modifying
+	@Query("delete from ResourceIndexedSearchParamToken t WHERE t.myId IN (:pids)")
+	void deleteByPids(@Param("pids") Collection<Long> thePids);
 }
@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceProjectionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IResourceProjectionDao extends JpaRepository<ResourceProjectionEntity, Long>, IHapiFhirJpaRepository {
+
+	/**
+	 * Returns the current (non-deleted) resources with the given PIDs, along with their projection
+	 * text, for resources whose projection was built from the given elements for their current version
+	 */
+	@Query(
+			"SELECT r, p.myProjectionText FROM ResourceTable r JOIN ResourceProjectionEntity p ON p.myResourceId = r.myId "
+					+ "WHERE r.myId IN (:pids) AND r.myDeleted IS NULL AND p.myResourceVersion = r.myVersion AND p.myElementsHash = :hash")
+	List<Object[]> findCurrentProjections(
+			@Param("pids") Collection<Long> theResourcePids, @Param("hash") long theElementsHash);
+
+	@Modifying
+	@Query("DELETE FROM ResourceProjectionEntity t WHERE t.myResourceId = :resid")
+	int deleteByResourceId(@Param("resid") Long theResourcePid);
+}
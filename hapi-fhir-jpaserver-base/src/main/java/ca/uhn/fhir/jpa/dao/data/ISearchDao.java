@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.dao.data;
 
 import ca.uhn.fhir.jpa.entity.Search;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -28,6 +29,7 @@ import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -61,6 +63,21 @@ public interface ISearchDao extends JpaRepository<Search, Long>, IHapiFhirJpaRep
 	@CanIgnoreReturnValue
 	int updateDeleted(@Param("pids") Set<Long> thePid, @Param("deleted") boolean theDeleted);
 
+	/**
+	 * Records the number of results requested from a search, unless a larger number has already been recorded
+	 */
+	@Modifying
+	@Query(
+			value =
+					"UPDATE HFJ_SEARCH SET NUM_REQUESTED = :requested WHERE PID = :pid AND (NUM_REQUESTED IS NULL OR NUM_REQUESTED < :requested)",
+			nativeQuery = true)
+	@CanIgnoreReturnValue
+	int updateNumRequested(@Param("pid") Long thePid, @Param("requested") int theNumRequested);
+
+	@Query(
+			"SELECT s FROM Search s WHERE s.myResourceType = :type AND s.myNumRequested IS NOT NULL ORDER BY s.myCreated DESC")
+	List<Search> findRecentWithNumRequested(Pageable thePage, @Param("type") String theResourceType);
+
 	@Modifying
 	@Query("DELETE FROM Search s WHERE s.myId = :pid")
 	void deleteByPid(@Param("pid") Long theId);
@@ -41,6 +41,7 @@ import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamStringDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamUriDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceLinkDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceProjectionDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchParamPresentDao;
@@ -137,6 +138,9 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 	@Autowired
 	private ISearchParamPresentDao mySearchParamPresentDao;
 
+	@Autowired
+	private IResourceProjectionDao myResourceProjectionDao;
+
 	@Autowired
 	private JpaStorageSettings myStorageSettings;
 
@@ -312,6 +316,9 @@ public class JpaResourceExpungeService implements IResourceExpungeService<JpaPid
 				"Expunging current version of resource {}", resource.getIdDt().getValue());
 
 		deleteAllSearchParams(JpaPid.fromId(resource.getResourceId()));
+		if (!myStorageSettings.getSearchProjectionElements().isEmpty()) {
+			myResourceProjectionDao.deleteByResourceId(resource.getId());
+		}
 
 		try {
 			if (resource.isHasTags()) {
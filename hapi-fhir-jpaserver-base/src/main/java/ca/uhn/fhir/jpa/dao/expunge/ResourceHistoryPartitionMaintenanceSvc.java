@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.expunge;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryProvenanceDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTagDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.migrate.DriverTypeEnum;
+import ca.uhn.fhir.jpa.migrate.JdbcUtils;
+import ca.uhn.fhir.jpa.migrate.taskdef.AddTimeRangePartitionTask;
+import ca.uhn.fhir.jpa.migrate.taskdef.DropTimeRangePartitionTask;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.dialect.SQLServerDialect;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Maintains the monthly partitions of the <code>HFJ_RES_VER</code> table when it has been natively
+ * range partitioned on <code>RES_UPDATED</code>. Partitions are created ahead of time for the coming
+ * months, and expired partitions are detached and dropped instead of deleting their rows one by one.
+ * <p>
+ * A partition is only dropped once it no longer contains the current version of any resource, since
+ * the current version of each resource is also stored in <code>HFJ_RES_VER</code>.
+ * </p>
+ *
+ * @see JpaStorageSettings#setResourceHistoryPartitionMaintenanceEnabled(boolean)
+ * @see JpaStorageSettings#setResourceHistoryPartitionRetentionMonths(Integer)
+ * @since 7.2.0
+ */
+public class ResourceHistoryPartitionMaintenanceSvc implements IHasScheduledJobs {
+
+	public static final String TABLE_NAME = "HFJ_RES_VER";
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceHistoryPartitionMaintenanceSvc.class);
+
+	/**
+	 * Partitions are created for this many months after the current one
+	 */
+	private static final int MONTHS_AHEAD = 2;
+
+	private final JpaStorageSettings myStorageSettings;
+	private final HibernatePropertiesProvider myHibernatePropertiesProvider;
+	private final IHapiTransactionService myTransactionService;
+	private final IResourceHistoryTableDao myResourceHistoryTableDao;
+	private final IResourceHistoryTagDao myResourceHistoryTagDao;
+	private final IResourceHistoryProvenanceDao myResourceHistoryProvenanceDao;
+
+	/**
+	 * Constructor
+	 */
+	public ResourceHistoryPartitionMaintenanceSvc(
+			JpaStorageSettings theStorageSettings,
+			HibernatePropertiesProvider theHibernatePropertiesProvider,
+			IHapiTransactionService theTransactionService,
+			IResourceHistoryTableDao theResourceHistoryTableDao,
+			IResourceHistoryTagDao theResourceHistoryTagDao,
+			IResourceHistoryProvenanceDao theResourceHistoryProvenanceDao) {
+		myStorageSettings = theStorageSettings;
+		myHibernatePropertiesProvider = theHibernatePropertiesProvider;
+		myTransactionService = theTransactionService;
+		myResourceHistoryTableDao = theResourceHistoryTableDao;
+		myResourceHistoryTagDao = theResourceHistoryTagDao;
+		myResourceHistoryProvenanceDao = theResourceHistoryProvenanceDao;
+	}
+
+	@Override
+	public void scheduleJobs(ISchedulerService theSchedulerService) {
+		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
+		jobDetail.setId(getClass().getName());
+		jobDetail.setJobClass(Job.class);
+		theSchedulerService.scheduleClusteredJob(DateUtils.MILLIS_PER_HOUR, jobDetail);
+	}
+
+	/**
+	 * Creates any missing partitions for the coming months, and drops expired partitions
+	 */
+	public void runMaintenance() {
+		if (!myStorageSettings.isResourceHistoryPartitionMaintenanceEnabled()) {
+			return;
+		}
+
+		DriverTypeEnum driverType = determineDriverType();
+		if (driverType == null) {
+			ourLog.warn("History partition maintenance is enabled, but this database platform is not supported");
+			return;
+		}
+
+		DriverTypeEnum.ConnectionProperties connectionProperties =
+				driverType.newConnectionProperties(myHibernatePropertiesProvider.getDataSource());
+		if (!JdbcUtils.isRangePartitioned(connectionProperties, TABLE_NAME)) {
+			ourLog.warn("History partition maintenance is enabled, but table {} is not range partitioned", TABLE_NAME);
+			return;
+		}
+
+		YearMonth currentMonth = YearMonth.now();
+		SortedSet<YearMonth> partitions = JdbcUtils.getTimeRangePartitions(connectionProperties, TABLE_NAME);
+		createUpcomingPartitions(connectionProperties, partitions, currentMonth);
+
+		Integer retentionMonths = myStorageSettings.getResourceHistoryPartitionRetentionMonths();
+		if (retentionMonths != null) {
+			dropExpiredPartitions(connectionProperties, partitions, currentMonth.minusMonths(retentionMonths));
+		}
+	}
+
+	private void createUpcomingPartitions(
+			DriverTypeEnum.ConnectionProperties theConnectionProperties,
+			SortedSet<YearMonth> thePartitions,
+			YearMonth theCurrentMonth) {
+		// Partitions are only ever added above the highest existing one, which Oracle requires anyhow
+		YearMonth next =
+				thePartitions.isEmpty() ? theCurrentMonth : thePartitions.last().plusMonths(1);
+		YearMonth last = theCurrentMonth.plusMonths(MONTHS_AHEAD);
+		for (; !next.isAfter(last); next = next.plusMonths(1)) {
+			ourLog.info("Creating partition {} of table {}", next, TABLE_NAME);
+			List<String> sql =
+					AddTimeRangePartitionTask.generateSql(TABLE_NAME, next, theConnectionProperties.getDriverType());
+			if (!executeSql(theConnectionProperties, sql)) {
+				return;
+			}
+		}
+	}
+
+	private void dropExpiredPartitions(
+			DriverTypeEnum.ConnectionProperties theConnectionProperties,
+			SortedSet<YearMonth> thePartitions,
+			YearMonth theCutoffMonth) {
+		for (YearMonth next : thePartitions.headSet(theCutoffMonth)) {
+			Date low = toDate(next);
+			Date high = toDate(next.plusMonths(1));
+
+			Boolean canDrop = myTransactionService.withSystemRequest().execute(() -> {
+				long currentVersions = myResourceHistoryTableDao.countCurrentVersionsUpdatedBetween(low, high);
+				if (currentVersions > 0) {
+					ourLog.info(
+							"Not dropping partition {} of table {} as it contains the current version of {} resources",
+							next,
+							TABLE_NAME,
+							currentVersions);
+					return false;
+				}
+
+				int tags = myResourceHistoryTagDao.deleteForVersionsUpdatedBetween(low, high);
+				int provenance = myResourceHistoryProvenanceDao.deleteForVersionsUpdatedBetween(low, high);
+				ourLog.info(
+						"Deleted {} history tags and {} provenance rows for partition {} of table {}",
+						tags,
+						provenance,
+						next,
+						TABLE_NAME);
+				return true;
+			});
+
+			if (Boolean.TRUE.equals(canDrop)) {
+				ourLog.info("Dropping partition {} of table {}", next, TABLE_NAME);
+				List<String> sql = DropTimeRangePartitionTask.generateSql(
+						TABLE_NAME, next, theConnectionProperties.getDriverType());
+				executeSql(theConnectionProperties, sql);
+			}
+		}
+	}
+
+	private boolean executeSql(DriverTypeEnum.ConnectionProperties theConnectionProperties, List<String> theSql) {
+		try {
+			theConnectionProperties.getTxTemplate().executeWithoutResult(t -> {
+				JdbcTemplate jdbcTemplate = theConnectionProperties.newJdbcTemplate();
+				theSql.forEach(jdbcTemplate::execute);
+			});
+			return true;
+		} catch (DataAccessException e) {
+			ourLog.warn("Failed to maintain partitions of table {}: {}", TABLE_NAME, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the driver type for the database platforms which support native range partitioning
+	 */
+	@Nullable
+	private DriverTypeEnum determineDriverType() {
+		if (myHibernatePropertiesProvider.isPostgresDialect()) {
+			return DriverTypeEnum.POSTGRES_9_4;
+		} else if (myHibernatePropertiesProvider.isOracleDialect()) {
+			return DriverTypeEnum.ORACLE_12C;
+		} else if (myHibernatePropertiesProvider.getDialect() instanceof SQLServerDialect) {
+			return DriverTypeEnum.MSSQL_2012;
+		}
+		return null;
+	}
+
+	private static Date toDate(YearMonth theMonth) {
+		return Date.from(theMonth.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+
+	public static class Job implements HapiJob {
+		@Autowired
+		private JpaStorageSettings myStorageSettings;
+
+		@Autowired
+		private ResourceHistoryPartitionMaintenanceSvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			if (!myStorageSettings.isSchedulingDisabled()) {
+				myTarget.runMaintenance();
+			}
+		}
+	}
+}
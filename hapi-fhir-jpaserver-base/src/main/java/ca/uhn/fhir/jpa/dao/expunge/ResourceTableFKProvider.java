@@ -19,6 +19,7 @@
  */
 package ca.uhn.fhir.jpa.dao.expunge;
 
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.mdm.api.IMdmSettings;
 import jakarta.annotation.Nonnull;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +33,9 @@ public class ResourceTableFKProvider {
 	@Autowired(required = false)
 	IMdmSettings myMdmSettings;
 
+	@Autowired(required = false)
+	JpaStorageSettings myStorageSettings;
+
 	@Nonnull
 	public List<ResourceForeignKey> getResourceForeignKeys() {
 		List<ResourceForeignKey> retval = new ArrayList<>();
@@ -42,6 +46,9 @@ public class ResourceTableFKProvider {
 		// Add some secondary related records that don't have foreign keys
 		retval.add(new ResourceForeignKey("HFJ_HISTORY_TAG", "RES_ID")); // NOT covered by index.
 		retval.add(new ResourceForeignKey("HFJ_RES_VER_PROV", "RES_PID"));
+		if (isSearchProjectionEnabled()) {
+			retval.add(new ResourceForeignKey("HFJ_RES_PROJECTION", "RES_ID"));
+		}
 
 		// These have the possibility of touching all resource types.
 		retval.add(new ResourceForeignKey("HFJ_IDX_CMP_STRING_UNIQ", "RES_ID"));
@@ -82,6 +89,9 @@ public class ResourceTableFKProvider {
 		// These have the possibility of touching all resource types.
 		retval.add(new ResourceForeignKey("HFJ_HISTORY_TAG", "RES_ID"));
 		retval.add(new ResourceForeignKey("HFJ_RES_VER_PROV", "RES_PID"));
+		if (isSearchProjectionEnabled()) {
+			retval.add(new ResourceForeignKey("HFJ_RES_PROJECTION", "RES_ID"));
+		}
 		retval.add(new ResourceForeignKey("HFJ_IDX_CMP_STRING_UNIQ", "RES_ID"));
 		retval.add(new ResourceForeignKey("HFJ_IDX_CMB_TOK_NU", "RES_ID"));
 		retval.add(new ResourceForeignKey("HFJ_RES_LINK", "SRC_RESOURCE_ID"));
@@ -129,4 +139,9 @@ public class ResourceTableFKProvider {
 		}
 		return retval;
 	}
+
+	private boolean isSearchProjectionEnabled() {
+		return myStorageSettings != null
+				&& !myStorageSettings.getSearchProjectionElements().isEmpty();
+	}
 }
@@ -0,0 +1,304 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.index;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.PrePersist;
+import org.hibernate.SessionEventListener;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.Generator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Writes new search index rows (e.g. <code>HFJ_SPIDX_TOKEN</code> or <code>HFJ_RES_LINK</code>
+ * rows) using batched JDBC inserts instead of handing each row to Hibernate as a managed entity.
+ * <p>
+ * Rows are queued against the current transaction, and are written as soon as its Hibernate session
+ * has been flushed and has no pending entity inserts left, meaning that the resources the rows point
+ * to are guaranteed to exist. Any rows still queued when the transaction is about to commit are written
+ * before the commit, and if that fails the transaction fails. Each queued row is assigned its ID from the same generator
+ * Hibernate would have used, and the insert statement is built from the Hibernate mapping of the
+ * entity, so rows written here are indistinguishable from rows written by Hibernate. Rows written
+ * this way are never managed by the session however, so they must not be modified afterwards.
+ * </p>
+ *
+ * @see JpaStorageSettings#setSearchIndexBulkInsertEnabled(boolean)
+ * @since 7.2.0
+ */
+public class BulkIndexRowInserter implements SessionEventListener, TransactionSynchronization {
+
+	static final int BATCH_SIZE = 500;
+	private static final long serialVersionUID = 1L;
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkIndexRowInserter.class);
+	private static final Map<SessionFactoryImplementor, Map<Class<?>, InsertStatement>> ourInsertStatements =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final transient SessionImplementor mySession;
+	private final transient Map<Class<?>, List<BaseResourceIndex>> myPendingRows = new LinkedHashMap<>();
+
+	private BulkIndexRowInserter(SessionImplementor theSession) {
+		mySession = theSession;
+	}
+
+	/**
+	 * Queues a new index row to be inserted once the session has been flushed. The row is assigned
+	 * its ID immediately.
+	 */
+	public void add(@Nonnull BaseResourceIndex theRow) {
+		InsertStatement statement = getInsertStatement(theRow.getClass());
+		statement.invokePrePersistCallbacks(theRow);
+		Object id = statement.generateId(mySession, theRow);
+		statement.myPersister.setIdentifier(theRow, id, mySession);
+		myPendingRows.computeIfAbsent(theRow.getClass(), t -> new ArrayList<>()).add(theRow);
+	}
+
+	/**
+	 * Removes a row from the queue if it has not been written yet
+	 *
+	 * @return Returns <code>true</code> if the row was still queued
+	 */
+	public boolean remove(@Nonnull BaseResourceIndex theRow) {
+		List<BaseResourceIndex> rows = myPendingRows.get(theRow.getClass());
+		if (rows != null) {
+			for (Iterator<BaseResourceIndex> iter = rows.iterator(); iter.hasNext(); ) {
+				if (iter.next() == theRow) {
+					iter.remove();
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	int getPendingRowCount() {
+		return myPendingRows.values().stream().mapToInt(List::size).sum();
+	}
+
+	@Override
+	public void flushEnd(int theNumberOfEntities, int theNumberOfCollections) {
+		writePendingRowsIfPossible();
+	}
+
+	@Override
+	public void partialFlushEnd(int theNumberOfEntities, int theNumberOfCollections) {
+		writePendingRowsIfPossible();
+	}
+
+	@Override
+	public void beforeCommit(boolean theReadOnly) {
+		if (myPendingRows.isEmpty()) {
+			return;
+		}
+
+		// Hibernate only notifies us about flushes which had something to do, so write anything left here
+		mySession.flush();
+		writePendingRowsIfPossible();
+		if (!myPendingRows.isEmpty()) {
+			throw new InternalErrorException(
+					Msg.code(2524) + "Failed to write " + getPendingRowCount() + " index rows before commit");
+		}
+	}
+
+	@Override
+	public void afterCompletion(int theStatus) {
+		myPendingRows.clear();
+		TransactionSynchronizationManager.unbindResourceIfPossible(mySession);
+	}
+
+	@Override
+	public void end() {
+		myPendingRows.clear();
+	}
+
+	private void writePendingRowsIfPossible() {
+		if (myPendingRows.isEmpty()) {
+			return;
+		}
+
+		// An auto-flush may have left inserts of the resources these rows point to in the queue
+		if (mySession.getActionQueue().numberOfInsertions() > 0) {
+			return;
+		}
+
+		Map<Class<?>, List<BaseResourceIndex>> rowsToWrite = new LinkedHashMap<>(myPendingRows);
+		myPendingRows.clear();
+		mySession.doWork(connection -> {
+			for (Map.Entry<Class<?>, List<BaseResourceIndex>> next : rowsToWrite.entrySet()) {
+				InsertStatement statement = getInsertStatement(next.getKey());
+				try (PreparedStatement ps = connection.prepareStatement(statement.mySql)) {
+					int batchCount = 0;
+					for (BaseResourceIndex nextRow : next.getValue()) {
+						statement.bind(ps, nextRow, mySession);
+						ps.addBatch();
+						if (++batchCount == BATCH_SIZE) {
+							ps.executeBatch();
+							batchCount = 0;
+						}
+					}
+					if (batchCount > 0) {
+						ps.executeBatch();
+					}
+				}
+				ourLog.trace("Inserted {} rows using: {}", next.getValue().size(), statement.mySql);
+			}
+		});
+	}
+
+	private InsertStatement getInsertStatement(Class<?> theRowType) {
+		Map<Class<?>, InsertStatement> statements =
+				ourInsertStatements.computeIfAbsent(mySession.getFactory(), t -> new ConcurrentHashMap<>());
+		return statements.computeIfAbsent(theRowType, t -> {
+			AbstractEntityPersister persister = (AbstractEntityPersister)
+					mySession.getFactory().getMappingMetamodel().getEntityDescriptor(t);
+			return new InsertStatement(persister);
+		});
+	}
+
+	/**
+	 * Returns the inserter for the given session in the current transaction, creating it and registering
+	 * it with the session and the transaction if needed
+	 *
+	 * @return Returns <code>null</code> if there is no active transaction synchronization, in which case
+	 * rows can't be queued
+	 */
+	@Nullable
+	public static BulkIndexRowInserter forSession(@Nonnull SessionImplementor theSession) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		BulkIndexRowInserter retVal = (BulkIndexRowInserter) TransactionSynchronizationManager.getResource(theSession);
+		if (retVal == null) {
+			retVal = new BulkIndexRowInserter(theSession);
+			TransactionSynchronizationManager.bindResource(theSession, retVal);
+			TransactionSynchronizationManager.registerSynchronization(retVal);
+			theSession.getEventListenerManager().addListener(retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * The insert statement for a single index entity type, derived from its Hibernate mapping
+	 */
+	private static class InsertStatement {
+
+		private final AbstractEntityPersister myPersister;
+		private final String mySql;
+		private final List<Integer> myInsertableProperties = new ArrayList<>();
+		private final List<Method> myPrePersistCallbacks = new ArrayList<>();
+
+		InsertStatement(AbstractEntityPersister thePersister) {
+			myPersister = thePersister;
+
+			List<String> columns = new ArrayList<>(List.of(thePersister.getIdentifierColumnNames()));
+			boolean[] insertability = thePersister.getPropertyInsertability();
+			boolean[][] columnInsertability = thePersister.getPropertyColumnInsertable();
+			for (int i = 0; i < insertability.length; i++) {
+				if (insertability[i]) {
+					myInsertableProperties.add(i);
+					String[] propertyColumns = thePersister.getPropertyColumnNames(i);
+					for (int j = 0; j < propertyColumns.length; j++) {
+						if (columnInsertability[i][j]) {
+							columns.add(propertyColumns[j]);
+						}
+					}
+				}
+			}
+
+			mySql = "insert into " + thePersister.getIdentifierTableName() + " (" + String.join(",", columns)
+					+ ") values (" + columns.stream().map(t -> "?").collect(Collectors.joining(",")) + ")";
+
+			for (Class<?> type = thePersister.getMappedClass(); type != null; type = type.getSuperclass()) {
+				for (Method next : type.getDeclaredMethods()) {
+					if (next.isAnnotationPresent(PrePersist.class)) {
+						next.setAccessible(true);
+						myPrePersistCallbacks.add(next);
+					}
+				}
+			}
+		}
+
+		Object generateId(SessionImplementor theSession, Object theRow) {
+			Generator generator = myPersister.getGenerator();
+			if (!(generator instanceof BeforeExecutionGenerator)) {
+				throw new InternalErrorException(Msg.code(2512) + "Can not bulk insert " + myPersister.getEntityName()
+						+ " because its ID is generated by the database");
+			}
+			return ((BeforeExecutionGenerator) generator).generate(theSession, theRow, null, EventType.INSERT);
+		}
+
+		void invokePrePersistCallbacks(Object theRow) {
+			for (Method next : myPrePersistCallbacks) {
+				try {
+					next.invoke(theRow);
+				} catch (IllegalAccessException | InvocationTargetException e) {
+					throw new InternalErrorException(Msg.code(2513) + "Failed to invoke " + next, e);
+				}
+			}
+		}
+
+		void bind(PreparedStatement thePreparedStatement, Object theRow, SessionImplementor theSession)
+				throws SQLException {
+			Type idType = myPersister.getIdentifierType();
+			idType.nullSafeSet(thePreparedStatement, myPersister.getIdentifier(theRow, theSession), 1, theSession);
+			int index = 1 + myPersister.getIdentifierColumnNames().length;
+
+			Object[] values = myPersister.getPropertyValues(theRow);
+			Type[] types = myPersister.getPropertyTypes();
+			boolean[][] columnInsertability = myPersister.getPropertyColumnInsertable();
+			for (int next : myInsertableProperties) {
+				types[next].nullSafeSet(
+						thePreparedStatement, values[next], index, columnInsertability[next], theSession);
+				for (boolean insertable : columnInsertability[next]) {
+					if (insertable) {
+						index++;
+					}
+				}
+			}
+		}
+	}
+}
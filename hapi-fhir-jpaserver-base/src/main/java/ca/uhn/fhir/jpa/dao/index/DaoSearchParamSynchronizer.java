@@ -19,16 +19,22 @@
  */
 package ca.uhn.fhir.jpa.dao.index;
 
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.util.AddRemoveCount;
+import ca.uhn.fhir.jpa.util.QueryChunker;
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceContextType;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -45,6 +51,12 @@ public class DaoSearchParamSynchronizer {
 	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
 	protected EntityManager myEntityManager;
 
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
+
 	public AddRemoveCount synchronizeSearchParamsToDatabase(
 			ResourceIndexedSearchParams theParams,
 			ResourceTable theEntity,
@@ -52,7 +64,11 @@ public class DaoSearchParamSynchronizer {
 		AddRemoveCount retVal = new AddRemoveCount();
 
 		synchronize(theEntity, retVal, theParams.myStringParams, existingParams.myStringParams);
-		synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams);
+		if (existingParams.isTokenParamsHashesOnly()) {
+			synchronizeTokenHashes(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams);
+		} else {
+			synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams);
+		}
 		synchronize(theEntity, retVal, theParams.myNumberParams, existingParams.myNumberParams);
 		synchronize(theEntity, retVal, theParams.myQuantityParams, existingParams.myQuantityParams);
 		synchronize(theEntity, retVal, theParams.myQuantityNormalizedParams, existingParams.myQuantityNormalizedParams);
@@ -73,6 +89,17 @@ public class DaoSearchParamSynchronizer {
 		myEntityManager = theEntityManager;
 	}
 
+	@VisibleForTesting
+	public void setStorageSettings(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@VisibleForTesting
+	public void setResourceIndexedSearchParamTokenDao(
+			IResourceIndexedSearchParamTokenDao theResourceIndexedSearchParamTokenDao) {
+		myResourceIndexedSearchParamTokenDao = theResourceIndexedSearchParamTokenDao;
+	}
+
 	private <T extends BaseResourceIndex> void synchronize(
 			ResourceTable theEntity,
 			AddRemoveCount theAddRemoveCount,
@@ -114,6 +141,18 @@ public class DaoSearchParamSynchronizer {
 
 		List<T> paramsToRemove = subtract(theExistingParams, newParams);
 		List<T> paramsToAdd = subtract(newParams, theExistingParams);
+
+		BulkIndexRowInserter bulkInserter = null;
+		if (myStorageSettings.isSearchIndexBulkInsertEnabled()) {
+			bulkInserter = BulkIndexRowInserter.forSession(myEntityManager.unwrap(SessionImplementor.class));
+		}
+		if (bulkInserter != null) {
+			// Rows which were queued earlier in this transaction and haven't been written yet can just be dropped
+			int removedCount = paramsToRemove.size();
+			paramsToRemove.removeIf(bulkInserter::remove);
+			theAddRemoveCount.addToRemoveCount(removedCount - paramsToRemove.size());
+		}
+
 		tryToReuseIndexEntities(paramsToRemove, paramsToAdd);
 
 		for (T next : paramsToRemove) {
@@ -126,7 +165,11 @@ public class DaoSearchParamSynchronizer {
 			myEntityManager.remove(next);
 		}
 		for (T next : paramsToAdd) {
-			myEntityManager.merge(next);
+			if (bulkInserter != null && next.getId() == null) {
+				bulkInserter.add(next);
+			} else {
+				myEntityManager.merge(next);
+			}
 		}
 
 		// TODO:  are there any unintended consequences to fixing this bug?
@@ -134,6 +177,57 @@ public class DaoSearchParamSynchronizer {
 		theAddRemoveCount.addToRemoveCount(paramsToRemove.size());
 	}
 
+	/**
+	 * Like {@link #synchronize(ResourceTable, AddRemoveCount, Collection, Collection)} but for the case
+	 * where the existing token indexes are detached rows holding only their ID and hashes (see
+	 * {@link ResourceIndexedSearchParams#isTokenParamsHashesOnly()}). Since these rows aren't managed
+	 * by the session, rows which are no longer needed are deleted by ID instead of being removed
+	 * or reused.
+	 */
+	private void synchronizeTokenHashes(
+			ResourceTable theEntity,
+			AddRemoveCount theAddRemoveCount,
+			Collection<ResourceIndexedSearchParamToken> theNewParams,
+			Collection<ResourceIndexedSearchParamToken> theExistingParams) {
+		for (ResourceIndexedSearchParamToken next : theNewParams) {
+			next.setPartitionId(theEntity.getPartitionId());
+			next.calculateHashes();
+		}
+		Set<ResourceIndexedSearchParamToken> newParams = new HashSet<>(theNewParams);
+
+		// Duplicates are removed here too, same as for regular rows
+		Set<ResourceIndexedSearchParamToken> existingParamsAsSet = new HashSet<>(theExistingParams.size());
+		List<Long> idsToRemove = new ArrayList<>();
+		for (Iterator<ResourceIndexedSearchParamToken> iterator = theExistingParams.iterator(); iterator.hasNext(); ) {
+			ResourceIndexedSearchParamToken next = iterator.next();
+			if (!existingParamsAsSet.add(next) || !newParams.contains(next)) {
+				idsToRemove.add(next.getId());
+				iterator.remove();
+			}
+		}
+
+		List<ResourceIndexedSearchParamToken> paramsToAdd = subtract(newParams, existingParamsAsSet);
+
+		if (!idsToRemove.isEmpty()) {
+			new QueryChunker<Long>().chunk(idsToRemove, myResourceIndexedSearchParamTokenDao::deleteByPids);
+		}
+
+		BulkIndexRowInserter bulkInserter = null;
+		if (myStorageSettings.isSearchIndexBulkInsertEnabled()) {
+			bulkInserter = BulkIndexRowInserter.forSession(myEntityManager.unwrap(SessionImplementor.class));
+		}
+		for (ResourceIndexedSearchParamToken next : paramsToAdd) {
+			if (bulkInserter != null && next.getId() == null) {
+				bulkInserter.add(next);
+			} else {
+				myEntityManager.merge(next);
+			}
+		}
+
+		theAddRemoveCount.addToAddCount(paramsToAdd.size());
+		theAddRemoveCount.addToRemoveCount(idsToRemove.size());
+	}
+
 	/**
 	 * The logic here is that often times when we update a resource we are dropping
 	 * one index row and adding another. This method tries to reuse rows that would otherwise
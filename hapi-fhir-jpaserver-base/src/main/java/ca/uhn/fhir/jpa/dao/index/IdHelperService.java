@@ -186,6 +186,37 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 		return matches.get(theResourceId).get(0);
 	}
 
+	/**
+	 * Given a collection of resource IDs, resolves the resource lookup for each of them using a small number
+	 * of chunked queries. Lookups which are resolved are also added to the resource lookup cache (when
+	 * deletes are disabled), so later calls to {@link #resolveResourceIdentity(RequestPartitionId, String, String)}
+	 * for the same IDs don't need to hit the database either.
+	 */
+	@Override
+	@Nonnull
+	public Map<String, IResourceLookup<JpaPid>> resolveResourceIdentities(
+			@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theIds, boolean theExcludeDeleted) {
+		assert myDontCheckActiveTransactionForUnitTest || TransactionSynchronizationManager.isSynchronizationActive()
+				: "no transaction active";
+
+		Map<String, IResourceLookup<JpaPid>> retVal = new HashMap<>();
+		new QueryChunker<IIdType>().chunk(theIds, SearchBuilder.getMaximumPageSize() / 2, ids -> {
+			Map<String, List<IResourceLookup<JpaPid>>> matches =
+					translateForcedIdToPids(theRequestPartitionId, ids, theExcludeDeleted);
+			for (IIdType nextId : ids) {
+				List<IResourceLookup<JpaPid>> candidates = matches.getOrDefault(nextId.getIdPart(), List.of());
+				List<IResourceLookup<JpaPid>> typeMatches = candidates.stream()
+						.filter(t -> t.getResourceType().equals(nextId.getResourceType()))
+						.collect(Collectors.toList());
+				// Ambiguous matches are left for resolveResourceIdentity to report
+				if (typeMatches.size() == 1) {
+					retVal.put(nextId.toUnqualifiedVersionless().getValue(), typeMatches.get(0));
+				}
+			}
+		});
+		return retVal;
+	}
+
 	/**
 	 * Returns a mapping of Id -> IResourcePersistentId.
 	 * If any resource is not found, it will throw ResourceNotFound exception (and no map will be returned)
@@ -533,7 +564,7 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 		ListMultimap<String, String> typeToIds = organizeIdsByResourceType(theId);
 		for (Map.Entry<String, Collection<String>> nextEntry : typeToIds.asMap().entrySet()) {
 			String nextResourceType = nextEntry.getKey();
-			Collection<String> nextIds = nextEntry.getValue();
+			Collection<String> nextIds = new ArrayList<>(nextEntry.getValue());
 
 			if (!myStorageSettings.isDeleteEnabled()) {
 				for (Iterator<String> forcedIdIterator = nextIds.iterator(); forcedIdIterator.hasNext(); ) {
@@ -134,6 +134,15 @@ public class Search implements ICachedSearchDetails, Serializable {
 	@Column(name = "NUM_BLOCKED", nullable = true)
 	private Integer myNumBlocked;
 
+	/**
+	 * This column is only ever written by {@link ca.uhn.fhir.jpa.dao.data.ISearchDao#updateNumRequested(Long, int)}
+	 * so that saving a search which is being loaded never overwrites a value recorded by a client request
+	 *
+	 * @since 7.2.0
+	 */
+	@Column(name = "NUM_REQUESTED", nullable = true, insertable = false, updatable = false)
+	private Integer myNumRequested;
+
 	@Column(name = "PREFERRED_PAGE_SIZE", nullable = true)
 	private Integer myPreferredPageSize;
 
@@ -333,6 +342,26 @@ public class Search implements ICachedSearchDetails, Serializable {
 		myNumFound = theNumFound;
 	}
 
+	/**
+	 * Returns the highest number of results that a client has requested from this search, or
+	 * <code>null</code> if this hasn't been recorded
+	 *
+	 * @since 7.2.0
+	 */
+	public Integer getNumRequested() {
+		return myNumRequested;
+	}
+
+	/**
+	 * Note that this value is not persisted when the search is saved, see
+	 * {@link ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc#updateNumRequested(Search, int, RequestPartitionId)}
+	 *
+	 * @since 7.2.0
+	 */
+	public void setNumRequested(Integer theNumRequested) {
+		myNumRequested = theNumRequested;
+	}
+
 	public Integer getPreferredPageSize() {
 		return myPreferredPageSize;
 	}
@@ -0,0 +1,574 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.interceptor;
+
+import ca.uhn.fhir.batch2.api.IJobCoordinator;
+import ca.uhn.fhir.batch2.jobs.reindex.ReindexAppCtx;
+import ca.uhn.fhir.batch2.jobs.reindex.ReindexJobParameters;
+import ca.uhn.fhir.batch2.model.JobInstanceStartRequest;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.util.JpaParamUtil;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.BaseParamWithPrefix;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.util.ICachedSearchDetails;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import ca.uhn.fhir.util.HapiExtensions;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import ca.uhn.hapi.converters.canonical.VersionCanonicalizer;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.exceptions.FHIRException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r5.model.BooleanType;
+import org.hl7.fhir.r5.model.CodeType;
+import org.hl7.fhir.r5.model.Enumerations;
+import org.hl7.fhir.r5.model.SearchParameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * This interceptor records the shape of each search performed by the JPA server, along with how
+ * long it takes to return its first results, and proposes
+ * <a href="https://hapifhir.io/hapi-fhir/docs/server_jpa/search.html#combo-search-index-parameters">combo search parameters</a>
+ * which would have served the hot ones. A combo search parameter turns a search on several parameters
+ * into a single lookup of a hashed index row, instead of a join across several index tables.
+ * <p>
+ * The shape of a search is its resource type, and the names of the parameters in it which could be
+ * served by a non-unique combo search parameter (i.e. string, token, date, quantity, URI and number
+ * parameters with a single value and no modifier or prefix, and tokens which specify a system). Shapes with fewer than two such
+ * parameters, and shapes which are already served by an active combo search parameter, are ignored.
+ * A shape is proposed once it has been searched at least {@link #setMinimumSearchCount(int) a minimum
+ * number of times} with an {@link #setMinimumAverageMillis(long) average latency} above a threshold.
+ * </p>
+ * <p>
+ * Proposals can be reviewed using {@link #getProposals()} and created using
+ * {@link #createSearchParameters(Collection, RequestDetails)}. If {@link #setAutoCreate(boolean) auto-create}
+ * is enabled, proposals are created automatically in the background as soon as a shape meets the
+ * thresholds, so searches are never delayed by (or fail because of) the creation. Whenever a combo
+ * search parameter is created, a reindex job is started for the resource type so that the new index
+ * is populated for existing resources.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+@Interceptor
+public class ComboSearchParameterAdvisorInterceptor {
+
+	/**
+	 * Default value for {@link #setMinimumSearchCount(int)}
+	 */
+	public static final int DEFAULT_MINIMUM_SEARCH_COUNT = 100;
+	/**
+	 * Default value for {@link #setMinimumAverageMillis(long)}
+	 */
+	public static final long DEFAULT_MINIMUM_AVERAGE_MILLIS = 100;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ComboSearchParameterAdvisorInterceptor.class);
+	private static final int MAX_SHAPES = 10000;
+	private static final int MAX_IN_PROGRESS_SEARCHES = 10000;
+	private static final Set<RestSearchParameterTypeEnum> ALLOWED_COMPONENT_TYPES = Set.of(
+			RestSearchParameterTypeEnum.STRING,
+			RestSearchParameterTypeEnum.TOKEN,
+			RestSearchParameterTypeEnum.DATE,
+			RestSearchParameterTypeEnum.QUANTITY,
+			RestSearchParameterTypeEnum.URI,
+			RestSearchParameterTypeEnum.NUMBER);
+
+	private final FhirContext myFhirContext;
+	private final DaoRegistry myDaoRegistry;
+	private final ISearchParamRegistry mySearchParamRegistry;
+	private final JpaStorageSettings myStorageSettings;
+	private final IJobCoordinator myJobCoordinator;
+	private final Map<String, QueryShape> myShapes = new ConcurrentHashMap<>();
+	private final Cache<String, QueryShape> mySearchUuidToShape =
+			CacheFactory.build(TimeUnit.MINUTES.toMillis(10), MAX_IN_PROGRESS_SEARCHES);
+	private final AtomicBoolean myAutoCreatePending = new AtomicBoolean();
+	/**
+	 * Set when a query shape first meets the thresholds for being proposed
+	 */
+	private final AtomicBoolean myProposalsChanged = new AtomicBoolean();
+
+	private ThreadPoolTaskExecutor myAutoCreateExecutor;
+	private int myMinimumSearchCount = DEFAULT_MINIMUM_SEARCH_COUNT;
+	private long myMinimumAverageMillis = DEFAULT_MINIMUM_AVERAGE_MILLIS;
+	private boolean myAutoCreate;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theJobCoordinator The job coordinator used to start reindex jobs. If this is <code>null</code>, no
+	 *                          reindex job is started when a combo search parameter is created, unless the
+	 *                          server is configured to
+	 *                          {@link JpaStorageSettings#setMarkResourcesForReindexingUponSearchParameterChange(boolean) reindex on search parameter changes}.
+	 */
+	public ComboSearchParameterAdvisorInterceptor(
+			@Nonnull FhirContext theFhirContext,
+			@Nonnull DaoRegistry theDaoRegistry,
+			@Nonnull ISearchParamRegistry theSearchParamRegistry,
+			@Nonnull JpaStorageSettings theStorageSettings,
+			@Nullable IJobCoordinator theJobCoordinator) {
+		Validate.notNull(theFhirContext, "theFhirContext must not be null");
+		Validate.notNull(theDaoRegistry, "theDaoRegistry must not be null");
+		Validate.notNull(theSearchParamRegistry, "theSearchParamRegistry must not be null");
+		Validate.notNull(theStorageSettings, "theStorageSettings must not be null");
+		myFhirContext = theFhirContext;
+		myDaoRegistry = theDaoRegistry;
+		mySearchParamRegistry = theSearchParamRegistry;
+		myStorageSettings = theStorageSettings;
+		myJobCoordinator = theJobCoordinator;
+	}
+
+	/**
+	 * The number of times a query shape must have been searched before it is proposed. Default is
+	 * {@link #DEFAULT_MINIMUM_SEARCH_COUNT}.
+	 */
+	public void setMinimumSearchCount(int theMinimumSearchCount) {
+		Validate.isTrue(theMinimumSearchCount >= 1, "theMinimumSearchCount must be >= 1");
+		myMinimumSearchCount = theMinimumSearchCount;
+	}
+
+	/**
+	 * The average number of milliseconds that searches of a query shape must take to return their first
+	 * results before the shape is proposed. Default is {@link #DEFAULT_MINIMUM_AVERAGE_MILLIS}.
+	 */
+	public void setMinimumAverageMillis(long theMinimumAverageMillis) {
+		Validate.isTrue(theMinimumAverageMillis >= 0, "theMinimumAverageMillis must be >= 0");
+		myMinimumAverageMillis = theMinimumAverageMillis;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), proposed combo search parameters are
+	 * created automatically. Creation happens on a background thread, and any failure is logged.
+	 */
+	public void setAutoCreate(boolean theAutoCreate) {
+		myAutoCreate = theAutoCreate;
+		if (theAutoCreate) {
+			scheduleAutoCreate();
+		}
+	}
+
+	@Hook(Pointcut.STORAGE_PRESEARCH_REGISTERED)
+	public void storagePreSearchRegistered(ICachedSearchDetails theSearchDetails, SearchParameterMap theParams) {
+		if (!(theSearchDetails instanceof Search) || theParams.getEverythingMode() != null) {
+			return;
+		}
+		String resourceType = ((Search) theSearchDetails).getResourceType();
+		if (resourceType == null) {
+			return;
+		}
+
+		TreeSet<String> paramNames = new TreeSet<>();
+		for (Map.Entry<String, List<List<IQueryParameterType>>> next : theParams.entrySet()) {
+			if (isComboCandidate(resourceType, next.getKey(), next.getValue())) {
+				paramNames.add(next.getKey());
+			}
+		}
+		if (paramNames.size() < 2 || isServedByComboSearchParameter(resourceType, paramNames)) {
+			return;
+		}
+
+		String key = resourceType + "?" + String.join("&", paramNames);
+		QueryShape shape = myShapes.get(key);
+		if (shape == null) {
+			if (myShapes.size() >= MAX_SHAPES) {
+				return;
+			}
+			shape = myShapes.computeIfAbsent(key, t -> new QueryShape(resourceType, paramNames));
+		}
+		mySearchUuidToShape.put(theSearchDetails.getUuid(), shape);
+	}
+
+	@Hook(Pointcut.JPA_PERFTRACE_SEARCH_FIRST_RESULT_LOADED)
+	public void searchFirstResultLoaded(SearchRuntimeDetails theDetails) {
+		recordLatency(theDetails);
+	}
+
+	/**
+	 * This is fired when a search finds no results at all, in which case
+	 * {@link Pointcut#JPA_PERFTRACE_SEARCH_FIRST_RESULT_LOADED} is never fired
+	 */
+	@Hook(Pointcut.JPA_PERFTRACE_SEARCH_SELECT_COMPLETE)
+	public void searchSelectComplete(SearchRuntimeDetails theDetails) {
+		recordLatency(theDetails);
+	}
+
+	private void recordLatency(SearchRuntimeDetails theDetails) {
+		String uuid = theDetails.getSearchUuid();
+		if (uuid == null) {
+			return;
+		}
+		QueryShape shape = mySearchUuidToShape.getIfPresent(uuid);
+		if (shape != null) {
+			mySearchUuidToShape.invalidate(uuid);
+			boolean eligible = shape.record(
+					theDetails.getQueryStopwatch().getMillis(), myMinimumSearchCount, myMinimumAverageMillis);
+			if (eligible) {
+				myProposalsChanged.set(true);
+				if (myAutoCreate) {
+					scheduleAutoCreate();
+				}
+			}
+		}
+	}
+
+	/**
+	 * This is called on the search thread, so proposals are only computed in the background task
+	 */
+	private void scheduleAutoCreate() {
+		if (!myProposalsChanged.get() || !myAutoCreatePending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			getAutoCreateExecutor().execute(this::autoCreate);
+		} catch (RuntimeException e) {
+			myAutoCreatePending.set(false);
+			ourLog.warn("Failed to schedule creation of proposed combo search parameters", e);
+		}
+	}
+
+	private void autoCreate() {
+		try {
+			while (myProposalsChanged.getAndSet(false)) {
+				List<ComboSearchParameterProposal> proposals = getProposals();
+				if (!proposals.isEmpty()) {
+					createSearchParameters(proposals, new SystemRequestDetails());
+				}
+			}
+		} catch (Exception e) {
+			ourLog.error("Failed to create proposed combo search parameters", e);
+		} finally {
+			myAutoCreatePending.set(false);
+		}
+
+		// A shape may have become eligible after we last checked
+		if (myAutoCreate) {
+			scheduleAutoCreate();
+		}
+	}
+
+	private synchronized ThreadPoolTaskExecutor getAutoCreateExecutor() {
+		if (myAutoCreateExecutor == null) {
+			myAutoCreateExecutor = ThreadPoolUtil.newThreadPool(1, 1, "combo-search-parameter-advisor-");
+		}
+		return myAutoCreateExecutor;
+	}
+
+	/**
+	 * Stops the background thread used to create proposals if {@link #setAutoCreate(boolean) auto-create}
+	 * is enabled
+	 */
+	@PreDestroy
+	public synchronized void stop() {
+		if (myAutoCreateExecutor != null) {
+			myAutoCreateExecutor.shutdown();
+			myAutoCreateExecutor = null;
+		}
+	}
+
+	/**
+	 * Returns the combo search parameters which would have served the hot query shapes, with the
+	 * shapes which have spent the most total time searching first
+	 */
+	@Nonnull
+	public List<ComboSearchParameterProposal> getProposals() {
+		return myShapes.values().stream()
+				.filter(t -> !t.isCreated())
+				.filter(t -> t.getCount() >= myMinimumSearchCount)
+				.filter(t -> t.getAverageMillis() >= myMinimumAverageMillis)
+				.filter(t -> !isServedByComboSearchParameter(t.getResourceType(), t.getParamNames()))
+				.map(QueryShape::toProposal)
+				.sorted(Comparator.comparing(ComboSearchParameterProposal::getTotalMillis)
+						.reversed())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Creates the given proposed combo search parameters, and starts a reindex job for each resource
+	 * type so that the new indexes are populated
+	 *
+	 * @return The IDs of the created search parameters
+	 */
+	@Nonnull
+	public List<IIdType> createSearchParameters(
+			Collection<ComboSearchParameterProposal> theProposals, RequestDetails theRequestDetails) {
+		List<IIdType> retVal = new ArrayList<>();
+		Set<String> resourceTypes = new TreeSet<>();
+		for (ComboSearchParameterProposal next : theProposals) {
+			QueryShape shape = myShapes.get(next.getKey());
+			if (shape != null && !shape.markCreated()) {
+				// Another thread got there first
+				continue;
+			}
+
+			IBaseResource searchParameter = newSearchParameter(next);
+			IIdType id = myDaoRegistry
+					.getResourceDao("SearchParameter")
+					.create(searchParameter, theRequestDetails)
+					.getId();
+			ourLog.info("Created combo SearchParameter {} for query shape: {}", id, next);
+			retVal.add(id);
+			resourceTypes.add(next.getResourceType());
+		}
+
+		if (!resourceTypes.isEmpty()) {
+			mySearchParamRegistry.forceRefresh();
+			if (!myStorageSettings.isMarkResourcesForReindexingUponSearchParameterChange()
+					&& myJobCoordinator != null) {
+				// Otherwise the SearchParameter DAO has already started a reindex job
+				ReindexJobParameters params = new ReindexJobParameters();
+				resourceTypes.forEach(t -> params.addUrl(t + "?"));
+				JobInstanceStartRequest request = new JobInstanceStartRequest();
+				request.setJobDefinitionId(ReindexAppCtx.JOB_REINDEX);
+				request.setParameters(params);
+				myJobCoordinator.startInstance(theRequestDetails, request);
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Creates a non-unique combo SearchParameter resource for the given proposal
+	 */
+	@Nonnull
+	public IBaseResource newSearchParameter(ComboSearchParameterProposal theProposal) {
+		SearchParameter retVal = new SearchParameter();
+		retVal.setName(theProposal.getCode());
+		retVal.setCode(theProposal.getCode());
+		retVal.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		retVal.setType(Enumerations.SearchParamType.COMPOSITE);
+		retVal.setDescription("Combo index proposed for searches of " + theProposal.getResourceType() + " by "
+				+ String.join(", ", theProposal.getParamNames()));
+		try {
+			retVal.addBase(Enumerations.VersionIndependentResourceTypesAll.fromCode(theProposal.getResourceType()));
+		} catch (FHIRException e) {
+			retVal.addExtension(
+					HapiExtensions.EXTENSION_SEARCHPARAM_CUSTOM_BASE_RESOURCE,
+					new CodeType(theProposal.getResourceType()));
+		}
+		for (String next : theProposal.getParamNames()) {
+			RuntimeSearchParam param = mySearchParamRegistry.getActiveSearchParam(theProposal.getResourceType(), next);
+			retVal.addComponent().setExpression(theProposal.getResourceType()).setDefinition(param.getUri());
+		}
+		retVal.addExtension(HapiExtensions.EXT_SP_UNIQUE, new BooleanType(false));
+
+		return new VersionCanonicalizer(myFhirContext).searchParameterFromCanonical(retVal);
+	}
+
+	/**
+	 * Discards all recorded query shapes
+	 */
+	public void clear() {
+		myShapes.clear();
+		myProposalsChanged.set(false);
+		mySearchUuidToShape.invalidateAll();
+	}
+
+	private boolean isComboCandidate(
+			String theResourceType, String theParamName, List<List<IQueryParameterType>> theAndList) {
+		if (theParamName.startsWith("_")
+				|| theAndList.size() != 1
+				|| theAndList.get(0).size() != 1) {
+			return false;
+		}
+		RuntimeSearchParam param = mySearchParamRegistry.getActiveSearchParam(theResourceType, theParamName);
+		if (param == null || param.getUri() == null || !ALLOWED_COMPONENT_TYPES.contains(param.getParamType())) {
+			return false;
+		}
+		IQueryParameterType value = theAndList.get(0).get(0);
+		if (value.getMissing() != null || value.getQueryParameterQualifier() != null) {
+			return false;
+		}
+		if (value instanceof TokenParam && isBlank(((TokenParam) value).getSystem())) {
+			// Combo indexes store tokens as system|code so they can only serve searches which specify the system
+			return false;
+		}
+		return !(value instanceof BaseParamWithPrefix) || ((BaseParamWithPrefix<?>) value).getPrefix() == null;
+	}
+
+	private boolean isServedByComboSearchParameter(String theResourceType, Set<String> theParamNames) {
+		for (RuntimeSearchParam next : mySearchParamRegistry.getActiveComboSearchParams(theResourceType)) {
+			List<String> componentNames = JpaParamUtil.resolveComponentParameters(mySearchParamRegistry, next).stream()
+					.map(RuntimeSearchParam::getName)
+					.collect(Collectors.toList());
+			if (theParamNames.containsAll(componentNames)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class QueryShape {
+
+		private final String myResourceType;
+		private final List<String> myParamNames;
+		private final AtomicLong myCount = new AtomicLong();
+		private final AtomicLong myTotalMillis = new AtomicLong();
+		private final AtomicBoolean myEligible = new AtomicBoolean();
+		private volatile boolean myCreated;
+
+		private QueryShape(String theResourceType, Collection<String> theParamNames) {
+			myResourceType = theResourceType;
+			myParamNames = List.copyOf(theParamNames);
+		}
+
+		/**
+		 * @return Returns <code>true</code> if the shape has just started meeting the given thresholds
+		 */
+		boolean record(long theMillis, int theMinimumSearchCount, long theMinimumAverageMillis) {
+			myCount.incrementAndGet();
+			myTotalMillis.addAndGet(theMillis);
+			if (getCount() >= theMinimumSearchCount && getAverageMillis() >= theMinimumAverageMillis) {
+				return !myEligible.get() && myEligible.compareAndSet(false, true);
+			}
+			myEligible.set(false);
+			return false;
+		}
+
+		String getResourceType() {
+			return myResourceType;
+		}
+
+		Set<String> getParamNames() {
+			return new TreeSet<>(myParamNames);
+		}
+
+		long getCount() {
+			return myCount.get();
+		}
+
+		long getAverageMillis() {
+			long count = myCount.get();
+			return count > 0 ? myTotalMillis.get() / count : 0;
+		}
+
+		boolean isCreated() {
+			return myCreated;
+		}
+
+		synchronized boolean markCreated() {
+			if (myCreated) {
+				return false;
+			}
+			myCreated = true;
+			return true;
+		}
+
+		ComboSearchParameterProposal toProposal() {
+			return new ComboSearchParameterProposal(myResourceType, myParamNames, myCount.get(), myTotalMillis.get());
+		}
+	}
+
+	/**
+	 * A proposed non-unique combo search parameter, along with the statistics for the searches it
+	 * would have served
+	 */
+	public static class ComboSearchParameterProposal {
+
+		private final String myResourceType;
+		private final List<String> myParamNames;
+		private final long mySearchCount;
+		private final long myTotalMillis;
+
+		ComboSearchParameterProposal(
+				String theResourceType, List<String> theParamNames, long theSearchCount, long theTotalMillis) {
+			myResourceType = theResourceType;
+			myParamNames = theParamNames;
+			mySearchCount = theSearchCount;
+			myTotalMillis = theTotalMillis;
+		}
+
+		public String getResourceType() {
+			return myResourceType;
+		}
+
+		/**
+		 * The names of the component search parameters, in alphabetical order
+		 */
+		public List<String> getParamNames() {
+			return myParamNames;
+		}
+
+		/**
+		 * A code for the proposed search parameter, e.g. <code>combo-family-gender</code>
+		 */
+		public String getCode() {
+			return "combo-" + String.join("-", myParamNames);
+		}
+
+		public long getSearchCount() {
+			return mySearchCount;
+		}
+
+		/**
+		 * The total number of milliseconds that searches of this shape took to return their first results
+		 */
+		public long getTotalMillis() {
+			return myTotalMillis;
+		}
+
+		public long getAverageMillis() {
+			return mySearchCount > 0 ? myTotalMillis / mySearchCount : 0;
+		}
+
+		String getKey() {
+			return myResourceType + "?" + String.join("&", myParamNames);
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + " searches=" + mySearchCount + " averageMillis=" + getAverageMillis();
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.interceptor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.interceptor.InterceptorOrders;
+import ca.uhn.fhir.rest.server.method.BaseResourceReturningMethodBinding;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.collect.Iterators;
+import jakarta.annotation.Nonnull;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * This interceptor for the HAPI FHIR JPA server adds a streaming search mode. When a
+ * type-level search includes the parameter <code>_stream=true</code> and requests an NDJSON
+ * response (e.g. <code>Patient?family=smith&amp;_format=ndjson&amp;_stream=true</code>), every
+ * matching resource is written directly to the response as NDJSON, instead of being returned
+ * as a series of Bundle pages. Results are read from a single database cursor and loaded in
+ * chunks as they are written, so nothing is stored in the search cache and memory use doesn't
+ * depend on the number of results.
+ * <p>
+ * Authorization and consent interceptors are still invoked: the request passes through
+ * {@link Pointcut#SERVER_INCOMING_REQUEST_PRE_HANDLED}, resources pass through
+ * {@link Pointcut#STORAGE_PREACCESS_RESOURCES} and {@link Pointcut#STORAGE_PRESHOW_RESOURCES}
+ * as they are loaded, and each chunk is passed through {@link Pointcut#SERVER_OUTGOING_RESPONSE}
+ * as a <code>searchset</code> Bundle before it is written.
+ * </p>
+ * <p>
+ * Results are unsorted, and <code>_include</code>, <code>_revinclude</code>, <code>_sort</code>,
+ * <code>_summary</code> and <code>_elements</code> are not supported in streaming mode. This interceptor
+ * must be registered against the {@link ca.uhn.fhir.rest.server.RestfulServer}.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+@Interceptor
+public class StreamingSearchInterceptor {
+
+	/**
+	 * Request parameter used to request a streaming search
+	 */
+	public static final String PARAM_STREAM = "_stream";
+
+	private static final Logger ourLog = LoggerFactory.getLogger(StreamingSearchInterceptor.class);
+	private static final Set<String> UNSUPPORTED_PARAMS = Set.of(
+			Constants.PARAM_INCLUDE,
+			Constants.PARAM_REVINCLUDE,
+			Constants.PARAM_SORT,
+			Constants.PARAM_SUMMARY,
+			Constants.PARAM_ELEMENTS);
+	private static final Set<String> RESPONSE_PARAMS =
+			Set.of(PARAM_STREAM, Constants.PARAM_FORMAT, Constants.PARAM_PRETTY);
+
+	private final DaoRegistry myDaoRegistry;
+	private final IHapiTransactionService myTransactionService;
+	private final MatchUrlService myMatchUrlService;
+
+	/**
+	 * Constructor
+	 */
+	public StreamingSearchInterceptor(
+			@Nonnull DaoRegistry theDaoRegistry,
+			@Nonnull IHapiTransactionService theTransactionService,
+			@Nonnull MatchUrlService theMatchUrlService) {
+		Validate.notNull(theDaoRegistry, "theDaoRegistry must not be null");
+		Validate.notNull(theTransactionService, "theTransactionService must not be null");
+		Validate.notNull(theMatchUrlService, "theMatchUrlService must not be null");
+		myDaoRegistry = theDaoRegistry;
+		myTransactionService = theTransactionService;
+		myMatchUrlService = theMatchUrlService;
+	}
+
+	/**
+	 * This runs after any other hooks for this pointcut, so that the streamed search reflects any changes
+	 * they make to the request parameters (e.g. by the {@link ca.uhn.fhir.rest.server.interceptor.auth.SearchNarrowingInterceptor}).
+	 */
+	@Hook(
+			value = Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED,
+			order = InterceptorOrders.STREAMING_SEARCH_INTERCEPTOR)
+	public boolean incomingRequestPostProcessed(
+			ServletRequestDetails theRequestDetails, HttpServletResponse theServletResponse) {
+		if (theRequestDetails.getRestOperationType() != RestOperationTypeEnum.SEARCH_TYPE
+				|| !isStreamRequested(theRequestDetails)) {
+			return true;
+		}
+
+		RestfulServerUtils.ResponseEncoding encoding =
+				RestfulServerUtils.determineResponseEncodingNoDefault(theRequestDetails, null);
+		if (encoding == null || encoding.getEncoding() != EncodingEnum.NDJSON) {
+			throw new InvalidRequestException(
+					Msg.code(2516) + "The " + PARAM_STREAM + " parameter requires an NDJSON response format");
+		}
+		for (String next : theRequestDetails.getParameters().keySet()) {
+			if (UNSUPPORTED_PARAMS.contains(next)) {
+				throw new InvalidRequestException(
+						Msg.code(2517) + "The " + next + " parameter can not be used with " + PARAM_STREAM);
+			}
+		}
+
+		String resourceType = theRequestDetails.getResourceName();
+		FhirContext fhirContext = theRequestDetails.getFhirContext();
+		SearchParameterMap params = myMatchUrlService.translateMatchUrl(
+				toMatchUrl(resourceType, theRequestDetails.getParameters()),
+				fhirContext.getResourceDefinition(resourceType));
+		params.setLoadSynchronous(true);
+
+		callHooks(theRequestDetails, Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED);
+
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(resourceType);
+		theServletResponse.setStatus(Constants.STATUS_HTTP_200_OK);
+		theServletResponse.setContentType(Constants.CT_FHIR_NDJSON);
+		theServletResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+
+		int count = myTransactionService
+				.withRequest(theRequestDetails)
+				.readOnly()
+				.execute(() -> {
+					try (Stream<? extends IBaseResource> stream =
+									dao.searchForResourceStream(params, theRequestDetails);
+							Writer writer = new BufferedWriter(new OutputStreamWriter(
+									theServletResponse.getOutputStream(), StandardCharsets.UTF_8))) {
+						return writeResources(theRequestDetails, stream.iterator(), writer);
+					} catch (IOException e) {
+						throw new InternalErrorException(Msg.code(2518) + "Failed to write streaming response", e);
+					}
+				});
+		ourLog.debug("Streamed {} {} resources", count, resourceType);
+
+		callHooks(theRequestDetails, Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY);
+		return false;
+	}
+
+	private int writeResources(
+			ServletRequestDetails theRequestDetails, Iterator<? extends IBaseResource> theResources, Writer theWriter)
+			throws IOException {
+		FhirContext fhirContext = theRequestDetails.getFhirContext();
+		IParser parser = fhirContext.newJsonParser().setPrettyPrint(false);
+
+		int retVal = 0;
+		Iterator<? extends List<? extends IBaseResource>> chunks =
+				Iterators.partition(theResources, SearchBuilder.getMaximumPageSize());
+		while (chunks.hasNext()) {
+			BundleBuilder bundleBuilder = new BundleBuilder(fhirContext);
+			bundleBuilder.setType("searchset");
+			chunks.next().forEach(bundleBuilder::addCollectionEntry);
+
+			ResponseDetails responseDetails = new ResponseDetails(bundleBuilder.getBundle());
+			if (!BaseResourceReturningMethodBinding.callOutgoingResponseHook(theRequestDetails, responseDetails)) {
+				break;
+			}
+
+			for (IBaseResource next : toResources(fhirContext, responseDetails.getResponseResource())) {
+				parser.encodeResourceToWriter(next, theWriter);
+				theWriter.write('\n');
+				retVal++;
+			}
+			theWriter.flush();
+		}
+		return retVal;
+	}
+
+	private static List<IBaseResource> toResources(FhirContext theFhirContext, IBaseResource theResponseResource) {
+		if (theResponseResource == null) {
+			return Collections.emptyList();
+		}
+		if (theResponseResource instanceof IBaseBundle) {
+			return BundleUtil.toListOfResources(theFhirContext, (IBaseBundle) theResponseResource);
+		}
+		return Collections.singletonList(theResponseResource);
+	}
+
+	private static boolean isStreamRequested(RequestDetails theRequestDetails) {
+		String[] values = theRequestDetails.getParameters().get(PARAM_STREAM);
+		return values != null && values.length > 0 && Boolean.parseBoolean(values[0]);
+	}
+
+	private static String toMatchUrl(String theResourceType, Map<String, String[]> theParameters) {
+		StringBuilder retVal = new StringBuilder(theResourceType).append('?');
+		for (Map.Entry<String, String[]> next : theParameters.entrySet()) {
+			if (RESPONSE_PARAMS.contains(next.getKey())) {
+				continue;
+			}
+			for (String nextValue : next.getValue()) {
+				retVal.append(UrlUtil.escapeUrlParam(next.getKey()))
+						.append('=')
+						.append(UrlUtil.escapeUrlParam(nextValue))
+						.append('&');
+			}
+		}
+		return retVal.toString();
+	}
+
+	private static void callHooks(ServletRequestDetails theRequestDetails, Pointcut thePointcut) {
+		IInterceptorBroadcaster broadcaster = theRequestDetails.getInterceptorBroadcaster();
+		if (broadcaster == null) {
+			return;
+		}
+		HookParams params = new HookParams();
+		if (thePointcut == Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED) {
+			params.add(RestOperationTypeEnum.class, theRequestDetails.getRestOperationType());
+		}
+		params.add(RequestDetails.class, theRequestDetails);
+		params.add(ServletRequestDetails.class, theRequestDetails);
+		broadcaster.callHooks(thePointcut, params);
+	}
+}
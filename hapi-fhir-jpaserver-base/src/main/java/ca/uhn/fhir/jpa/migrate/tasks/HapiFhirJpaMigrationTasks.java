@@ -139,6 +139,24 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		forcedId.dropIndex("20240402.2", "IDX_FORCEDID_RESID");
 		forcedId.dropIndex("20240402.3", "IDX_FORCEDID_TYPE_FID");
 		forcedId.dropIndex("20240402.4", "IDX_FORCEID_FID");
+
+		// Number of results requested by clients, used to adapt the search pre-fetch thresholds
+		version.onTable("HFJ_SEARCH")
+				.addColumn("20240410.1", "NUM_REQUESTED")
+				.nullable()
+				.type(ColumnTypeEnum.INT);
+
+		// Compact projections of commonly requested elements, used to serve _elements and _summary searches
+		{
+			Builder.BuilderAddTableByColumns resProjection =
+					version.addTableByColumns("20240412.1", "HFJ_RES_PROJECTION", "RES_ID");
+			resProjection.addColumn("RES_ID").nonNullable().type(ColumnTypeEnum.LONG);
+			resProjection.addColumn("PARTITION_ID").nullable().type(ColumnTypeEnum.INT);
+			resProjection.addColumn("PARTITION_DATE").nullable().type(ColumnTypeEnum.DATE_ONLY);
+			resProjection.addColumn("RES_VER").nonNullable().type(ColumnTypeEnum.LONG);
+			resProjection.addColumn("ELEMENTS_HASH").nonNullable().type(ColumnTypeEnum.LONG);
+			resProjection.addColumn("PROJ_TEXT").nonNullable().type(ColumnTypeEnum.STRING, 4000);
+		}
 	}
 
 	protected void init700() {
@@ -0,0 +1,437 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
+import ca.uhn.fhir.rest.api.Constants;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This service learns how many results clients actually page through for each query shape, so that
+ * the search pre-fetch thresholds can be adapted to the demand for that shape (see
+ * {@link JpaStorageSettings#setAdaptiveSearchPreFetchEnabled(boolean)}). The shape of a search is its
+ * search type, resource type and the names of its search parameters (including the <code>_sort</code>
+ * specification), but not the parameter values.
+ * <p>
+ * For each shape the service keeps the number of results loaded and the number of results requested
+ * for the most recent searches, using the values recorded on the {@link Search} entities. The difference
+ * between the two is the number of results which were pre-fetched but never requested, which is
+ * reported by {@link #getStatistics()} and {@link #getWastedPreFetchCount()}.
+ * </p>
+ * <p>
+ * The number of results requested from each search is also stored in the database (in
+ * <code>HFJ_SEARCH.NUM_REQUESTED</code>). The first time a shape is seen, e.g. after a restart or on
+ * another node of a cluster, its expected demand is seeded from the most recent searches of that shape
+ * stored there, so that it doesn't need to be learned again.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class AdaptiveSearchPreFetchSvc {
+
+	/**
+	 * The number of searches of a shape which need to have been observed before the
+	 * demand for that shape is considered to be known
+	 */
+	public static final int MIN_SEARCHES_OBSERVED = 5;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(AdaptiveSearchPreFetchSvc.class);
+	private static final int MAX_SHAPES = 1000;
+	private static final int MAX_SEARCHES_PER_SHAPE = 100;
+	/**
+	 * The number of stored searches for the resource type which are examined to seed the demand for a new shape
+	 */
+	private static final int MAX_STORED_SEARCHES_TO_SEED_FROM = 500;
+
+	private static final double DEMAND_PERCENTILE = 0.9;
+
+	private final JpaStorageSettings myStorageSettings;
+	private final ISearchCacheSvc mySearchCacheSvc;
+	private final Map<String, QueryShapeStats> myShapeToStats = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, QueryShapeStats> theEldest) {
+			if (size() > MAX_SHAPES) {
+				theEldest.getValue().retireAll();
+				return true;
+			}
+			return false;
+		}
+	};
+	private final AtomicLong myRetiredLoadedCount = new AtomicLong();
+	private final AtomicLong myRetiredWastedCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 */
+	public AdaptiveSearchPreFetchSvc(JpaStorageSettings theStorageSettings, ISearchCacheSvc theSearchCacheSvc) {
+		myStorageSettings = theStorageSettings;
+		mySearchCacheSvc = theSearchCacheSvc;
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.isAdaptiveSearchPreFetchEnabled();
+	}
+
+	/**
+	 * Records the number of results which have been loaded for the given search
+	 */
+	public void recordResultsLoaded(Search theSearch, @Nullable RequestPartitionId theRequestPartitionId) {
+		if (isEnabled()) {
+			getOrCreateStats(theSearch, theRequestPartitionId)
+					.recordLoaded(theSearch.getUuid(), theSearch.getNumFound());
+		}
+	}
+
+	/**
+	 * Records that a client has requested results up to (but not including) the given index
+	 * from the given search. The number of results requested is also stored on the search.
+	 * This method must not be called inside a transaction.
+	 */
+	public void recordResultsRequested(
+			Search theSearch, int theToIndex, @Nullable RequestPartitionId theRequestPartitionId) {
+		if (!isEnabled()) {
+			return;
+		}
+		getOrCreateStats(theSearch, theRequestPartitionId)
+				.recordRequested(theSearch.getUuid(), theSearch.getNumFound(), theToIndex);
+
+		Integer numRequested = theSearch.getNumRequested();
+		if (numRequested == null || numRequested < theToIndex) {
+			theSearch.setNumRequested(theToIndex);
+			mySearchCacheSvc.updateNumRequested(theSearch, theToIndex, theRequestPartitionId);
+		}
+	}
+
+	/**
+	 * Returns the number of results that clients are expected to request from a search with the
+	 * same shape as the given search, or <code>null</code> if this isn't known yet (or the feature
+	 * is disabled). This is the 90th percentile of the number of results requested from the most
+	 * recent searches of that shape.
+	 */
+	@Nullable
+	public Integer getExpectedDemand(Search theSearch, @Nullable RequestPartitionId theRequestPartitionId) {
+		if (!isEnabled()) {
+			return null;
+		}
+		return getOrCreateStats(theSearch, theRequestPartitionId).getExpectedDemand(theSearch.getUuid());
+	}
+
+	/**
+	 * Returns the statistics for each query shape which has been observed
+	 */
+	@Nonnull
+	public List<QueryShapeStatistics> getStatistics() {
+		List<QueryShapeStats> stats;
+		synchronized (myShapeToStats) {
+			stats = new ArrayList<>(myShapeToStats.values());
+		}
+		List<QueryShapeStatistics> retVal = new ArrayList<>(stats.size());
+		for (QueryShapeStats next : stats) {
+			retVal.add(next.toStatistics());
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the total number of results which were loaded by searches, but which were never
+	 * requested by a client
+	 */
+	public long getWastedPreFetchCount() {
+		long retVal = myRetiredWastedCount.get();
+		for (QueryShapeStatistics next : getStatistics()) {
+			retVal += next.getWastedCount();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the total number of results which were loaded by searches
+	 */
+	public long getLoadedCount() {
+		long retVal = myRetiredLoadedCount.get();
+		for (QueryShapeStatistics next : getStatistics()) {
+			retVal += next.getLoadedCount();
+		}
+		return retVal;
+	}
+
+	@VisibleForTesting
+	public void clearForUnitTests() {
+		synchronized (myShapeToStats) {
+			myShapeToStats.clear();
+		}
+		myRetiredLoadedCount.set(0);
+		myRetiredWastedCount.set(0);
+	}
+
+	private QueryShapeStats getOrCreateStats(Search theSearch, @Nullable RequestPartitionId theRequestPartitionId) {
+		String shape = toQueryShape(theSearch);
+		QueryShapeStats retVal;
+		synchronized (myShapeToStats) {
+			retVal = myShapeToStats.get(shape);
+			if (retVal != null) {
+				return retVal;
+			}
+			retVal = new QueryShapeStats(shape);
+			myShapeToStats.put(shape, retVal);
+		}
+
+		retVal.seed(loadStoredDemand(theSearch, shape, theRequestPartitionId));
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of results requested from the most recent stored searches with the given shape
+	 */
+	private List<Integer> loadStoredDemand(
+			Search theSearch, String theShape, @Nullable RequestPartitionId theRequestPartitionId) {
+		List<Search> searches;
+		try {
+			searches = mySearchCacheSvc.findRecentSearchesWithNumRequested(
+					theSearch.getResourceType(), MAX_STORED_SEARCHES_TO_SEED_FROM, theRequestPartitionId);
+		} catch (RuntimeException e) {
+			ourLog.warn("Failed to load stored search demand for shape [{}]: {}", theShape, e.toString());
+			return Collections.emptyList();
+		}
+
+		List<Integer> retVal = new ArrayList<>();
+		for (Search next : searches) {
+			if (retVal.size() >= MAX_SEARCHES_PER_SHAPE) {
+				break;
+			}
+			if (next.getNumRequested() != null
+					&& next.getNumRequested() > 0
+					&& !next.getUuid().equals(theSearch.getUuid())
+					&& theShape.equals(toQueryShape(next))) {
+				retVal.add(next.getNumRequested());
+			}
+		}
+		ourLog.debug("Seeded shape [{}] with the demand of {} stored searches", theShape, retVal.size());
+		return retVal;
+	}
+
+	/**
+	 * Returns the shape of a search, e.g. <code>SEARCH Patient?_sort=-birthdate&family&given</code>
+	 */
+	@Nonnull
+	static String toQueryShape(Search theSearch) {
+		StringBuilder b = new StringBuilder();
+		b.append(theSearch.getSearchType()).append(' ').append(theSearch.getResourceType());
+
+		// The stored query string may be prefixed with the request partition IDs
+		String queryString = theSearch.getSearchQueryString();
+		int queryStart = queryString != null ? queryString.indexOf('?') : -1;
+		if (queryStart != -1) {
+			TreeSet<String> names = new TreeSet<>();
+			for (String next : StringUtils.split(queryString.substring(queryStart + 1), '&')) {
+				int equalsIdx = next.indexOf('=');
+				String name = equalsIdx != -1 ? next.substring(0, equalsIdx) : next;
+				if (Constants.PARAM_SORT.equals(name)) {
+					// The sort order is part of the shape
+					names.add(next);
+				} else {
+					names.add(name);
+				}
+			}
+			b.append('?').append(String.join("&", names));
+		}
+		return b.toString();
+	}
+
+	private class QueryShapeStats {
+
+		private final String myShape;
+		private final Map<String, int[]> mySearchUuidToLoadedAndRequested = new LinkedHashMap<>(16, 0.75f, false) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, int[]> theEldest) {
+				if (size() > MAX_SEARCHES_PER_SHAPE) {
+					retire(theEldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+		private final List<Integer> myStoredRequested = new ArrayList<>();
+		private long mySearchCount;
+
+		private QueryShapeStats(String theShape) {
+			myShape = theShape;
+		}
+
+		/**
+		 * Adds the number of results requested from stored searches, which are used to compute the
+		 * expected demand (but not the statistics) until enough searches have been observed
+		 */
+		synchronized void seed(List<Integer> theStoredRequested) {
+			myStoredRequested.addAll(theStoredRequested);
+		}
+
+		synchronized void recordLoaded(String theSearchUuid, int theNumLoaded) {
+			int[] loadedAndRequested = getOrCreate(theSearchUuid);
+			loadedAndRequested[0] = Math.max(loadedAndRequested[0], theNumLoaded);
+		}
+
+		synchronized void recordRequested(String theSearchUuid, int theNumLoaded, int theToIndex) {
+			int[] loadedAndRequested = getOrCreate(theSearchUuid);
+			loadedAndRequested[0] = Math.max(loadedAndRequested[0], theNumLoaded);
+			loadedAndRequested[1] = Math.max(loadedAndRequested[1], theToIndex);
+		}
+
+		@Nullable
+		synchronized Integer getExpectedDemand(String theExcludeSearchUuid) {
+			int[] observed = mySearchUuidToLoadedAndRequested.entrySet().stream()
+					.filter(t -> !t.getKey().equals(theExcludeSearchUuid))
+					.mapToInt(t -> t.getValue()[1])
+					.filter(t -> t > 0)
+					.toArray();
+			int storedCount = Math.min(myStoredRequested.size(), MAX_SEARCHES_PER_SHAPE - observed.length);
+			int[] requested = Arrays.copyOf(observed, observed.length + Math.max(0, storedCount));
+			for (int i = 0; i < storedCount; i++) {
+				requested[observed.length + i] = myStoredRequested.get(i);
+			}
+			if (requested.length < MIN_SEARCHES_OBSERVED) {
+				return null;
+			}
+			Arrays.sort(requested);
+			int index = (int) Math.ceil(requested.length * DEMAND_PERCENTILE) - 1;
+			return requested[index];
+		}
+
+		synchronized QueryShapeStatistics toStatistics() {
+			long loaded = 0;
+			long requested = 0;
+			long wasted = 0;
+			for (int[] next : mySearchUuidToLoadedAndRequested.values()) {
+				loaded += next[0];
+				requested += next[1];
+				wasted += getWasted(next);
+			}
+			return new QueryShapeStatistics(myShape, mySearchCount, loaded, requested, wasted);
+		}
+
+		synchronized void retireAll() {
+			mySearchUuidToLoadedAndRequested.values().forEach(this::retire);
+		}
+
+		private void retire(int[] theLoadedAndRequested) {
+			myRetiredLoadedCount.addAndGet(theLoadedAndRequested[0]);
+			myRetiredWastedCount.addAndGet(getWasted(theLoadedAndRequested));
+			ourLog.debug(
+					"Search of shape [{}] loaded {} results and {} were requested",
+					myShape,
+					theLoadedAndRequested[0],
+					theLoadedAndRequested[1]);
+		}
+
+		private int getWasted(int[] theLoadedAndRequested) {
+			return Math.max(0, theLoadedAndRequested[0] - theLoadedAndRequested[1]);
+		}
+
+		private int[] getOrCreate(String theSearchUuid) {
+			int[] retVal = mySearchUuidToLoadedAndRequested.get(theSearchUuid);
+			if (retVal == null) {
+				retVal = new int[2];
+				mySearchUuidToLoadedAndRequested.put(theSearchUuid, retVal);
+				mySearchCount++;
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * The pre-fetch statistics for a query shape. The counts cover the most recent searches of the shape.
+	 */
+	public static class QueryShapeStatistics {
+
+		private final String myShape;
+		private final long mySearchCount;
+		private final long myLoadedCount;
+		private final long myRequestedCount;
+		private final long myWastedCount;
+
+		QueryShapeStatistics(
+				String theShape,
+				long theSearchCount,
+				long theLoadedCount,
+				long theRequestedCount,
+				long theWastedCount) {
+			myShape = theShape;
+			mySearchCount = theSearchCount;
+			myLoadedCount = theLoadedCount;
+			myRequestedCount = theRequestedCount;
+			myWastedCount = theWastedCount;
+		}
+
+		public String getShape() {
+			return myShape;
+		}
+
+		/**
+		 * The total number of searches of this shape which have been observed
+		 */
+		public long getSearchCount() {
+			return mySearchCount;
+		}
+
+		/**
+		 * The number of results loaded by the most recent searches
+		 */
+		public long getLoadedCount() {
+			return myLoadedCount;
+		}
+
+		/**
+		 * The number of results requested by clients from the most recent searches
+		 */
+		public long getRequestedCount() {
+			return myRequestedCount;
+		}
+
+		/**
+		 * The number of results loaded by the most recent searches which were never requested
+		 */
+		public long getWastedCount() {
+			return myWastedCount;
+		}
+
+		@Override
+		public String toString() {
+			return myShape + " searches=" + mySearchCount + " loaded=" + myLoadedCount + " requested="
+					+ myRequestedCount + " wasted=" + myWastedCount;
+		}
+	}
+}
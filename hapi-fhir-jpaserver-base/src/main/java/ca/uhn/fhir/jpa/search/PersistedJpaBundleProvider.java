@@ -120,6 +120,9 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
+
+	@Autowired(required = false)
+	protected AdaptiveSearchPreFetchSvc myAdaptiveSearchPreFetchSvc;
 	/*
 	 * Non autowired fields (will be different for every instance
 	 * of this class, since it's a prototype
@@ -264,6 +267,9 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 		// (when doing offset searches)
 		final List<JpaPid> pidsSubList = mySearchCoordinatorSvc.getResources(
 				myUuid, theFromIndex, theToIndex + 1, myRequest, requestPartitionId);
+		if (myAdaptiveSearchPreFetchSvc != null) {
+			myAdaptiveSearchPreFetchSvc.recordResultsRequested(getSearchEntity(), theToIndex, requestPartitionId);
+		}
 		// max list size should be either the entire list, or from - to length
 		int maxSize = Math.min(theToIndex - theFromIndex, pidsSubList.size());
 		theResponsePageBuilder.setTotalRequestedResourcesFetched(pidsSubList.size());
@@ -77,6 +77,10 @@ public class PersistedJpaSearchFirstPageBundleProvider extends PersistedJpaBundl
 		ourLog.trace("Fetching search resource PIDs from task: {}", mySearchTask.getClass());
 		final List<JpaPid> pids = mySearchTask.getResourcePids(theFromIndex, theToIndex + 1);
 		ourLog.trace("Done fetching search resource PIDs");
+		if (myAdaptiveSearchPreFetchSvc != null) {
+			myAdaptiveSearchPreFetchSvc.recordResultsRequested(
+					mySearchTask.getSearch(), theToIndex, getRequestPartitionId());
+		}
 
 		int countOfPids = pids.size();
 		;
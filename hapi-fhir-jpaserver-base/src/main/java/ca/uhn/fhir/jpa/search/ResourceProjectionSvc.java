@@ -0,0 +1,323 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
+import ca.uhn.fhir.jpa.dao.data.IResourceProjectionDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceProjectionEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.ResourceTag;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Maintains the compact projections of resources stored in the <code>HFJ_RES_PROJECTION</code>
+ * table for the resource types configured in {@link JpaStorageSettings#getSearchProjectionElements()},
+ * and loads search results from them when a request only asks for projected elements.
+ * <p>
+ * Resources loaded from a projection carry their id, version, last updated date and tags, but
+ * not <code>meta.source</code> or any element which isn't projected.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class ResourceProjectionSvc {
+
+	/**
+	 * These are populated from the resource entity, so they never need to be projected
+	 */
+	private static final Set<String> ELEMENTS_FROM_ENTITY = Set.of("id", "meta");
+
+	private final FhirContext myFhirContext;
+	private final JpaStorageSettings myStorageSettings;
+	private final IResourceProjectionDao myResourceProjectionDao;
+	private final IResourceTagDao myResourceTagDao;
+	private final IJpaStorageResourceParser myJpaStorageResourceParser;
+
+	/**
+	 * Constructor
+	 */
+	public ResourceProjectionSvc(
+			FhirContext theFhirContext,
+			JpaStorageSettings theStorageSettings,
+			IResourceProjectionDao theResourceProjectionDao,
+			IResourceTagDao theResourceTagDao,
+			IJpaStorageResourceParser theJpaStorageResourceParser) {
+		myFhirContext = theFhirContext;
+		myStorageSettings = theStorageSettings;
+		myResourceProjectionDao = theResourceProjectionDao;
+		myResourceTagDao = theResourceTagDao;
+		myJpaStorageResourceParser = theJpaStorageResourceParser;
+	}
+
+	/**
+	 * Stores, replaces or removes the projection of the given resource. This is called whenever
+	 * a resource entity is written, and does nothing for resource types which have no projection
+	 * configured.
+	 *
+	 * @param theEntity   The saved entity
+	 * @param theResource The resource which was saved, or <code>null</code> if it was deleted
+	 */
+	public void updateProjection(ResourceTable theEntity, @Nullable IBaseResource theResource) {
+		Set<String> elements = getProjectionElements(theEntity.getResourceType());
+		if (elements == null) {
+			return;
+		}
+
+		String projectionText = null;
+		if (theEntity.getDeleted() == null && theResource != null) {
+			projectionText = encodeProjection(theResource, elements);
+		}
+
+		ResourceProjectionEntity projection =
+				myResourceProjectionDao.findById(theEntity.getId()).orElse(null);
+		if (projectionText == null) {
+			if (projection != null) {
+				myResourceProjectionDao.delete(projection);
+			}
+			return;
+		}
+
+		if (projection == null) {
+			projection = new ResourceProjectionEntity().setResourceId(theEntity.getId());
+		}
+		projection.setPartitionId(theEntity.getPartitionId());
+		projection.setResourceVersion(theEntity.getVersion());
+		projection.setElementsHash(hashElements(theEntity.getResourceType(), elements));
+		projection.setProjectionText(projectionText);
+		myResourceProjectionDao.save(projection);
+	}
+
+	/**
+	 * Can search results of the given resource type be served from projections, given the
+	 * <code>_elements</code> and <code>_summary</code> parameters of the request?
+	 */
+	public boolean canServeRequest(String theResourceType, @Nullable RequestDetails theRequestDetails) {
+		Set<String> projectionElements = getProjectionElements(theResourceType);
+		if (projectionElements == null || theRequestDetails == null) {
+			return false;
+		}
+		Set<String> requestedElements = determineRequestedElements(theResourceType, theRequestDetails);
+		return requestedElements != null && projectionElements.containsAll(requestedElements);
+	}
+
+	/**
+	 * Loads the current projections of the given resources. Resources which are deleted or
+	 * have no current projection are not included in the returned map.
+	 *
+	 * @return A map of resource PID to the projected resource, with its metadata populated
+	 */
+	@Nonnull
+	public Map<Long, IBaseResource> loadProjections(String theResourceType, Collection<Long> theResourcePids) {
+		Set<String> elements = getProjectionElements(theResourceType);
+		if (elements == null || theResourcePids.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		List<Object[]> rows = myResourceProjectionDao.findCurrentProjections(
+				theResourcePids, hashElements(theResourceType, elements));
+
+		List<Long> pidsWithTags = new ArrayList<>();
+		for (Object[] next : rows) {
+			ResourceTable entity = (ResourceTable) next[0];
+			if (entity.isHasTags()) {
+				pidsWithTags.add(entity.getId());
+			}
+		}
+		Map<Long, List<ResourceTag>> tags = new HashMap<>();
+		if (!pidsWithTags.isEmpty()) {
+			for (ResourceTag next : myResourceTagDao.findByResourceIds(pidsWithTags)) {
+				tags.computeIfAbsent(next.getResourceId(), t -> new ArrayList<>())
+						.add(next);
+			}
+		}
+
+		Class<? extends IBaseResource> type =
+				myFhirContext.getResourceDefinition(theResourceType).getImplementingClass();
+		Map<Long, IBaseResource> retVal = new HashMap<>();
+		for (Object[] next : rows) {
+			ResourceTable entity = (ResourceTable) next[0];
+			IBaseResource resource = myFhirContext.newJsonParser().parseResource(type, (String) next[1]);
+			resource = myJpaStorageResourceParser.populateResourceMetadata(
+					entity,
+					false,
+					tags.getOrDefault(entity.getId(), Collections.emptyList()),
+					entity.getVersion(),
+					resource);
+			retVal.put(entity.getId(), resource);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the top level elements needed to respond to the request, or <code>null</code> if the
+	 * request needs the full resource
+	 */
+	@Nullable
+	private Set<String> determineRequestedElements(String theResourceType, RequestDetails theRequestDetails) {
+		Map<String, String[]> parameters = theRequestDetails.getParameters();
+		if (parameters == null) {
+			return null;
+		}
+		if (parameters.containsKey(Constants.PARAM_ELEMENTS + Constants.PARAM_ELEMENTS_EXCLUDE_MODIFIER)) {
+			return null;
+		}
+
+		String[] elementsValues = parameters.get(Constants.PARAM_ELEMENTS);
+		if (elementsValues != null) {
+			Set<String> retVal = new HashSet<>();
+			for (String nextValue : elementsValues) {
+				for (String next : nextValue.split(",")) {
+					String element = next.trim();
+					if (isBlank(element)) {
+						continue;
+					}
+					if (Character.isUpperCase(element.charAt(0)) || element.startsWith("*.")) {
+						// Elements scoped to another resource type don't apply here
+						String scope = element.substring(0, element.indexOf('.') + 1);
+						if (!scope.equals("*.") && !scope.equals(theResourceType + ".")) {
+							if (scope.isEmpty()) {
+								return null;
+							}
+							continue;
+						}
+						element = element.substring(scope.length());
+					}
+					int dotIdx = element.indexOf('.');
+					if (dotIdx != -1) {
+						element = element.substring(0, dotIdx);
+					}
+					if (element.equals("*") || element.startsWith("(")) {
+						return null;
+					}
+					retVal.add(element);
+				}
+			}
+			retVal.removeAll(ELEMENTS_FROM_ENTITY);
+			return retVal;
+		}
+
+		if (parameters.containsKey(Constants.PARAM_SUMMARY)
+				&& RestfulServerUtils.determineSummaryMode(theRequestDetails)
+						.equals(Collections.singleton(SummaryEnum.TRUE))) {
+			RuntimeResourceDefinition def = myFhirContext.getResourceDefinition(theResourceType);
+			return def.getChildren().stream()
+					.filter(BaseRuntimeChildDefinition::isSummary)
+					.map(BaseRuntimeChildDefinition::getElementName)
+					.filter(t -> !ELEMENTS_FROM_ENTITY.contains(t))
+					.collect(Collectors.toSet());
+		}
+
+		return null;
+	}
+
+	@Nullable
+	private String encodeProjection(IBaseResource theResource, Set<String> theElements) {
+		RuntimeResourceDefinition def = myFhirContext.getResourceDefinition(theResource);
+
+		// References to contained resources can't be resolved from a projection
+		BaseRuntimeChildDefinition contained = def.getChildByName("contained");
+		if (contained != null && !contained.getAccessor().getValues(theResource).isEmpty()) {
+			return null;
+		}
+
+		IBaseResource projection = def.newInstance();
+		for (BaseRuntimeChildDefinition nextChild : def.getChildren()) {
+			if (theElements.contains(nextChild.getElementName())) {
+				for (IBase nextValue : nextChild.getAccessor().getValues(theResource)) {
+					nextChild.getMutator().addValue(projection, nextValue);
+				}
+			}
+		}
+
+		/*
+		 * PROJ_TEXT is a non-unicode varchar on some databases, and its length is in bytes on
+		 * others, so the projection is stored as pure ASCII JSON. Escaping means its length in
+		 * characters is also its length in bytes, whatever the database character set.
+		 */
+		String retVal = escapeNonAscii(myFhirContext.newJsonParser().encodeResourceToString(projection));
+		if (retVal.length() > ResourceProjectionEntity.PROJECTION_TEXT_MAX_LENGTH) {
+			return null;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Replaces every non-ASCII character in the given JSON with a <code>&#92;uXXXX</code> escape,
+	 * which JSON parsers decode back to the original character
+	 */
+	@Nonnull
+	static String escapeNonAscii(String theJson) {
+		StringBuilder retVal = null;
+		for (int i = 0; i < theJson.length(); i++) {
+			char next = theJson.charAt(i);
+			if (next > 0x7F) {
+				if (retVal == null) {
+					retVal = new StringBuilder(theJson.length() + 16);
+					retVal.append(theJson, 0, i);
+				}
+				retVal.append(String.format("\\u%04x", (int) next));
+			} else if (retVal != null) {
+				retVal.append(next);
+			}
+		}
+		return retVal != null ? retVal.toString() : theJson;
+	}
+
+	@Nullable
+	private Set<String> getProjectionElements(String theResourceType) {
+		Set<String> retVal = myStorageSettings.getSearchProjectionElements().get(theResourceType);
+		if (retVal == null || retVal.isEmpty()) {
+			return null;
+		}
+		return retVal;
+	}
+
+	private static long hashElements(String theResourceType, Set<String> theElements) {
+		String key = theResourceType + "?" + String.join(",", new TreeSet<>(theElements));
+		return Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asLong();
+	}
+}
@@ -88,6 +88,7 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.util.QueryParameterUtils.DEFAULT_SYNC_SIZE;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -119,6 +120,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 	private long myMaxMillisToWaitForRemoteResults = DateUtils.MILLIS_PER_MINUTE;
 	private boolean myNeverUseLocalSearchForUnitTests;
 	private int mySyncSize = DEFAULT_SYNC_SIZE;
+	private AdaptiveSearchPreFetchSvc myAdaptiveSearchPreFetchSvc;
 
 	/**
 	 * Constructor
@@ -157,6 +159,16 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		myStorageInterceptorHooks = new StorageInterceptorHooksFacade(myInterceptorBroadcaster);
 	}
 
+	/**
+	 * Sets the service used to adapt the search pre-fetch thresholds to the demand for each query
+	 * shape. If this is not set, the thresholds are always used as configured.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setAdaptiveSearchPreFetchSvc(AdaptiveSearchPreFetchSvc theAdaptiveSearchPreFetchSvc) {
+		myAdaptiveSearchPreFetchSvc = theAdaptiveSearchPreFetchSvc;
+	}
+
 	@VisibleForTesting
 	Set<String> getActiveSearchIds() {
 		return myIdToSearchTask.keySet();
@@ -313,6 +325,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 							myOnRemoveSearchTask,
 							mySyncSize);
 					parameters.setLoadingThrottleForUnitTests(myLoadingThrottleForUnitTests);
+					parameters.setAdaptiveSearchPreFetchSvc(myAdaptiveSearchPreFetchSvc);
 					SearchContinuationTask task =
 							(SearchContinuationTask) myBeanFactory.getBean(SearchConfig.CONTINUE_TASK, parameters);
 					myIdToSearchTask.put(search.getUuid(), task);
@@ -525,8 +538,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		}
 
 		/*
-		 * In case there is no running search, if the total is listed as accurate we know one is coming
-		 * so let's wait a bit for it to show up
+		 * In case there is no running search, if the total is listed as accurate (or estimated, with
+		 * estimation enabled) we know one is coming so let's wait a bit for it to show up
 		 */
 		Optional<Search> search = myTxService
 				.withRequest(theRequestDetails)
@@ -534,7 +547,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		if (search.isPresent()) {
 			Optional<SearchParameterMap> searchParameterMap = search.get().getSearchParameterMap();
 			if (searchParameterMap.isPresent()
-					&& searchParameterMap.get().getSearchTotalMode() == SearchTotalModeEnum.ACCURATE) {
+					&& (searchParameterMap.get().getSearchTotalMode() == SearchTotalModeEnum.ACCURATE
+							|| isWantEstimatedCount(searchParameterMap.get(), myStorageSettings))) {
 				for (int i = 0; i < 10; i++) {
 					if (search.isPresent()) {
 						QueryParameterUtils.verifySearchHasntFailedOrThrowInternalErrorException(search.get());
@@ -571,6 +585,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 				myOnRemoveSearchTask,
 				mySyncSize);
 		stp.setLoadingThrottleForUnitTests(myLoadingThrottleForUnitTests);
+		stp.setAdaptiveSearchPreFetchSvc(myAdaptiveSearchPreFetchSvc);
 		SearchTask task = (SearchTask) myBeanFactory.getBean(SearchConfig.SEARCH_TASK, stp);
 		myIdToSearchTask.put(theSearch.getUuid(), task);
 		task.call();
@@ -640,7 +655,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 
 		Optional<Search> candidate = mySearchCacheSvc.findCandidatesForReuse(
 				theResourceType, theQueryString, createdCutoff, theRequestPartitionId);
-		return candidate.orElse(null);
+		// The results of the candidate may have been evicted from the result cache
+		return candidate.filter(mySearchResultCacheSvc::hasResults).orElse(null);
 	}
 
 	@Nullable
@@ -34,8 +34,10 @@ import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
+import ca.uhn.fhir.jpa.search.builder.SearchCursor;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.Constants;
@@ -53,11 +55,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
 
@@ -105,7 +109,8 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 		boolean theParamOrConfigWantCount = nonNull(theParams.getSearchTotalMode())
 				? isWantCount(theParams)
 				: isWantCount(myStorageSettings.getDefaultTotalMode());
-		boolean wantCount = theParamWantOnlyCount || theParamOrConfigWantCount;
+		boolean wantEstimatedCount = !theParamOrConfigWantCount && isWantEstimatedCount(theParams, myStorageSettings);
+		boolean wantCount = theParamWantOnlyCount || theParamOrConfigWantCount || wantEstimatedCount;
 
 		// Execute the query and make sure we return distinct results
 		return myTxService
@@ -180,6 +185,14 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						pids = pids.subList(0, resourcesToReturn);
 					}
 
+					// if there is a next page, give the client a cursor pointing after the last result
+					String nextPageCursor = null;
+					if (receivedResourceCount > pids.size()
+							&& !pids.isEmpty()
+							&& SearchCursor.isKeysetPaginated(myStorageSettings, theParams)) {
+						nextPageCursor = createNextPageCursor(pids.get(pids.size() - 1), theParams);
+					}
+
 					JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(pids, () -> theSb);
 					HookParams params = new HookParams()
 							.add(IPreResourceAccessDetails.class, accessDetails)
@@ -252,15 +265,18 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 					if (theParams.isOffsetQuery()) {
 						bundleProvider.setCurrentPageOffset(theParams.getOffset());
 						bundleProvider.setCurrentPageSize(theParams.getCount());
+						bundleProvider.setNextPageCursor(nextPageCursor);
 					}
 
-					if (wantCount) {
+					if (wantCount && !wantEstimatedCount) {
 						bundleProvider.setSize(count.intValue());
 					} else {
 						Integer queryCount = getQueryCount(theLoadSynchronousUpTo, theParams);
 						if (queryCount == null || queryCount > resources.size()) {
 							// No limit, last page or everything was fetched within the limit
 							bundleProvider.setSize(getTotalCount(queryCount, theParams.getOffset(), resources.size()));
+						} else if (wantEstimatedCount) {
+							bundleProvider.setSize(count.intValue());
 						} else {
 							bundleProvider.setSize(null);
 						}
@@ -300,6 +316,15 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 		myContext = theContext;
 	}
 
+	private String createNextPageCursor(JpaPid theLastPid, SearchParameterMap theParams) {
+		Date lastUpdated = null;
+		if (SearchCursor.isSortOnLastUpdated(theParams.getSort())) {
+			ResourceTable lastResource = myEntityManager.find(ResourceTable.class, theLastPid.getId());
+			lastUpdated = lastResource.getUpdatedDate();
+		}
+		return new SearchCursor(theLastPid.getId(), lastUpdated).encode();
+	}
+
 	private int getTotalCount(Integer queryCount, Integer offset, int queryResultCount) {
 		if (queryCount != null) {
 			if (offset != null) {
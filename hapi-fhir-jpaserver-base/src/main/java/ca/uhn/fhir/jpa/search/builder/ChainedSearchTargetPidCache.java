@@ -0,0 +1,331 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.IHapiBootOrder;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Short lived cache of the PIDs matched by the target side of a chained search, e.g. the
+ * PIDs of <code>Patient?identifier=http://foo|123</code> for the search
+ * <code>Observation?subject:Patient.identifier=http://foo|123</code>. When the target side
+ * is selective (i.e. it matches at most {@link #MAXIMUM_PIDS} resources) the chain can be
+ * rendered as a simple <code>IN</code> list instead of a join, and the same list can be
+ * reused by subsequent searches until it expires.
+ * <p>
+ * Entries are discarded whenever a resource of the target type is created, updated or
+ * deleted on this server, both when the change is made and again when it is committed.
+ * Changes made by other servers sharing the same database are only picked up once the
+ * entry expires, which is why the expiry is expected to be short.
+ * </p>
+ *
+ * @see JpaStorageSettings#setChainedSearchTargetPidCacheMillis(long)
+ * @since 7.2.0
+ */
+public class ChainedSearchTargetPidCache {
+
+	/**
+	 * Target searches matching more resources than this aren't considered selective,
+	 * and are still rendered as a join
+	 */
+	public static final int MAXIMUM_PIDS = 100;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ChainedSearchTargetPidCache.class);
+	private static final int MAXIMUM_ENTRIES = 10000;
+
+	private final ConcurrentHashMap<String, AtomicLong> myResourceTypeGenerations = new ConcurrentHashMap<>();
+	private final JpaStorageSettings myStorageSettings;
+	private volatile Cache<CacheKey, CachedPids> myCache;
+	private long myCacheMillis;
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@Autowired
+	private IInterceptorService myInterceptorService;
+
+	/**
+	 * Constructor
+	 */
+	public ChainedSearchTargetPidCache(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@EventListener(classes = {ContextRefreshedEvent.class})
+	@Order(IHapiBootOrder.REGISTER_INTERCEPTORS)
+	public void start() {
+		myInterceptorService.registerInterceptor(this);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myInterceptorService.unregisterInterceptor(this);
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.getChainedSearchTargetPidCacheMillis() > 0;
+	}
+
+	/**
+	 * Returns the PIDs of the resources of the given type which match any of the given values
+	 * for the given search parameter, or <code>null</code> if the cache is disabled or more than
+	 * {@link #MAXIMUM_PIDS} resources match.
+	 */
+	@Nullable
+	public List<Long> getTargetPids(
+			@Nonnull String theResourceType,
+			@Nonnull String theParamName,
+			@Nonnull List<IQueryParameterType> theOrValues,
+			RequestDetails theRequest,
+			@Nonnull RequestPartitionId theRequestPartitionId) {
+		Cache<CacheKey, CachedPids> cache = getCache();
+		if (cache == null) {
+			return null;
+		}
+
+		List<String> values = theOrValues.stream()
+				.map(t -> t.getQueryParameterQualifier() + "=" + t.getValueAsQueryToken(myFhirContext))
+				.collect(Collectors.toList());
+		CacheKey key = new CacheKey(theRequestPartitionId, theResourceType, theParamName, values);
+		long generation = getGeneration(theResourceType).get();
+
+		CachedPids cached = cache.getIfPresent(key);
+		if (cached == null || cached.myGeneration != generation) {
+			cached = new CachedPids(
+					generation,
+					loadTargetPids(theResourceType, theParamName, theOrValues, theRequest, theRequestPartitionId));
+			cache.put(key, cached);
+		}
+		return cached.myPids;
+	}
+
+	@Nullable
+	private List<Long> loadTargetPids(
+			String theResourceType,
+			String theParamName,
+			List<IQueryParameterType> theOrValues,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(theResourceType);
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.put(theParamName, Collections.singletonList(new ArrayList<>(theOrValues)));
+
+		ISearchBuilder<JpaPid> builder =
+				mySearchBuilderFactory.newSearchBuilder(dao, theResourceType, dao.getResourceType());
+		builder.setMaxResultsToFetch(MAXIMUM_PIDS + 1);
+
+		List<Long> retVal = new ArrayList<>();
+		SearchRuntimeDetails searchRuntimeDetails =
+				new SearchRuntimeDetails(theRequest, UUID.randomUUID().toString());
+		try (IResultIterator<JpaPid> iter =
+				builder.createQuery(map, searchRuntimeDetails, theRequest, theRequestPartitionId)) {
+			while (iter.hasNext()) {
+				retVal.add(iter.next().getId());
+				if (retVal.size() > MAXIMUM_PIDS) {
+					ourLog.debug("Chain target {}?{} is not selective, not caching PIDs", theResourceType, map);
+					return null;
+				}
+			}
+		} catch (IOException e) {
+			ourLog.error("IO failure during database access", e);
+			return null;
+		}
+		return Collections.unmodifiableList(retVal);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_CREATED)
+	public void created(IBaseResource theResource) {
+		invalidate(theResource);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_UPDATED)
+	public void updated(IBaseResource theResource) {
+		invalidate(theResource);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_DELETED)
+	public void deleted(IBaseResource theResource) {
+		invalidate(theResource);
+	}
+
+	private void invalidate(IBaseResource theResource) {
+		if (theResource == null || myCache == null) {
+			return;
+		}
+
+		String resourceType = myFhirContext.getResourceType(theResource);
+		if ("SearchParameter".equals(resourceType)) {
+			// Search parameter changes can affect what any search matches
+			invalidateAll();
+			return;
+		}
+
+		/*
+		 * Searches which started before the change was committed can't see it and may
+		 * cache stale results, so we invalidate again once the change is committed.
+		 */
+		AtomicLong generation = getGeneration(resourceType);
+		generation.incrementAndGet();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					generation.incrementAndGet();
+				}
+			});
+		}
+	}
+
+	public void invalidateAll() {
+		Cache<CacheKey, CachedPids> cache = myCache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	private AtomicLong getGeneration(String theResourceType) {
+		return myResourceTypeGenerations.computeIfAbsent(theResourceType, t -> new AtomicLong());
+	}
+
+	@Nullable
+	private Cache<CacheKey, CachedPids> getCache() {
+		long cacheMillis = myStorageSettings.getChainedSearchTargetPidCacheMillis();
+		if (cacheMillis <= 0) {
+			myCache = null;
+			return null;
+		}
+
+		Cache<CacheKey, CachedPids> retVal = myCache;
+		if (retVal == null || myCacheMillis != cacheMillis) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null || myCacheMillis != cacheMillis) {
+					retVal = CacheFactory.build(cacheMillis, MAXIMUM_ENTRIES);
+					myCacheMillis = cacheMillis;
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private static class CachedPids {
+
+		private final long myGeneration;
+		private final List<Long> myPids;
+
+		private CachedPids(long theGeneration, @Nullable List<Long> thePids) {
+			myGeneration = theGeneration;
+			myPids = thePids;
+		}
+	}
+
+	private static class CacheKey {
+
+		private final RequestPartitionId myRequestPartitionId;
+		private final String myResourceType;
+		private final String myParamName;
+		private final List<String> myValues;
+		private final int myHashCode;
+
+		private CacheKey(
+				RequestPartitionId theRequestPartitionId,
+				String theResourceType,
+				String theParamName,
+				List<String> theValues) {
+			myRequestPartitionId = theRequestPartitionId;
+			myResourceType = theResourceType;
+			myParamName = theParamName;
+			myValues = theValues;
+			myHashCode = new HashCodeBuilder()
+					.append(myRequestPartitionId)
+					.append(myResourceType)
+					.append(myParamName)
+					.append(myValues)
+					.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			boolean retVal = false;
+			if (theO instanceof CacheKey) {
+				CacheKey that = (CacheKey) theO;
+				retVal = new EqualsBuilder()
+						.append(myRequestPartitionId, that.myRequestPartitionId)
+						.append(myResourceType, that.myResourceType)
+						.append(myParamName, that.myParamName)
+						.append(myValues, that.myValues)
+						.isEquals();
+			}
+			return retVal;
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
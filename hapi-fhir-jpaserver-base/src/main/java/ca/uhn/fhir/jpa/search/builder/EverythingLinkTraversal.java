@@ -0,0 +1,235 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.dao.JpaPidList;
+import ca.uhn.fhir.jpa.model.util.LongHashSet;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import com.google.common.collect.Lists;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static ca.uhn.fhir.jpa.model.util.JpaConstants.UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE;
+
+/**
+ * Walks outgoing resource links for the <code>$everything</code> operation, starting from the
+ * resources which matched the operation's main query. Each call to {@link #nextRound()} follows
+ * the links of the resources found by the previous round, so the results can be returned page by
+ * page as they are found instead of being collected up front.
+ * <p>
+ * The resource type of every resource found by a round is known, so the links of resource types
+ * which aren't wanted are skipped without querying them. Each round is queried in chunks, and when
+ * a {@link SearchPartitionFanOutSvc} is supplied, the chunks are queried in parallel. The PIDs which
+ * have already been visited are tracked in a {@link LongHashSet}.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class EverythingLinkTraversal {
+
+	private final JdbcTemplate myJdbcTemplate;
+	private final SearchPartitionFanOutSvc myFanOutSvc;
+	private final SearchParameterMap.EverythingModeEnum myEverythingMode;
+	private final Set<String> mySourceResourceTypes;
+	private final boolean myIncludeTargetVersions;
+	private final int myChunkSize;
+	private final LongHashSet myVisited = new LongHashSet();
+	private List<JpaPid> myFrontier = new JpaPidList();
+	private int myRoundCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theJdbcTemplate         The template used to query the resource links
+	 * @param theFanOutSvc            If not <code>null</code>, used to query the chunks of each round in parallel
+	 * @param theEverythingMode       The $everything mode
+	 * @param theSourceResourceTypes  If not <code>null</code>, only links from resources of these types (i.e. the
+	 *                                <code>_type</code> parameter) are followed
+	 * @param theIncludeTargetVersions Should the versions of versioned references be loaded?
+	 * @param theChunkSize            The maximum number of PIDs to query at once
+	 */
+	public EverythingLinkTraversal(
+			@Nonnull JdbcTemplate theJdbcTemplate,
+			@Nullable SearchPartitionFanOutSvc theFanOutSvc,
+			@Nonnull SearchParameterMap.EverythingModeEnum theEverythingMode,
+			@Nullable Set<String> theSourceResourceTypes,
+			boolean theIncludeTargetVersions,
+			int theChunkSize) {
+		Validate.notNull(theJdbcTemplate, "theJdbcTemplate must not be null");
+		Validate.notNull(theEverythingMode, "theEverythingMode must not be null");
+		Validate.isTrue(theChunkSize > 0, "theChunkSize must be positive");
+		myJdbcTemplate = theJdbcTemplate;
+		myFanOutSvc = theFanOutSvc;
+		myEverythingMode = theEverythingMode;
+		mySourceResourceTypes = theSourceResourceTypes;
+		myIncludeTargetVersions = theIncludeTargetVersions;
+		myChunkSize = theChunkSize;
+	}
+
+	/**
+	 * Adds resources to start the traversal from. These resources are never returned by
+	 * {@link #nextRound()}.
+	 */
+	public void addStartingPids(@Nonnull Collection<JpaPid> thePids) {
+		for (JpaPid next : thePids) {
+			if (myVisited.add(next.getId())) {
+				myFrontier.add(next);
+			}
+		}
+	}
+
+	public boolean hasMoreRounds() {
+		return !myFrontier.isEmpty();
+	}
+
+	public int getRoundCount() {
+		return myRoundCount;
+	}
+
+	/**
+	 * Follows the links of the resources found by the previous round (or the starting resources,
+	 * for the first round) and returns the resources which haven't been visited yet.
+	 */
+	@Nonnull
+	public List<JpaPid> nextRound() {
+		if (myFrontier.isEmpty()) {
+			return Collections.emptyList();
+		}
+		myRoundCount++;
+
+		List<JpaPid> followFrom = new JpaPidList(myFrontier.size());
+		for (JpaPid next : myFrontier) {
+			if (next.getResourceType() == null || isFollowLinksFrom(next.getResourceType())) {
+				followFrom.add(next);
+			}
+		}
+
+		List<LinkQuery> queries = new ArrayList<>();
+		for (List<JpaPid> nextChunk : Lists.partition(followFrom, myChunkSize)) {
+			boolean haveUntypedPids = nextChunk.stream().anyMatch(t -> t.getResourceType() == null);
+			queries.add(new LinkQuery(haveUntypedPids, JpaPid.toLongList(nextChunk)));
+		}
+
+		List<List<JpaPid>> results;
+		if (myFanOutSvc != null) {
+			results = myFanOutSvc.map(queries, this::query);
+		} else {
+			results = new ArrayList<>(queries.size());
+			for (LinkQuery next : queries) {
+				results.add(query(next));
+			}
+		}
+
+		List<JpaPid> retVal = new JpaPidList();
+		for (List<JpaPid> nextResult : results) {
+			for (JpaPid next : nextResult) {
+				if (myVisited.add(next.getId())) {
+					retVal.add(next);
+				}
+			}
+		}
+		myFrontier = retVal;
+		return retVal;
+	}
+
+	private boolean isFollowLinksFrom(String theResourceType) {
+		if (mySourceResourceTypes != null && !mySourceResourceTypes.contains(theResourceType)) {
+			return false;
+		}
+		return myEverythingMode != SearchParameterMap.EverythingModeEnum.PATIENT_INSTANCE
+				|| !UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE.contains(theResourceType);
+	}
+
+	private List<JpaPid> query(LinkQuery theQuery) {
+		List<Object> args = new ArrayList<>(theQuery.myPids);
+		StringBuilder sql = new StringBuilder();
+		sql.append("SELECT r.TARGET_RESOURCE_ID, r.TARGET_RESOURCE_TYPE");
+		if (myIncludeTargetVersions) {
+			sql.append(", r.TARGET_RESOURCE_VERSION");
+		}
+		sql.append(" FROM HFJ_RES_LINK r WHERE r.SRC_RESOURCE_ID IN (");
+		appendPlaceholders(sql, theQuery.myPids.size());
+		sql.append(") AND r.TARGET_RESOURCE_ID IS NOT NULL");
+
+		// The resource type is only unknown for the starting resources, so they are filtered here
+		if (theQuery.myFilterSourceTypes) {
+			if (mySourceResourceTypes != null) {
+				sql.append(" AND r.SOURCE_RESOURCE_TYPE IN (");
+				appendPlaceholders(sql, mySourceResourceTypes.size());
+				sql.append(")");
+				args.addAll(mySourceResourceTypes);
+			}
+			if (myEverythingMode == SearchParameterMap.EverythingModeEnum.PATIENT_INSTANCE) {
+				sql.append(" AND r.SOURCE_RESOURCE_TYPE NOT IN (");
+				appendPlaceholders(sql, UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE.size());
+				sql.append(")");
+				args.addAll(UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE);
+			}
+		}
+
+		// When calling $everything on a Patient instance, we don't want to recurse into new Patient resources
+		if (myEverythingMode == SearchParameterMap.EverythingModeEnum.PATIENT_INSTANCE) {
+			sql.append(" AND r.TARGET_RESOURCE_TYPE <> 'Patient'");
+		}
+
+		return myJdbcTemplate.query(
+				sql.toString(),
+				(rs, rowNum) -> {
+					Long version = null;
+					if (myIncludeTargetVersions) {
+						version = rs.getLong(3);
+						if (rs.wasNull()) {
+							version = null;
+						}
+					}
+					return JpaPid.fromIdAndVersionAndResourceType(rs.getLong(1), version, rs.getString(2));
+				},
+				args.toArray());
+	}
+
+	private static void appendPlaceholders(StringBuilder theSql, int theCount) {
+		for (int i = 0; i < theCount; i++) {
+			if (i > 0) {
+				theSql.append(',');
+			}
+			theSql.append('?');
+		}
+	}
+
+	private static class LinkQuery {
+
+		private final boolean myFilterSourceTypes;
+		private final List<Long> myPids;
+
+		private LinkQuery(boolean theFilterSourceTypes, List<Long> thePids) {
+			myFilterSourceTypes = theFilterSourceTypes;
+			myPids = thePids;
+		}
+	}
+}
@@ -74,6 +74,7 @@ import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.HasParam;
 import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.SpecialParam;
@@ -239,15 +240,51 @@ public class QueryStack {
 	}
 
 	public void addSortOnLastUpdated(boolean theAscending) {
-		ResourceTablePredicateBuilder resourceTablePredicateBuilder;
+		ResourceTablePredicateBuilder resourceTablePredicateBuilder = getOrJoinResourceTableForSort();
+		mySqlBuilder.addSortDate(resourceTablePredicateBuilder.getColumnLastUpdated(), theAscending, myUseAggregate);
+	}
+
+	/**
+	 * Adds the ordering for a keyset paginated query, which is the <code>_lastUpdated</code> sort
+	 * (if requested) followed by the resource PID as a tie-breaker. If a cursor is supplied, a
+	 * predicate is also added so that only rows ordered after the cursor position are returned.
+	 */
+	public void addSortAndPredicateForKeysetPagination(
+			boolean theSortOnLastUpdated, boolean theAscending, @Nullable SearchCursor theCursor) {
+		DbColumn resourceIdColumn =
+				mySqlBuilder.getOrCreateFirstPredicateBuilder().getResourceIdColumn();
+		DbColumn lastUpdatedColumn = null;
+		if (theSortOnLastUpdated) {
+			lastUpdatedColumn = getOrJoinResourceTableForSort().getColumnLastUpdated();
+			mySqlBuilder.addSortDate(lastUpdatedColumn, theAscending, myUseAggregate);
+		}
+		mySqlBuilder.addSortNumeric(resourceIdColumn, theAscending);
+
+		if (theCursor != null) {
+			ParamPrefixEnum comparator = theAscending ? ParamPrefixEnum.GREATERTHAN : ParamPrefixEnum.LESSTHAN;
+			Condition predicate = mySqlBuilder.createConditionForValueWithComparator(
+					comparator, resourceIdColumn, theCursor.getResourcePid());
+			if (lastUpdatedColumn != null) {
+				// (lastUpdated, pid) > (?, ?) - written out, since not all databases support row value comparisons
+				Condition sameLastUpdated = ComboCondition.and(
+						BinaryCondition.equalTo(
+								lastUpdatedColumn, mySqlBuilder.generatePlaceholder(theCursor.getLastUpdated())),
+						predicate);
+				predicate = ComboCondition.or(
+						mySqlBuilder.createConditionForValueWithComparator(
+								comparator, lastUpdatedColumn, theCursor.getLastUpdated()),
+						sameLastUpdated);
+			}
+			mySqlBuilder.addPredicate(predicate);
+		}
+	}
+
+	private ResourceTablePredicateBuilder getOrJoinResourceTableForSort() {
 		BaseJoiningPredicateBuilder firstPredicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
 		if (firstPredicateBuilder instanceof ResourceTablePredicateBuilder) {
-			resourceTablePredicateBuilder = (ResourceTablePredicateBuilder) firstPredicateBuilder;
-		} else {
-			resourceTablePredicateBuilder =
-					mySqlBuilder.addResourceTablePredicateBuilder(firstPredicateBuilder.getResourceIdColumn());
+			return (ResourceTablePredicateBuilder) firstPredicateBuilder;
 		}
-		mySqlBuilder.addSortDate(resourceTablePredicateBuilder.getColumnLastUpdated(), theAscending, myUseAggregate);
+		return mySqlBuilder.addResourceTablePredicateBuilder(firstPredicateBuilder.getResourceIdColumn());
 	}
 
 	public void addSortOnNumber(String theResourceName, String theParamName, boolean theAscending) {
@@ -48,12 +48,17 @@ import ca.uhn.fhir.jpa.entity.ResourceSearchView;
 import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.dao.JpaPidList;
+import ca.uhn.fhir.jpa.model.dao.JpaPidSet;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceTag;
 import ca.uhn.fhir.jpa.model.search.SearchBuilderLoadIncludesParameters;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
+import ca.uhn.fhir.jpa.partition.IPartitionLookupSvc;
+import ca.uhn.fhir.jpa.search.ResourceProjectionSvc;
 import ca.uhn.fhir.jpa.search.SearchConstants;
 import ca.uhn.fhir.jpa.search.builder.models.ResolvedSearchQueryExecutor;
 import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
@@ -81,7 +86,6 @@ import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
-import ca.uhn.fhir.rest.param.ParameterUtil;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
@@ -93,6 +97,7 @@ import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.StringUtil;
 import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Streams;
 import com.healthmarketscience.sqlbuilder.Condition;
 import jakarta.annotation.Nonnull;
@@ -127,11 +132,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.model.util.JpaConstants.UNDESIRED_RESOURCE_LINKAGES_FOR_EVERYTHING_ON_PATIENT_INSTANCE;
 import static ca.uhn.fhir.jpa.search.builder.QueryStack.LOCATION_POSITION;
 import static ca.uhn.fhir.jpa.search.builder.QueryStack.SearchForIdsParams.with;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -153,6 +162,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public static final int MAXIMUM_PAGE_SIZE_FOR_TESTING = 50;
 	public static final String RESOURCE_ID_ALIAS = "resource_id";
 	public static final String RESOURCE_VERSION_ALIAS = "resource_version";
+
+	/**
+	 * Planner row estimates below this aren't used for estimated totals, since counting that
+	 * few rows is cheap and planner estimates for small results are often far off
+	 */
+	public static final long MINIMUM_PLANNER_ESTIMATED_TOTAL = 1000;
+
 	private static final Logger ourLog = LoggerFactory.getLogger(SearchBuilder.class);
 	private static final JpaPid NO_MORE = JpaPid.fromId(-1L);
 	private static final String MY_TARGET_RESOURCE_PID = "myTargetResourcePid";
@@ -160,6 +176,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	private static final String MY_TARGET_RESOURCE_TYPE = "myTargetResourceType";
 	private static final String MY_SOURCE_RESOURCE_TYPE = "mySourceResourceType";
 	private static final String MY_TARGET_RESOURCE_VERSION = "myTargetResourceVersion";
+	private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("rows=([0-9]+)");
+
 	public static boolean myUseMaxPageSize50ForTest = false;
 	protected final IInterceptorBroadcaster myInterceptorBroadcaster;
 	protected final IResourceTagDao myResourceTagDao;
@@ -188,6 +206,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	private Set<JpaPid> myPidSet;
 	private boolean myHasNextIteratorQuery = false;
 	private RequestPartitionId myRequestPartitionId;
+	private boolean mySeparateConnectionsAllowed;
 
 	@Autowired(required = false)
 	private IFulltextSearchSvc myFulltextSearchSvc;
@@ -198,6 +217,21 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
+	@Autowired(required = false)
+	private SearchResultParsingSvc mySearchResultParsingSvc;
+
+	@Autowired(required = false)
+	private SearchTotalEstimateCache mySearchTotalEstimateCache;
+
+	@Autowired(required = false)
+	private SearchPartitionFanOutSvc mySearchPartitionFanOutSvc;
+
+	@Autowired(required = false)
+	private ResourceProjectionSvc myResourceProjectionSvc;
+
+	@Autowired(required = false)
+	private IPartitionLookupSvc myPartitionLookupSvc;
+
 	/**
 	 * Constructor
 	 */
@@ -321,6 +355,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			return count;
 		}
 
+		if (mySearchTotalEstimateCache != null
+				&& theParams.getEverythingMode() == null
+				&& isWantEstimatedCount(theParams, myStorageSettings)) {
+			return createEstimatedCountQuery(theParams, theRequest);
+		}
+
 		List<ISearchQueryExecutor> queries = createQuery(theParams.clone(), null, null, null, true, theRequest, null);
 		if (queries.isEmpty()) {
 			return 0L;
@@ -329,12 +369,103 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * Returns a cached total if we have one. Otherwise uses the query planner's estimate of the
+	 * number of matching rows on PostgreSQL, and actually counts the matching rows if there is no
+	 * such estimate or the estimate is small.
+	 */
+	private Long createEstimatedCountQuery(SearchParameterMap theParams, RequestDetails theRequest) {
+		Long retVal = mySearchTotalEstimateCache.get(myResourceName, theParams, myRequestPartitionId);
+		if (retVal != null) {
+			ourLog.debug("Using cached estimated total {} for {}", retVal, theParams);
+			return retVal;
+		}
+
+		if (myDialectProvider.isPostgresDialect()) {
+			retVal = estimateTotalFromQueryPlan(theParams, theRequest);
+		}
+
+		if (retVal == null) {
+			List<ISearchQueryExecutor> queries =
+					createQuery(theParams.clone(), null, null, null, true, theRequest, null);
+			try {
+				retVal = queries.isEmpty() ? 0L : queries.get(0).next();
+			} finally {
+				queries.forEach(ISearchQueryExecutor::close);
+			}
+		}
+
+		mySearchTotalEstimateCache.put(myResourceName, theParams, myRequestPartitionId, retVal);
+		return retVal;
+	}
+
+	@Nullable
+	private Long estimateTotalFromQueryPlan(SearchParameterMap theParams, RequestDetails theRequest) {
+		/*
+		 * We explain the regular (unsorted and unlimited) search query rather than the count
+		 * query, since the top node of its plan estimates the number of rows it returns
+		 */
+		Integer maxResultsToFetch = myMaxResultsToFetch;
+		List<ISearchQueryExecutor> queries;
+		try {
+			myMaxResultsToFetch = null;
+			queries = createQuery(theParams.clone(), null, null, null, false, theRequest, null);
+		} finally {
+			myMaxResultsToFetch = maxResultsToFetch;
+		}
+
+		// We only need the SQL, the queries themselves are never executed
+		GeneratedSql generatedSql = null;
+		try {
+			if (queries.size() == 1 && queries.get(0) instanceof SearchQueryExecutor) {
+				generatedSql = ((SearchQueryExecutor) queries.get(0)).getGeneratedSql();
+			}
+		} finally {
+			queries.forEach(ISearchQueryExecutor::close);
+		}
+		if (generatedSql == null) {
+			return null;
+		}
+
+		Query query = myEntityManager.createNativeQuery("EXPLAIN " + generatedSql.getSql());
+		List<Object> bindVariables = generatedSql.getBindVariables();
+		for (int i = 0; i < bindVariables.size(); i++) {
+			query.setParameter(i + 1, bindVariables.get(i));
+		}
+		List<?> plan = query.getResultList();
+		if (plan.isEmpty()) {
+			return null;
+		}
+
+		Long retVal = parseQueryPlanEstimate(String.valueOf(plan.get(0)));
+		ourLog.debug("Query planner estimates {} rows for {}", retVal, theParams);
+		return retVal;
+	}
+
+	/**
+	 * Extracts the estimated number of rows from the top node of a PostgreSQL query plan, e.g.
+	 * <code>Hash Join  (cost=1.23..4.56 rows=7890 width=8)</code>
+	 *
+	 * @return The estimate, or <code>null</code> if the plan has no estimate or the estimate is too
+	 * small to be used instead of an actual count
+	 */
+	@VisibleForTesting
+	@Nullable
+	static Long parseQueryPlanEstimate(String theTopPlanNode) {
+		Matcher matcher = PLAN_ROWS_PATTERN.matcher(theTopPlanNode);
+		if (!matcher.find()) {
+			return null;
+		}
+		long estimate = Long.parseLong(matcher.group(1));
+		return estimate >= MINIMUM_PLANNER_ESTIMATED_TOTAL ? estimate : null;
+	}
+
 	/**
 	 * @param thePidSet May be null
 	 */
 	@Override
 	public void setPreviouslyAddedResourcePids(@Nonnull List<JpaPid> thePidSet) {
-		myPidSet = new HashSet<>(thePidSet);
+		myPidSet = new JpaPidSet(thePidSet);
 	}
 
 	@SuppressWarnings("ConstantConditions")
@@ -350,7 +481,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		init(theParams, theSearchRuntimeDetails.getSearchUuid(), theRequestPartitionId);
 
 		if (myPidSet == null) {
-			myPidSet = new HashSet<>();
+			myPidSet = new JpaPidSet();
 		}
 
 		return new QueryIterator(theSearchRuntimeDetails, theRequest);
@@ -445,6 +576,11 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 								t -> doCreateChunkedQueries(
 										theParams, t, theOffset, sort, theCountOnlyFlag, theRequest, queries));
 			}
+		} else if (isPartitionFanOutCandidate(sort, theOffset, theCountOnlyFlag)
+				&& createPartitionFanOutQuery(theParams, sort, theCountOnlyFlag, theRequest, queries)) {
+			ourLog.debug(
+					"Searched {} partitions in parallel",
+					myRequestPartitionId.getPartitionIds().size());
 		} else {
 			// do everything in the database.
 			createChunkedQuery(
@@ -454,6 +590,113 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		return queries;
 	}
 
+	/**
+	 * Can this search be executed as one statement per partition, with the statements run in
+	 * parallel? This requires that the results can be merged using only their PIDs.
+	 */
+	private boolean isPartitionFanOutCandidate(SortSpec theSort, Integer theOffset, boolean theCountOnlyFlag) {
+		if (mySearchPartitionFanOutSvc == null || !mySearchPartitionFanOutSvc.isEnabled()) {
+			return false;
+		}
+		if (myRequestPartitionId.isAllPartitions()
+				|| !myRequestPartitionId.hasPartitionIds()
+				|| myRequestPartitionId.getPartitionIds().size() < 2) {
+			return false;
+		}
+		if (theOffset != null || myParams.getEverythingMode() != null) {
+			return false;
+		}
+		if (!theCountOnlyFlag && SearchCursor.isKeysetPaginated(myStorageSettings, myParams)) {
+			return false;
+		}
+		if (theSort != null && (!Constants.PARAM_PID.equals(theSort.getParamName()) || theSort.getChain() != null)) {
+			return false;
+		}
+
+		/*
+		 * The per-partition statements run on connections of their own, so they can't see changes
+		 * made by the current transaction
+		 */
+		return isSeparateConnectionsUsable();
+	}
+
+	/**
+	 * Can statements for this search be run on connections other than the current transaction's?
+	 */
+	private boolean isSeparateConnectionsUsable() {
+		return mySeparateConnectionsAllowed || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	/**
+	 * Generates one statement per partition, runs them in parallel and adds an executor over the
+	 * merged results. Returns <code>false</code> without adding anything if any partition can't be
+	 * searched using a single plain statement.
+	 */
+	private boolean createPartitionFanOutQuery(
+			SearchParameterMap theParams,
+			SortSpec theSort,
+			boolean theCountOnlyFlag,
+			RequestDetails theRequest,
+			List<ISearchQueryExecutor> theSearchQueryExecutors) {
+		RequestPartitionId requestPartitionId = myRequestPartitionId;
+		SearchParameterMap params = myParams;
+		List<GeneratedSql> partitionSqls = new ArrayList<>();
+		try {
+			for (Integer nextPartitionId : requestPartitionId.getPartitionIds()) {
+				// Query generation can consume parameters, so each partition gets its own copy
+				myRequestPartitionId =
+						RequestPartitionId.fromPartitionId(nextPartitionId, requestPartitionId.getPartitionDate());
+				myParams = params.clone();
+
+				List<ISearchQueryExecutor> partitionQueries = new ArrayList<>();
+				createChunkedQuery(
+						theParams.clone(), theSort, null, null, theCountOnlyFlag, theRequest, null, partitionQueries);
+				for (ISearchQueryExecutor next : partitionQueries) {
+					if (!(next instanceof SearchQueryExecutor)
+							|| ((SearchQueryExecutor) next).getGeneratedSql() == null) {
+						return false;
+					}
+					partitionSqls.add(((SearchQueryExecutor) next).getGeneratedSql());
+				}
+			}
+		} finally {
+			myRequestPartitionId = requestPartitionId;
+			myParams = params;
+		}
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(myEntityManagerFactory.getDataSource());
+		jdbcTemplate.setFetchSize(myFetchSize);
+		if (myMaxResultsToFetch != null) {
+			jdbcTemplate.setMaxRows(myMaxResultsToFetch);
+		}
+		List<List<Long>> partitionResults = mySearchPartitionFanOutSvc.map(
+				partitionSqls,
+				t -> jdbcTemplate.query(
+						t.getSql(),
+						(rs, rowNum) -> rs.getLong(1),
+						t.getBindVariables().toArray()));
+
+		List<Long> pids;
+		if (theCountOnlyFlag) {
+			long count = 0;
+			for (List<Long> next : partitionResults) {
+				count += next.isEmpty() ? 0 : next.get(0);
+			}
+			pids = Collections.singletonList(count);
+		} else if (theSort != null) {
+			boolean ascending = theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC;
+			pids = SearchPartitionFanOutSvc.mergeSorted(partitionResults, ascending, myMaxResultsToFetch);
+		} else {
+			pids = partitionResults.stream()
+					.flatMap(List::stream)
+					.limit(myMaxResultsToFetch != null ? myMaxResultsToFetch : Long.MAX_VALUE)
+					.collect(Collectors.toList());
+		}
+
+		theSearchQueryExecutors.add(new ResolvedSearchQueryExecutor(pids));
+		return true;
+	}
+
 	/**
 	 * Check to see if query should use Hibernate Search, and error if the query can't continue.
 	 *
@@ -729,7 +972,19 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		 * If we have a sort, we wrap the criteria search (the search that actually
 		 * finds the appropriate resources) in an outer search which is then sorted
 		 */
-		if (sort != null) {
+		Integer offset = theOffset;
+		if (!theCountOnlyFlag && thePidList == null && SearchCursor.isKeysetPaginated(myStorageSettings, theParams)) {
+			/*
+			 * Keyset pagination: if the client supplied the cursor from the previous page we
+			 * seek directly to it instead of skipping over all previous rows using OFFSET
+			 */
+			SearchCursor cursor = SearchCursor.parse(theParams.getSearchCursor(), sort);
+			queryStack3.addSortAndPredicateForKeysetPagination(
+					SearchCursor.isSortOnLastUpdated(sort), SearchCursor.isAscending(sort), cursor);
+			if (cursor != null) {
+				offset = null;
+			}
+		} else if (sort != null) {
 			assert !theCountOnlyFlag;
 
 			createSort(queryStack3, sort, theParams);
@@ -738,7 +993,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		/*
 		 * Now perform the search
 		 */
-		GeneratedSql generatedSql = sqlBuilder.generate(theOffset, myMaxResultsToFetch);
+		GeneratedSql generatedSql = sqlBuilder.generate(offset, myMaxResultsToFetch);
 		if (!generatedSql.isMatchNothing()) {
 			SearchQueryExecutor executor =
 					mySqlBuilderFactory.newSearchQueryExecutor(generatedSql, myMaxResultsToFetch);
@@ -1066,7 +1321,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// -- preload all tags with tag definition if any
 		Map<Long, Collection<ResourceTag>> tagMap = getResourceTagMap(resourceSearchViewList);
 
-		for (IBaseResourceEntity next : resourceSearchViewList) {
+		List<ResourceToLoad> resourcesToLoad = new ArrayList<>(resourceSearchViewList.size());
+		List<ResourceToLoad> resourcesToParse = new ArrayList<>(resourceSearchViewList.size());
+		Set<Integer> partitionIds = new HashSet<>();
+		for (ResourceSearchView next : resourceSearchViewList) {
 			if (next.getDeleted() != null) {
 				continue;
 			}
@@ -1074,7 +1332,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			Class<? extends IBaseResource> resourceType =
 					myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
 
-			JpaPid resourceId = JpaPid.fromId(next.getResourceId());
+			ResourceToLoad resourceToLoad = new ResourceToLoad(JpaPid.fromId(next.getResourceId()), resourceType, next);
+			resourcesToLoad.add(resourceToLoad);
 
 			/*
 			 * If a specific version is requested via an include, we'll replace the current version
@@ -1085,25 +1344,64 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			 */
 			if (resourcePidToVersion != null) {
 				Long version = resourcePidToVersion.get(next.getResourceId());
-				resourceId.setVersion(version);
+				resourceToLoad.myResourceId.setVersion(version);
 				if (version != null && !version.equals(next.getVersion())) {
 					IFhirResourceDao<? extends IBaseResource> dao = myDaoRegistry.getResourceDao(resourceType);
-					next = (IBaseResourceEntity)
+					IBaseResourceEntity entity = (IBaseResourceEntity)
 							dao.readEntity(next.getIdDt().withVersion(Long.toString(version)), null);
+
+					// Entities loaded this way may lazy-load their contents, so parse them on this thread
+					if (entity != null) {
+						resourceToLoad.myResource = myJpaStorageResourceParser.toResource(
+								resourceType, entity, tagMap.get(entity.getId()), theForHistoryOperation);
+					}
+					continue;
 				}
 			}
 
-			IBaseResource resource = null;
-			if (next != null) {
-				resource = myJpaStorageResourceParser.toResource(
+			// Externally stored resources are fetched by a provider, which may rely on the request
+			// thread, so they are never handed to the parsing pool
+			if (next.getEncoding() == ResourceEncodingEnum.ESR) {
+				resourceToLoad.myResource = myJpaStorageResourceParser.toResource(
 						resourceType, next, tagMap.get(next.getId()), theForHistoryOperation);
+				continue;
+			}
+
+			if (next.getPartitionId() != null && next.getPartitionId().getPartitionId() != null) {
+				partitionIds.add(next.getPartitionId().getPartitionId());
+			}
+			resourcesToParse.add(resourceToLoad);
+		}
+
+		/*
+		 * Everything the search view entities need is already loaded, so decompressing and
+		 * parsing them can be spread across the parsing pool if one is enabled. The partitions
+		 * are looked up here first so that the pool threads find them in the cache.
+		 */
+		Function<ResourceToLoad, IBaseResource> parser = t -> myJpaStorageResourceParser.toResource(
+				t.myResourceType, t.myEntity, tagMap.get(t.myEntity.getId()), theForHistoryOperation);
+		List<IBaseResource> parsedResources;
+		if (mySearchResultParsingSvc != null && mySearchResultParsingSvc.isParallel(resourcesToParse.size())) {
+			if (myPartitionSettings.isPartitioningEnabled() && myPartitionLookupSvc != null) {
+				partitionIds.forEach(myPartitionLookupSvc::getPartitionById);
 			}
+			parsedResources = mySearchResultParsingSvc.map(resourcesToParse, parser);
+		} else {
+			parsedResources = resourcesToParse.stream().map(parser).collect(Collectors.toList());
+		}
+		for (int i = 0; i < resourcesToParse.size(); i++) {
+			resourcesToParse.get(i).myResource = parsedResources.get(i);
+		}
+
+		for (ResourceToLoad next : resourcesToLoad) {
+			IBaseResource resource = next.myResource;
+			JpaPid resourceId = next.myResourceId;
 			if (resource == null) {
 				ourLog.warn(
 						"Unable to find resource {}/{}/_history/{} in database",
-						next.getResourceType(),
-						next.getIdDt().getIdPart(),
-						next.getVersion());
+						next.myEntity.getResourceType(),
+						next.myEntity.getIdDt().getIdPart(),
+						resourceId.getVersion() != null ? resourceId.getVersion() : next.myEntity.getVersion());
 				continue;
 			}
 
@@ -1200,14 +1498,74 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			}
 		}
 
+		// Can we avoid loading the full resource bodies by using the stored projections?
+		Collection<JpaPid> pidsToLoad = thePids;
+		if (!theForHistoryOperation
+				&& myResourceProjectionSvc != null
+				&& myResourceProjectionSvc.canServeRequest(myResourceName, theDetails)
+				&& !hasResourceAccessHooks(theDetails)) {
+			pidsToLoad = loadResourcesFromProjections(thePids, theIncludedPids, theResourceListToPopulate, position);
+		}
+
 		// We only chunk because some jdbc drivers can't handle long param lists.
 		new QueryChunker<JpaPid>()
 				.chunk(
-						thePids,
+						pidsToLoad,
 						t -> doLoadPids(
 								t, theIncludedPids, theResourceListToPopulate, theForHistoryOperation, position));
 	}
 
+	/**
+	 * Interceptors which inspect the resources being returned (e.g. consent and authorization
+	 * rules) may need elements which aren't in the projection, so they must see the full resources
+	 */
+	private boolean hasResourceAccessHooks(RequestDetails theDetails) {
+		return CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, theDetails)
+				|| CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PRESHOW_RESOURCES, myInterceptorBroadcaster, theDetails);
+	}
+
+	/**
+	 * Populates the results which have a current projection from the projection, and
+	 * returns the PIDs of the remaining results, which need to be loaded normally
+	 */
+	private Collection<JpaPid> loadResourcesFromProjections(
+			Collection<JpaPid> thePids,
+			Collection<JpaPid> theIncludedPids,
+			List<IBaseResource> theResourceListToPopulate,
+			Map<JpaPid, Integer> thePosition) {
+		// Specific versions requested via an include are always loaded from history
+		List<Long> versionlessPids = thePids.stream()
+				.filter(t -> t.getVersion() == null)
+				.map(JpaPid::getId)
+				.collect(Collectors.toList());
+		Map<Long, IBaseResource> projections = new HashMap<>();
+		new QueryChunker<Long>()
+				.chunk(
+						versionlessPids,
+						t -> projections.putAll(myResourceProjectionSvc.loadProjections(myResourceName, t)));
+
+		List<JpaPid> retVal = new ArrayList<>(thePids.size() - projections.size());
+		for (JpaPid next : thePids) {
+			IBaseResource resource = next.getVersion() == null ? projections.get(next.getId()) : null;
+			if (resource == null) {
+				retVal.add(next);
+				continue;
+			}
+
+			if (theIncludedPids.contains(next)) {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.INCLUDE);
+			} else {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.MATCH);
+			}
+			theResourceListToPopulate.set(thePosition.get(next), resource);
+		}
+
+		ourLog.debug("Loaded {} of {} resources from projections", projections.size(), thePids.size());
+		return retVal;
+	}
+
 	/**
 	 * Check if we can load the resources from Hibernate Search instead of the database.
 	 * We assume this is faster.
@@ -1306,9 +1664,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			findVersionFieldName = MY_TARGET_RESOURCE_VERSION;
 		}
 
-		List<JpaPid> nextRoundMatches = new ArrayList<>(matches);
-		HashSet<JpaPid> allAdded = new HashSet<>();
-		HashSet<JpaPid> original = new HashSet<>(matches);
+		List<JpaPid> nextRoundMatches = new JpaPidList(matches);
+		JpaPidSet allAdded = new JpaPidSet();
+		JpaPidSet original = new JpaPidSet(matches);
 		ArrayList<Include> includes = new ArrayList<>(currentIncludes);
 
 		int roundCounts = 0;
@@ -1318,7 +1676,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		do {
 			roundCounts++;
 
-			HashSet<JpaPid> pidsToInclude = new HashSet<>();
+			JpaPidSet pidsToInclude = new JpaPidSet();
 
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
@@ -1565,33 +1923,44 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// This can be used to remove results from the search result details before
 		// the user has a chance to know that they were in the results
 		if (!allAdded.isEmpty()) {
-
-			if (CompositeInterceptorBroadcaster.hasHooks(
-					Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, request)) {
-				List<JpaPid> includedPidList = new ArrayList<>(allAdded);
-				JpaPreResourceAccessDetails accessDetails =
-						new JpaPreResourceAccessDetails(includedPidList, () -> this);
-				HookParams params = new HookParams()
-						.add(IPreResourceAccessDetails.class, accessDetails)
-						.add(RequestDetails.class, request)
-						.addIfMatchesType(ServletRequestDetails.class, request);
-				CompositeInterceptorBroadcaster.doCallHooks(
-						myInterceptorBroadcaster, request, Pointcut.STORAGE_PREACCESS_RESOURCES, params);
-
-				for (int i = includedPidList.size() - 1; i >= 0; i--) {
-					if (accessDetails.isDontReturnResourceAtIndex(i)) {
-						JpaPid value = includedPidList.remove(i);
-						if (value != null) {
-							allAdded.remove(value);
-						}
-					}
-				}
+			List<JpaPid> includedPidList = new ArrayList<>(allAdded);
+			List<JpaPid> visiblePidList = callPreAccessHooksForIncludes(includedPidList, request);
+			if (visiblePidList.size() < includedPidList.size()) {
+				allAdded = new JpaPidSet(visiblePidList);
 			}
 		}
 
 		return allAdded;
 	}
 
+	/**
+	 * Calls the {@link Pointcut#STORAGE_PREACCESS_RESOURCES} hooks for a list of included resources,
+	 * and returns the ones which weren't removed by a hook
+	 */
+	private List<JpaPid> callPreAccessHooksForIncludes(List<JpaPid> thePids, RequestDetails theRequest) {
+		if (thePids.isEmpty()
+				|| !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, theRequest)) {
+			return thePids;
+		}
+
+		JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(thePids, () -> this);
+		HookParams params = new HookParams()
+				.add(IPreResourceAccessDetails.class, accessDetails)
+				.add(RequestDetails.class, theRequest)
+				.addIfMatchesType(ServletRequestDetails.class, theRequest);
+		CompositeInterceptorBroadcaster.doCallHooks(
+				myInterceptorBroadcaster, theRequest, Pointcut.STORAGE_PREACCESS_RESOURCES, params);
+
+		List<JpaPid> retVal = new ArrayList<>(thePids.size());
+		for (int i = 0; i < thePids.size(); i++) {
+			if (!accessDetails.isDontReturnResourceAtIndex(i)) {
+				retVal.add(thePids.get(i));
+			}
+		}
+		return retVal;
+	}
+
 	/**
 	 * Given a
 	 * @param request
@@ -1672,7 +2041,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			Collection<JpaPid> current = null;
 			for (JpaPid next : theNextRoundMatches) {
 				if (current == null) {
-					current = new ArrayList<>(theMaxLoad);
+					current = new JpaPidList(theMaxLoad);
 					retVal.add(current);
 				}
 
@@ -1824,6 +2193,11 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		myFetchSize = theFetchSize;
 	}
 
+	@Override
+	public void setSeparateConnectionsAllowed(boolean theSeparateConnectionsAllowed) {
+		mySeparateConnectionsAllowed = theSeparateConnectionsAllowed;
+	}
+
 	public SearchParameterMap getParams() {
 		return myParams;
 	}
@@ -1841,57 +2215,62 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	}
 
 	/**
-	 * IncludesIterator, used to recursively fetch resources from the provided list of PIDs
+	 * IncludesIterator, used by the $everything operation to recursively fetch the resources
+	 * linked from the provided list of PIDs. The links are followed one round at a time (see
+	 * {@link EverythingLinkTraversal}), and the resources found by each round are returned
+	 * before the next round is queried.
 	 */
 	public class IncludesIterator extends BaseIterator<JpaPid> implements Iterator<JpaPid> {
 
 		private final RequestDetails myRequest;
-		private final Set<JpaPid> myCurrentPids;
-		private Iterator<JpaPid> myCurrentIterator;
+		private final EverythingLinkTraversal myTraversal;
+		private Iterator<JpaPid> myCurrentIterator = Collections.emptyIterator();
 		private JpaPid myNext;
+		private int myFoundCount;
 
 		IncludesIterator(Set<JpaPid> thePidSet, RequestDetails theRequest) {
-			myCurrentPids = new HashSet<>(thePidSet);
-			myCurrentIterator = null;
 			myRequest = theRequest;
+
+			Set<String> sourceResourceTypes = null;
+			if (myParams.containsKey(Constants.PARAM_TYPE)) {
+				sourceResourceTypes = new HashSet<>(extractTypeSourceResourcesFromParams());
+			}
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(myEntityManagerFactory.getDataSource());
+			jdbcTemplate.setFetchSize(myFetchSize);
+			SearchPartitionFanOutSvc fanOutSvc = null;
+			if (mySearchPartitionFanOutSvc != null
+					&& mySearchPartitionFanOutSvc.isEnabled()
+					&& isSeparateConnectionsUsable()) {
+				fanOutSvc = mySearchPartitionFanOutSvc;
+			}
+
+			myTraversal = new EverythingLinkTraversal(
+					jdbcTemplate,
+					fanOutSvc,
+					myParams.getEverythingMode(),
+					sourceResourceTypes,
+					myStorageSettings.isRespectVersionsForSearchIncludes(),
+					getMaximumPageSize());
+			myTraversal.addStartingPids(thePidSet);
 		}
 
 		private void fetchNext() {
 			while (myNext == null) {
-
-				if (myCurrentIterator == null) {
-					Set<Include> includes = new HashSet<>();
-					if (myParams.containsKey(Constants.PARAM_TYPE)) {
-						for (List<IQueryParameterType> typeList : myParams.get(Constants.PARAM_TYPE)) {
-							for (IQueryParameterType type : typeList) {
-								String queryString = ParameterUtil.unescape(type.getValueAsQueryToken(myContext));
-								for (String resourceType : queryString.split(",")) {
-									String rt = resourceType.trim();
-									if (isNotBlank(rt)) {
-										includes.add(new Include(rt + ":*", true));
-									}
-								}
-							}
-						}
-					}
-					if (includes.isEmpty()) {
-						includes.add(new Include("*", true));
-					}
-					Set<JpaPid> newPids = loadIncludes(
-							myContext,
-							myEntityManager,
-							myCurrentPids,
-							includes,
-							false,
-							getParams().getLastUpdated(),
-							mySearchUuid,
-							myRequest,
-							null);
-					myCurrentIterator = newPids.iterator();
-				}
-
 				if (myCurrentIterator.hasNext()) {
 					myNext = myCurrentIterator.next();
+				} else if (myTraversal.hasMoreRounds()) {
+					StopWatch sw = new StopWatch();
+					List<JpaPid> found = myTraversal.nextRound();
+					myFoundCount += found.size();
+					ourLog.debug(
+							"Loaded {} _includes in round {} ({} total) in {} ms for search {}",
+							found.size(),
+							myTraversal.getRoundCount(),
+							myFoundCount,
+							sw.getMillis(),
+							mySearchUuid);
+					myCurrentIterator =
+							callPreAccessHooksForIncludes(found, myRequest).iterator();
 				} else {
 					myNext = NO_MORE;
 				}
@@ -2191,6 +2570,23 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * A single row being loaded by {@link #loadResourcesByPid(Collection, Collection, List, boolean, RequestDetails)}
+	 */
+	private static class ResourceToLoad {
+		private final JpaPid myResourceId;
+		private final Class<? extends IBaseResource> myResourceType;
+		private final IBaseResourceEntity myEntity;
+		private IBaseResource myResource;
+
+		private ResourceToLoad(
+				JpaPid theResourceId, Class<? extends IBaseResource> theResourceType, IBaseResourceEntity theEntity) {
+			myResourceId = theResourceId;
+			myResourceType = theResourceType;
+			myEntity = theEntity;
+		}
+	}
+
 	public static int getMaximumPageSize() {
 		if (myUseMaxPageSize50ForTest) {
 			return MAXIMUM_PAGE_SIZE_FOR_TESTING;
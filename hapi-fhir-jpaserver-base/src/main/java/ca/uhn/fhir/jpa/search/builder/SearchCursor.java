@@ -0,0 +1,147 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * The position of the last result of a page in a keyset paginated search, as carried
+ * between requests in the <code>_cursor</code> parameter. The cursor holds the resource PID
+ * and, when the search is sorted by <code>_lastUpdated</code>, the last updated timestamp of
+ * that resource.
+ *
+ * @see JpaStorageSettings#setSearchKeysetPaginationEnabled(boolean)
+ * @since 7.2.0
+ */
+public class SearchCursor {
+
+	private static final char SEPARATOR = ':';
+
+	private final long myResourcePid;
+	private final Date myLastUpdated;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResourcePid  The PID of the last resource on the page
+	 * @param theLastUpdated  The last updated timestamp of that resource, which must be provided if and only if
+	 *                        the search is sorted by <code>_lastUpdated</code>
+	 */
+	public SearchCursor(long theResourcePid, @Nullable Date theLastUpdated) {
+		myResourcePid = theResourcePid;
+		myLastUpdated = theLastUpdated;
+	}
+
+	public long getResourcePid() {
+		return myResourcePid;
+	}
+
+	@Nullable
+	public Date getLastUpdated() {
+		return myLastUpdated;
+	}
+
+	@Nonnull
+	public String encode() {
+		String value = Long.toString(myResourcePid);
+		if (myLastUpdated != null) {
+			value = value + SEPARATOR + myLastUpdated.getTime();
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses a cursor previously produced by {@link #encode()}
+	 *
+	 * @param theCursor The encoded cursor, may be <code>null</code>
+	 * @param theSort   The sort of the search the cursor is being applied to
+	 * @return Returns <code>null</code> if the cursor is blank
+	 * @throws InvalidRequestException If the cursor is malformed or was not produced for the given sort
+	 */
+	@Nullable
+	public static SearchCursor parse(@Nullable String theCursor, @Nullable SortSpec theSort) {
+		if (isBlank(theCursor)) {
+			return null;
+		}
+
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(theCursor), StandardCharsets.UTF_8);
+			int separatorIdx = value.indexOf(SEPARATOR);
+			boolean hasLastUpdated = separatorIdx != -1;
+			Validate.isTrue(hasLastUpdated == isSortOnLastUpdated(theSort));
+
+			if (hasLastUpdated) {
+				long pid = Long.parseLong(value.substring(0, separatorIdx));
+				Date lastUpdated = new Date(Long.parseLong(value.substring(separatorIdx + 1)));
+				return new SearchCursor(pid, lastUpdated);
+			}
+			return new SearchCursor(Long.parseLong(value), null);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidRequestException(
+					Msg.code(2508) + "Invalid " + Constants.PARAM_CURSOR + " value: " + theCursor);
+		}
+	}
+
+	/**
+	 * Should the given search be paged using keyset pagination, as opposed to an SQL <code>OFFSET</code>?
+	 */
+	public static boolean isKeysetPaginated(
+			@Nonnull JpaStorageSettings theStorageSettings, @Nonnull SearchParameterMap theParams) {
+		return theStorageSettings.isSearchKeysetPaginationEnabled()
+				&& theParams.isOffsetQuery()
+				&& theParams.getEverythingMode() == null
+				&& !theParams.isLastN()
+				&& isSupportedSort(theParams.getSort());
+	}
+
+	static boolean isSupportedSort(@Nullable SortSpec theSort) {
+		if (theSort == null) {
+			return true;
+		}
+		if (theSort.getChain() != null) {
+			return false;
+		}
+		return Constants.PARAM_LASTUPDATED.equals(theSort.getParamName())
+				|| Constants.PARAM_PID.equals(theSort.getParamName());
+	}
+
+	public static boolean isSortOnLastUpdated(@Nullable SortSpec theSort) {
+		return theSort != null && Constants.PARAM_LASTUPDATED.equals(theSort.getParamName());
+	}
+
+	static boolean isAscending(@Nullable SortSpec theSort) {
+		return theSort == null || theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC;
+	}
+}
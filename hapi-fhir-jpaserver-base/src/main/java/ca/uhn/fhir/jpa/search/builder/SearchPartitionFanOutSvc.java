@@ -0,0 +1,206 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.collect.Lists;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs the per-partition statements of a search which spans several partitions in parallel,
+ * using a shared pool sized by {@link JpaStorageSettings#getSearchPartitionFanOutThreadCount()},
+ * and merges their results. The same pool is used to follow the resource links of an
+ * <code>$everything</code> operation (see {@link EverythingLinkTraversal}). Work handed to the
+ * pool runs in a transaction of its own, so it can't see changes made by the calling thread's
+ * transaction.
+ *
+ * @since 7.2.0
+ */
+public class SearchPartitionFanOutSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchPartitionFanOutSvc.class);
+	private final JpaStorageSettings myStorageSettings;
+	private ThreadPoolTaskExecutor myExecutor;
+
+	@Autowired
+	private IHapiTransactionService myTxService;
+
+	/**
+	 * Constructor
+	 */
+	public SearchPartitionFanOutSvc(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchPartitionFanOutThreadCount() > 1;
+	}
+
+	/**
+	 * Applies the given function to each element of the input and returns the results in the
+	 * same order as the input. The input is split into one group per thread, and each group is
+	 * processed sequentially by the pool, with the last group processed by the calling thread
+	 * (within its current transaction).
+	 */
+	@Nonnull
+	public <T, R> List<R> map(@Nonnull List<T> theInput, @Nonnull Function<T, R> theFunction) {
+		int threadCount = myStorageSettings.getSearchPartitionFanOutThreadCount();
+		if (threadCount <= 1 || theInput.size() <= 1) {
+			return mapGroup(theInput, theFunction);
+		}
+
+		int groupSize = (theInput.size() + threadCount - 1) / threadCount;
+		List<List<T>> groups = Lists.partition(theInput, groupSize);
+
+		/*
+		 * The pool transactions only use a read replica if the caller's transaction does,
+		 * so that all partitions are searched against the same database.
+		 */
+		boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+
+		ThreadPoolTaskExecutor executor = getExecutor();
+		List<Future<List<R>>> futures = new ArrayList<>(groups.size() - 1);
+		for (int i = 0; i < groups.size() - 1; i++) {
+			List<T> group = groups.get(i);
+			futures.add(executor.submit(() -> {
+				IHapiTransactionService.IExecutionBuilder builder = myTxService.withSystemRequest();
+				if (readOnly) {
+					builder.readOnly();
+				}
+				return builder.execute(() -> mapGroup(group, theFunction));
+			}));
+		}
+		List<R> lastGroup = mapGroup(groups.get(groups.size() - 1), theFunction);
+
+		List<R> retVal = new ArrayList<>(theInput.size());
+		for (Future<List<R>> next : futures) {
+			retVal.addAll(awaitGroup(next));
+		}
+		retVal.addAll(lastGroup);
+		return retVal;
+	}
+
+	/**
+	 * Merges lists of PIDs which are each sorted in the given order into a single list sorted in
+	 * that order, stopping once the given number of PIDs (if any) has been collected.
+	 */
+	@Nonnull
+	public static List<Long> mergeSorted(
+			@Nonnull List<List<Long>> theSortedLists, boolean theAscending, @Nullable Integer theMaximumResults) {
+		Comparator<Long> order = theAscending ? Comparator.naturalOrder() : Comparator.reverseOrder();
+		PriorityQueue<MergeCursor> queue =
+				new PriorityQueue<>(Math.max(1, theSortedLists.size()), (a, b) -> order.compare(a.peek(), b.peek()));
+		for (List<Long> next : theSortedLists) {
+			if (!next.isEmpty()) {
+				queue.add(new MergeCursor(next));
+			}
+		}
+
+		List<Long> retVal = new ArrayList<>();
+		while (!queue.isEmpty() && (theMaximumResults == null || retVal.size() < theMaximumResults)) {
+			MergeCursor next = queue.poll();
+			retVal.add(next.take());
+			if (next.hasMore()) {
+				queue.add(next);
+			}
+		}
+		return retVal;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = myStorageSettings.getSearchPartitionFanOutThreadCount();
+			ourLog.info("Starting search partition fan-out pool with {} threads", threadCount);
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "search-partition-fan-out-");
+		}
+		return myExecutor;
+	}
+
+	private static <R> List<R> awaitGroup(Future<List<R>> theFuture) {
+		try {
+			return theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2514) + "Interrupted while searching partitions", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2515) + "Failed to search partitions", e.getCause());
+		}
+	}
+
+	private static <T, R> List<R> mapGroup(List<T> theGroup, Function<T, R> theFunction) {
+		List<R> retVal = new ArrayList<>(theGroup.size());
+		for (T next : theGroup) {
+			retVal.add(theFunction.apply(next));
+		}
+		return retVal;
+	}
+
+	private static class MergeCursor {
+
+		private final List<Long> myPids;
+		private int myIndex;
+
+		private MergeCursor(List<Long> thePids) {
+			myPids = thePids;
+		}
+
+		private Long peek() {
+			return myPids.get(myIndex);
+		}
+
+		private Long take() {
+			return myPids.get(myIndex++);
+		}
+
+		private boolean hasMore() {
+			return myIndex < myPids.size();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.collect.Lists;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Decompresses and parses pages of search results in parallel, using a
+ * shared pool sized by {@link JpaStorageSettings#getSearchResultParsingThreadCount()}.
+ * The work passed in runs outside of the calling thread's transaction, so it must
+ * not use the caller's transaction or persistence context (e.g. by lazy-loading
+ * entity associations). Work which needs the request thread, such as fetching
+ * externally stored resources, should be done by the caller instead.
+ *
+ * @since 7.2.0
+ */
+public class SearchResultParsingSvc {
+
+	/**
+	 * Pages smaller than this are never split, and each chunk holds at least this
+	 * many resources, so that the cost of handing work to the pool stays small
+	 * compared to the parsing itself.
+	 */
+	static final int MIN_CHUNK_SIZE = 50;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchResultParsingSvc.class);
+	private final JpaStorageSettings myStorageSettings;
+	private ThreadPoolTaskExecutor myExecutor;
+
+	/**
+	 * Constructor
+	 */
+	public SearchResultParsingSvc(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	/**
+	 * Should {@link #map(List, Function)} split a list of the given size across the pool?
+	 */
+	public boolean isParallel(int theSize) {
+		return myStorageSettings.getSearchResultParsingThreadCount() > 1 && theSize >= MIN_CHUNK_SIZE * 2;
+	}
+
+	/**
+	 * Applies the given function to each element of the input and returns the results in the
+	 * same order as the input. If {@link #isParallel(int)} is true for the size of the input,
+	 * the input is split into chunks which are processed by the pool, with the last chunk
+	 * processed by the calling thread.
+	 */
+	@Nonnull
+	public <T, R> List<R> map(@Nonnull List<T> theInput, @Nonnull Function<T, R> theFunction) {
+		if (!isParallel(theInput.size())) {
+			return mapChunk(theInput, theFunction);
+		}
+
+		int threadCount = myStorageSettings.getSearchResultParsingThreadCount();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (theInput.size() + threadCount - 1) / threadCount);
+		List<List<T>> chunks = Lists.partition(theInput, chunkSize);
+
+		ThreadPoolTaskExecutor executor = getExecutor();
+		List<Future<List<R>>> futures = new ArrayList<>(chunks.size() - 1);
+		for (int i = 0; i < chunks.size() - 1; i++) {
+			List<T> chunk = chunks.get(i);
+			futures.add(executor.submit(() -> mapChunk(chunk, theFunction)));
+		}
+		List<R> lastChunk = mapChunk(chunks.get(chunks.size() - 1), theFunction);
+
+		List<R> retVal = new ArrayList<>(theInput.size());
+		for (Future<List<R>> next : futures) {
+			retVal.addAll(awaitChunk(next));
+		}
+		retVal.addAll(lastChunk);
+		return retVal;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = myStorageSettings.getSearchResultParsingThreadCount();
+			ourLog.info("Starting search result parsing pool with {} threads", threadCount);
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "search-result-parsing-");
+		}
+		return myExecutor;
+	}
+
+	private static <R> List<R> awaitChunk(Future<List<R>> theFuture) {
+		try {
+			return theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2505) + "Interrupted while parsing search results", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2506) + "Failed to parse search results", e.getCause());
+		}
+	}
+
+	private static <T, R> List<R> mapChunk(List<T> theChunk, Function<T, R> theFunction) {
+		List<R> retVal = new ArrayList<>(theChunk.size());
+		for (T next : theChunk) {
+			retVal.add(theFunction.apply(next));
+		}
+		return retVal;
+	}
+}
@@ -0,0 +1,174 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collections;
+
+/**
+ * Short lived cache of the estimated totals returned for searches with
+ * <code>_total=estimated</code>, keyed by resource type, partition and normalized
+ * query string. Parameters which don't affect the total (sort order, paging, includes,
+ * <code>_summary</code> and <code>_total</code>) are not part of the key.
+ * <p>
+ * Entries are never invalidated when resources are written, they simply expire, since
+ * an estimated total is not expected to be exact.
+ * </p>
+ *
+ * @see JpaStorageSettings#setSearchTotalEstimationEnabled(boolean)
+ * @see JpaStorageSettings#setSearchTotalEstimateCacheMillis(long)
+ * @since 7.2.0
+ */
+public class SearchTotalEstimateCache {
+
+	private static final int MAXIMUM_ENTRIES = 10000;
+
+	private final JpaStorageSettings myStorageSettings;
+	private volatile Cache<CacheKey, Long> myCache;
+	private long myCacheMillis;
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	/**
+	 * Constructor
+	 */
+	public SearchTotalEstimateCache(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	/**
+	 * Returns the cached total for the given search, or <code>null</code> if there is none
+	 */
+	@Nullable
+	public Long get(
+			@Nonnull String theResourceType,
+			@Nonnull SearchParameterMap theParams,
+			@Nonnull RequestPartitionId theRequestPartitionId) {
+		Cache<CacheKey, Long> cache = getCache();
+		if (cache == null) {
+			return null;
+		}
+		return cache.getIfPresent(createKey(theResourceType, theParams, theRequestPartitionId));
+	}
+
+	public void put(
+			@Nonnull String theResourceType,
+			@Nonnull SearchParameterMap theParams,
+			@Nonnull RequestPartitionId theRequestPartitionId,
+			long theTotal) {
+		Cache<CacheKey, Long> cache = getCache();
+		if (cache != null) {
+			cache.put(createKey(theResourceType, theParams, theRequestPartitionId), theTotal);
+		}
+	}
+
+	public void invalidateAll() {
+		Cache<CacheKey, Long> cache = myCache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	private CacheKey createKey(
+			String theResourceType, SearchParameterMap theParams, RequestPartitionId theRequestPartitionId) {
+		SearchParameterMap params = theParams.clone();
+		params.setSort(null);
+		params.setCount(null);
+		params.setOffset(null);
+		params.setSearchCursor(null);
+		params.setSummaryMode(null);
+		params.setSearchTotalMode(null);
+		params.setIncludes(Collections.emptySet());
+		params.setRevIncludes(Collections.emptySet());
+		return new CacheKey(theRequestPartitionId, theResourceType, params.toNormalizedQueryString(myFhirContext));
+	}
+
+	@Nullable
+	private Cache<CacheKey, Long> getCache() {
+		long cacheMillis = myStorageSettings.getSearchTotalEstimateCacheMillis();
+		if (cacheMillis <= 0) {
+			myCache = null;
+			return null;
+		}
+
+		Cache<CacheKey, Long> retVal = myCache;
+		if (retVal == null || myCacheMillis != cacheMillis) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null || myCacheMillis != cacheMillis) {
+					retVal = CacheFactory.build(cacheMillis, MAXIMUM_ENTRIES);
+					myCacheMillis = cacheMillis;
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private static class CacheKey {
+
+		private final RequestPartitionId myRequestPartitionId;
+		private final String myResourceType;
+		private final String myQueryString;
+		private final int myHashCode;
+
+		private CacheKey(RequestPartitionId theRequestPartitionId, String theResourceType, String theQueryString) {
+			myRequestPartitionId = theRequestPartitionId;
+			myResourceType = theResourceType;
+			myQueryString = theQueryString;
+			myHashCode = new HashCodeBuilder()
+					.append(myRequestPartitionId)
+					.append(myResourceType)
+					.append(myQueryString)
+					.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			boolean retVal = false;
+			if (theO instanceof CacheKey) {
+				CacheKey that = (CacheKey) theO;
+				retVal = new EqualsBuilder()
+						.append(myRequestPartitionId, that.myRequestPartitionId)
+						.append(myResourceType, that.myResourceType)
+						.append(myQueryString, that.myQueryString)
+						.isEquals();
+			}
+			return retVal;
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
@@ -34,11 +34,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.healthmarketscience.sqlbuilder.ComboCondition;
 import com.healthmarketscience.sqlbuilder.Condition;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbColumn;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 public class DatePredicateBuilder extends BaseSearchParamPredicateBuilder {
 
@@ -236,13 +238,57 @@ public class DatePredicateBuilder extends BaseSearchParamPredicateBuilder {
 			ourLog.trace("Date range is {} - {}", lowerBoundInstant, upperBoundInstant);
 		}
 
+		Condition retVal;
 		if (lb != null && ub != null) {
-			return (ComboCondition.and(lb, ub));
+			retVal = ComboCondition.and(lb, ub);
 		} else if (lb != null) {
-			return (lb);
+			retVal = lb;
 		} else {
-			return (ub);
+			retVal = ub;
 		}
+
+		Date partitionUpperBound = getPartitionPruningUpperBound(theOperation, lowerBoundInstant, upperBoundInstant);
+		if (partitionUpperBound != null) {
+			retVal = ComboCondition.and(
+					retVal,
+					this.createPredicate(
+							DatePredicateBuilder.ColumnEnum.LOW,
+							ParamPrefixEnum.LESSTHAN_OR_EQUALS,
+							partitionUpperBound));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns an upper bound on <code>SP_VALUE_LOW</code> which is already implied by the predicates
+	 * for the given range (since the low value of an index row is never after its high value), so that
+	 * the database can skip partitions if the table is range partitioned on that column. The bound is
+	 * widened by a day because the ordinal date columns aren't timezone aware.
+	 */
+	@Nullable
+	private Date getPartitionPruningUpperBound(
+			SearchFilterParser.CompareOperation theOperation, Date theLowerBoundInstant, Date theUpperBoundInstant) {
+		if (!myStorageSettings.isDateIndexPartitionPruningEnabled() || myStorageSettings.isAccountForDateIndexNulls()) {
+			return null;
+		}
+
+		Date bound;
+		if (theOperation == SearchFilterParser.CompareOperation.lt
+				|| theOperation == SearchFilterParser.CompareOperation.le) {
+			bound = theLowerBoundInstant != null ? theLowerBoundInstant : theUpperBoundInstant;
+		} else if (theOperation == SearchFilterParser.CompareOperation.eq
+				|| theOperation == SearchFilterParser.CompareOperation.sa
+				|| theOperation == SearchFilterParser.CompareOperation.eb
+				|| theOperation == null) {
+			bound = theUpperBoundInstant;
+		} else {
+			return null;
+		}
+
+		if (bound == null) {
+			return null;
+		}
+		return new Date(bound.getTime() + TimeUnit.DAYS.toMillis(1));
 	}
 
 	public DbColumn getColumnValueLow() {
@@ -40,6 +40,7 @@ import ca.uhn.fhir.jpa.dao.predicate.SearchFilterParser;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.jpa.search.builder.ChainedSearchTargetPidCache;
 import ca.uhn.fhir.jpa.search.builder.QueryStack;
 import ca.uhn.fhir.jpa.search.builder.models.MissingQueryParameterPredicateParams;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
@@ -125,6 +126,9 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 	@Autowired
 	private MatchUrlService myMatchUrlService;
 
+	@Autowired(required = false)
+	private ChainedSearchTargetPidCache myChainedSearchTargetPidCache;
+
 	/**
 	 * Constructor
 	 */
@@ -505,14 +509,36 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 
 			List<Condition> andPredicates = new ArrayList<>();
 
-			List<List<IQueryParameterType>> chainParamValues = Collections.singletonList(orValues);
-			andPredicates.add(
-					childQueryFactory.searchForIdsWithAndOr(with().setSourceJoinColumn(myColumnTargetResourceId)
-							.setResourceName(subResourceName)
-							.setParamName(chain)
-							.setAndOrParams(chainParamValues)
-							.setRequest(theRequest)
-							.setRequestPartitionId(theRequestPartitionId)));
+			/*
+			 * If the target side of a single level chain only matches a few resources, we
+			 * can use a (possibly cached) list of their PIDs instead of joining
+			 */
+			List<Long> targetPids = null;
+			if (remainingChain == null
+					&& qualifier == null
+					&& !paramInverted
+					&& myChainedSearchTargetPidCache != null
+					&& myChainedSearchTargetPidCache.isEnabled()) {
+				targetPids = myChainedSearchTargetPidCache.getTargetPids(
+						subResourceName, chain, orValues, theRequest, theRequestPartitionId);
+			}
+
+			if (targetPids != null) {
+				if (targetPids.isEmpty()) {
+					continue;
+				}
+				andPredicates.add(QueryParameterUtils.toEqualToOrInPredicate(
+						myColumnTargetResourceId, generatePlaceholders(targetPids)));
+			} else {
+				List<List<IQueryParameterType>> chainParamValues = Collections.singletonList(orValues);
+				andPredicates.add(
+						childQueryFactory.searchForIdsWithAndOr(with().setSourceJoinColumn(myColumnTargetResourceId)
+								.setResourceName(subResourceName)
+								.setParamName(chain)
+								.setAndOrParams(chainParamValues)
+								.setRequest(theRequest)
+								.setRequestPartitionId(theRequestPartitionId)));
+			}
 
 			orPredicates.add(QueryParameterUtils.toAndPredicate(andPredicates));
 		}
@@ -531,6 +557,12 @@ public class ResourceLinkPredicateBuilder extends BaseJoiningPredicateBuilder im
 			warnAboutPerformanceOnUnqualifiedResources(theParamName, theRequest, candidateTargetTypes);
 		}
 
+		if (orPredicates.isEmpty()) {
+			// Every candidate target type was resolved to an empty list of PIDs
+			setMatchNothing();
+			return null;
+		}
+
 		// If :not modifier for a token, switch OR with AND in the multi-type case
 		Condition multiTypePredicate;
 		if (paramInverted) {
@@ -74,6 +74,13 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		myNext = NO_MORE;
 	}
 
+	/**
+	 * Returns the SQL this executor runs, or <code>null</code> for the {@link #emptyExecutor() empty executor}
+	 */
+	public GeneratedSql getGeneratedSql() {
+		return myGeneratedSql;
+	}
+
 	@Override
 	public void close() {
 		IoUtil.closeQuietly(myResultSet);
@@ -34,8 +34,10 @@ import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.dao.JpaPidList;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.search.AdaptiveSearchPreFetchSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
@@ -61,7 +63,6 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.transaction.annotation.Propagation;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -70,6 +71,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
@@ -97,10 +99,10 @@ public class SearchTask implements Callable<Void> {
 	private final SearchParameterMap myParams;
 	private final IDao myCallingDao;
 	private final String myResourceType;
-	private final ArrayList<JpaPid> mySyncedPids = new ArrayList<>();
+	private final JpaPidList mySyncedPids = new JpaPidList();
 	private final CountDownLatch myInitialCollectionLatch = new CountDownLatch(1);
 	private final CountDownLatch myCompletionLatch;
-	private final ArrayList<JpaPid> myUnsyncedPids = new ArrayList<>();
+	private final JpaPidList myUnsyncedPids = new JpaPidList();
 	private final RequestDetails myRequest;
 	private final RequestPartitionId myRequestPartitionId;
 	private final SearchRuntimeDetails mySearchRuntimeDetails;
@@ -113,6 +115,7 @@ public class SearchTask implements Callable<Void> {
 	private final JpaStorageSettings myStorageSettings;
 	private final ISearchCacheSvc mySearchCacheSvc;
 	private final IPagingProvider myPagingProvider;
+	private final AdaptiveSearchPreFetchSvc myAdaptiveSearchPreFetchSvc;
 	private Search mySearch;
 	private boolean myAbortRequested;
 	private int myCountSavedTotal = 0;
@@ -156,6 +159,7 @@ public class SearchTask implements Callable<Void> {
 		myCompletionLatch = new CountDownLatch(1);
 		mySyncSize = theCreationParams.SyncSize;
 		myLoadingThrottleForUnitTests = theCreationParams.getLoadingThrottleForUnitTests();
+		myAdaptiveSearchPreFetchSvc = theCreationParams.getAdaptiveSearchPreFetchSvc();
 
 		mySearchRuntimeDetails = new SearchRuntimeDetails(myRequest, mySearch.getUuid());
 		mySearchRuntimeDetails.setQueryString(myParams.toNormalizedQueryString(myCallingDao.getContext()));
@@ -203,7 +207,11 @@ public class SearchTask implements Callable<Void> {
 	private ISearchBuilder newSearchBuilder() {
 		Class<? extends IBaseResource> resourceTypeClass =
 				myContext.getResourceDefinition(myResourceType).getImplementingClass();
-		return mySearchBuilderFactory.newSearchBuilder(myCallingDao, myResourceType, resourceTypeClass);
+		ISearchBuilder retVal =
+				mySearchBuilderFactory.newSearchBuilder(myCallingDao, myResourceType, resourceTypeClass);
+		// Search tasks run in a transaction of their own
+		retVal.setSeparateConnectionsAllowed(true);
+		return retVal;
 	}
 
 	@Nonnull
@@ -252,7 +260,7 @@ public class SearchTask implements Callable<Void> {
 
 		ourLog.debug("Proceeding, as we have {} results", mySyncedPids.size());
 
-		ArrayList<JpaPid> retVal = new ArrayList<>();
+		JpaPidList retVal = new JpaPidList();
 		synchronized (mySyncedPids) {
 			QueryParameterUtils.verifySearchHasntFailedOrThrowInternalErrorException(mySearch);
 
@@ -293,7 +301,7 @@ public class SearchTask implements Callable<Void> {
 						doSaveSearch();
 					}
 
-					ArrayList<JpaPid> unsyncedPids = myUnsyncedPids;
+					JpaPidList unsyncedPids = myUnsyncedPids;
 					int countBlocked = 0;
 
 					// Interceptor call: STORAGE_PREACCESS_RESOURCES
@@ -366,6 +374,9 @@ public class SearchTask implements Callable<Void> {
 
 					mySearch.setNumFound(myCountSavedTotal);
 					mySearch.setNumBlocked(mySearch.getNumBlocked() + countBlocked);
+					if (myAdaptiveSearchPreFetchSvc != null) {
+						myAdaptiveSearchPreFetchSvc.recordResultsLoaded(mySearch, getRequestPartitionId());
+					}
 
 					int numSynced;
 					synchronized (mySyncedPids) {
@@ -559,7 +570,9 @@ public class SearchTask implements Callable<Void> {
 				? isWantCount(myParams)
 				: SearchParameterMapCalculator.isWantCount(myStorageSettings.getDefaultTotalMode());
 
-		if (myParamWantOnlyCount || myParamOrDefaultWantCount) {
+		boolean myParamOrDefaultWantEstimatedCount = isWantEstimatedCount(myParams, myStorageSettings);
+
+		if (myParamWantOnlyCount || myParamOrDefaultWantCount || myParamOrDefaultWantEstimatedCount) {
 			doCountOnlyQuery(myParamWantOnlyCount);
 			if (myParamWantOnlyCount) {
 				return;
@@ -586,6 +599,20 @@ public class SearchTask implements Callable<Void> {
 			minWanted += currentlyLoaded;
 		}
 
+		/*
+		 * If adaptive pre-fetching is enabled and we know how many results clients
+		 * generally request from searches like this one, skip over the thresholds
+		 * they usually page past, and don't load beyond the expected demand when the
+		 * next threshold is larger than that
+		 */
+		Integer expectedDemand = null;
+		if (myAdaptiveSearchPreFetchSvc != null) {
+			expectedDemand = myAdaptiveSearchPreFetchSvc.getExpectedDemand(mySearch, getRequestPartitionId());
+			if (expectedDemand != null && expectedDemand <= currentlyLoaded) {
+				expectedDemand = null;
+			}
+		}
+
 		// iterate through the search thresholds
 		for (Iterator<Integer> iter =
 						myStorageSettings.getSearchPreFetchThresholds().iterator();
@@ -594,8 +621,21 @@ public class SearchTask implements Callable<Void> {
 			if (next != -1 && next <= currentlyLoaded) {
 				continue;
 			}
+			if (expectedDemand != null && next != -1 && next < expectedDemand && iter.hasNext()) {
+				continue;
+			}
 
-			if (next == -1) {
+			if (expectedDemand != null && (next == -1 || next > expectedDemand)) {
+				myMaxResultsToFetch = Math.max(expectedDemand, minWanted);
+				sb.setMaxResultsToFetch(myMaxResultsToFetch + 1);
+				ourLog.debug(
+						"Pre-fetching {} results for search {} instead of threshold {}",
+						myMaxResultsToFetch,
+						mySearch.getUuid(),
+						next);
+				// The current threshold still applies to the next pass
+				myAdditionalPrefetchThresholdsRemaining = true;
+			} else if (next == -1) {
 				sb.setMaxResultsToFetch(null);
 			} else {
 				// we want at least 1 more than our requested amount
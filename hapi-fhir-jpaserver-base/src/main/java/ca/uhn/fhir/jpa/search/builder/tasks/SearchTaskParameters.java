@@ -20,6 +20,7 @@
 package ca.uhn.fhir.jpa.search.builder.tasks;
 
 import ca.uhn.fhir.jpa.api.dao.IDao;
+import ca.uhn.fhir.jpa.search.AdaptiveSearchPreFetchSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 
@@ -37,6 +38,7 @@ public class SearchTaskParameters {
 	public int SyncSize;
 
 	private Integer myLoadingThrottleForUnitTests;
+	private AdaptiveSearchPreFetchSvc myAdaptiveSearchPreFetchSvc;
 
 	public SearchTaskParameters(
 			ca.uhn.fhir.jpa.entity.Search theSearch,
@@ -64,4 +66,12 @@ public class SearchTaskParameters {
 	public void setLoadingThrottleForUnitTests(Integer theLoadingThrottleForUnitTests) {
 		myLoadingThrottleForUnitTests = theLoadingThrottleForUnitTests;
 	}
+
+	public AdaptiveSearchPreFetchSvc getAdaptiveSearchPreFetchSvc() {
+		return myAdaptiveSearchPreFetchSvc;
+	}
+
+	public void setAdaptiveSearchPreFetchSvc(AdaptiveSearchPreFetchSvc theAdaptiveSearchPreFetchSvc) {
+		myAdaptiveSearchPreFetchSvc = theAdaptiveSearchPreFetchSvc;
+	}
 }
@@ -42,6 +42,7 @@ import org.hl7.fhir.dstu3.model.InstantType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -50,6 +51,7 @@ import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -151,6 +153,31 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 		}
 	}
 
+	@Override
+	public void updateNumRequested(Search theSearch, int theNumRequested, RequestPartitionId theRequestPartitionId) {
+		if (theSearch.getId() == null) {
+			return;
+		}
+		myTransactionService
+				.withSystemRequestOnPartition(theRequestPartitionId)
+				.execute(() -> mySearchDao.updateNumRequested(theSearch.getId(), theNumRequested));
+	}
+
+	@Override
+	public List<Search> findRecentSearchesWithNumRequested(
+			String theResourceType, int theMaxCount, RequestPartitionId theRequestPartitionId) {
+		return myTransactionService
+				.withSystemRequestOnPartition(theRequestPartitionId)
+				.readOnly()
+				.execute(() -> {
+					List<Search> retVal =
+							mySearchDao.findRecentWithNumRequested(PageRequest.of(0, theMaxCount), theResourceType);
+					// The query strings are needed once the searches are detached
+					retVal.forEach(Search::getSearchQueryString);
+					return retVal;
+				});
+	}
+
 	@Override
 	public Optional<Search> findCandidatesForReuse(
 			String theResourceType,
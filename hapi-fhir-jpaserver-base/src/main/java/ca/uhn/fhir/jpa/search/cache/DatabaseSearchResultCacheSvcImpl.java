@@ -25,6 +25,7 @@ import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.entity.SearchResult;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.dao.JpaPidList;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
@@ -68,7 +69,7 @@ public class DatabaseSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
 
 					ourLog.debug("fetchResultPids for range {}-{} returned {} pids", theFrom, theTo, retVal.size());
 
-					return JpaPid.fromLongList(retVal);
+					return JpaPidList.fromLongList(retVal);
 				});
 	}
 
@@ -81,7 +82,7 @@ public class DatabaseSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
 				.execute(() -> {
 					List<Long> retVal = mySearchResultDao.findWithSearchPidOrderIndependent(theSearch.getId());
 					ourLog.trace("fetchAllResultPids returned {} pids", retVal.size());
-					return JpaPid.fromLongList(retVal);
+					return JpaPidList.fromLongList(retVal);
 				});
 	}
 
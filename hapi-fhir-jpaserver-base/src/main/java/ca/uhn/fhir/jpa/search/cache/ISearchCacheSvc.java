@@ -23,6 +23,8 @@ import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.entity.Search;
 
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 public interface ISearchCacheSvc {
@@ -81,6 +83,33 @@ public interface ISearchCacheSvc {
 			Instant theCreatedAfter,
 			RequestPartitionId theRequestPartitionId);
 
+	/**
+	 * Records the number of results that a client has requested from a search (i.e. the index of the last
+	 * result on the requested page), unless a larger number has already been recorded. Implementations are
+	 * not required to store this value.
+	 *
+	 * @param theSearch       The search
+	 * @param theNumRequested The number of results requested
+	 * @since 7.2.0
+	 */
+	default void updateNumRequested(Search theSearch, int theNumRequested, RequestPartitionId theRequestPartitionId) {
+		// nothing by default
+	}
+
+	/**
+	 * Returns the most recent searches for the given resource type for which a number of requested results
+	 * has been recorded using {@link #updateNumRequested(Search, int, RequestPartitionId)}, most recent first.
+	 * Implementations which don't store this value return an empty list.
+	 *
+	 * @param theResourceType The resource type
+	 * @param theMaxCount     The maximum number of searches to return
+	 * @since 7.2.0
+	 */
+	default List<Search> findRecentSearchesWithNumRequested(
+			String theResourceType, int theMaxCount, RequestPartitionId theRequestPartitionId) {
+		return Collections.emptyList();
+	}
+
 	/**
 	 * This method will be called periodically to delete stale searches. Implementations are not required to do anything
 	 * if they have some other mechanism for expiring stale results other than manually looking for them
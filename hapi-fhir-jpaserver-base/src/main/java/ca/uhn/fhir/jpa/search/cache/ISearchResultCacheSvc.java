@@ -67,4 +67,16 @@ public interface ISearchResultCacheSvc {
 	@Nullable
 	List<JpaPid> fetchAllResultPids(
 			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId);
+
+	/**
+	 * Returns <code>false</code> if the results of the given search are known to no longer exist,
+	 * in which case the search must not be reused. Implementations which only lose results when
+	 * the search itself is deleted can rely on the default implementation.
+	 *
+	 * @param theSearch The search object
+	 * @since 7.2.0
+	 */
+	default boolean hasResults(Search theSearch) {
+		return true;
+	}
 }
@@ -0,0 +1,447 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Search result cache which holds result PIDs in memory instead of in the
+ * <code>HFJ_SEARCH_RESULT</code> table. PIDs are stored in fixed size <code>long[]</code>
+ * chunks, the cache is bounded by the total number of PIDs it holds, and the results of the
+ * least recently used searches are moved to files on disk (or discarded if no spill directory
+ * is configured) when that bound is exceeded. Results expire once they have not been accessed
+ * for {@link JpaStorageSettings#getExpireSearchResultsAfterMillis()}.
+ * <p>
+ * Searches whose results have been discarded are reported by {@link #hasResults(Search)} so that
+ * they are not reused. Reading and writing spill files happens outside of the cache-wide lock.
+ * </p>
+ *
+ * @see JpaStorageSettings#setSearchResultMemoryCacheMaximumPids(long)
+ * @since 7.2.0
+ */
+public class MemorySearchResultCacheSvcImpl implements ISearchResultCacheSvc {
+
+	static final int CHUNK_SIZE = 1024;
+	private static final Logger ourLog = LoggerFactory.getLogger(MemorySearchResultCacheSvcImpl.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final long myMaximumPidsInMemory;
+	private final Path mySpillDirectory;
+
+	/**
+	 * Keyed by search UUID, iterated from least to most recently accessed
+	 */
+	private final LinkedHashMap<String, CachedResults> myResults = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long myPidsInMemory;
+
+	/**
+	 * Constructor
+	 */
+	public MemorySearchResultCacheSvcImpl(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+		myMaximumPidsInMemory = theStorageSettings.getSearchResultMemoryCacheMaximumPids();
+		String spillDirectory = theStorageSettings.getSearchResultMemoryCacheSpillDirectory();
+		mySpillDirectory = isNotBlank(spillDirectory) ? Paths.get(spillDirectory) : null;
+	}
+
+	@Override
+	public void storeResults(
+			Search theSearch,
+			List<JpaPid> thePreviouslyStoredResourcePids,
+			List<JpaPid> theNewResourcePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		List<CachedResults> removed = new ArrayList<>();
+		List<CachedResults> toSpill = new ArrayList<>();
+
+		CachedResults results;
+		boolean isNew;
+		synchronized (this) {
+			long now = DatabaseSearchCacheSvcImpl.now();
+			purgeExpired(now, removed);
+
+			results = myResults.get(theSearch.getUuid());
+			isNew = results == null;
+			if (isNew) {
+				results = new CachedResults(theSearch.getUuid());
+				myResults.put(theSearch.getUuid(), results);
+			}
+			results.setLastAccessed(now);
+		}
+
+		int pidsInMemoryDelta = 0;
+		if (isNew) {
+			// If the results were discarded while the search was still loading, start over from what the caller has
+			pidsInMemoryDelta += results.append(thePreviouslyStoredResourcePids);
+		}
+		pidsInMemoryDelta += results.append(theNewResourcePids);
+
+		synchronized (this) {
+			myPidsInMemory += pidsInMemoryDelta;
+			ourLog.debug(
+					"Stored {} results for search {}, now holding {} PIDs in memory",
+					theNewResourcePids.size(),
+					theSearch.getUuid(),
+					myPidsInMemory);
+
+			evictIfNecessary(results, removed, toSpill);
+		}
+
+		spill(toSpill);
+		removed.forEach(CachedResults::discard);
+	}
+
+	@Nullable
+	@Override
+	public List<JpaPid> fetchResultPids(
+			Search theSearch,
+			int theFrom,
+			int theTo,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		CachedResults results = getResults(theSearch);
+		if (results == null) {
+			return null;
+		}
+		return results.read(theFrom, theTo);
+	}
+
+	@Nullable
+	@Override
+	public List<JpaPid> fetchAllResultPids(
+			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		CachedResults results = getResults(theSearch);
+		if (results == null) {
+			return null;
+		}
+		return results.read(0, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean hasResults(Search theSearch) {
+		List<CachedResults> removed = new ArrayList<>();
+		boolean retVal;
+		synchronized (this) {
+			purgeExpired(DatabaseSearchCacheSvcImpl.now(), removed);
+			retVal = myResults.containsKey(theSearch.getUuid());
+		}
+		removed.forEach(CachedResults::discard);
+		return retVal;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		for (CachedResults next : myResults.values()) {
+			next.remove();
+			next.discard();
+		}
+		myResults.clear();
+		myPidsInMemory = 0;
+	}
+
+	synchronized long getPidsInMemory() {
+		return myPidsInMemory;
+	}
+
+	@Nullable
+	private CachedResults getResults(Search theSearch) {
+		List<CachedResults> removed = new ArrayList<>();
+		CachedResults retVal;
+		synchronized (this) {
+			long now = DatabaseSearchCacheSvcImpl.now();
+			purgeExpired(now, removed);
+
+			retVal = myResults.get(theSearch.getUuid());
+			if (retVal != null) {
+				retVal.setLastAccessed(now);
+			}
+		}
+		removed.forEach(CachedResults::discard);
+		return retVal;
+	}
+
+	/**
+	 * Removes expired results from the cache. The caller must discard the removed results
+	 * once it no longer holds the cache lock.
+	 */
+	private void purgeExpired(long theNow, List<CachedResults> theRemoved) {
+		long cutoff = theNow - myStorageSettings.getExpireSearchResultsAfterMillis();
+		for (Iterator<CachedResults> iter = myResults.values().iterator(); iter.hasNext(); ) {
+			CachedResults next = iter.next();
+			if (next.getLastAccessed() >= cutoff) {
+				// Entries are in access order, so all remaining entries are newer
+				break;
+			}
+			myPidsInMemory -= next.remove();
+			theRemoved.add(next);
+			iter.remove();
+		}
+	}
+
+	/**
+	 * Selects the least recently used results to move to disk (or to discard) until the cache fits
+	 * within its bound again. The caller must spill and discard the selected results once it no longer
+	 * holds the cache lock.
+	 */
+	private void evictIfNecessary(
+			CachedResults theMostRecent, List<CachedResults> theRemoved, List<CachedResults> theToSpill) {
+		for (Iterator<CachedResults> iter = myResults.values().iterator();
+				iter.hasNext() && myPidsInMemory > myMaximumPidsInMemory; ) {
+			CachedResults results = iter.next();
+			if (results.getPidsInMemory() == 0) {
+				continue;
+			}
+
+			if (mySpillDirectory != null) {
+				int pidsInMemory = results.markForSpill();
+				ourLog.debug("Moving {} results for search {} to disk", pidsInMemory, results.getSearchUuid());
+				myPidsInMemory -= pidsInMemory;
+				theToSpill.add(results);
+			} else if (results != theMostRecent) {
+				// Never discard the results that are still being loaded, even if they don't fit on their own
+				int pidsInMemory = results.remove();
+				ourLog.debug("Discarding {} results for search {}", pidsInMemory, results.getSearchUuid());
+				myPidsInMemory -= pidsInMemory;
+				theRemoved.add(results);
+				iter.remove();
+			}
+		}
+	}
+
+	private void spill(List<CachedResults> theToSpill) {
+		for (CachedResults next : theToSpill) {
+			try {
+				next.spill(mySpillDirectory);
+			} catch (InternalErrorException e) {
+				ourLog.warn(
+						"Failed to move results for search {} to disk, discarding them: {}",
+						next.getSearchUuid(),
+						e.toString());
+				synchronized (this) {
+					myResults.remove(next.getSearchUuid(), next);
+					myPidsInMemory -= next.remove();
+				}
+				next.discard();
+			}
+		}
+	}
+
+	/**
+	 * The results of a single search, held either in memory or in a spill file
+	 */
+	private static class CachedResults {
+
+		private final String mySearchUuid;
+		private final List<long[]> myChunks = new ArrayList<>();
+		private int mySize;
+		private Path mySpillFile;
+		private boolean mySpillPending;
+		private boolean myRemoved;
+		private volatile long myLastAccessed;
+
+		private CachedResults(String theSearchUuid) {
+			mySearchUuid = theSearchUuid;
+		}
+
+		String getSearchUuid() {
+			return mySearchUuid;
+		}
+
+		/**
+		 * Returns the number of PIDs which count against the in-memory bound. Results which are
+		 * about to be moved to disk no longer count.
+		 */
+		synchronized int getPidsInMemory() {
+			return myRemoved || mySpillPending || mySpillFile != null ? 0 : mySize;
+		}
+
+		long getLastAccessed() {
+			return myLastAccessed;
+		}
+
+		void setLastAccessed(long theLastAccessed) {
+			myLastAccessed = theLastAccessed;
+		}
+
+		/**
+		 * @return The change in the number of PIDs which count against the in-memory bound
+		 */
+		synchronized int append(List<JpaPid> thePids) {
+			if (myRemoved || thePids.isEmpty()) {
+				return 0;
+			}
+			int before = getPidsInMemory();
+
+			if (mySpillFile != null) {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(mySpillFile, StandardOpenOption.APPEND)))) {
+					for (JpaPid next : thePids) {
+						out.writeLong(next.getId());
+					}
+				} catch (IOException e) {
+					throw new InternalErrorException(Msg.code(2509) + "Failed to write search results to disk", e);
+				}
+				mySize += thePids.size();
+			} else {
+				for (JpaPid next : thePids) {
+					int chunkIndex = mySize / CHUNK_SIZE;
+					if (chunkIndex == myChunks.size()) {
+						myChunks.add(new long[CHUNK_SIZE]);
+					}
+					myChunks.get(chunkIndex)[mySize % CHUNK_SIZE] = next.getId();
+					mySize++;
+				}
+			}
+
+			return getPidsInMemory() - before;
+		}
+
+		/**
+		 * @return The requested PIDs, or <code>null</code> if these results were removed from the cache
+		 * after they were looked up
+		 */
+		@Nullable
+		synchronized List<JpaPid> read(int theFrom, int theTo) {
+			if (myRemoved) {
+				return null;
+			}
+			int to = Math.min(theTo, mySize);
+			if (theFrom >= to) {
+				return Collections.emptyList();
+			}
+
+			List<JpaPid> retVal = new ArrayList<>(to - theFrom);
+			if (mySpillFile != null) {
+				ByteBuffer buffer = ByteBuffer.allocate((to - theFrom) * Long.BYTES);
+				try (FileChannel channel = FileChannel.open(mySpillFile, StandardOpenOption.READ)) {
+					long position = (long) theFrom * Long.BYTES;
+					while (buffer.hasRemaining()) {
+						int read = channel.read(buffer, position + buffer.position());
+						if (read == -1) {
+							break;
+						}
+					}
+				} catch (IOException e) {
+					throw new InternalErrorException(Msg.code(2510) + "Failed to read search results from disk", e);
+				}
+				buffer.flip();
+				while (buffer.remaining() >= Long.BYTES) {
+					retVal.add(JpaPid.fromId(buffer.getLong()));
+				}
+				return retVal;
+			}
+
+			for (int i = theFrom; i < to; i++) {
+				retVal.add(JpaPid.fromId(myChunks.get(i / CHUNK_SIZE)[i % CHUNK_SIZE]));
+			}
+			return retVal;
+		}
+
+		/**
+		 * Flags these results to be moved to disk by {@link #spill(Path)}
+		 *
+		 * @return The number of PIDs which no longer count against the in-memory bound
+		 */
+		synchronized int markForSpill() {
+			int retVal = getPidsInMemory();
+			mySpillPending = true;
+			return retVal;
+		}
+
+		synchronized void spill(Path theDirectory) {
+			if (myRemoved || mySpillFile != null) {
+				return;
+			}
+			Path file = null;
+			try {
+				Files.createDirectories(theDirectory);
+				file = Files.createTempFile(theDirectory, "search-results-", ".bin");
+				try (DataOutputStream out =
+						new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+					for (int i = 0; i < mySize; i++) {
+						out.writeLong(myChunks.get(i / CHUNK_SIZE)[i % CHUNK_SIZE]);
+					}
+				}
+				mySpillFile = file;
+				mySpillPending = false;
+				myChunks.clear();
+			} catch (IOException e) {
+				if (file != null) {
+					FileUtils.deleteQuietly(file.toFile());
+				}
+				throw new InternalErrorException(Msg.code(2511) + "Failed to write search results to disk", e);
+			}
+		}
+
+		/**
+		 * Flags these results as no longer being part of the cache, so that concurrent reads
+		 * return <code>null</code>. The memory and any spill file are released by {@link #discard()}.
+		 *
+		 * @return The number of PIDs which no longer count against the in-memory bound
+		 */
+		synchronized int remove() {
+			int retVal = getPidsInMemory();
+			myRemoved = true;
+			return retVal;
+		}
+
+		synchronized void discard() {
+			myChunks.clear();
+			if (mySpillFile != null) {
+				try {
+					Files.deleteIfExists(mySpillFile);
+				} catch (IOException e) {
+					ourLog.warn("Failed to delete search result file {}: {}", mySpillFile, e.toString());
+				}
+				mySpillFile = null;
+			}
+			mySize = 0;
+		}
+	}
+}
@@ -19,6 +19,8 @@
  */
 package ca.uhn.fhir.jpa.util;
 
+import ca.uhn.fhir.jpa.model.dao.JpaPidList;
+import ca.uhn.fhir.jpa.model.dao.JpaPidSet;
 import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
 import ca.uhn.fhir.util.TaskChunker;
 
@@ -39,6 +41,20 @@ public class QueryChunker<T> extends TaskChunker<T> {
 		chunk(theInput, SearchBuilder.getMaximumPageSize(), theBatchConsumer);
 	}
 
+	/**
+	 * A {@link JpaPidSet} is copied into a {@link JpaPidList} before being chunked, instead of
+	 * into an {@link java.util.ArrayList} of boxed PIDs
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void chunk(Collection<T> theInput, int theChunkSize, Consumer<List<T>> theBatchConsumer) {
+		Collection<T> input = theInput;
+		if (theInput instanceof JpaPidSet) {
+			input = (Collection<T>) new JpaPidList((JpaPidSet) theInput);
+		}
+		super.chunk(input, theChunkSize, theBatchConsumer);
+	}
+
 	public Stream<List<T>> chunk(Stream<T> theStream) {
 		return chunk(theStream, SearchBuilder.getMaximumPageSize());
 	}
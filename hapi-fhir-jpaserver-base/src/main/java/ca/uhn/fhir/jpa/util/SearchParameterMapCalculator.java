@@ -19,6 +19,7 @@
  */
 package ca.uhn.fhir.jpa.util;
 
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.SummaryEnum;
@@ -35,6 +36,20 @@ public class SearchParameterMapCalculator {
 		return SearchTotalModeEnum.ACCURATE.equals(theSearchTotalModeEnum);
 	}
 
+	/**
+	 * Returns <code>true</code> if the search asks for an estimated total, either explicitly or through
+	 * the default total mode, and estimated totals are enabled
+	 *
+	 * @see JpaStorageSettings#setSearchTotalEstimationEnabled(boolean)
+	 * @since 7.2.0
+	 */
+	public static boolean isWantEstimatedCount(SearchParameterMap theParams, JpaStorageSettings theStorageSettings) {
+		SearchTotalModeEnum totalMode = theParams.getSearchTotalMode() != null
+				? theParams.getSearchTotalMode()
+				: theStorageSettings.getDefaultTotalMode();
+		return theStorageSettings.isSearchTotalEstimationEnabled() && SearchTotalModeEnum.ESTIMATED.equals(totalMode);
+	}
+
 	public static boolean isWantOnlyCount(SearchParameterMap myParams) {
 		return SummaryEnum.COUNT.equals(myParams.getSummaryMode()) | INTEGER_0.equals(myParams.getCount());
 	}
@@ -0,0 +1,77 @@
+package ca.uhn.fhir.jpa.config.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import javax.sql.DataSource;
+
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReadReplicaRoutingDataSourceTest {
+
+	@Mock
+	private DataSource myPrimary;
+	@Mock
+	private DataSource myReplica1;
+	@Mock
+	private DataSource myReplica2;
+	@Mock
+	private Connection myConnection;
+
+	@AfterEach
+	public void after() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	}
+
+	@Test
+	public void testGetConnection_ReadOnlyTransactionsUseReplicasRoundRobin() throws SQLException {
+		ReadReplicaRoutingDataSource dataSource = new ReadReplicaRoutingDataSource(myPrimary, List.of(myReplica1, myReplica2));
+
+		dataSource.getConnection();
+		verify(myPrimary, times(1)).getConnection();
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		dataSource.getConnection();
+		dataSource.getConnection();
+		dataSource.getConnection();
+		verify(myReplica1, times(2)).getConnection();
+		verify(myReplica2, times(1)).getConnection();
+		verify(myPrimary, times(1)).getConnection();
+	}
+
+	@Test
+	public void testGetConnection_NoReplicas() throws SQLException {
+		ReadReplicaRoutingDataSource dataSource = new ReadReplicaRoutingDataSource(myPrimary, Collections.emptyList());
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		dataSource.getConnection();
+		verify(myPrimary, times(1)).getConnection();
+	}
+
+	@Test
+	public void testLazyProxy_RoutesWhenFirstUsed() throws SQLException {
+		lenient().when(myPrimary.getConnection()).thenReturn(myConnection);
+		when(myReplica1.getConnection()).thenReturn(myConnection);
+		DataSource dataSource = ReadReplicaRoutingDataSource.newLazyProxy(myPrimary, List.of(myReplica1));
+
+		// The transaction is only marked as read-only after the connection has been obtained
+		Connection connection = dataSource.getConnection();
+		verify(myReplica1, never()).getConnection();
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		connection.prepareStatement("SELECT 1");
+		verify(myReplica1, times(1)).getConnection();
+	}
+}
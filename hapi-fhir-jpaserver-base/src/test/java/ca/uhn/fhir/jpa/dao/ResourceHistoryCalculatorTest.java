@@ -148,6 +148,46 @@ class ResourceHistoryCalculatorTest {
 		}
 	}
 
+	private static Stream<Arguments> conditionallyReencodeHistoryEntityArguments() {
+		return Stream.of(
+			Arguments.of(true, ResourceEncodingEnum.JSONC, ResourceEncodingEnum.LZ4, true),
+			Arguments.of(true, ResourceEncodingEnum.LZ4, ResourceEncodingEnum.JSONC, true),
+			Arguments.of(true, ResourceEncodingEnum.JSON, ResourceEncodingEnum.LZ4, true),
+			Arguments.of(true, ResourceEncodingEnum.LZ4, ResourceEncodingEnum.LZ4, false),
+			Arguments.of(true, ResourceEncodingEnum.JSONC, ResourceEncodingEnum.DEL, false),
+			Arguments.of(false, ResourceEncodingEnum.JSONC, ResourceEncodingEnum.LZ4, false),
+			Arguments.of(false, ResourceEncodingEnum.LZ4, ResourceEncodingEnum.JSONC, false)
+		);
+	}
+
+	@ParameterizedTest
+	@MethodSource("conditionallyReencodeHistoryEntityArguments")
+	void conditionallyReencodeHistoryEntity(boolean theIsOracle, ResourceEncodingEnum theExistingEncoding, ResourceEncodingEnum theTargetEncoding, boolean theExpectChanged) {
+		final ResourceTable resourceTable = new ResourceTable();
+		resourceTable.setId(123L);
+		resourceTable.setVersionForUnitTest(1);
+
+		final byte[] existingBinary = ResourceHistoryCalculator.getResourceBinary(theExistingEncoding, ENCODED_RESOURCE_1);
+		final ResourceHistoryTable resourceHistoryTable = new ResourceHistoryTable();
+		resourceHistoryTable.setVersion(1);
+		resourceHistoryTable.setResource(existingBinary);
+		resourceHistoryTable.setEncoding(theExistingEncoding);
+
+		final boolean isChanged = getCalculator(theIsOracle)
+			.conditionallyReencodeHistoryEntity(resourceTable, resourceHistoryTable, ENCODED_RESOURCE_1, theTargetEncoding);
+
+		assertEquals(theExpectChanged, isChanged);
+		if (theExpectChanged) {
+			assertEquals(theTargetEncoding, resourceHistoryTable.getEncoding());
+			assertEquals(ENCODED_RESOURCE_1, BaseHapiFhirDao.decodeResource(resourceHistoryTable.getResource(), theTargetEncoding));
+			assertEquals(SHA_256.hashBytes(resourceHistoryTable.getResource()).toString(), resourceTable.getHashSha256());
+		} else {
+			assertEquals(theExistingEncoding, resourceHistoryTable.getEncoding());
+			assertArrayEquals(existingBinary, resourceHistoryTable.getResource());
+			assertNull(resourceTable.getHashSha256());
+		}
+	}
+
 	private static Stream<Arguments> encodeResourceArguments() {
 		return Stream.of(
 			Arguments.of(FhirContext.forDstu3Cached(), ResourceEncodingEnum.JSONC, EXCLUDED_ELEMENTS_1),
@@ -190,7 +230,9 @@ class ResourceHistoryCalculatorTest {
 			Arguments.of(ResourceEncodingEnum.ESR, ENCODED_RESOURCE_1),
 			Arguments.of(ResourceEncodingEnum.ESR, ENCODED_RESOURCE_2),
 			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_1),
-			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_2)
+			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_2),
+			Arguments.of(ResourceEncodingEnum.LZ4, ENCODED_RESOURCE_1),
+			Arguments.of(ResourceEncodingEnum.LZ4, ENCODED_RESOURCE_2)
 		);
 	}
 
@@ -206,6 +248,10 @@ class ResourceHistoryCalculatorTest {
 			case JSONC:
 				assertArrayEquals(GZipUtil.compress(theEncodedResource), resourceBinary);
 				break;
+			case LZ4:
+				assertArrayEquals(Lz4Util.compress(theEncodedResource), resourceBinary);
+				assertEquals(theEncodedResource, BaseHapiFhirDao.decodeResource(resourceBinary, theResourceEncoding));
+				break;
 			case DEL :
 			case ESR :
 			default:
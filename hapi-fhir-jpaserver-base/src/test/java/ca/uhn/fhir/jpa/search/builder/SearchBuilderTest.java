@@ -0,0 +1,40 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchBuilderTest {
+
+	/**
+	 * First row of the output of <code>EXPLAIN</code> for a token search, captured on PostgreSQL 15
+	 */
+	private static final String POSTGRES_TOKEN_SEARCH_PLAN =
+		"Index Only Scan using idx_sp_token_hash_v2 on hfj_spidx_token t0  (cost=0.56..48213.77 rows=152340 width=8)";
+
+	/**
+	 * First row of the output of <code>EXPLAIN</code> for a chained search, captured on PostgreSQL 15
+	 */
+	private static final String POSTGRES_CHAINED_SEARCH_PLAN =
+		"Gather  (cost=1000.99..98765.43 rows=27000 width=8)";
+
+	@Test
+	public void testParseQueryPlanEstimate() {
+		assertEquals(152340L, SearchBuilder.parseQueryPlanEstimate(POSTGRES_TOKEN_SEARCH_PLAN));
+		assertEquals(27000L, SearchBuilder.parseQueryPlanEstimate(POSTGRES_CHAINED_SEARCH_PLAN));
+	}
+
+	@Test
+	public void testParseQueryPlanEstimate_SmallEstimate() {
+		// Small estimates are too unreliable to use instead of an actual count
+		assertNull(SearchBuilder.parseQueryPlanEstimate("Seq Scan on hfj_resource t0  (cost=0.00..35.50 rows=999 width=8)"));
+		assertEquals(SearchBuilder.MINIMUM_PLANNER_ESTIMATED_TOTAL, SearchBuilder.parseQueryPlanEstimate("Seq Scan on hfj_resource t0  (cost=0.00..35.50 rows=" + SearchBuilder.MINIMUM_PLANNER_ESTIMATED_TOTAL + " width=8)"));
+	}
+
+	@Test
+	public void testParseQueryPlanEstimate_NoEstimate() {
+		assertNull(SearchBuilder.parseQueryPlanEstimate("Result"));
+		assertNull(SearchBuilder.parseQueryPlanEstimate(""));
+	}
+}
@@ -0,0 +1,91 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchResultParsingSvcTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private SearchResultParsingSvc mySvc;
+
+	@BeforeEach
+	public void before() {
+		mySvc = new SearchResultParsingSvc(myStorageSettings);
+	}
+
+	@AfterEach
+	public void after() {
+		mySvc.stop();
+	}
+
+	@Test
+	public void testMapDisabledUsesCallingThread() {
+		List<Integer> input = IntStream.range(0, 500).boxed().collect(Collectors.toList());
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		List<String> output = mySvc.map(input, t -> {
+			threads.add(Thread.currentThread());
+			return "R" + t;
+		});
+
+		assertEquals(500, output.size());
+		assertEquals(Set.of(Thread.currentThread()), threads);
+	}
+
+	@Test
+	public void testMapParallelPreservesOrder() {
+		myStorageSettings.setSearchResultParsingThreadCount(4);
+		List<Integer> input = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		List<String> output = mySvc.map(input, t -> {
+			threads.add(Thread.currentThread());
+			return "R" + t;
+		});
+
+		assertEquals(input.stream().map(t -> "R" + t).collect(Collectors.toList()), output);
+		assertThat(threads.size(), greaterThan(1));
+		assertTrue(threads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testMapSmallInputNotSplit() {
+		myStorageSettings.setSearchResultParsingThreadCount(4);
+		assertFalse(mySvc.isParallel(SearchResultParsingSvc.MIN_CHUNK_SIZE));
+
+		List<String> output = mySvc.map(List.of(3, 2, 1), t -> "R" + t);
+
+		assertThat(output, contains("R3", "R2", "R1"));
+	}
+
+	@Test
+	public void testMapParallelRethrowsFailure() {
+		myStorageSettings.setSearchResultParsingThreadCount(4);
+		List<Integer> input = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+		ResourceNotFoundException e = assertThrows(ResourceNotFoundException.class, () -> mySvc.map(input, t -> {
+			if (t == 5) {
+				throw new ResourceNotFoundException("Failed on " + t);
+			}
+			return t;
+		}));
+		assertEquals("Failed on 5", e.getMessage());
+	}
+}
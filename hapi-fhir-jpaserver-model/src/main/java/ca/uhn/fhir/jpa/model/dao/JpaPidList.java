@@ -0,0 +1,216 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.dao;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list of {@link JpaPid} which stores the PIDs in an array of primitive <code>long</code>
+ * values. The versions and resource types of the PIDs are kept in side arrays, which are only
+ * allocated once a PID with a version or a resource type is added. This uses a fraction of the
+ * memory of an {@link java.util.ArrayList}, and is used for the lists of PIDs which a search
+ * accumulates.
+ * <p>
+ * {@link #get(int)} returns a new {@link JpaPid} instance each time it is called. This class is
+ * not thread-safe.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class JpaPidList extends AbstractList<JpaPid> implements RandomAccess {
+
+	private static final int MINIMUM_CAPACITY = 10;
+	private static final long NO_VERSION = Long.MIN_VALUE;
+
+	private long[] myIds;
+	private long[] myVersions;
+	private String[] myResourceTypes;
+	private int mySize;
+
+	/**
+	 * Constructor
+	 */
+	public JpaPidList() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theInitialCapacity The number of PIDs the list is expected to hold
+	 */
+	public JpaPidList(int theInitialCapacity) {
+		myIds = new long[Math.max(MINIMUM_CAPACITY, theInitialCapacity)];
+	}
+
+	/**
+	 * Copy constructor
+	 */
+	public JpaPidList(Collection<JpaPid> thePids) {
+		this(thePids.size());
+		addAll(thePids);
+	}
+
+	/**
+	 * Creates a list of PIDs without versions or resource types
+	 */
+	public static JpaPidList fromLongList(Collection<Long> theIds) {
+		JpaPidList retVal = new JpaPidList(theIds.size());
+		for (Long next : theIds) {
+			retVal.myIds[retVal.mySize++] = next;
+		}
+		return retVal;
+	}
+
+	@Override
+	public boolean add(JpaPid thePid) {
+		Validate.notNull(thePid, "thePid must not be null");
+		ensureCapacity(mySize + 1);
+		set(mySize++, thePid, false);
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends JpaPid> theCollection) {
+		ensureCapacity(mySize + theCollection.size());
+		return super.addAll(theCollection);
+	}
+
+	@Override
+	public JpaPid get(int theIndex) {
+		checkIndex(theIndex);
+		Long version = null;
+		if (myVersions != null && myVersions[theIndex] != NO_VERSION) {
+			version = myVersions[theIndex];
+		}
+		String resourceType = myResourceTypes != null ? myResourceTypes[theIndex] : null;
+		return JpaPid.fromIdAndVersionAndResourceType(myIds[theIndex], version, resourceType);
+	}
+
+	@Override
+	public JpaPid set(int theIndex, JpaPid thePid) {
+		Validate.notNull(thePid, "thePid must not be null");
+		checkIndex(theIndex);
+		JpaPid retVal = get(theIndex);
+		set(theIndex, thePid, true);
+		return retVal;
+	}
+
+	@Override
+	public void add(int theIndex, JpaPid thePid) {
+		Validate.notNull(thePid, "thePid must not be null");
+		if (theIndex == mySize) {
+			add(thePid);
+			return;
+		}
+		checkIndex(theIndex);
+		ensureCapacity(mySize + 1);
+		shift(theIndex, theIndex + 1, mySize - theIndex);
+		mySize++;
+		set(theIndex, thePid, true);
+		modCount++;
+	}
+
+	@Override
+	public JpaPid remove(int theIndex) {
+		JpaPid retVal = get(theIndex);
+		shift(theIndex + 1, theIndex, mySize - theIndex - 1);
+		mySize--;
+		set(mySize, null, true);
+		modCount++;
+		return retVal;
+	}
+
+	@Override
+	public void clear() {
+		mySize = 0;
+		myVersions = null;
+		myResourceTypes = null;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return mySize;
+	}
+
+	/**
+	 * Sets a slot. If <code>theOverwrite</code> is <code>false</code> the slot is known to be
+	 * empty, so the side arrays don't need to be cleared.
+	 */
+	private void set(int theIndex, JpaPid thePid, boolean theOverwrite) {
+		Long version = thePid != null ? thePid.getVersion() : null;
+		String resourceType = thePid != null ? thePid.getResourceType() : null;
+		myIds[theIndex] = thePid != null ? thePid.getId() : 0L;
+
+		if (version != null && myVersions == null) {
+			myVersions = new long[myIds.length];
+			Arrays.fill(myVersions, NO_VERSION);
+		}
+		if (myVersions != null && (version != null || theOverwrite)) {
+			myVersions[theIndex] = version != null ? version : NO_VERSION;
+		}
+
+		if (resourceType != null && myResourceTypes == null) {
+			myResourceTypes = new String[myIds.length];
+		}
+		if (myResourceTypes != null && (resourceType != null || theOverwrite)) {
+			myResourceTypes[theIndex] = resourceType;
+		}
+	}
+
+	private void shift(int theFrom, int theTo, int theLength) {
+		System.arraycopy(myIds, theFrom, myIds, theTo, theLength);
+		if (myVersions != null) {
+			System.arraycopy(myVersions, theFrom, myVersions, theTo, theLength);
+		}
+		if (myResourceTypes != null) {
+			System.arraycopy(myResourceTypes, theFrom, myResourceTypes, theTo, theLength);
+		}
+	}
+
+	private void ensureCapacity(int theCapacity) {
+		if (theCapacity <= myIds.length) {
+			return;
+		}
+		int newCapacity = Math.max(theCapacity, myIds.length + (myIds.length >> 1));
+		myIds = Arrays.copyOf(myIds, newCapacity);
+		if (myVersions != null) {
+			int oldLength = myVersions.length;
+			myVersions = Arrays.copyOf(myVersions, newCapacity);
+			Arrays.fill(myVersions, oldLength, newCapacity, NO_VERSION);
+		}
+		if (myResourceTypes != null) {
+			myResourceTypes = Arrays.copyOf(myResourceTypes, newCapacity);
+		}
+	}
+
+	private void checkIndex(int theIndex) {
+		if (theIndex < 0 || theIndex >= mySize) {
+			throw new IndexOutOfBoundsException("Index: " + theIndex + ", Size: " + mySize);
+		}
+	}
+}
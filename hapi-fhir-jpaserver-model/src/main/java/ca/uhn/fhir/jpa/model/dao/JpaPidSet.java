@@ -0,0 +1,379 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.dao;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set of {@link JpaPid} which stores the PIDs in an open-addressing table of primitive
+ * <code>long</code> values, with the resource types (if any are known) in a side array. This
+ * uses a fraction of the memory of a {@link HashSet}, and is used for the sets of PIDs which a
+ * search accumulates.
+ * <p>
+ * The set has the same equality semantics as {@link JpaPid}. PIDs with a version are rare
+ * (they only come from versioned references), so they are kept in a regular {@link HashSet}.
+ * {@link #iterator()} returns new {@link JpaPid} instances. This class is not thread-safe.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class JpaPidSet extends AbstractSet<JpaPid> {
+
+	private static final int MINIMUM_CAPACITY = 16;
+	private static final long EMPTY = 0L;
+
+	private long[] myTable;
+	private String[] myResourceTypes;
+	private int myTableSize;
+	private int myResizeThreshold;
+	private boolean myContainsEmptyValue;
+	private String myEmptyValueResourceType;
+	private Set<JpaPid> myVersionedPids;
+
+	/**
+	 * Constructor
+	 */
+	public JpaPidSet() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theExpectedSize The number of PIDs the set is expected to hold
+	 */
+	public JpaPidSet(int theExpectedSize) {
+		allocate(tableSizeFor(theExpectedSize));
+	}
+
+	/**
+	 * Copy constructor
+	 */
+	public JpaPidSet(Collection<JpaPid> thePids) {
+		this(thePids.size());
+		addAll(thePids);
+	}
+
+	@Override
+	public boolean add(JpaPid thePid) {
+		if (thePid.getVersion() != null) {
+			if (myVersionedPids == null) {
+				myVersionedPids = new HashSet<>();
+			}
+			return myVersionedPids.add(thePid);
+		}
+
+		long id = thePid.getId();
+		if (id == EMPTY) {
+			if (myContainsEmptyValue) {
+				return false;
+			}
+			myContainsEmptyValue = true;
+			myEmptyValueResourceType = thePid.getResourceType();
+			return true;
+		}
+
+		int index = indexOf(id);
+		if (myTable[index] == id) {
+			return false;
+		}
+		myTable[index] = id;
+		if (thePid.getResourceType() != null) {
+			if (myResourceTypes == null) {
+				myResourceTypes = new String[myTable.length];
+			}
+			myResourceTypes[index] = thePid.getResourceType();
+		}
+		myTableSize++;
+
+		if (myTableSize > myResizeThreshold) {
+			rehash(myTable.length * 2);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object theObject) {
+		if (!(theObject instanceof JpaPid)) {
+			return false;
+		}
+		JpaPid pid = (JpaPid) theObject;
+		if (pid.getVersion() != null) {
+			return myVersionedPids != null && myVersionedPids.contains(pid);
+		}
+
+		long id = pid.getId();
+		if (id == EMPTY) {
+			return myContainsEmptyValue;
+		}
+		return myTable[indexOf(id)] == id;
+	}
+
+	@Override
+	public boolean remove(Object theObject) {
+		if (!(theObject instanceof JpaPid)) {
+			return false;
+		}
+		JpaPid pid = (JpaPid) theObject;
+		if (pid.getVersion() != null) {
+			return myVersionedPids != null && myVersionedPids.remove(pid);
+		}
+
+		long id = pid.getId();
+		if (id == EMPTY) {
+			boolean retVal = myContainsEmptyValue;
+			myContainsEmptyValue = false;
+			myEmptyValueResourceType = null;
+			return retVal;
+		}
+
+		int index = indexOf(id);
+		if (myTable[index] != id) {
+			return false;
+		}
+		deleteAt(index, null);
+		myTableSize--;
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> theCollection) {
+		boolean retVal = false;
+		for (Object next : theCollection) {
+			retVal |= remove(next);
+		}
+		return retVal;
+	}
+
+	@Override
+	public void clear() {
+		allocate(MINIMUM_CAPACITY);
+		myResourceTypes = null;
+		myTableSize = 0;
+		myContainsEmptyValue = false;
+		myEmptyValueResourceType = null;
+		myVersionedPids = null;
+	}
+
+	@Override
+	public int size() {
+		int retVal = myTableSize;
+		if (myContainsEmptyValue) {
+			retVal++;
+		}
+		if (myVersionedPids != null) {
+			retVal += myVersionedPids.size();
+		}
+		return retVal;
+	}
+
+	@Override
+	public Iterator<JpaPid> iterator() {
+		return new PidIterator();
+	}
+
+	/**
+	 * Returns the slot containing the given (non-empty) value, or the empty slot where it would
+	 * be inserted if it isn't in the table
+	 */
+	private int indexOf(long theValue) {
+		int mask = myTable.length - 1;
+		int index = hash(theValue) & mask;
+		while (myTable[index] != EMPTY && myTable[index] != theValue) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	/**
+	 * Empties a slot, shifting back any entries further along the probe sequence so that
+	 * they can still be found. If <code>theWrappedValues</code> is provided, any values which
+	 * wrap around the end of the table and are moved from a slot before the emptied one to a
+	 * slot at or after it are added to it.
+	 */
+	private void deleteAt(int theIndex, Set<Long> theWrappedValues) {
+		int mask = myTable.length - 1;
+		int gap = theIndex;
+		int index = theIndex;
+		while (true) {
+			index = (index + 1) & mask;
+			long next = myTable[index];
+			if (next == EMPTY) {
+				break;
+			}
+			int home = hash(next) & mask;
+			// Move the entry into the gap unless its home slot lies cyclically in (gap, index]
+			boolean homeBetween = gap <= index ? (gap < home && home <= index) : (gap < home || home <= index);
+			if (!homeBetween) {
+				if (theWrappedValues != null && index < theIndex && gap >= theIndex) {
+					theWrappedValues.add(next);
+				}
+				myTable[gap] = next;
+				if (myResourceTypes != null) {
+					myResourceTypes[gap] = myResourceTypes[index];
+				}
+				gap = index;
+			}
+		}
+		myTable[gap] = EMPTY;
+		if (myResourceTypes != null) {
+			myResourceTypes[gap] = null;
+		}
+	}
+
+	private void rehash(int theNewTableSize) {
+		long[] oldTable = myTable;
+		String[] oldResourceTypes = myResourceTypes;
+		allocate(theNewTableSize);
+		if (oldResourceTypes != null) {
+			myResourceTypes = new String[theNewTableSize];
+		}
+		for (int i = 0; i < oldTable.length; i++) {
+			if (oldTable[i] != EMPTY) {
+				int index = indexOf(oldTable[i]);
+				myTable[index] = oldTable[i];
+				if (oldResourceTypes != null) {
+					myResourceTypes[index] = oldResourceTypes[i];
+				}
+			}
+		}
+	}
+
+	private void allocate(int theTableSize) {
+		myTable = new long[theTableSize];
+		myResizeThreshold = (theTableSize / 4) * 3;
+	}
+
+	/**
+	 * Returns a power of two large enough to hold the given number of values without
+	 * exceeding a load factor of 0.75
+	 */
+	private static int tableSizeFor(int theExpectedSize) {
+		long wanted = Math.max(MINIMUM_CAPACITY, (long) Math.ceil(theExpectedSize / 0.75));
+		return (int) Math.min(1L << 30, Long.highestOneBit(wanted - 1) << 1);
+	}
+
+	/**
+	 * PIDs are frequently sequential, so the bits are mixed in order to spread them across
+	 * the table (this is the finalizer step from MurmurHash3)
+	 */
+	private static int hash(long theValue) {
+		long h = theValue;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	private class PidIterator implements Iterator<JpaPid> {
+
+		private static final int RETURNED_NONE = 0;
+		private static final int RETURNED_EMPTY_VALUE = 1;
+		private static final int RETURNED_TABLE = 2;
+		private static final int RETURNED_VERSIONED = 3;
+
+		private final Iterator<JpaPid> myVersionedIterator =
+				myVersionedPids != null ? myVersionedPids.iterator() : Collections.emptyIterator();
+		private boolean myEmptyValueReturned = !myContainsEmptyValue;
+		private int myIndex = -1;
+		private int myLastReturned = RETURNED_NONE;
+		private int myLastIndex;
+		/**
+		 * Values which {@link #remove()} has moved from a slot which was already visited to a
+		 * slot which hasn't been, so they must be skipped if they are reached again
+		 */
+		private Set<Long> myWrappedValues;
+
+		private PidIterator() {
+			advance();
+		}
+
+		private void advance() {
+			myIndex++;
+			while (myIndex < myTable.length
+					&& (myTable[myIndex] == EMPTY
+							|| (myWrappedValues != null && myWrappedValues.contains(myTable[myIndex])))) {
+				myIndex++;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !myEmptyValueReturned || myIndex < myTable.length || myVersionedIterator.hasNext();
+		}
+
+		@Override
+		public JpaPid next() {
+			if (!myEmptyValueReturned) {
+				myEmptyValueReturned = true;
+				myLastReturned = RETURNED_EMPTY_VALUE;
+				return JpaPid.fromIdAndResourceType(EMPTY, myEmptyValueResourceType);
+			}
+			if (myIndex < myTable.length) {
+				String resourceType = myResourceTypes != null ? myResourceTypes[myIndex] : null;
+				JpaPid retVal = JpaPid.fromIdAndResourceType(myTable[myIndex], resourceType);
+				myLastReturned = RETURNED_TABLE;
+				myLastIndex = myIndex;
+				advance();
+				return retVal;
+			}
+			if (myVersionedIterator.hasNext()) {
+				myLastReturned = RETURNED_VERSIONED;
+				return myVersionedIterator.next();
+			}
+			throw new NoSuchElementException();
+		}
+
+		@Override
+		public void remove() {
+			switch (myLastReturned) {
+				case RETURNED_EMPTY_VALUE:
+					myContainsEmptyValue = false;
+					myEmptyValueResourceType = null;
+					break;
+				case RETURNED_TABLE:
+					if (myWrappedValues == null) {
+						myWrappedValues = new HashSet<>();
+					}
+					deleteAt(myLastIndex, myWrappedValues);
+					myTableSize--;
+					// Entries which haven't been visited yet may have been shifted back into the
+					// emptied slot, so resume from there
+					myIndex = myLastIndex - 1;
+					advance();
+					break;
+				case RETURNED_VERSIONED:
+					myVersionedIterator.remove();
+					break;
+				default:
+					throw new IllegalStateException();
+			}
+			myLastReturned = RETURNED_NONE;
+		}
+	}
+}
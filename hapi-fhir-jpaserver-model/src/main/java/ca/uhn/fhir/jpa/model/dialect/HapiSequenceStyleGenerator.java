@@ -36,6 +36,7 @@ import org.hibernate.id.enhanced.Optimizer;
 import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.UnknownServiceException;
 import org.hibernate.type.Type;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -56,8 +57,10 @@ public class HapiSequenceStyleGenerator
 	private StorageSettings myStorageSettings;
 
 	private ISequenceValueMassager myIdMassager;
+	private SequenceBlockIdAllocator mySequenceBlockIdAllocator;
 	private boolean myConfigured;
 	private String myGeneratorName;
+	private String mySequenceName;
 
 	@Override
 	public boolean supportsBulkInsertionIdentifierGeneration() {
@@ -74,7 +77,13 @@ public class HapiSequenceStyleGenerator
 			throws HibernateException {
 		Long retVal = myIdMassager != null ? myIdMassager.generate(myGeneratorName) : null;
 		if (retVal == null) {
-			Long next = (Long) myGen.generate(theSession, theObject);
+			Long next;
+			if (mySequenceName != null) {
+				next = mySequenceBlockIdAllocator.allocate(
+						theSession, mySequenceName, myGen.getDatabaseStructure().getIncrementSize());
+			} else {
+				next = (Long) myGen.generate(theSession, theObject);
+			}
 			retVal = myIdMassager.massage(myGeneratorName, next);
 		}
 		return retVal;
@@ -89,6 +98,16 @@ public class HapiSequenceStyleGenerator
 			myIdMassager = new ISequenceValueMassager.NoopSequenceValueMassager();
 		}
 
+		try {
+			SequenceBlockIdAllocator sequenceBlockIdAllocator =
+					theServiceRegistry.getService(SequenceBlockIdAllocator.class);
+			if (sequenceBlockIdAllocator != null && sequenceBlockIdAllocator.getAllocationSize() > 1) {
+				mySequenceBlockIdAllocator = sequenceBlockIdAllocator;
+			}
+		} catch (UnknownServiceException e) {
+			// Not registered, so use the standard pooled optimizer
+		}
+
 		// Create a HAPI FHIR sequence style generator
 		myGeneratorName = theParams.getProperty(IdentifierGenerator.GENERATOR_NAME);
 		Validate.notBlank(myGeneratorName, "No generator name found");
@@ -112,6 +131,11 @@ public class HapiSequenceStyleGenerator
 	@Override
 	public void initialize(SqlStringGenerationContext context) {
 		myGen.initialize(context);
+
+		// Block allocation only applies to real database sequences (not table based emulation)
+		if (mySequenceBlockIdAllocator != null && myGen.getDatabaseStructure().isPhysicalSequence()) {
+			mySequenceName = context.format(myGen.getDatabaseStructure().getPhysicalName());
+		}
 	}
 
 	@Override
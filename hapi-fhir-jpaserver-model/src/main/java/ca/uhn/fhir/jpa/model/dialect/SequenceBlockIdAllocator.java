@@ -0,0 +1,253 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.dialect;
+
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hibernate.HibernateException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.OracleDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.service.Service;
+import org.hibernate.service.spi.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This is an internal API and may change or disappear without notice
+ * <p>
+ * Hands out IDs for the HAPI FHIR sequences from blocks which are reserved ahead of time. Each
+ * time a sequence runs out of IDs, several sequence values are fetched in a single database round
+ * trip. Using the same interpretation as the Hibernate pooled optimizer, each sequence value
+ * <code>v</code> reserves the IDs from <code>v - incrementSize + 1</code> to <code>v</code>, so this
+ * allocator can safely be used on some nodes while others use the default Hibernate generator.
+ * Within a reserved block, IDs are handed out without locking.
+ * </p>
+ * <p>
+ * This is registered as a Hibernate service so that it is used by {@link HapiSequenceStyleGenerator},
+ * which means it also applies to rows inserted in bulk using the entity ID generators.
+ * </p>
+ *
+ * @see StorageSettings#setSequenceBlockAllocationSize(int)
+ * @since 7.2.0
+ */
+public class SequenceBlockIdAllocator implements Service, Stoppable {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SequenceBlockIdAllocator.class);
+
+	private final int myAllocationSize;
+	private final Map<String, SequenceBlocks> mySequenceNameToBlocks = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param theAllocationSize The number of sequence values to reserve in each database round trip
+	 */
+	public SequenceBlockIdAllocator(int theAllocationSize) {
+		Validate.isTrue(theAllocationSize >= 1, "Allocation size must be at least 1");
+		myAllocationSize = theAllocationSize;
+	}
+
+	public int getAllocationSize() {
+		return myAllocationSize;
+	}
+
+	/**
+	 * Returns the next ID for the given sequence, reserving a new block of IDs using the
+	 * given session's connection if needed
+	 */
+	public long allocate(SharedSessionContractImplementor theSession, String theSequenceName, int theIncrementSize) {
+		return allocate(theSequenceName, theIncrementSize, () -> fetchSequenceValues(theSession, theSequenceName));
+	}
+
+	@VisibleForTesting
+	long allocate(String theSequenceName, int theIncrementSize, Supplier<long[]> theSequenceValueFetcher) {
+		SequenceBlocks blocks =
+				mySequenceNameToBlocks.computeIfAbsent(theSequenceName, t -> new SequenceBlocks(theIncrementSize));
+		return blocks.next(theSequenceValueFetcher);
+	}
+
+	/**
+	 * Reserved IDs which have not been handed out yet can't be given back to the database sequence,
+	 * so on shutdown they are simply released (leaving a gap in the ID space, as with the Hibernate
+	 * pooled optimizer).
+	 */
+	@Override
+	public void stop() {
+		mySequenceNameToBlocks.forEach((name, blocks) -> {
+			long unused = blocks.release();
+			if (unused > 0) {
+				ourLog.info("Releasing {} unused reserved IDs for sequence {}", unused, name);
+			}
+		});
+		mySequenceNameToBlocks.clear();
+	}
+
+	private long[] fetchSequenceValues(SharedSessionContractImplementor theSession, String theSequenceName) {
+		Dialect dialect = theSession.getJdbcServices().getDialect();
+		String sql = generateSelectNextValuesSql(dialect, theSequenceName, myAllocationSize);
+		if (sql != null) {
+			long[] retVal = executeSelectSequenceValues(theSession, sql, myAllocationSize);
+			Validate.isTrue(retVal.length == myAllocationSize, "Sequence %s returned too few values", theSequenceName);
+			return retVal;
+		}
+
+		// Fall back to one statement per value
+		String singleSql = dialect.getSequenceSupport().getSequenceNextValString(theSequenceName);
+		long[] retVal = new long[myAllocationSize];
+		for (int i = 0; i < myAllocationSize; i++) {
+			retVal[i] = executeSelectSequenceValues(theSession, singleSql, 1)[0];
+		}
+		return retVal;
+	}
+
+	private static long[] executeSelectSequenceValues(
+			SharedSessionContractImplementor theSession, String theSql, int theCount) {
+		JdbcCoordinator jdbcCoordinator = theSession.getJdbcCoordinator();
+		PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(theSql);
+		try {
+			ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement, theSql);
+			try {
+				long[] retVal = new long[theCount];
+				int count = 0;
+				while (count < theCount && resultSet.next()) {
+					retVal[count++] = resultSet.getLong(1);
+				}
+				return Arrays.copyOf(retVal, count);
+			} finally {
+				jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(resultSet, statement);
+			}
+		} catch (SQLException e) {
+			throw theSession
+					.getJdbcServices()
+					.getSqlExceptionHelper()
+					.convert(e, "Could not reserve sequence values", theSql);
+		} finally {
+			jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+			jdbcCoordinator.afterStatementExecution();
+		}
+	}
+
+	/**
+	 * Returns SQL which fetches the given number of values from a sequence in a single statement,
+	 * or <code>null</code> if this isn't supported for the given dialect
+	 */
+	@Nullable
+	static String generateSelectNextValuesSql(Dialect theDialect, String theSequenceName, int theCount) {
+		String nextValue;
+		try {
+			nextValue = theDialect.getSequenceSupport().getSelectSequenceNextValString(theSequenceName);
+		} catch (HibernateException e) {
+			return null;
+		}
+
+		if (theDialect instanceof PostgreSQLDialect) {
+			return "select " + nextValue + " from generate_series(1, " + theCount + ")";
+		} else if (theDialect instanceof OracleDialect) {
+			return "select " + nextValue + " from dual connect by level <= " + theCount;
+		} else if (theDialect instanceof H2Dialect) {
+			return "select " + nextValue + " from system_range(1, " + theCount + ")";
+		}
+		return null;
+	}
+
+	private static class SequenceBlocks {
+
+		private final int myIncrementSize;
+		private final ArrayDeque<IdRange> myReservedRanges = new ArrayDeque<>();
+		private volatile IdRange myCurrentRange;
+
+		private SequenceBlocks(int theIncrementSize) {
+			myIncrementSize = theIncrementSize;
+		}
+
+		long next(Supplier<long[]> theSequenceValueFetcher) {
+			while (true) {
+				IdRange range = myCurrentRange;
+				if (range != null) {
+					long retVal = range.myNext.getAndIncrement();
+					if (retVal <= range.myLast) {
+						return retVal;
+					}
+				}
+
+				synchronized (this) {
+					// Another thread may have moved on to a new range while we were waiting
+					if (myCurrentRange == range) {
+						if (myReservedRanges.isEmpty()) {
+							reserve(theSequenceValueFetcher.get());
+						}
+						myCurrentRange = myReservedRanges.poll();
+					}
+				}
+			}
+		}
+
+		private void reserve(long[] theSequenceValues) {
+			Validate.isTrue(theSequenceValues.length > 0, "No sequence values were returned");
+			long[] values = theSequenceValues.clone();
+			Arrays.sort(values);
+			for (long next : values) {
+				long first = Math.max(1, next - myIncrementSize + 1);
+				myReservedRanges.add(new IdRange(first, next));
+			}
+		}
+
+		synchronized long release() {
+			long retVal = 0;
+			IdRange current = myCurrentRange;
+			if (current != null) {
+				retVal += Math.max(0, current.myLast - current.myNext.get() + 1);
+			}
+			for (IdRange next : myReservedRanges) {
+				retVal += next.myLast - next.myNext.get() + 1;
+			}
+			myReservedRanges.clear();
+			myCurrentRange = null;
+			return retVal;
+		}
+	}
+
+	private static class IdRange {
+
+		private final AtomicLong myNext;
+		private final long myLast;
+
+		private IdRange(long theFirst, long theLast) {
+			myNext = new AtomicLong(theFirst);
+			myLast = theLast;
+		}
+	}
+}
@@ -40,6 +40,13 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json Compressed using LZ4, which is much cheaper to decompress than {@link #JSONC}
+	 *
+	 * @since 7.2.0
+	 */
+	LZ4,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
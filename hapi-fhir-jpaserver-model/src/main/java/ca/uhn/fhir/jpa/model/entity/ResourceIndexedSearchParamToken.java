@@ -36,13 +36,13 @@ import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
-import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
@@ -84,7 +84,7 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 
 	@SuppressWarnings("unused")
 	@Id
-	@SequenceGenerator(name = "SEQ_SPIDX_TOKEN", sequenceName = "SEQ_SPIDX_TOKEN")
+	@GenericGenerator(name = "SEQ_SPIDX_TOKEN", type = ca.uhn.fhir.jpa.model.dialect.HapiSequenceStyleGenerator.class)
 	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_SPIDX_TOKEN")
 	@Column(name = "SP_ID")
 	private Long myId;
@@ -158,6 +158,23 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 		calculateHashes();
 	}
 
+	/**
+	 * Constructor for a detached instance holding only the ID and hashes of an existing
+	 * row. Such an instance can be compared against newly extracted indexes, since
+	 * {@link #equals(Object)} only considers the hashes, but must never be persisted.
+	 *
+	 * @since 7.2.0
+	 */
+	public ResourceIndexedSearchParamToken(
+			Long theId, String theResourceType, Long theHashSystem, Long theHashValue, Long theHashSystemAndValue) {
+		super();
+		setId(theId);
+		setResourceType(theResourceType);
+		setHashSystem(theHashSystem);
+		setHashValue(theHashValue);
+		setHashSystemAndValue(theHashSystemAndValue);
+	}
+
 	@Override
 	public <T extends BaseResourceIndex> void copyMutableValuesFrom(T theSource) {
 		super.copyMutableValuesFrom(theSource);
@@ -0,0 +1,114 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * This entity stores a compact projection of the current version of a resource, containing
+ * only the elements configured in <code>JpaStorageSettings#getSearchProjectionElements()</code>
+ * for its resource type. Search results requested with <code>_elements</code> or
+ * <code>_summary</code> can be served from this table without loading the full resource
+ * body from <code>HFJ_RES_VER</code>.
+ * <p>
+ * Like {@link ResourceSearchUrlEntity}, this table has no foreign key to <code>HFJ_RESOURCE</code>.
+ * A projection is only ever served if its {@link #getResourceVersion() version} matches the
+ * current version of the resource, so a row left behind by a delete which bypasses the DAO
+ * is never used.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+@Entity
+@Table(name = "HFJ_RES_PROJECTION")
+public class ResourceProjectionEntity extends BasePartitionable {
+
+	public static final int PROJECTION_TEXT_MAX_LENGTH = 4000;
+
+	@Id
+	@Column(name = "RES_ID", nullable = false, updatable = false)
+	private Long myResourceId;
+
+	@Column(name = "RES_VER", nullable = false)
+	private long myResourceVersion;
+
+	/**
+	 * A hash of the names of the projected elements, so that projections stored before
+	 * the configuration changed aren't used
+	 */
+	@Column(name = "ELEMENTS_HASH", nullable = false)
+	private long myElementsHash;
+
+	@Column(name = "PROJ_TEXT", length = PROJECTION_TEXT_MAX_LENGTH, nullable = false)
+	private String myProjectionText;
+
+	public Long getResourceId() {
+		return myResourceId;
+	}
+
+	public ResourceProjectionEntity setResourceId(Long theResourceId) {
+		myResourceId = theResourceId;
+		return this;
+	}
+
+	public long getResourceVersion() {
+		return myResourceVersion;
+	}
+
+	public ResourceProjectionEntity setResourceVersion(long theResourceVersion) {
+		myResourceVersion = theResourceVersion;
+		return this;
+	}
+
+	public long getElementsHash() {
+		return myElementsHash;
+	}
+
+	public ResourceProjectionEntity setElementsHash(long theElementsHash) {
+		myElementsHash = theElementsHash;
+		return this;
+	}
+
+	/**
+	 * The projected resource, encoded as JSON without its id or metadata
+	 */
+	public String getProjectionText() {
+		return myProjectionText;
+	}
+
+	public ResourceProjectionEntity setProjectionText(String theProjectionText) {
+		myProjectionText = theProjectionText;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		ToStringBuilder b = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+		b.append("resourceId", myResourceId);
+		b.append("resourceVersion", myResourceVersion);
+		b.append("elementsHash", myElementsHash);
+		return b.toString();
+	}
+}
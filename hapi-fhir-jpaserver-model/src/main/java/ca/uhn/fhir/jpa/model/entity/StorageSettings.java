@@ -100,6 +100,11 @@ public class StorageSettings {
 	private boolean myCrossPartitionSubscriptionEnabled = false;
 	private Integer myBundleBatchPoolSize = DEFAULT_BUNDLE_BATCH_POOL_SIZE;
 	private Integer myBundleBatchMaxPoolSize = DEFAULT_BUNDLE_BATCH_MAX_POOL_SIZE;
+	/**
+	 * @since 7.2.0
+	 */
+	private int myBundleIndexExtractionPoolSize = 1;
+
 	private boolean myEnableInMemorySubscriptionMatching = true;
 	private boolean myTriggerSubscriptionsForNonVersioningChanges;
 	private boolean myMassIngestionMode;
@@ -114,6 +119,11 @@ public class StorageSettings {
 
 	private boolean mySuppressStringIndexingInTokens = false;
 	private Class<? extends ISequenceValueMassager> mySequenceValueMassagerClass;
+	/**
+	 * @since 7.2.0
+	 */
+	private int mySequenceBlockAllocationSize = 1;
+
 	private IPrimitiveType<Date> myPeriodIndexStartOfTime;
 	private IPrimitiveType<Date> myPeriodIndexEndOfTime;
 	private NormalizedQuantitySearchLevel myNormalizedQuantitySearchLevel;
@@ -270,6 +280,33 @@ public class StorageSettings {
 		this.myBundleBatchMaxPoolSize = theBundleBatchMaxPoolSize;
 	}
 
+	/**
+	 * If set to a value greater than 1 (default is 1), the search parameter indexes for the resources
+	 * created and updated by a FHIR transaction are extracted by a pool of this many threads before
+	 * the resources are stored one by one. Extracting indexes is CPU intensive and independent for each
+	 * resource, so this can speed up the processing of large transaction bundles on servers with several
+	 * cores. Reference indexes are still resolved on the request thread.
+	 *
+	 * @since 7.2.0
+	 */
+	public int getBundleIndexExtractionPoolSize() {
+		return myBundleIndexExtractionPoolSize;
+	}
+
+	/**
+	 * If set to a value greater than 1 (default is 1), the search parameter indexes for the resources
+	 * created and updated by a FHIR transaction are extracted by a pool of this many threads before
+	 * the resources are stored one by one. Extracting indexes is CPU intensive and independent for each
+	 * resource, so this can speed up the processing of large transaction bundles on servers with several
+	 * cores. Reference indexes are still resolved on the request thread.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setBundleIndexExtractionPoolSize(int theBundleIndexExtractionPoolSize) {
+		Validate.isTrue(theBundleIndexExtractionPoolSize >= 1, "Pool size must be at least 1");
+		myBundleIndexExtractionPoolSize = theBundleIndexExtractionPoolSize;
+	}
+
 	/**
 	 * If set to <code>false</code> (default is true) the server will not use
 	 * in-memory subscription searching and instead use the database matcher for all subscription
@@ -459,6 +496,47 @@ public class StorageSettings {
 		mySequenceValueMassagerClass = theSequenceValueMassagerClass;
 	}
 
+	/**
+	 * If set to a value greater than 1 (default is 1), each time a node runs out of preallocated
+	 * IDs for one of the HAPI FHIR sequences (e.g. <code>SEQ_RESOURCE_ID</code>), it reserves this
+	 * many sequence values in a single database round trip instead of one. Each sequence value
+	 * reserves a block of 50 IDs, which are then handed out without any further database access
+	 * or locking. This reduces contention on the sequences during bulk ingestion, at the cost of
+	 * larger gaps in the ID space when a node is restarted, since reserved IDs which were not used
+	 * can not be given back to the database.
+	 * <p>
+	 * This setting is read when the entity manager factory is created, so changing it afterwards has
+	 * no effect. Reserving several values in a single statement is supported on PostgreSQL, Oracle
+	 * and H2. On other platforms, the values are still reserved together but one statement at a time.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public int getSequenceBlockAllocationSize() {
+		return mySequenceBlockAllocationSize;
+	}
+
+	/**
+	 * If set to a value greater than 1 (default is 1), each time a node runs out of preallocated
+	 * IDs for one of the HAPI FHIR sequences (e.g. <code>SEQ_RESOURCE_ID</code>), it reserves this
+	 * many sequence values in a single database round trip instead of one. Each sequence value
+	 * reserves a block of 50 IDs, which are then handed out without any further database access
+	 * or locking. This reduces contention on the sequences during bulk ingestion, at the cost of
+	 * larger gaps in the ID space when a node is restarted, since reserved IDs which were not used
+	 * can not be given back to the database.
+	 * <p>
+	 * This setting is read when the entity manager factory is created, so changing it afterwards has
+	 * no effect. Reserving several values in a single statement is supported on PostgreSQL, Oracle
+	 * and H2. On other platforms, the values are still reserved together but one statement at a time.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSequenceBlockAllocationSize(int theSequenceBlockAllocationSize) {
+		Validate.isTrue(theSequenceBlockAllocationSize >= 1, "Allocation size must be at least 1");
+		mySequenceBlockAllocationSize = theSequenceBlockAllocationSize;
+	}
+
 	/**
 	 * If set to true (default is false) then subscriptions will be triggered for resource updates even if they
 	 * do not trigger a new version (e.g. $meta-add and $meta-delete).
@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.util;
+
+/**
+ * A set of primitive <code>long</code> values, stored in an open-addressing hash table. This
+ * is used to track large numbers of resource PIDs without allocating an object for each one.
+ * This class is not thread-safe.
+ *
+ * @since 7.2.0
+ */
+public class LongHashSet {
+
+	private static final int MINIMUM_CAPACITY = 16;
+	private static final long EMPTY = 0L;
+
+	private long[] myTable;
+	private int mySize;
+	private int myResizeThreshold;
+	private boolean myContainsEmptyValue;
+
+	/**
+	 * Constructor
+	 */
+	public LongHashSet() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theExpectedSize The number of values the set is expected to hold
+	 */
+	public LongHashSet(int theExpectedSize) {
+		allocate(tableSizeFor(theExpectedSize));
+	}
+
+	/**
+	 * Adds a value to the set
+	 *
+	 * @return Returns <code>true</code> if the value was not already in the set
+	 */
+	public boolean add(long theValue) {
+		if (theValue == EMPTY) {
+			if (myContainsEmptyValue) {
+				return false;
+			}
+			myContainsEmptyValue = true;
+			mySize++;
+			return true;
+		}
+
+		int mask = myTable.length - 1;
+		int index = hash(theValue) & mask;
+		while (myTable[index] != EMPTY) {
+			if (myTable[index] == theValue) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+		myTable[index] = theValue;
+		mySize++;
+
+		if (mySize > myResizeThreshold) {
+			rehash(myTable.length * 2);
+		}
+		return true;
+	}
+
+	public boolean contains(long theValue) {
+		if (theValue == EMPTY) {
+			return myContainsEmptyValue;
+		}
+
+		int mask = myTable.length - 1;
+		int index = hash(theValue) & mask;
+		while (myTable[index] != EMPTY) {
+			if (myTable[index] == theValue) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	private void rehash(int theNewTableSize) {
+		long[] oldTable = myTable;
+		allocate(theNewTableSize);
+		int mask = myTable.length - 1;
+		for (long next : oldTable) {
+			if (next != EMPTY) {
+				int index = hash(next) & mask;
+				while (myTable[index] != EMPTY) {
+					index = (index + 1) & mask;
+				}
+				myTable[index] = next;
+			}
+		}
+	}
+
+	private void allocate(int theTableSize) {
+		myTable = new long[theTableSize];
+		myResizeThreshold = (theTableSize / 4) * 3;
+	}
+
+	/**
+	 * Returns a power of two large enough to hold the given number of values without
+	 * exceeding a load factor of 0.75
+	 */
+	private static int tableSizeFor(int theExpectedSize) {
+		long wanted = Math.max(MINIMUM_CAPACITY, (long) Math.ceil(theExpectedSize / 0.75));
+		return (int) Math.min(1L << 30, Long.highestOneBit(wanted - 1) << 1);
+	}
+
+	/**
+	 * PIDs are frequently sequential, so the bits are mixed in order to spread them across
+	 * the table (this is the finalizer step from MurmurHash3)
+	 */
+	private static int hash(long theValue) {
+		long h = theValue;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
@@ -0,0 +1,76 @@
+package ca.uhn.fhir.jpa.model.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JpaPidListTest {
+
+	@Test
+	public void testAddAndGet() {
+		JpaPidList list = new JpaPidList(1);
+		for (long i = 0; i < 100; i++) {
+			list.add(JpaPid.fromId(i));
+		}
+		list.add(JpaPid.fromIdAndVersionAndResourceType(100L, 2L, "Patient"));
+		list.add(JpaPid.fromId(101L));
+
+		assertEquals(102, list.size());
+		assertEquals(50L, list.get(50).getId());
+		assertNull(list.get(50).getVersion());
+		assertNull(list.get(50).getResourceType());
+
+		JpaPid versioned = list.get(100);
+		assertEquals(100L, versioned.getId());
+		assertEquals(2L, versioned.getVersion());
+		assertEquals("Patient", versioned.getResourceType());
+
+		assertNull(list.get(101).getVersion());
+		assertNull(list.get(101).getResourceType());
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(102));
+	}
+
+	@Test
+	public void testBehavesLikeArrayList() {
+		List<JpaPid> expected = new ArrayList<>();
+		JpaPidList list = new JpaPidList();
+		for (long i = 0; i < 20; i++) {
+			JpaPid next = i % 3 == 0 ? JpaPid.fromIdAndVersion(i, i) : JpaPid.fromId(i);
+			expected.add(next);
+			list.add(next);
+		}
+
+		expected.remove(5);
+		list.remove(5);
+		expected.add(3, JpaPid.fromId(99L));
+		list.add(3, JpaPid.fromId(99L));
+		expected.set(0, JpaPid.fromId(98L));
+		list.set(0, JpaPid.fromId(98L));
+		assertEquals(expected, list);
+		assertEquals(expected.subList(4, 10), list.subList(4, 10));
+
+		list.subList(0, 10).clear();
+		expected.subList(0, 10).clear();
+		assertEquals(expected, list);
+
+		list.clear();
+		assertEquals(0, list.size());
+		list.add(JpaPid.fromId(1L));
+		assertNull(list.get(0).getVersion());
+	}
+
+	@Test
+	public void testNullRejected() {
+		JpaPidList list = new JpaPidList();
+		list.add(JpaPid.fromId(1L));
+		assertThrows(NullPointerException.class, () -> list.add(null));
+		assertThrows(NullPointerException.class, () -> list.add(0, null));
+		assertThrows(NullPointerException.class, () -> list.set(0, null));
+		assertEquals(1L, list.get(0).getId());
+	}
+}
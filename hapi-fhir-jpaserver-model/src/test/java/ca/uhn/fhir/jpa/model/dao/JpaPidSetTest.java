@@ -0,0 +1,140 @@
+package ca.uhn.fhir.jpa.model.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JpaPidSetTest {
+
+	@Test
+	public void testAddContainsRemove() {
+		JpaPidSet set = new JpaPidSet();
+		assertTrue(set.add(JpaPid.fromId(1L)));
+		assertTrue(set.add(JpaPid.fromIdAndResourceType(2L, "Patient")));
+		assertTrue(set.add(JpaPid.fromId(0L)));
+		assertFalse(set.add(JpaPid.fromIdAndResourceType(1L, "Observation")));
+
+		// PIDs with a version are distinct from the same PID without one, as with JpaPid#equals
+		assertTrue(set.add(JpaPid.fromIdAndVersion(1L, 3L)));
+		assertFalse(set.add(JpaPid.fromIdAndVersion(1L, 3L)));
+
+		assertEquals(4, set.size());
+		assertTrue(set.contains(JpaPid.fromId(2L)));
+		assertTrue(set.contains(JpaPid.fromId(0L)));
+		assertTrue(set.contains(JpaPid.fromIdAndVersion(1L, 3L)));
+		assertFalse(set.contains(JpaPid.fromIdAndVersion(1L, 4L)));
+		assertFalse(set.contains(JpaPid.fromId(3L)));
+
+		assertTrue(set.remove(JpaPid.fromId(1L)));
+		assertFalse(set.remove(JpaPid.fromId(1L)));
+		assertFalse(set.contains(JpaPid.fromId(1L)));
+		assertTrue(set.contains(JpaPid.fromIdAndVersion(1L, 3L)));
+		assertEquals(3, set.size());
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(JpaPid.fromId(2L)));
+	}
+
+	@Test
+	public void testIterate_ResourceTypesPreserved() {
+		JpaPidSet set = new JpaPidSet();
+		set.add(JpaPid.fromIdAndResourceType(1L, "Patient"));
+		set.add(JpaPid.fromId(2L));
+		set.add(JpaPid.fromIdAndVersionAndResourceType(3L, 1L, "Observation"));
+
+		List<String> values = new ArrayList<>();
+		for (JpaPid next : set) {
+			values.add(next.getId() + "/" + next.getVersion() + "/" + next.getResourceType());
+		}
+		assertThat(values, containsInAnyOrder("1/null/Patient", "2/null/null", "3/1/Observation"));
+	}
+
+	@Test
+	public void testRandomOperationsMatchHashSet() {
+		JpaPidSet set = new JpaPidSet(4);
+		Set<JpaPid> expected = new HashSet<>();
+		Random random = new Random(0);
+		for (int i = 0; i < 50000; i++) {
+			JpaPid next = JpaPid.fromIdAndResourceType((long) random.nextInt(5000), "Patient");
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(next), set.remove(next));
+			} else {
+				assertEquals(expected.add(next), set.add(next));
+			}
+		}
+
+		assertEquals(expected.size(), set.size());
+		assertEquals(expected, new HashSet<>(set));
+		for (JpaPid next : set) {
+			assertEquals("Patient", next.getResourceType());
+		}
+	}
+
+	@Test
+	public void testIteratorRemoveMatchesHashSet() {
+		Random random = new Random(0);
+		for (int round = 0; round < 1000; round++) {
+			JpaPidSet set = new JpaPidSet(4);
+			Set<JpaPid> expected = new HashSet<>();
+			int count = random.nextInt(200);
+			for (int i = 0; i < count; i++) {
+				JpaPid next = random.nextInt(20) == 0
+						? JpaPid.fromIdAndVersion((long) random.nextInt(50), 1L)
+						: JpaPid.fromId((long) random.nextInt(300));
+				set.add(next);
+				expected.add(next);
+			}
+
+			// Every PID must be visited exactly once, even though removing entries shifts others
+			List<JpaPid> visited = new ArrayList<>();
+			int modulus = 2 + random.nextInt(3);
+			set.removeIf(t -> {
+				visited.add(t);
+				return t.getId() % modulus == 0;
+			});
+			assertEquals(expected.size(), visited.size());
+			assertEquals(expected, new HashSet<>(visited));
+
+			expected.removeIf(t -> t.getId() % modulus == 0);
+			assertEquals(expected.size(), set.size());
+			assertEquals(expected, new HashSet<>(set));
+			for (JpaPid next : expected) {
+				assertTrue(set.contains(next));
+			}
+		}
+	}
+
+	@Test
+	public void testRetainAllAndIteratorRemove() {
+		JpaPidSet set = new JpaPidSet();
+		set.add(JpaPid.fromId(0L));
+		set.add(JpaPid.fromId(1L));
+		set.add(JpaPid.fromId(2L));
+		set.add(JpaPid.fromIdAndVersion(3L, 1L));
+
+		assertTrue(set.retainAll(Set.of(JpaPid.fromId(1L), JpaPid.fromIdAndVersion(3L, 1L))));
+		assertThat(set, containsInAnyOrder(JpaPid.fromId(1L), JpaPid.fromIdAndVersion(3L, 1L)));
+
+		Iterator<JpaPid> iterator = set.iterator();
+		assertThrows(IllegalStateException.class, iterator::remove);
+		while (iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+		assertThrows(IllegalStateException.class, iterator::remove);
+		assertTrue(set.isEmpty());
+	}
+}
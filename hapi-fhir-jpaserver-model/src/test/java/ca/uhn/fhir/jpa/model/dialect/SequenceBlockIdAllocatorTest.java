@@ -0,0 +1,116 @@
+package ca.uhn.fhir.jpa.model.dialect;
+
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.OracleDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SequenceBlockIdAllocatorTest {
+
+	@Test
+	public void testIdsAllocatedFromReservedSequenceValues() {
+		SequenceBlockIdAllocator allocator = new SequenceBlockIdAllocator(2);
+		AtomicInteger fetches = new AtomicInteger();
+		Supplier<long[]> fetcher = () -> {
+			fetches.incrementAndGet();
+			return new long[]{201, 101};
+		};
+
+		// Each value v reserves the IDs from v - 49 to v
+		for (long expected = 52; expected <= 101; expected++) {
+			assertEquals(expected, allocator.allocate("SEQ_RESOURCE_ID", 50, fetcher));
+		}
+		for (long expected = 152; expected <= 201; expected++) {
+			assertEquals(expected, allocator.allocate("SEQ_RESOURCE_ID", 50, fetcher));
+		}
+		assertEquals(1, fetches.get());
+
+		assertEquals(52, allocator.allocate("SEQ_RESOURCE_ID", 50, fetcher));
+		assertEquals(2, fetches.get());
+	}
+
+	@Test
+	public void testInitialSequenceValue() {
+		SequenceBlockIdAllocator allocator = new SequenceBlockIdAllocator(2);
+		Supplier<long[]> fetcher = () -> new long[]{1, 51};
+
+		assertEquals(1, allocator.allocate("SEQ_RESOURCE_ID", 50, fetcher));
+		assertEquals(2, allocator.allocate("SEQ_RESOURCE_ID", 50, fetcher));
+		assertEquals(3, allocator.allocate("SEQ_RESOURCE_ID", 50, fetcher));
+	}
+
+	@Test
+	public void testSequencesAreIndependent() {
+		SequenceBlockIdAllocator allocator = new SequenceBlockIdAllocator(1);
+
+		assertEquals(51, allocator.allocate("SEQ_RESOURCE_ID", 50, () -> new long[]{100}));
+		assertEquals(951, allocator.allocate("SEQ_SPIDX_TOKEN", 50, () -> new long[]{1000}));
+		assertEquals(52, allocator.allocate("SEQ_RESOURCE_ID", 50, () -> new long[]{200}));
+	}
+
+	@Test
+	public void testStopReleasesReservedIds() {
+		SequenceBlockIdAllocator allocator = new SequenceBlockIdAllocator(2);
+		allocator.allocate("SEQ_RESOURCE_ID", 50, () -> new long[]{100, 150});
+
+		allocator.stop();
+
+		assertEquals(151, allocator.allocate("SEQ_RESOURCE_ID", 50, () -> new long[]{200, 250}));
+	}
+
+	@Test
+	public void testConcurrentAllocationIsUnique() throws Exception {
+		SequenceBlockIdAllocator allocator = new SequenceBlockIdAllocator(3);
+		AtomicLong sequence = new AtomicLong(1);
+		Supplier<long[]> fetcher = () -> new long[]{sequence.addAndGet(10), sequence.addAndGet(10), sequence.addAndGet(10)};
+
+		int threads = 8;
+		int idsPerThread = 5000;
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < idsPerThread; j++) {
+						assertTrue(ids.add(allocator.allocate("SEQ_RESOURCE_ID", 10, fetcher)));
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(threads * idsPerThread, ids.size());
+	}
+
+	@Test
+	public void testGenerateSelectNextValuesSql() {
+		assertEquals("select nextval('SEQ_RESOURCE_ID') from generate_series(1, 10)",
+			SequenceBlockIdAllocator.generateSelectNextValuesSql(new PostgreSQLDialect(), "SEQ_RESOURCE_ID", 10));
+		assertEquals("select SEQ_RESOURCE_ID.nextval from dual connect by level <= 10",
+			SequenceBlockIdAllocator.generateSelectNextValuesSql(new OracleDialect(), "SEQ_RESOURCE_ID", 10));
+		assertEquals("select next value for SEQ_RESOURCE_ID from system_range(1, 10)",
+			SequenceBlockIdAllocator.generateSelectNextValuesSql(new H2Dialect(), "SEQ_RESOURCE_ID", 10));
+		assertNull(SequenceBlockIdAllocator.generateSelectNextValuesSql(new SQLServerDialect(), "SEQ_RESOURCE_ID", 10));
+	}
+}
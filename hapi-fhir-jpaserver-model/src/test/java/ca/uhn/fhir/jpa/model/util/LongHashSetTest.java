@@ -0,0 +1,49 @@
+package ca.uhn.fhir.jpa.model.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.isEmpty());
+
+		assertTrue(set.add(5L));
+		assertTrue(set.add(0L));
+		assertTrue(set.add(-3L));
+		assertFalse(set.add(5L));
+		assertFalse(set.add(0L));
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(5L));
+		assertTrue(set.contains(0L));
+		assertTrue(set.contains(-3L));
+		assertFalse(set.contains(6L));
+	}
+
+	@Test
+	public void testGrow() {
+		LongHashSet set = new LongHashSet(2);
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(0);
+		for (int i = 0; i < 20000; i++) {
+			long next = i % 2 == 0 ? i : random.nextLong();
+			assertEquals(expected.add(next), set.add(next));
+		}
+
+		assertEquals(expected.size(), set.size());
+		for (Long next : expected) {
+			assertTrue(set.contains(next));
+		}
+		assertFalse(set.contains(20001L));
+	}
+}
@@ -71,6 +71,7 @@ public class SearchParameterMap implements Serializable {
 	private final HashMap<String, List<List<IQueryParameterType>>> mySearchParameterMap = new LinkedHashMap<>();
 	private Integer myCount;
 	private Integer myOffset;
+	private String mySearchCursor;
 	private EverythingModeEnum myEverythingMode = null;
 	private Set<Include> myIncludes;
 	private DateRangeParam myLastUpdated;
@@ -122,6 +123,7 @@ public class SearchParameterMap implements Serializable {
 		map.setNearDistanceParam(getNearDistanceParam());
 		map.setLoadSynchronousUpTo(getLoadSynchronousUpTo());
 		map.setOffset(getOffset());
+		map.setSearchCursor(getSearchCursor());
 		map.setSearchContainedMode(getSearchContainedMode());
 
 		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : mySearchParameterMap.entrySet()) {
@@ -277,6 +279,26 @@ public class SearchParameterMap implements Serializable {
 		myOffset = theOffset;
 	}
 
+	/**
+	 * Returns the keyset pagination cursor supplied by the client using the
+	 * <code>_cursor</code> parameter, or <code>null</code> if none was supplied.
+	 *
+	 * @since 7.2.0
+	 */
+	public String getSearchCursor() {
+		return mySearchCursor;
+	}
+
+	/**
+	 * Sets the keyset pagination cursor. A cursor is only honoured for offset queries
+	 * (see {@link #isOffsetQuery()}), and replaces the offset when the query is executed.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchCursor(String theSearchCursor) {
+		mySearchCursor = theSearchCursor;
+	}
+
 	public EverythingModeEnum getEverythingMode() {
 		return myEverythingMode;
 	}
@@ -544,6 +566,13 @@ public class SearchParameterMap implements Serializable {
 			b.append(getOffset());
 		}
 
+		if (isNotBlank(getSearchCursor())) {
+			addUrlParamSeparator(b);
+			b.append(Constants.PARAM_CURSOR);
+			b.append('=');
+			b.append(UrlUtil.escapeUrlParam(getSearchCursor()));
+		}
+
 		// Summary mode (_summary)
 		if (getSummaryMode() != null) {
 			addUrlParamSeparator(b);
@@ -76,6 +76,7 @@ public final class ResourceIndexedSearchParams {
 	public final Collection<SearchParamPresentEntity> mySearchParamPresentEntities;
 	public final Collection<ResourceIndexedSearchParamComposite> myCompositeParams;
 	public final Set<String> myPopulatedResourceLinkParameters = new HashSet<>();
+	private boolean myTokenParamsHashesOnly;
 
 	/**
 	 * TODO: Remove this - Currently used by CDR though
@@ -103,12 +104,12 @@ public final class ResourceIndexedSearchParams {
 		myCompositeParams = theMode.newCollection();
 	}
 
-	private ResourceIndexedSearchParams(ResourceTable theEntity, Mode theMode) {
+	private ResourceIndexedSearchParams(ResourceTable theEntity, Mode theMode, boolean theIncludeTokens) {
 		this(theMode);
 		if (theEntity.isParamsStringPopulated()) {
 			myStringParams.addAll(theEntity.getParamsString());
 		}
-		if (theEntity.isParamsTokenPopulated()) {
+		if (theIncludeTokens && theEntity.isParamsTokenPopulated()) {
 			myTokenParams.addAll(theEntity.getParamsToken());
 		}
 		if (theEntity.isParamsNumberPopulated()) {
@@ -145,6 +146,17 @@ public final class ResourceIndexedSearchParams {
 		return myLinks;
 	}
 
+	/**
+	 * Returns <code>true</code> if {@link #myTokenParams} holds detached rows containing only the
+	 * ID and hashes of the existing token indexes, as opposed to the managed index entities.
+	 *
+	 * @see #withListsAndTokenHashes(ResourceTable, Collection)
+	 * @since 7.2.0
+	 */
+	public boolean isTokenParamsHashesOnly() {
+		return myTokenParamsHashesOnly;
+	}
+
 	public void populateResourceTableSearchParamsPresentFlags(ResourceTable theEntity) {
 		theEntity.setParamsStringPopulated(myStringParams.isEmpty() == false);
 		theEntity.setParamsTokenPopulated(myTokenParams.isEmpty() == false);
@@ -634,7 +646,23 @@ public final class ResourceIndexedSearchParams {
 	 * in lists so that any duplicates are preserved.
 	 */
 	public static ResourceIndexedSearchParams withLists(ResourceTable theResourceTable) {
-		return new ResourceIndexedSearchParams(theResourceTable, Mode.LIST);
+		return new ResourceIndexedSearchParams(theResourceTable, Mode.LIST, true);
+	}
+
+	/**
+	 * Create a new instance that holds all the existing indexes in lists, except for
+	 * the token indexes which are replaced by the given detached rows holding only the
+	 * ID and hashes of each existing token index. This avoids loading the token index
+	 * collection of the resource.
+	 *
+	 * @since 7.2.0
+	 */
+	public static ResourceIndexedSearchParams withListsAndTokenHashes(
+			ResourceTable theResourceTable, Collection<ResourceIndexedSearchParamToken> theTokenHashes) {
+		ResourceIndexedSearchParams retVal = new ResourceIndexedSearchParams(theResourceTable, Mode.LIST, false);
+		retVal.myTokenParams.addAll(theTokenHashes);
+		retVal.myTokenParamsHashesOnly = true;
+		return retVal;
 	}
 
 	private enum Mode {
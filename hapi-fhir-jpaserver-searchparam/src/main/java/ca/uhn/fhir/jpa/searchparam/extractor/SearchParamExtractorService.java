@@ -74,16 +74,25 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class SearchParamExtractorService {
+	/**
+	 * Transaction user data key for the indexes which have been extracted ahead of time
+	 * by {@link #preExtractSearchIndexParameters(IBaseResource)}, keyed by resource identity
+	 */
+	public static final String XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS =
+			SearchParamExtractorService.class.getName() + "_XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS";
+
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorService.class);
 
 	@Autowired
@@ -149,8 +158,15 @@ public class SearchParamExtractorService {
 			boolean theFailOnInvalidReference,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
 		// All search parameter types except Reference
-		ResourceIndexedSearchParams normalParams = ResourceIndexedSearchParams.withSets();
-		extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+		ResourceIndexedSearchParams normalParams = null;
+		if (theSearchParamFilter == ISearchParamExtractor.ALL_PARAMS) {
+			normalParams =
+					consumePreExtractedSearchIndexParameters(theRequestDetails, theTransactionDetails, theResource);
+		}
+		if (normalParams == null) {
+			normalParams = ResourceIndexedSearchParams.withSets();
+			extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+		}
 		mergeParams(normalParams, theNewParams);
 
 		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
@@ -234,6 +250,59 @@ public class SearchParamExtractorService {
 		theNewParams.setUpdatedTime(theTransactionDetails.getTransactionDate());
 	}
 
+	/**
+	 * Extracts the indexes for all search parameter types except references from the given resource. This
+	 * is the CPU intensive part of indexing a resource and doesn't touch the database, so it may be called
+	 * from any thread. The result should be registered using
+	 * {@link #addPreExtractedSearchIndexParameters(TransactionDetails, IBaseResource, PreExtractedSearchIndexParameters)}
+	 * so that it is used instead of extracting these indexes again when the resource is stored, as long as the
+	 * resource isn't modified in between. Any warnings are only broadcast at that point, on the request thread.
+	 *
+	 * @since 7.2.0
+	 */
+	@Nonnull
+	public PreExtractedSearchIndexParameters preExtractSearchIndexParameters(IBaseResource theResource) {
+		ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withSets();
+		List<String> warnings = new ArrayList<>();
+		extractSearchIndexParameters(
+				params, theResource, ISearchParamExtractor.ALL_PARAMS, t -> warnings.addAll(t.getWarnings()));
+		return new PreExtractedSearchIndexParameters(params, warnings);
+	}
+
+	/**
+	 * @since 7.2.0
+	 */
+	public static void addPreExtractedSearchIndexParameters(
+			TransactionDetails theTransactionDetails,
+			IBaseResource theResource,
+			PreExtractedSearchIndexParameters theParams) {
+		IdentityHashMap<IBaseResource, PreExtractedSearchIndexParameters> preExtractedParams =
+				theTransactionDetails.getOrCreateUserData(
+						XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS, () -> new IdentityHashMap<>());
+		preExtractedParams.put(theResource, theParams);
+	}
+
+	@Nullable
+	private ResourceIndexedSearchParams consumePreExtractedSearchIndexParameters(
+			RequestDetails theRequestDetails, TransactionDetails theTransactionDetails, IBaseResource theResource) {
+		IdentityHashMap<IBaseResource, PreExtractedSearchIndexParameters> preExtractedParams =
+				theTransactionDetails.getUserData(XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS);
+		if (preExtractedParams == null) {
+			return null;
+		}
+		PreExtractedSearchIndexParameters retVal = preExtractedParams.remove(theResource);
+		if (retVal == null) {
+			return null;
+		}
+
+		if (!retVal.myWarnings.isEmpty()) {
+			ISearchParamExtractor.SearchParamSet<Object> warnings = new ISearchParamExtractor.SearchParamSet<>();
+			retVal.myWarnings.forEach(warnings::addWarning);
+			handleWarnings(theRequestDetails, myInterceptorBroadcaster, warnings);
+		}
+		return retVal.myParams;
+	}
+
 	@Nonnull
 	private Map<String, Boolean> getReferenceSearchParamPresenceMap(
 			ResourceTable entity, ResourceIndexedSearchParams newParams) {
@@ -495,23 +564,35 @@ public class SearchParamExtractorService {
 			ResourceIndexedSearchParams theParams,
 			IBaseResource theResource,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
+		extractSearchIndexParameters(
+				theParams,
+				theResource,
+				theSearchParamFilter,
+				t -> handleWarnings(theRequestDetails, myInterceptorBroadcaster, t));
+	}
+
+	private void extractSearchIndexParameters(
+			ResourceIndexedSearchParams theParams,
+			IBaseResource theResource,
+			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter,
+			Consumer<ISearchParamExtractor.SearchParamSet<?>> theWarningHandler) {
 
 		// Strings
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings =
 				extractSearchParamStrings(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, strings);
+		theWarningHandler.accept(strings);
 		theParams.myStringParams.addAll(strings);
 
 		// Numbers
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber> numbers =
 				extractSearchParamNumber(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, numbers);
+		theWarningHandler.accept(numbers);
 		theParams.myNumberParams.addAll(numbers);
 
 		// Quantities
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity> quantities =
 				extractSearchParamQuantity(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantities);
+		theWarningHandler.accept(quantities);
 		theParams.myQuantityParams.addAll(quantities);
 
 		if (myStorageSettings
@@ -522,20 +603,20 @@ public class SearchParamExtractorService {
 						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED)) {
 			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantityNormalized> quantitiesNormalized =
 					extractSearchParamQuantityNormalized(theResource, theSearchParamFilter);
-			handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantitiesNormalized);
+			theWarningHandler.accept(quantitiesNormalized);
 			theParams.myQuantityNormalizedParams.addAll(quantitiesNormalized);
 		}
 
 		// Dates
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate> dates =
 				extractSearchParamDates(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, dates);
+		theWarningHandler.accept(dates);
 		theParams.myDateParams.addAll(dates);
 
 		// URIs
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri> uris =
 				extractSearchParamUri(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, uris);
+		theWarningHandler.accept(uris);
 		theParams.myUriParams.addAll(uris);
 
 		// Tokens (can result in both Token and String, as we index the display name for
@@ -557,7 +638,7 @@ public class SearchParamExtractorService {
 		if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
 			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamComposite> composites =
 					extractSearchParamComposites(theResource, theSearchParamFilter);
-			handleWarnings(theRequestDetails, myInterceptorBroadcaster, composites);
+			theWarningHandler.accept(composites);
 			theParams.myCompositeParams.addAll(composites);
 		}
 
@@ -1222,4 +1303,19 @@ public class SearchParamExtractorService {
 			}
 		}
 	}
+
+	/**
+	 * Indexes extracted ahead of time by {@link #preExtractSearchIndexParameters(IBaseResource)}
+	 *
+	 * @since 7.2.0
+	 */
+	public static class PreExtractedSearchIndexParameters {
+		private final ResourceIndexedSearchParams myParams;
+		private final List<String> myWarnings;
+
+		private PreExtractedSearchIndexParameters(ResourceIndexedSearchParams theParams, List<String> theWarnings) {
+			myParams = theParams;
+			myWarnings = theWarnings;
+		}
+	}
 }
@@ -0,0 +1,179 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.batch2.api.IJobCoordinator;
+import ca.uhn.fhir.batch2.jobs.reindex.ReindexAppCtx;
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.interceptor.ComboSearchParameterAdvisorInterceptor;
+import ca.uhn.fhir.jpa.interceptor.ComboSearchParameterAdvisorInterceptor.ComboSearchParameterProposal;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.util.HapiExtensions;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.SearchParameter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ComboSearchParameterAdvisorInterceptorTest extends BaseJpaR4Test {
+
+	@Autowired
+	private IJobCoordinator myJobCoordinator;
+	private ComboSearchParameterAdvisorInterceptor mySvc;
+
+	@BeforeEach
+	public void beforeRegisterInterceptor() {
+		myStorageSettings.setMarkResourcesForReindexingUponSearchParameterChange(false);
+		mySvc = new ComboSearchParameterAdvisorInterceptor(myFhirContext, myDaoRegistry, mySearchParamRegistry, myStorageSettings, myJobCoordinator);
+		mySvc.setMinimumSearchCount(3);
+		mySvc.setMinimumAverageMillis(0);
+		myInterceptorRegistry.registerInterceptor(mySvc);
+	}
+
+	@AfterEach
+	public void afterUnregisterInterceptor() {
+		myInterceptorRegistry.unregisterInterceptor(mySvc);
+		mySvc.stop();
+		myStorageSettings.setMarkResourcesForReindexingUponSearchParameterChange(new JpaStorageSettings().isMarkResourcesForReindexingUponSearchParameterChange());
+	}
+
+	@Test
+	public void testProposeAndCreate() {
+		createSimpson(Enumerations.AdministrativeGender.MALE);
+		createSimpson(Enumerations.AdministrativeGender.FEMALE);
+
+		assertEquals(1, searchFamilyAndGender().size());
+		assertEquals(1, searchFamilyAndGender().size());
+		assertTrue(mySvc.getProposals().isEmpty());
+		assertEquals(1, searchFamilyAndGender().size());
+
+		List<ComboSearchParameterProposal> proposals = mySvc.getProposals();
+		assertEquals(1, proposals.size());
+		ComboSearchParameterProposal proposal = proposals.get(0);
+		assertEquals("Patient", proposal.getResourceType());
+		assertThat(proposal.getParamNames(), contains("family", "gender"));
+		assertEquals("combo-family-gender", proposal.getCode());
+		assertEquals(3, proposal.getSearchCount());
+
+		List<IIdType> ids = mySvc.createSearchParameters(proposals, new SystemRequestDetails());
+		assertEquals(1, ids.size());
+		SearchParameter sp = mySearchParameterDao.read(ids.get(0), mySrd);
+		assertEquals(Enumerations.SearchParamType.COMPOSITE, sp.getType());
+		assertEquals(2, sp.getComponent().size());
+		assertEquals(false, ((BooleanType) sp.getExtensionByUrl(HapiExtensions.EXT_SP_UNIQUE).getValue()).getValue());
+
+		// Existing resources are reindexed to populate the new index
+		myBatch2JobHelper.awaitAllJobsOfJobDefinitionIdToComplete(ReindexAppCtx.JOB_REINDEX);
+		runInTransaction(() -> assertEquals(2, myResourceIndexedComboTokensNonUniqueDao.count()));
+
+		// The new index serves the search, so the shape is no longer proposed
+		myCaptureQueriesListener.clear();
+		assertEquals(1, searchFamilyAndGender().size());
+		assertThat(myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false), containsString("HFJ_IDX_CMB_TOK_NU"));
+		assertTrue(mySvc.getProposals().isEmpty());
+	}
+
+	@Test
+	public void testAutoCreate() {
+		mySvc.setAutoCreate(true);
+		createSimpson(Enumerations.AdministrativeGender.MALE);
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals(1, searchFamilyAndGender().size());
+		}
+
+		await().until(() -> mySearchParameterDao.search(SearchParameterMap.newSynchronous(), mySrd).size(), equalTo(1));
+		assertTrue(mySvc.getProposals().isEmpty());
+	}
+
+	@Test
+	public void testAutoCreate_FailureDoesNotAffectSearch() {
+		mySvc.setAutoCreate(true);
+		createSimpson(Enumerations.AdministrativeGender.MALE);
+
+		AtomicReference<String> creatingThread = new AtomicReference<>();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			if (theArgs.get(IBaseResource.class, 0) instanceof SearchParameter) {
+				creatingThread.set(Thread.currentThread().getName());
+				throw new PreconditionFailedException("Rejected");
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+		try {
+			for (int i = 0; i < 4; i++) {
+				assertEquals(1, searchFamilyAndGender().size());
+			}
+
+			// The creation is attempted in the background, and its failure is only logged
+			await().until(creatingThread::get, startsWith("combo-search-parameter-advisor-"));
+			assertEquals(0, mySearchParameterDao.search(SearchParameterMap.newSynchronous(), mySrd).size());
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+	}
+
+	@Test
+	public void testIgnoreShapesWhichCantBeServedByCombo() {
+		createSimpson(Enumerations.AdministrativeGender.MALE);
+
+		for (int i = 0; i < 5; i++) {
+			// Only one eligible parameter
+			SearchParameterMap map = SearchParameterMap.newSynchronous();
+			map.add(Patient.SP_FAMILY, new StringParam("Simpson"));
+			map.add("_id", new TokenParam("A"));
+			myPatientDao.search(map, mySrd);
+
+			// Prefixed dates and modifiers can't be served by a combo index
+			map = SearchParameterMap.newSynchronous();
+			map.add(Patient.SP_BIRTHDATE, new DateParam(ParamPrefixEnum.GREATERTHAN, "2019-01-01"));
+			map.add(Patient.SP_FAMILY, new StringParam("Simpson", true));
+			myPatientDao.search(map, mySrd);
+
+			// Tokens without a system can't be served by a combo index
+			map = SearchParameterMap.newSynchronous();
+			map.add(Patient.SP_FAMILY, new StringParam("Simpson"));
+			map.add(Patient.SP_GENDER, new TokenParam("male"));
+			myPatientDao.search(map, mySrd);
+		}
+
+		assertTrue(mySvc.getProposals().isEmpty());
+	}
+
+	private void createSimpson(Enumerations.AdministrativeGender theGender) {
+		Patient patient = new Patient();
+		patient.addName().setFamily("Simpson");
+		patient.setGender(theGender);
+		myPatientDao.create(patient, mySrd);
+	}
+
+	private List<String> searchFamilyAndGender() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add(Patient.SP_FAMILY, new StringParam("Simpson"));
+		map.add(Patient.SP_GENDER, new TokenParam("http://hl7.org/fhir/administrative-gender", "male"));
+		return toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd));
+	}
+}
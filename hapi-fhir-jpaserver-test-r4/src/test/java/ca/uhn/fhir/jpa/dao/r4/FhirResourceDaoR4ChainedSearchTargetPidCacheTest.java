@@ -0,0 +1,104 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.search.builder.ChainedSearchTargetPidCache;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FhirResourceDaoR4ChainedSearchTargetPidCacheTest extends BaseJpaR4Test {
+
+	@Autowired
+	private ChainedSearchTargetPidCache myChainedSearchTargetPidCache;
+
+	@BeforeEach
+	public void beforeEnableCache() {
+		myStorageSettings.setChainedSearchTargetPidCacheMillis(60000);
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setChainedSearchTargetPidCacheMillis(defaults.getChainedSearchTargetPidCacheMillis());
+		myStorageSettings.setEnforceReferentialIntegrityOnDelete(defaults.isEnforceReferentialIntegrityOnDelete());
+		myChainedSearchTargetPidCache.invalidateAll();
+	}
+
+	@Test
+	public void testSearch_SecondSearchUsesCachedPids() {
+		IIdType patientId = createPatient(withIdentifier("http://foo", "123"));
+		IIdType obsId = createObservation(withSubject(patientId));
+		createObservation(withSubject(createPatient(withIdentifier("http://foo", "456"))));
+
+		assertThat(searchBySubjectIdentifier("http://foo|123"), contains(obsId.getValue()));
+
+		myCaptureQueriesListener.clear();
+		assertThat(searchBySubjectIdentifier("http://foo|123"), contains(obsId.getValue()));
+		String sql = myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false);
+		assertThat(sql, containsString("TARGET_RESOURCE_ID = '" + patientId.getIdPartAsLong() + "'"));
+		assertEquals(0, myCaptureQueriesListener.getSelectQueries().stream().filter(t -> t.getSql(false, false).contains("HFJ_SPIDX_TOKEN")).count());
+	}
+
+	@Test
+	public void testSearch_InvalidatedWhenTargetTypeChanges() {
+		IIdType patientId = createPatient(withIdentifier("http://foo", "123"));
+		IIdType obsId = createObservation(withSubject(patientId));
+		assertThat(searchBySubjectIdentifier("http://foo|123"), contains(obsId.getValue()));
+
+		// New matching target
+		IIdType patientId2 = createPatient(withIdentifier("http://foo", "123"));
+		IIdType obsId2 = createObservation(withSubject(patientId2));
+		assertThat(searchBySubjectIdentifier("http://foo|123"), containsInAnyOrder(obsId.getValue(), obsId2.getValue()));
+
+		// Target no longer matches
+		Patient patient = new Patient();
+		patient.setId(patientId2);
+		patient.addIdentifier().setSystem("http://foo").setValue("789");
+		myPatientDao.update(patient, mySrd);
+		assertThat(searchBySubjectIdentifier("http://foo|123"), contains(obsId.getValue()));
+
+		// Target deleted
+		myStorageSettings.setEnforceReferentialIntegrityOnDelete(false);
+		myPatientDao.delete(patientId, mySrd);
+		assertThat(searchBySubjectIdentifier("http://foo|123"), empty());
+	}
+
+	@Test
+	public void testSearch_NoMatchingTarget() {
+		createObservation(withSubject(createPatient(withIdentifier("http://foo", "123"))));
+
+		assertThat(searchBySubjectIdentifier("http://foo|999"), empty());
+		assertThat(searchBySubjectIdentifier("http://foo|999"), empty());
+	}
+
+	@Test
+	public void testSearch_Disabled() {
+		myStorageSettings.setChainedSearchTargetPidCacheMillis(0);
+		IIdType obsId = createObservation(withSubject(createPatient(withIdentifier("http://foo", "123"))));
+
+		myCaptureQueriesListener.clear();
+		assertThat(searchBySubjectIdentifier("http://foo|123"), contains(obsId.getValue()));
+		assertThat(myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false), containsString("HFJ_SPIDX_TOKEN"));
+	}
+
+	private List<String> searchBySubjectIdentifier(String theIdentifier) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Observation.SP_SUBJECT, new ReferenceParam("Patient", "identifier", theIdentifier));
+		return toUnqualifiedVersionlessIdValues(myObservationDao.search(map, mySrd));
+	}
+}
@@ -0,0 +1,346 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.CreateGroupCommitSvc;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4CreateGroupCommitTest extends BaseJpaR4Test {
+
+	private static final int COUNT = 10;
+	private static final String MDC_KEY = "family";
+	@Autowired
+	private CreateGroupCommitSvc myCreateGroupCommitSvc;
+	private ExecutorService myExecutor;
+
+	@BeforeEach
+	public void beforeStartExecutor() {
+		myExecutor = Executors.newFixedThreadPool(COUNT);
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		myExecutor.shutdown();
+		myCreateGroupCommitSvc.setTaskDecorator(null);
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setCreateGroupCommitWindowMillis(defaults.getCreateGroupCommitWindowMillis());
+		myStorageSettings.setCreateGroupCommitMaxSize(defaults.getCreateGroupCommitMaxSize());
+		myPartitionSettings.setPartitioningEnabled(new PartitionSettings().isPartitioningEnabled());
+	}
+
+	@Test
+	public void testConcurrentCreatesAreGrouped() throws Exception {
+		myStorageSettings.setCreateGroupCommitWindowMillis(500);
+
+		Set<String> storingThreads = new HashSet<>();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			synchronized (storingThreads) {
+				storingThreads.add(Thread.currentThread().getName());
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+		List<Future<IIdType>> futures;
+		try {
+			futures = createPatientsConcurrently();
+			for (Future<IIdType> next : futures) {
+				next.get();
+			}
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		assertThat(storingThreads.size(), lessThan(COUNT));
+		Set<String> ids = new HashSet<>();
+		for (int i = 0; i < COUNT; i++) {
+			IIdType id = futures.get(i).get();
+			ids.add(id.getValue());
+			assertEquals("1", id.getVersionIdPart());
+			assertThat(searchByFamily("family" + i), contains(id.toUnqualifiedVersionless().getValue()));
+		}
+		assertEquals(COUNT, ids.size());
+	}
+
+	@Test
+	public void testFailedCreateDoesNotAffectOthersInGroup() throws Exception {
+		myStorageSettings.setCreateGroupCommitWindowMillis(500);
+
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			Patient patient = (Patient) theArgs.get(IBaseResource.class, 0);
+			if (patient.getNameFirstRep().getFamily().equals("family3")) {
+				throw new PreconditionFailedException("Rejected");
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+		List<Future<IIdType>> futures;
+		try {
+			futures = createPatientsConcurrently();
+			for (int i = 0; i < COUNT; i++) {
+				Future<IIdType> future = futures.get(i);
+				if (i == 3) {
+					ExecutionException e = assertThrows(ExecutionException.class, future::get);
+					assertThat(e.getCause(), instanceOf(PreconditionFailedException.class));
+				} else {
+					future.get();
+				}
+			}
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		for (int i = 0; i < COUNT; i++) {
+			List<String> found = searchByFamily("family" + i);
+			if (i == 3) {
+				assertEquals(0, found.size(), found::toString);
+			} else {
+				assertThat(found, contains(futures.get(i).get().toUnqualifiedVersionless().getValue()));
+			}
+		}
+	}
+
+	@Test
+	public void testRejectedCreateInGroupIsNotRetried() throws Exception {
+		myStorageSettings.setCreateGroupCommitWindowMillis(500);
+
+		AtomicInteger rejectedInvocations = new AtomicInteger();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			Patient patient = (Patient) theArgs.get(IBaseResource.class, 0);
+			if (patient.getNameFirstRep().getFamily().equals("family3")) {
+				rejectedInvocations.incrementAndGet();
+				throw new UnprocessableEntityException("Rejected");
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+		try {
+			List<Future<IIdType>> futures = createPatientsConcurrently();
+			for (int i = 0; i < COUNT; i++) {
+				Future<IIdType> future = futures.get(i);
+				if (i == 3) {
+					ExecutionException e = assertThrows(ExecutionException.class, future::get);
+					assertThat(e.getCause(), instanceOf(UnprocessableEntityException.class));
+				} else {
+					future.get();
+				}
+			}
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		assertEquals(1, rejectedInvocations.get());
+	}
+
+	@Test
+	public void testGroupedCreatesUseClientMdc() throws Exception {
+		myStorageSettings.setCreateGroupCommitWindowMillis(500);
+
+		List<String> mismatches = new ArrayList<>();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			Patient patient = (Patient) theArgs.get(IBaseResource.class, 0);
+			String family = patient.getNameFirstRep().getFamily();
+			if (!family.equals(MDC.get(MDC_KEY))) {
+				synchronized (mismatches) {
+					mismatches.add(family + " created with MDC " + MDC.get(MDC_KEY));
+				}
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+		try {
+			for (Future<IIdType> next : createPatientsConcurrently()) {
+				next.get();
+			}
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		assertEquals(List.of(), mismatches);
+	}
+
+	@Test
+	public void testSingleCreateIsNotDelayed() {
+		myStorageSettings.setCreateGroupCommitWindowMillis(60000);
+
+		StopWatch sw = new StopWatch();
+		IIdType id = createPatient("family0");
+
+		assertThat(sw.getMillis(), lessThan(30000L));
+		assertThat(searchByFamily("family0"), contains(id.toUnqualifiedVersionless().getValue()));
+	}
+
+	@Test
+	public void testFullGroupIsNotDelayed() throws Exception {
+		myStorageSettings.setCreateGroupCommitWindowMillis(60000);
+		myStorageSettings.setCreateGroupCommitMaxSize(2);
+
+		StopWatch sw = new StopWatch();
+		List<Future<IIdType>> futures = createPatientsConcurrently();
+		for (Future<IIdType> next : futures) {
+			next.get();
+		}
+
+		assertThat(sw.getMillis(), lessThan(30000L));
+		for (int i = 0; i < COUNT; i++) {
+			assertThat(searchByFamily("family" + i), contains(futures.get(i).get().toUnqualifiedVersionless().getValue()));
+		}
+	}
+
+	@Test
+	public void testInterruptedLeaderDoesNotExecuteGroup() throws Exception {
+		myStorageSettings.setCreateGroupCommitWindowMillis(60000);
+
+		// The first create holds the leadership until the others have queued up behind it
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		Future<String> first = myExecutor.submit(() -> myCreateGroupCommitSvc.execute(t -> {
+			firstStarted.countDown();
+			awaitLatch(releaseFirst);
+			return Thread.currentThread().getName();
+		}));
+		assertTrue(firstStarted.await(30, TimeUnit.SECONDS));
+
+		CountDownLatch queued = new CountDownLatch(3);
+		myCreateGroupCommitSvc.setTaskDecorator(t -> {
+			queued.countDown();
+			return t;
+		});
+		Map<Future<String>, Thread> futureToThread = new ConcurrentHashMap<>();
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			CompletableFuture<String> future = new CompletableFuture<>();
+			myExecutor.submit(() -> {
+				futureToThread.put(future, Thread.currentThread());
+				try {
+					future.complete(myCreateGroupCommitSvc.execute(t -> Thread.currentThread().getName()));
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			});
+			futures.add(future);
+		}
+		assertTrue(queued.await(30, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		releaseFirst.countDown();
+		first.get();
+
+		// One of the others is now the leader, waiting for more creates to arrive
+		Future<String> leader = await().until(() -> findFutureOfThreadInMethod(futureToThread, "awaitGroup"), Objects::nonNull);
+		futureToThread.get(leader).interrupt();
+
+		for (Future<String> next : futures) {
+			if (next == leader) {
+				ExecutionException e = assertThrows(ExecutionException.class, next::get);
+				assertThat(e.getCause().getMessage(), containsString("HAPI-2525"));
+			} else {
+				// Executed individually on its own thread
+				assertEquals(futureToThread.get(next).getName(), next.get());
+			}
+		}
+	}
+
+	@Test
+	public void testNotEnabledWithPartitioning() {
+		myStorageSettings.setCreateGroupCommitWindowMillis(500);
+		assertTrue(myCreateGroupCommitSvc.isEnabled());
+
+		myPartitionSettings.setPartitioningEnabled(true);
+		assertFalse(myCreateGroupCommitSvc.isEnabled());
+	}
+
+	@Test
+	public void testCreateInsideExistingTransactionIsNotGrouped() {
+		myStorageSettings.setCreateGroupCommitWindowMillis(60000);
+
+		IIdType id = runInTransaction(() -> createPatient("family0"));
+
+		assertThat(searchByFamily("family0"), contains(id.toUnqualifiedVersionless().getValue()));
+	}
+
+	private List<Future<IIdType>> createPatientsConcurrently() {
+		List<Future<IIdType>> retVal = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			String family = "family" + i;
+			Callable<IIdType> task = () -> {
+				MDC.put(MDC_KEY, family);
+				try {
+					return createPatient(family);
+				} finally {
+					MDC.remove(MDC_KEY);
+				}
+			};
+			retVal.add(myExecutor.submit(task));
+		}
+		return retVal;
+	}
+
+	private static Future<String> findFutureOfThreadInMethod(Map<Future<String>, Thread> theFutureToThread, String theMethodName) {
+		for (Map.Entry<Future<String>, Thread> next : theFutureToThread.entrySet()) {
+			for (StackTraceElement element : next.getValue().getStackTrace()) {
+				if (element.getMethodName().equals(theMethodName)) {
+					return next.getKey();
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void awaitLatch(CountDownLatch theLatch) {
+		try {
+			theLatch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private IIdType createPatient(String theFamily) {
+		Patient patient = new Patient();
+		patient.addName().setFamily(theFamily);
+		return myPatientDao.create(patient, mySrd).getId();
+	}
+
+	private List<String> searchByFamily(String theFamily) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add(Patient.SP_FAMILY, new StringParam(theFamily).setExact(true));
+		return toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd));
+	}
+}
@@ -0,0 +1,135 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.dao.expunge.ResourceHistoryPartitionMaintenanceSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Observation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FhirResourceDaoR4DateIndexPartitionPruningTest extends BaseJpaR4Test {
+
+	@Autowired
+	private ResourceHistoryPartitionMaintenanceSvc myResourceHistoryPartitionMaintenanceSvc;
+	@Autowired
+	private IResourceHistoryTableDao myResourceHistoryTableDao;
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setDateIndexPartitionPruningEnabled(defaults.isDateIndexPartitionPruningEnabled());
+		myStorageSettings.setAccountForDateIndexNulls(defaults.isAccountForDateIndexNulls());
+		myStorageSettings.setResourceHistoryPartitionMaintenanceEnabled(defaults.isResourceHistoryPartitionMaintenanceEnabled());
+		myStorageSettings.setResourceHistoryPartitionRetentionMonths(defaults.getResourceHistoryPartitionRetentionMonths());
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"eq2024-02,     2",
+		"lt2024-02-15,  2",
+		"le2024-02-10,  2",
+		"ge2024-02-10,  2",
+		"gt2024-02-10,  1",
+	})
+	public void testSearchResultsUnchangedByPruning(String theDate, int theExpectedCount) {
+		createObservationWithEffective("2024-01-10");
+		createObservationWithEffective("2024-02-10");
+		createObservationWithEffective("2024-02-20");
+
+		List<String> withoutPruning = searchByDate(theDate);
+		int predicatesWithoutPruning = countLowValuePredicates();
+
+		myStorageSettings.setDateIndexPartitionPruningEnabled(true);
+		List<String> withPruning = searchByDate(theDate);
+		int predicatesWithPruning = countLowValuePredicates();
+
+		assertEquals(theExpectedCount, withoutPruning.size(), withoutPruning::toString);
+		assertThat(withPruning, containsInAnyOrder(withoutPruning.toArray()));
+		if (theDate.startsWith("g")) {
+			// Open ended ranges have no upper bound to prune with
+			assertEquals(predicatesWithoutPruning, predicatesWithPruning);
+		} else {
+			assertThat(predicatesWithPruning, greaterThan(predicatesWithoutPruning));
+		}
+	}
+
+	@Test
+	public void testPruningNotAppliedWhenAccountingForNulls() {
+		createObservationWithEffective("2024-02-10");
+		myStorageSettings.setAccountForDateIndexNulls(true);
+
+		searchByDate("eq2024-02");
+		int predicatesWithoutPruning = countLowValuePredicates();
+
+		myStorageSettings.setDateIndexPartitionPruningEnabled(true);
+		searchByDate("eq2024-02");
+		assertEquals(predicatesWithoutPruning, countLowValuePredicates());
+	}
+
+	@Test
+	public void testHistoryPartitionMaintenanceNoOpWhenTableNotPartitioned() {
+		IIdType id = createObservationWithEffective("2024-02-10");
+		myStorageSettings.setResourceHistoryPartitionMaintenanceEnabled(true);
+		myStorageSettings.setResourceHistoryPartitionRetentionMonths(1);
+
+		myResourceHistoryPartitionMaintenanceSvc.runMaintenance();
+
+		runInTransaction(() -> assertEquals(1, myResourceHistoryTableDao.count()));
+		assertEquals("1", myObservationDao.read(id, mySrd).getIdElement().getVersionIdPart());
+	}
+
+	@Test
+	public void testHistoryCurrentVersionCount() {
+		Date before = new Date();
+		IIdType id = createObservationWithEffective("2024-02-10");
+		Observation obs = myObservationDao.read(id, mySrd);
+		obs.setStatus(Observation.ObservationStatus.AMENDED);
+		myObservationDao.update(obs, mySrd);
+		Date after = new Date(System.currentTimeMillis() + 1000);
+
+		runInTransaction(() -> {
+			assertEquals(2, myResourceHistoryTableDao.count());
+			assertEquals(1, myResourceHistoryTableDao.countCurrentVersionsUpdatedBetween(before, after));
+			assertEquals(0, myResourceHistoryTableDao.countCurrentVersionsUpdatedBetween(after, new Date(after.getTime() + 1000)));
+		});
+	}
+
+	private List<String> searchByDate(String theDate) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add(Observation.SP_DATE, new DateRangeParam(new DateParam(theDate)));
+		myCaptureQueriesListener.clear();
+		List<String> retVal = toUnqualifiedVersionlessIdValues(myObservationDao.search(map, mySrd));
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		return retVal;
+	}
+
+	private int countLowValuePredicates() {
+		String sql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(0).getSql(false, false);
+		return countMatches(sql, "SP_VALUE_LOW <=");
+	}
+
+	private IIdType createObservationWithEffective(String theDate) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.setEffective(new DateTimeType(theDate));
+		return myObservationDao.create(obs, mySrd).getId().toUnqualifiedVersionless();
+	}
+}
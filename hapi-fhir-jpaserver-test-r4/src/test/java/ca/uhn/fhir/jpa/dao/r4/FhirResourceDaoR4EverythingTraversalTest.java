@@ -0,0 +1,106 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.PatientEverythingParameters;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+public class FhirResourceDaoR4EverythingTraversalTest extends BaseJpaR4Test {
+
+	private IIdType myPatientId;
+	private IIdType myOtherPatientId;
+	private IIdType myOrgId;
+	private IIdType myParentOrgId;
+	private IIdType myPractitionerId;
+	private IIdType myEncounterId;
+	private IIdType myObservationId;
+
+	@BeforeEach
+	public void beforeCreateCompartment() {
+		myParentOrgId = myOrganizationDao.create(new Organization().setName("PARENT"), mySrd).getId().toUnqualifiedVersionless();
+		Organization org = new Organization();
+		org.setName("ORG");
+		org.setPartOf(new Reference(myParentOrgId));
+		myOrgId = myOrganizationDao.create(org, mySrd).getId().toUnqualifiedVersionless();
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.addName().setFamily("PRACTITIONER");
+		myPractitionerId = myPractitionerDao.create(practitioner, mySrd).getId().toUnqualifiedVersionless();
+
+		Patient patient = new Patient();
+		patient.setManagingOrganization(new Reference(myOrgId));
+		myPatientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		myOtherPatientId = myPatientDao.create(new Patient().setActive(true), mySrd).getId().toUnqualifiedVersionless();
+
+		Encounter encounter = new Encounter();
+		encounter.setSubject(new Reference(myPatientId));
+		encounter.addParticipant().setIndividual(new Reference(myPractitionerId));
+		myEncounterId = myEncounterDao.create(encounter, mySrd).getId().toUnqualifiedVersionless();
+
+		// The other patient is linked, but is not in this patient's compartment
+		Observation observation = new Observation();
+		observation.setSubject(new Reference(myPatientId));
+		observation.setEncounter(new Reference(myEncounterId));
+		observation.addPerformer(new Reference(myOtherPatientId));
+		myObservationId = myObservationDao.create(observation, mySrd).getId().toUnqualifiedVersionless();
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(new JpaStorageSettings().getSearchPartitionFanOutThreadCount());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testPatientInstanceEverything(int theThreadCount) {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(theThreadCount);
+
+		IBundleProvider outcome = myPatientDao.patientInstanceEverything(null, mySrd, new PatientEverythingParameters(), myPatientId);
+
+		// Links are followed transitively (Patient -> Organization -> parent Organization)
+		assertThat(toUnqualifiedVersionlessIds(outcome), containsInAnyOrder(
+			myPatientId, myOrgId, myParentOrgId, myPractitionerId, myEncounterId, myObservationId));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testPatientInstanceEverything_TypeFilter(int theThreadCount) {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(theThreadCount);
+
+		PatientEverythingParameters params = new PatientEverythingParameters();
+		params.setTypes(new StringAndListParam().addAnd(new StringOrListParam().addOr(new StringParam("Patient,Encounter"))));
+		IBundleProvider outcome = myPatientDao.patientInstanceEverything(null, mySrd, params, myPatientId);
+
+		// Only the links from the listed resource types are followed
+		assertThat(toUnqualifiedVersionlessIds(outcome), containsInAnyOrder(
+			myPatientId, myOrgId, myPractitionerId, myEncounterId));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testPatientTypeEverything(int theThreadCount) {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(theThreadCount);
+
+		IBundleProvider outcome = myPatientDao.patientTypeEverything(null, mySrd, new PatientEverythingParameters(), null);
+
+		assertThat(toUnqualifiedVersionlessIds(outcome), containsInAnyOrder(
+			myPatientId, myOtherPatientId, myOrgId, myParentOrgId, myPractitionerId, myEncounterId, myObservationId));
+	}
+}
@@ -38,6 +38,7 @@ import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import ca.uhn.fhir.rest.server.interceptor.auth.AuthorizationInterceptor;
 import ca.uhn.fhir.rest.server.interceptor.auth.PolicyEnum;
@@ -113,6 +114,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.eq;
@@ -2144,7 +2146,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 		myCaptureQueriesListener.clear();
 		mySystemDao.transaction(mySrd, input);
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(7, runInTransaction(() -> myResourceTableDao.count()));
 
 		// Second identical pass
@@ -2635,10 +2637,10 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 		Bundle output = mySystemDao.transaction(mySrd, input);
 		ourLog.debug(myFhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(output));
 
-		// Lookup the two existing IDs to make sure they are legit
+		// Lookup the two existing IDs in a single query to make sure they are legit
 		myCaptureQueriesListener.logInsertQueriesForCurrentThread();
 		myCaptureQueriesListener.logUpdateQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(10, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
@@ -2666,7 +2668,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 
 		// Lookup the two existing IDs to make sure they are legit
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(10, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
@@ -2818,6 +2820,72 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 
 	}
 
+	/**
+	 * See the class javadoc before changing the counts in this test!
+	 */
+	@Test
+	public void testTransactionWithMultiplePreExistingReferences_ManyTargets() {
+		myStorageSettings.setDeleteEnabled(true);
+
+		List<IIdType> targetIds = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/P" + i);
+			patient.setActive(true);
+			targetIds.add(myPatientDao.update(patient, mySrd).getId().toUnqualifiedVersionless());
+
+			Practitioner practitioner = new Practitioner();
+			practitioner.setActive(true);
+			targetIds.add(myPractitionerDao.create(practitioner, mySrd).getId().toUnqualifiedVersionless());
+		}
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < targetIds.size(); i += 2) {
+			ServiceRequest sr = new ServiceRequest();
+			sr.getSubject().setReferenceElement(targetIds.get(i));
+			sr.addPerformer().setReferenceElement(targetIds.get(i + 1));
+			input.addEntry().setResource(sr).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("ServiceRequest");
+		}
+
+		myCaptureQueriesListener.clear();
+		Bundle output = mySystemDao.transaction(mySrd, input);
+
+		// All of the targets are resolved up front: one query for the forced IDs and one for the numeric IDs
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(0, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
+
+		ServiceRequest actual = myServiceRequestDao.read(new IdType(output.getEntry().get(3).getResponse().getLocation()), mySrd);
+		assertEquals(targetIds.get(6).getValue(), actual.getSubject().getReference());
+		assertEquals(targetIds.get(7).getValue(), actual.getPerformerFirstRep().getReference());
+	}
+
+	/**
+	 * A reference to a resource which is deleted earlier in the same transaction must
+	 * still be rejected, even though the target existed when the references were pre-resolved
+	 */
+	@Test
+	public void testTransactionWithReferenceToResourceDeletedInSameTransaction() {
+		myStorageSettings.setDeleteEnabled(true);
+
+		Patient patient = new Patient();
+		patient.setId("Patient/A");
+		patient.setActive(true);
+		myPatientDao.update(patient, mySrd);
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		input.addEntry().getRequest().setMethod(Bundle.HTTPVerb.DELETE).setUrl("Patient/A");
+		ServiceRequest sr = new ServiceRequest();
+		sr.getSubject().setReference("Patient/A");
+		input.addEntry().setResource(sr).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("ServiceRequest");
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> mySystemDao.transaction(mySrd, input));
+		assertThat(e.getMessage(), containsString("is deleted"));
+	}
+
 	/**
 	 * See the class javadoc before changing the counts in this test!
 	 */
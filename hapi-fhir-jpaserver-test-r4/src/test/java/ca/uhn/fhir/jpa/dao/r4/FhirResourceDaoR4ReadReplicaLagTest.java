@@ -0,0 +1,113 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class FhirResourceDaoR4ReadReplicaLagTest extends BaseJpaR4Test {
+
+	private final List<Boolean> myReadOnlyFlags = new ArrayList<>();
+	private final IAnonymousInterceptor myReadOnlyCapturingInterceptor =
+		(thePointcut, theArgs) -> myReadOnlyFlags.add(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+
+	@BeforeEach
+	public void beforeEnableTracking() {
+		myStorageSettings.setReadReplicaLagMillis(60000);
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PREACCESS_RESOURCES, myReadOnlyCapturingInterceptor);
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		myInterceptorRegistry.unregisterInterceptor(myReadOnlyCapturingInterceptor);
+		myStorageSettings.setReadReplicaLagMillis(new JpaStorageSettings().getReadReplicaLagMillis());
+	}
+
+	@Test
+	public void testRead_WriterReadsFromPrimary() {
+		IIdType id = createPatient(newRequest("Bearer writer"));
+		myReadOnlyFlags.clear();
+
+		// The writer's reads aren't read-only, so they won't be routed to a replica
+		readAndSearch(id, newRequest("Bearer writer"));
+		assertThat(myReadOnlyFlags, not(empty()));
+		assertThat(myReadOnlyFlags, everyItem(is(false)));
+
+		// Other clients can use a replica
+		myReadOnlyFlags.clear();
+		readAndSearch(id, newRequest("Bearer reader"));
+		assertThat(myReadOnlyFlags, not(empty()));
+		assertThat(myReadOnlyFlags, everyItem(is(true)));
+	}
+
+	@Test
+	public void testRead_AnonymousClientsIdentifiedByForwardedAddress() {
+		IIdType id = createPatient(newForwardedRequest("10.0.0.1, 192.168.0.1"));
+		myReadOnlyFlags.clear();
+
+		readAndSearch(id, newForwardedRequest("10.0.0.1"));
+		assertThat(myReadOnlyFlags, not(empty()));
+		assertThat(myReadOnlyFlags, everyItem(is(false)));
+
+		// Another client behind the same proxy can use a replica
+		myReadOnlyFlags.clear();
+		readAndSearch(id, newForwardedRequest("10.0.0.2, 192.168.0.1"));
+		assertThat(myReadOnlyFlags, not(empty()));
+		assertThat(myReadOnlyFlags, everyItem(is(true)));
+	}
+
+	@Test
+	public void testRead_TrackingDisabled() {
+		myStorageSettings.setReadReplicaLagMillis(0);
+		IIdType id = createPatient(newRequest("Bearer writer"));
+		myReadOnlyFlags.clear();
+
+		readAndSearch(id, newRequest("Bearer writer"));
+		assertThat(myReadOnlyFlags, not(empty()));
+		assertThat(myReadOnlyFlags, everyItem(is(true)));
+	}
+
+	private void readAndSearch(IIdType theId, SystemRequestDetails theRequest) {
+		myPatientDao.read(theId, theRequest);
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("Simpson"));
+		assertThat(toUnqualifiedVersionlessIds(myPatientDao.search(map, theRequest)), contains(theId));
+	}
+
+	private IIdType createPatient(SystemRequestDetails theRequest) {
+		Patient patient = new Patient();
+		patient.addName().setFamily("Simpson");
+		return myPatientDao.create(patient, theRequest).getId().toUnqualifiedVersionless();
+	}
+
+	private static SystemRequestDetails newForwardedRequest(String theForwardedFor) {
+		SystemRequestDetails retVal = new SystemRequestDetails();
+		retVal.addHeader("X-Forwarded-For", theForwardedFor);
+		return retVal;
+	}
+
+	private static SystemRequestDetails newRequest(String theAuthorization) {
+		SystemRequestDetails retVal = new SystemRequestDetails();
+		retVal.addHeader(Constants.HEADER_AUTHORIZATION, theAuthorization);
+		return retVal;
+	}
+}
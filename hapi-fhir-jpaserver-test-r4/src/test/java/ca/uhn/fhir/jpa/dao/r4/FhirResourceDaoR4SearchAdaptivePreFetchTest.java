@@ -0,0 +1,148 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.ISearchDao;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.search.AdaptiveSearchPreFetchSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.leftPad;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class FhirResourceDaoR4SearchAdaptivePreFetchTest extends BaseJpaR4Test {
+
+	@Autowired
+	private AdaptiveSearchPreFetchSvc myAdaptiveSearchPreFetchSvc;
+	@Autowired
+	private ISearchDao mySearchEntityDao;
+
+	@BeforeEach
+	public void beforeEnableAdaptivePreFetch() {
+		myStorageSettings.setAdaptiveSearchPreFetchEnabled(true);
+		myStorageSettings.setReuseCachedSearchResultsForMillis(null);
+		myStorageSettings.setSearchPreFetchThresholds(Arrays.asList(20, 1000, -1));
+		myAdaptiveSearchPreFetchSvc.clearForUnitTests();
+
+		runInTransaction(() -> {
+			for (int i = 0; i < 200; i++) {
+				Patient p = new Patient();
+				p.setId("PT" + leftPad(Integer.toString(i), 5, '0'));
+				p.addName().setFamily("FAM" + leftPad(Integer.toString(i), 5, '0'));
+				myPatientDao.update(p);
+			}
+		});
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setAdaptiveSearchPreFetchEnabled(defaults.isAdaptiveSearchPreFetchEnabled());
+		myStorageSettings.setReuseCachedSearchResultsForMillis(defaults.getReuseCachedSearchResultsForMillis());
+		myStorageSettings.setSearchPreFetchThresholds(defaults.getSearchPreFetchThresholds());
+		myAdaptiveSearchPreFetchSvc.clearForUnitTests();
+	}
+
+	@Test
+	public void testPreFetchAdaptsToPagingDepth() {
+		// Clients read the first 3 pages, which crosses the first threshold, so everything gets loaded
+		for (int i = 0; i < AdaptiveSearchPreFetchSvc.MIN_SEARCHES_OBSERVED; i++) {
+			String uuid = searchAndReadPages();
+			Search search = awaitSearchNotLoading(uuid);
+			assertEquals(200, search.getNumFound());
+			assertEquals(60, search.getNumRequested());
+		}
+		assertEquals(5 * 140, myAdaptiveSearchPreFetchSvc.getWastedPreFetchCount());
+
+		// Now the first pass skips the first threshold and stops at the expected demand
+		String uuid = searchAndReadPages();
+		Search search = awaitSearchNotLoading(uuid);
+		assertEquals(61, search.getNumFound());
+		assertEquals(60, search.getNumRequested());
+		assertEquals(SearchStatusEnum.PASSCMPLET, search.getStatus());
+		assertEquals(5 * 140 + 1, myAdaptiveSearchPreFetchSvc.getWastedPreFetchCount());
+
+		List<AdaptiveSearchPreFetchSvc.QueryShapeStatistics> statistics = myAdaptiveSearchPreFetchSvc.getStatistics();
+		assertEquals(1, statistics.size());
+		assertEquals("SEARCH Patient?_sort=family&family", statistics.get(0).getShape());
+		assertEquals(6, statistics.get(0).getSearchCount());
+		assertEquals(6 * 60, statistics.get(0).getRequestedCount());
+
+		// Paging past the expected demand still works
+		List<String> ids = toUnqualifiedVersionlessIdValues(myDatabaseBackedPagingProvider.retrieveResultList(null, uuid), 60, 200, true);
+		assertEquals(140, ids.size());
+		assertEquals("Patient/PT00199", ids.get(139));
+	}
+
+	@Test
+	public void testPreFetchSeededFromStoredSearches() {
+		for (int i = 0; i < AdaptiveSearchPreFetchSvc.MIN_SEARCHES_OBSERVED; i++) {
+			String uuid = searchAndReadPages();
+			assertEquals(200, awaitSearchNotLoading(uuid).getNumFound());
+		}
+
+		// Simulate a restart (or another node) - the demand is seeded from the stored searches
+		myAdaptiveSearchPreFetchSvc.clearForUnitTests();
+
+		String uuid = searchAndReadPages();
+		Search search = awaitSearchNotLoading(uuid);
+		assertEquals(61, search.getNumFound());
+		assertEquals(60, search.getNumRequested());
+
+		// Stored searches only contribute to the expected demand, not to the statistics
+		List<AdaptiveSearchPreFetchSvc.QueryShapeStatistics> statistics = myAdaptiveSearchPreFetchSvc.getStatistics();
+		assertEquals(1, statistics.size());
+		assertEquals(1, statistics.get(0).getSearchCount());
+	}
+
+	@Test
+	public void testPreFetchNotAdaptedWhenDisabled() {
+		myStorageSettings.setAdaptiveSearchPreFetchEnabled(false);
+
+		for (int i = 0; i < AdaptiveSearchPreFetchSvc.MIN_SEARCHES_OBSERVED + 1; i++) {
+			String uuid = searchAndReadPages();
+			Search search = awaitSearchNotLoading(uuid);
+			assertEquals(200, search.getNumFound());
+			assertNull(search.getNumRequested());
+		}
+		assertEquals(0, myAdaptiveSearchPreFetchSvc.getStatistics().size());
+	}
+
+	/**
+	 * Performs a new search (cached searches aren't reused) and reads the first 3 pages of 20
+	 */
+	private String searchAndReadPages() {
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("FAM"));
+		params.setSort(new SortSpec(Patient.SP_FAMILY));
+		IBundleProvider results = myPatientDao.search(params, mySrd);
+		String uuid = results.getUuid();
+
+		List<String> ids = toUnqualifiedVersionlessIdValues(results, 0, 20, true);
+		assertEquals("Patient/PT00000", ids.get(0));
+		ids = toUnqualifiedVersionlessIdValues(results, 20, 40, false);
+		assertEquals("Patient/PT00020", ids.get(0));
+		ids = toUnqualifiedVersionlessIdValues(results, 40, 60, false);
+		assertEquals("Patient/PT00059", ids.get(19));
+		return uuid;
+	}
+
+	private Search awaitSearchNotLoading(String theUuid) {
+		await().until(() -> runInTransaction(() -> mySearchEntityDao.findByUuidAndFetchIncludes(theUuid).orElseThrow().getStatus() != SearchStatusEnum.LOADING));
+		return runInTransaction(() -> mySearchEntityDao.findByUuidAndFetchIncludes(theUuid).orElseThrow());
+	}
+}
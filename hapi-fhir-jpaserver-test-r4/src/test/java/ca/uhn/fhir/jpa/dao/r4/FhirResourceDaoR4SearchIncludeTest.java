@@ -5,6 +5,7 @@ import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
@@ -49,6 +50,7 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 	@AfterEach
 	public void afterEach() {
 		myStorageSettings.setMaximumIncludesToLoadPerPage(JpaStorageSettings.DEFAULT_MAXIMUM_INCLUDES_TO_LOAD_PER_PAGE);
+		myStorageSettings.setSearchResultParsingThreadCount(new JpaStorageSettings().getSearchResultParsingThreadCount());
 	}
 
 	@Test
@@ -239,6 +241,21 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testIncludesWithParallelParsing() {
+		createOrganizationWithReferencingEpisodesOfCare(250);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.setSort(new SortSpec("_id"))
+			.addInclude(EpisodeOfCare.INCLUDE_ORGANIZATION);
+		List<String> sequentialIds = toUnqualifiedVersionlessIdValues(myEpisodeOfCareDao.search(map));
+		assertEquals(251, sequentialIds.size());
+
+		myStorageSettings.setSearchResultParsingThreadCount(4);
+		List<String> parallelIds = toUnqualifiedVersionlessIdValues(myEpisodeOfCareDao.search(map));
+		assertEquals(sequentialIds, parallelIds);
+	}
+
 	private void createOrganizationWithReferencingEpisodesOfCare(int theEocCount) {
 		Organization org = new Organization();
 		org.setId("Organization/ORG-P");
@@ -0,0 +1,182 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.index.BulkIndexRowInserter;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class FhirResourceDaoR4SearchIndexBulkInsertTest extends BaseJpaR4Test {
+
+	@AfterEach
+	public void afterResetSettings() {
+		myStorageSettings.setSearchIndexBulkInsertEnabled(new JpaStorageSettings().isSearchIndexBulkInsertEnabled());
+	}
+
+	@Test
+	public void testCreate_SameRowsAsHibernate() {
+		IIdType patientId = createPatient(withFamily("Simpson"), withGiven("Homer"));
+
+		IIdType hibernateId = myObservationDao.create(newObservation(patientId, "1"), mySrd).getId();
+		myStorageSettings.setSearchIndexBulkInsertEnabled(true);
+		IIdType bulkId = myObservationDao.create(newObservation(patientId, "1"), mySrd).getId();
+
+		assertEquals(describeIndexes(hibernateId), describeIndexes(bulkId));
+
+		// Searches on each kind of index find both resources
+		String[] expected = {hibernateId.toUnqualifiedVersionless().getValue(), bulkId.toUnqualifiedVersionless().getValue()};
+		assertThat(search(new SearchParameterMap().add(Observation.SP_CODE, new TokenParam("http://loinc.org", "1"))), containsInAnyOrder(expected));
+		assertThat(search(new SearchParameterMap().add(Observation.SP_SUBJECT, new ReferenceParam(patientId.toUnqualifiedVersionless()))), containsInAnyOrder(expected));
+		assertThat(search(new SearchParameterMap().add(Observation.SP_DATE, new DateParam("2021-02-03"))), containsInAnyOrder(expected));
+	}
+
+	@Test
+	public void testUpdate() {
+		myStorageSettings.setSearchIndexBulkInsertEnabled(true);
+		IIdType patientId = createPatient(withFamily("Simpson"));
+		IIdType id = myObservationDao.create(newObservation(patientId, "1"), mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obs = newObservation(patientId, "2");
+		obs.setId(id);
+		myObservationDao.update(obs, mySrd);
+
+		assertThat(search(new SearchParameterMap().add(Observation.SP_CODE, new TokenParam("http://loinc.org", "1"))), empty());
+		assertThat(search(new SearchParameterMap().add(Observation.SP_CODE, new TokenParam("http://loinc.org", "2"))), contains(id.getValue()));
+		List<String> codeTokens = runInTransaction(() -> myResourceIndexedSearchParamTokenDao.findAll().stream()
+			.filter(t -> t.getResourcePid().equals(id.getIdPartAsLong()))
+			.filter(t -> t.getParamName().equals(Observation.SP_CODE))
+			.map(ResourceIndexedSearchParamToken::getValue)
+			.collect(Collectors.toList()));
+		assertThat(codeTokens, contains("2"));
+	}
+
+	@Test
+	public void testTransaction() {
+		myStorageSettings.setSearchIndexBulkInsertEnabled(true);
+
+		Bundle input = new Bundle();
+		input.setType(Bundle.BundleType.TRANSACTION);
+		Patient patient = new Patient();
+		patient.setId(IdType.newRandomUuid());
+		patient.addName().setFamily("Flanders");
+		input.addEntry().setFullUrl(patient.getId()).setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+		for (int i = 0; i < 10; i++) {
+			Observation obs = newObservation(null, Integer.toString(i));
+			obs.setSubject(new Reference(patient.getId()));
+			input.addEntry().setResource(obs).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+		}
+
+		Bundle output = mySystemDao.transaction(mySrd, input);
+
+		IdType patientId = new IdType(output.getEntry().get(0).getResponse().getLocation()).toUnqualifiedVersionless();
+		assertEquals(10, search(new SearchParameterMap().add(Observation.SP_SUBJECT, new ReferenceParam(patientId))).size());
+		assertEquals(10, runInTransaction(() -> (int) myResourceLinkDao.findAll().stream().filter(t -> t.getTargetResourcePid().equals(patientId.getIdPartAsLong())).map(ResourceLink::getSourceResourcePid).distinct().count()));
+		SearchParameterMap patientMap = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("Flanders"));
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(patientMap, mySrd)), contains(patientId.getValue()));
+	}
+
+	@Test
+	public void testRowsQueuedAfterLastFlushAreWrittenOnCommit() {
+		IIdType patientId = createPatient(withFamily("Simpson"));
+		Long pid = patientId.getIdPartAsLong();
+
+		runInTransaction(() -> {
+			ResourceTable resource = myResourceTableDao.findById(pid).orElseThrow();
+			ResourceIndexedSearchParamString row = new ResourceIndexedSearchParamString(myPartitionSettings, myStorageSettings, "Patient", "family", "FLANDERS", "Flanders");
+			row.setResource(resource);
+			row.calculateHashes();
+			BulkIndexRowInserter inserter = BulkIndexRowInserter.forSession(myEntityManager.unwrap(SessionImplementor.class));
+			assertNotNull(inserter);
+			inserter.add(row);
+
+			// With nothing left for Hibernate to flush, the commit won't notify the inserter
+			myEntityManager.clear();
+		});
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("Flanders"));
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd)), contains(patientId.toUnqualifiedVersionless().getValue()));
+	}
+
+	@Test
+	public void testInserterIsBoundToTransaction() {
+		BulkIndexRowInserter first = runInTransaction(() -> {
+			SessionImplementor session = myEntityManager.unwrap(SessionImplementor.class);
+			BulkIndexRowInserter retVal = BulkIndexRowInserter.forSession(session);
+			assertSame(retVal, BulkIndexRowInserter.forSession(session));
+			return retVal;
+		});
+		BulkIndexRowInserter second = runInTransaction(() -> BulkIndexRowInserter.forSession(myEntityManager.unwrap(SessionImplementor.class)));
+		assertNotSame(first, second);
+	}
+
+	private List<String> search(SearchParameterMap theMap) {
+		theMap.setLoadSynchronous(true);
+		return toUnqualifiedVersionlessIdValues(myObservationDao.search(theMap, mySrd));
+	}
+
+	private List<String> describeIndexes(IIdType theId) {
+		Long pid = theId.getIdPartAsLong();
+		return runInTransaction(() -> {
+			List<String> retVal = new ArrayList<>();
+			retVal.add("String: " + countForResource(myResourceIndexedSearchParamStringDao, pid));
+			retVal.add("Token: " + countForResource(myResourceIndexedSearchParamTokenDao, pid));
+			retVal.add("Date: " + countForResource(myResourceIndexedSearchParamDateDao, pid));
+			retVal.add("Quantity: " + countForResource(myResourceIndexedSearchParamQuantityDao, pid));
+			retVal.add("Uri: " + countForResource(myResourceIndexedSearchParamUriDao, pid));
+			retVal.add("Link: " + myResourceLinkDao.findAll().stream().filter(t -> t.getSourceResourcePid().equals(pid)).map(t -> t.getSourcePath() + "->" + t.getTargetResourcePid()).sorted().collect(Collectors.toList()));
+			retVal.add("Token hashes: " + myResourceIndexedSearchParamTokenDao.findAll().stream().filter(t -> t.getResourcePid().equals(pid)).map(ResourceIndexedSearchParamToken::getHashSystemAndValue).sorted().collect(Collectors.toList()));
+			return retVal;
+		});
+	}
+
+	private static <T extends BaseResourceIndexedSearchParam> long countForResource(JpaRepository<T, Long> theDao, Long thePid) {
+		return theDao.findAll().stream().filter(t -> thePid.equals(t.getResourcePid())).count();
+	}
+
+	private static Observation newObservation(IIdType thePatientId, String theCode) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode(theCode).setDisplay("Code " + theCode);
+		obs.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs");
+		if (thePatientId != null) {
+			obs.setSubject(new Reference(thePatientId.toUnqualifiedVersionless()));
+		}
+		obs.setEffective(new DateTimeType("2021-02-03T10:00:00Z"));
+		obs.setValue(new Quantity().setValue(12.5).setSystem("http://unitsofmeasure.org").setCode("mm[Hg]"));
+		obs.addIdentifier().setSystem("http://foo").setValue("bar-" + theCode);
+		return obs;
+	}
+}
@@ -0,0 +1,129 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.util.BundleBuilder;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FhirResourceDaoR4SearchIndexHashDiffTest extends BaseJpaR4Test {
+
+	@BeforeEach
+	public void beforeEnableHashOnlyDiff() {
+		myStorageSettings.setSearchIndexHashOnlyDiffEnabled(true);
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setSearchIndexHashOnlyDiffEnabled(defaults.isSearchIndexHashOnlyDiffEnabled());
+		myStorageSettings.setSearchIndexBulkInsertEnabled(defaults.isSearchIndexBulkInsertEnabled());
+	}
+
+	@Test
+	public void testUpdate_OnlyChangedRowsWritten() {
+		Patient patient = newPatient("A", "B", "C");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		List<Long> originalRowIds = getIdentifierTokenRowIds(id);
+		assertEquals(3, originalRowIds.size());
+
+		patient = newPatient("A", "B", "D");
+		patient.setId(id);
+		myCaptureQueriesListener.clear();
+		myPatientDao.update(patient, mySrd);
+
+		// Existing token rows are only loaded as ID + hash projections
+		String tokenSelects = myCaptureQueriesListener.getSelectQueries().stream()
+			.map(t -> t.getSql(false, false))
+			.filter(t -> t.contains("HFJ_SPIDX_TOKEN"))
+			.collect(Collectors.joining("\n"));
+		assertThat(tokenSelects, containsString("HASH_SYS_AND_VALUE"));
+		assertThat(tokenSelects, not(containsString("SP_VALUE")));
+		assertEquals(1, myCaptureQueriesListener.countDeleteQueries());
+
+		assertThat(searchForIdentifier("C"), empty());
+		assertThat(searchForIdentifier("D"), contains(id.getValue()));
+		assertThat(searchForIdentifier("A"), contains(id.getValue()));
+
+		// Unchanged rows are left alone
+		List<Long> newRowIds = getIdentifierTokenRowIds(id);
+		assertEquals(3, newRowIds.size());
+		assertEquals(2, newRowIds.stream().filter(originalRowIds::contains).count());
+	}
+
+	@Test
+	public void testUpdate_NoChanges() {
+		myStorageSettings.setSearchIndexBulkInsertEnabled(true);
+		Patient patient = newPatient("A", "B");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		List<Long> originalRowIds = getIdentifierTokenRowIds(id);
+
+		patient = newPatient("A", "B");
+		patient.setId(id);
+		patient.setActive(true);
+		myCaptureQueriesListener.clear();
+		myPatientDao.update(patient, mySrd);
+
+		assertEquals(0, myCaptureQueriesListener.countDeleteQueries());
+		assertThat(getIdentifierTokenRowIds(id), containsInAnyOrder(originalRowIds.toArray()));
+		assertThat(searchForIdentifier("B"), contains(id.getValue()));
+	}
+
+	@Test
+	public void testUpdate_InTransaction() {
+		IIdType id = myPatientDao.create(newPatient("A", "B"), mySrd).getId().toUnqualifiedVersionless();
+
+		Patient patient = newPatient("B", "C");
+		patient.setId(id);
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		bb.addTransactionUpdateEntry(patient);
+		bb.addTransactionCreateEntry(newPatient("A"));
+		Bundle output = mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+		String createdId = new IdType(output.getEntry().get(1).getResponse().getLocation()).toUnqualifiedVersionless().getValue();
+
+		assertThat(searchForIdentifier("A"), contains(createdId));
+		assertThat(searchForIdentifier("B"), contains(id.getValue()));
+		assertThat(searchForIdentifier("C"), contains(id.getValue()));
+	}
+
+	private List<String> searchForIdentifier(String theValue) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("http://foo", theValue));
+		return toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd));
+	}
+
+	private List<Long> getIdentifierTokenRowIds(IIdType theId) {
+		return runInTransaction(() -> myResourceIndexedSearchParamTokenDao.findAll().stream()
+			.filter(t -> t.getResourcePid().equals(theId.getIdPartAsLong()))
+			.filter(t -> t.getParamName().equals(Patient.SP_IDENTIFIER))
+			.map(ResourceIndexedSearchParamToken::getId)
+			.sorted()
+			.collect(Collectors.toList()));
+	}
+
+	private static Patient newPatient(String... theIdentifiers) {
+		Patient patient = new Patient();
+		for (String next : theIdentifiers) {
+			patient.addIdentifier().setSystem("http://foo").setValue(next);
+		}
+		return patient;
+	}
+}
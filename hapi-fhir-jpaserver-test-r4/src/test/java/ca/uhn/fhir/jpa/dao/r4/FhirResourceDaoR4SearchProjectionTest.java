@@ -0,0 +1,241 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
+import ca.uhn.fhir.jpa.dao.data.IResourceProjectionDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceProjectionEntity;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.IPreResourceShowDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4SearchProjectionTest extends BaseJpaR4Test {
+
+	@Autowired
+	private IResourceProjectionDao myResourceProjectionDao;
+
+	@BeforeEach
+	public void beforeEnableProjections() {
+		myStorageSettings.setSearchProjectionElements(Map.of("Observation", Set.of("status", "code", "effective")));
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setSearchProjectionElements(defaults.getSearchProjectionElements());
+		myStorageSettings.setExpungeEnabled(defaults.isExpungeEnabled());
+	}
+
+	@Test
+	public void testElementsServedFromProjection() {
+		IIdType id0 = createObservationWithValue("0", 0);
+		IIdType id1 = createObservationWithValue("1", 1);
+		runInTransaction(() -> assertEquals(2, myResourceProjectionDao.count()));
+
+		// Update one of them so that the projection is for a later version
+		Observation obs = myObservationDao.read(id1, mySrd);
+		obs.getCode().getCodingFirstRep().setCode("1-updated");
+		myObservationDao.update(obs, mySrd);
+
+		myCaptureQueriesListener.clear();
+		List<IBaseResource> resources = search("_elements", "code,effective");
+		assertNoResourceBodiesLoaded();
+
+		assertEquals(2, resources.size());
+		Observation actual = (Observation) resources.get(0);
+		assertEquals(id0.toUnqualifiedVersionless().getValue(), actual.getIdElement().toUnqualifiedVersionless().getValue());
+		assertEquals("1", actual.getIdElement().getVersionIdPart());
+		assertEquals("0", actual.getCode().getCodingFirstRep().getCode());
+		assertEquals("2024-01-01", actual.getEffectiveDateTimeType().getValueAsString());
+		assertEquals("http://tag", actual.getMeta().getTagFirstRep().getSystem());
+		assertFalse(actual.hasValue());
+		assertFalse(actual.hasSubject());
+
+		actual = (Observation) resources.get(1);
+		assertEquals("2", actual.getIdElement().getVersionIdPart());
+		assertEquals("1-updated", actual.getCode().getCodingFirstRep().getCode());
+
+		// Deleted resources have no projection
+		myObservationDao.delete(id0, mySrd);
+		runInTransaction(() -> assertEquals(1, myResourceProjectionDao.count()));
+		assertEquals(1, search("_elements", "code").size());
+	}
+
+	@Test
+	public void testNotServedFromProjectionWhenResourcesAreInspectedByInterceptors() {
+		createObservationWithValue("0", 0);
+
+		List<String> subjects = new ArrayList<>();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			IPreResourceShowDetails details = theArgs.get(IPreResourceShowDetails.class);
+			for (IBaseResource next : details) {
+				subjects.add(((Observation) next).getSubject().getDisplay());
+			}
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESHOW_RESOURCES, interceptor);
+		try {
+			myCaptureQueriesListener.clear();
+			search("_elements", "code");
+			assertResourceBodiesLoaded();
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		// The interceptor saw the elements which aren't projected
+		assertThat(subjects, hasItem("Patient 0"));
+	}
+
+	@Test
+	public void testSummaryNotServedFromProjectionWithoutAllSummaryElements() {
+		createObservationWithValue("0", 0);
+
+		myCaptureQueriesListener.clear();
+		List<IBaseResource> resources = search("_summary", "true");
+		assertResourceBodiesLoaded();
+		assertTrue(((Observation) resources.get(0)).hasValue());
+	}
+
+	@Test
+	public void testElementsNotProjectedLoadsFullResource() {
+		createObservationWithValue("0", 0);
+
+		myCaptureQueriesListener.clear();
+		List<IBaseResource> resources = search("_elements", "code,value");
+		assertResourceBodiesLoaded();
+		assertTrue(((Observation) resources.get(0)).hasValue());
+
+		myCaptureQueriesListener.clear();
+		resources = search(null, null);
+		assertResourceBodiesLoaded();
+		assertTrue(((Observation) resources.get(0)).hasValue());
+	}
+
+	@Test
+	public void testResourceWithContainedResourcesIsNotProjected() {
+		Patient patient = new Patient();
+		patient.setId("#pat");
+		patient.setActive(true);
+		Observation obs = new Observation();
+		obs.getContained().add(patient);
+		obs.getSubject().setReference("#pat");
+		obs.getCode().addCoding().setCode("0");
+		IIdType id = myObservationDao.create(obs, mySrd).getId();
+		createObservationWithValue("1", 1);
+		runInTransaction(() -> assertEquals(1, myResourceProjectionDao.count()));
+
+		myCaptureQueriesListener.clear();
+		List<IBaseResource> resources = search("_elements", "code");
+		assertResourceBodiesLoaded();
+		assertEquals(2, resources.size());
+		assertEquals(id.toUnqualifiedVersionless().getValue(), resources.get(0).getIdElement().toUnqualifiedVersionless().getValue());
+		assertEquals("1", ((Observation) resources.get(1)).getCode().getCodingFirstRep().getCode());
+	}
+
+	@Test
+	public void testNonAsciiTextIsStoredAsAscii() {
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://code").setCode("0").setDisplay("Größe 日本");
+		myObservationDao.create(obs, mySrd);
+
+		String projectionText = runInTransaction(() -> myResourceProjectionDao.findAll().get(0).getProjectionText());
+		assertEquals(projectionText.length(), projectionText.getBytes(StandardCharsets.UTF_8).length);
+
+		myCaptureQueriesListener.clear();
+		List<IBaseResource> resources = search("_elements", "code");
+		assertNoResourceBodiesLoaded();
+		assertEquals("Größe 日本", ((Observation) resources.get(0)).getCode().getCodingFirstRep().getDisplay());
+	}
+
+	@Test
+	public void testProjectionTooLongInBytesIsNotStored() {
+		// Fewer characters than the column length, but more bytes
+		String display = "é".repeat(ResourceProjectionEntity.PROJECTION_TEXT_MAX_LENGTH / 2);
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://code").setCode("0").setDisplay(display);
+		myObservationDao.create(obs, mySrd);
+
+		runInTransaction(() -> assertEquals(0, myResourceProjectionDao.count()));
+		assertEquals(display, ((Observation) search("_elements", "code").get(0)).getCode().getCodingFirstRep().getDisplay());
+	}
+
+	@Test
+	public void testExpungeDeletesProjection() {
+		myStorageSettings.setExpungeEnabled(true);
+		IIdType id = createObservationWithValue("0", 0);
+
+		// Once Observation projections are no longer configured, deleting the resource leaves its projection behind
+		myStorageSettings.setSearchProjectionElements(Map.of("Patient", Set.of("name")));
+		myObservationDao.delete(id, mySrd);
+		runInTransaction(() -> assertEquals(1, myResourceProjectionDao.count()));
+
+		myObservationDao.expunge(id.toUnqualifiedVersionless(), new ExpungeOptions().setExpungeDeletedResources(true).setExpungeOldVersions(true), mySrd);
+		runInTransaction(() -> assertEquals(0, myResourceProjectionDao.count()));
+	}
+
+	private IIdType createObservationWithValue(String theCode, int theValue) {
+		Observation obs = new Observation();
+		obs.getMeta().addTag("http://tag", "tag", null);
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://code").setCode(theCode);
+		obs.setEffective(new DateTimeType("2024-01-01"));
+		obs.getSubject().setDisplay("Patient " + theCode);
+		obs.setValue(new Quantity(theValue));
+		return myObservationDao.create(obs, mySrd).getId();
+	}
+
+	private List<IBaseResource> search(String theParamName, String theParamValue) {
+		SystemRequestDetails requestDetails = new SystemRequestDetails();
+		if (theParamName != null) {
+			requestDetails.addParameter(theParamName, new String[]{theParamValue});
+		}
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.setSort(new SortSpec(Constants.PARAM_ID));
+		IBundleProvider outcome = myObservationDao.search(map, requestDetails);
+		return outcome.getResources(0, 100);
+	}
+
+	private List<String> getSelectQueries() {
+		return myCaptureQueriesListener.getSelectQueries().stream().map(t -> t.getSql(true, false)).collect(Collectors.toList());
+	}
+
+	private void assertNoResourceBodiesLoaded() {
+		for (String next : getSelectQueries()) {
+			assertThat(next, not(containsString("RES_TEXT")));
+		}
+	}
+
+	private void assertResourceBodiesLoaded() {
+		assertThat(getSelectQueries(), hasItem(containsString("RES_TEXT")));
+	}
+}
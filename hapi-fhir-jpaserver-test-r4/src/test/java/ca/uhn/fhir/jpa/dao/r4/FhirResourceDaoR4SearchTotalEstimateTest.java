@@ -0,0 +1,123 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.search.builder.SearchTotalEstimateCache;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class FhirResourceDaoR4SearchTotalEstimateTest extends BaseJpaR4Test {
+
+	@Autowired
+	private SearchTotalEstimateCache mySearchTotalEstimateCache;
+
+	@BeforeEach
+	public void beforeEnableEstimation() {
+		myStorageSettings.setSearchTotalEstimationEnabled(true);
+	}
+
+	@AfterEach
+	public void afterResetSettings() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setSearchTotalEstimationEnabled(defaults.isSearchTotalEstimationEnabled());
+		myStorageSettings.setSearchTotalEstimateCacheMillis(defaults.getSearchTotalEstimateCacheMillis());
+		myStorageSettings.setDefaultTotalMode(defaults.getDefaultTotalMode());
+		mySearchTotalEstimateCache.invalidateAll();
+	}
+
+	@Test
+	public void testSummaryCount_EstimatedTotalIsCached() {
+		createPatients("Simpson", 5);
+		assertEquals(5, countOnly("Simpson", SearchTotalModeEnum.ESTIMATED));
+
+		createPatients("Simpson", 2);
+		myCaptureQueriesListener.clear();
+		assertEquals(5, countOnly("Simpson", SearchTotalModeEnum.ESTIMATED));
+		assertEquals(0, myCaptureQueriesListener.countSelectQueries());
+
+		// Accurate totals never come from the cache
+		assertEquals(7, countOnly("Simpson", SearchTotalModeEnum.ACCURATE));
+
+		// Different searches are cached separately
+		assertEquals(0, countOnly("Flanders", SearchTotalModeEnum.ESTIMATED));
+
+		mySearchTotalEstimateCache.invalidateAll();
+		assertEquals(7, countOnly("Simpson", SearchTotalModeEnum.ESTIMATED));
+	}
+
+	@Test
+	public void testSummaryCount_CacheDisabled() {
+		myStorageSettings.setSearchTotalEstimateCacheMillis(0);
+		createPatients("Simpson", 5);
+		assertEquals(5, countOnly("Simpson", SearchTotalModeEnum.ESTIMATED));
+
+		createPatients("Simpson", 2);
+		assertEquals(7, countOnly("Simpson", SearchTotalModeEnum.ESTIMATED));
+	}
+
+	@Test
+	public void testSearch_EstimatedTotalBeyondLoadedPage() {
+		createPatients("Simpson", 5);
+
+		SearchParameterMap map = newMap("Simpson", SearchTotalModeEnum.ESTIMATED);
+		map.setCount(2);
+		map.setSort(new SortSpec(Patient.SP_BIRTHDATE));
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+		assertEquals(2, outcome.getResources(0, 2).size());
+		assertEquals(5, outcome.size());
+
+		// Sort order and paging don't affect the total, so the cached total is reused
+		createPatients("Simpson", 2);
+		assertEquals(5, countOnly("Simpson", SearchTotalModeEnum.ESTIMATED));
+	}
+
+	@Test
+	public void testSearch_DefaultTotalModeEstimated() {
+		myStorageSettings.setDefaultTotalMode(SearchTotalModeEnum.ESTIMATED);
+		createPatients("Simpson", 5);
+
+		SearchParameterMap map = newMap("Simpson", null);
+		map.setCount(2);
+		assertEquals(5, myPatientDao.search(map, mySrd).size());
+	}
+
+	@Test
+	public void testSearch_EstimationDisabled() {
+		myStorageSettings.setSearchTotalEstimationEnabled(false);
+		createPatients("Simpson", 5);
+
+		SearchParameterMap map = newMap("Simpson", SearchTotalModeEnum.ESTIMATED);
+		map.setCount(2);
+		assertNull(myPatientDao.search(map, mySrd).size());
+	}
+
+	private int countOnly(String theFamily, SearchTotalModeEnum theTotalMode) {
+		SearchParameterMap map = newMap(theFamily, theTotalMode);
+		map.setSummaryMode(SummaryEnum.COUNT);
+		return myPatientDao.search(map, mySrd).size();
+	}
+
+	private void createPatients(String theFamily, int theCount) {
+		for (int i = 0; i < theCount; i++) {
+			createPatient(withFamily(theFamily));
+		}
+	}
+
+	private static SearchParameterMap newMap(String theFamily, SearchTotalModeEnum theTotalMode) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam(theFamily));
+		map.setSearchTotalMode(theTotalMode);
+		return map;
+	}
+}
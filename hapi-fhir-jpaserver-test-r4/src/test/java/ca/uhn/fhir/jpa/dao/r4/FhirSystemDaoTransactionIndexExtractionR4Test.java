@@ -0,0 +1,144 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FhirSystemDaoTransactionIndexExtractionR4Test extends BaseJpaR4Test {
+
+	private static final int COUNT = 10;
+
+	@AfterEach
+	public void afterResetSettings() {
+		myStorageSettings.setBundleIndexExtractionPoolSize(new JpaStorageSettings().getBundleIndexExtractionPoolSize());
+	}
+
+	@Test
+	public void testParallelExtractionCreatesSameIndexes() {
+		mySystemDao.transaction(mySrd, createBundle("serial"));
+		long tokens = runInTransaction(() -> myResourceIndexedSearchParamTokenDao.count());
+		long strings = runInTransaction(() -> myResourceIndexedSearchParamStringDao.count());
+		long dates = runInTransaction(() -> myResourceIndexedSearchParamDateDao.count());
+		long links = runInTransaction(() -> myResourceLinkDao.count());
+
+		myStorageSettings.setBundleIndexExtractionPoolSize(4);
+		mySystemDao.transaction(mySrd, createBundle("parallel"));
+
+		runInTransaction(() -> {
+			assertEquals(tokens * 2, myResourceIndexedSearchParamTokenDao.count());
+			assertEquals(strings * 2, myResourceIndexedSearchParamStringDao.count());
+			assertEquals(dates * 2, myResourceIndexedSearchParamDateDao.count());
+			assertEquals(links * 2, myResourceLinkDao.count());
+		});
+
+		for (int i = 0; i < COUNT; i++) {
+			SearchParameterMap map = SearchParameterMap.newSynchronous();
+			map.add(Patient.SP_FAMILY, new StringParam("parallel" + i));
+			map.add(Patient.SP_BIRTHDATE, new DateParam("2000-01-" + (10 + i)));
+			List<String> patientIds = toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd));
+			assertEquals(1, patientIds.size(), patientIds::toString);
+
+			map = SearchParameterMap.newSynchronous();
+			map.add(Observation.SP_CODE, new TokenParam("http://codes", "parallel" + i));
+			map.add(Observation.SP_SUBJECT, new ReferenceParam(patientIds.get(0)));
+			assertEquals(1, myObservationDao.search(map, mySrd).sizeOrThrowNpe());
+		}
+	}
+
+	@Test
+	public void testUpdatesModifiedByPreStorageHookAreIndexed() {
+		for (int i = 0; i < COUNT; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/P" + i);
+			patient.addName().setFamily("family" + i);
+			myPatientDao.update(patient, mySrd);
+		}
+
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			Patient patient = (Patient) theArgs.get(IBaseResource.class, 1);
+			patient.addIdentifier().setSystem("http://hook").setValue(patient.getIdElement().getIdPart());
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_UPDATED, interceptor);
+		try {
+			myStorageSettings.setBundleIndexExtractionPoolSize(4);
+
+			Bundle bundle = new Bundle();
+			bundle.setType(Bundle.BundleType.TRANSACTION);
+			for (int i = 0; i < COUNT; i++) {
+				Patient patient = new Patient();
+				patient.setId("Patient/P" + i);
+				patient.addName().setFamily("updated" + i);
+				bundle.addEntry()
+						.setResource(patient)
+						.getRequest()
+						.setMethod(Bundle.HTTPVerb.PUT)
+						.setUrl("Patient/P" + i);
+			}
+			mySystemDao.transaction(mySrd, bundle);
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		for (int i = 0; i < COUNT; i++) {
+			SearchParameterMap map = SearchParameterMap.newSynchronous();
+			map.add(Patient.SP_IDENTIFIER, new TokenParam("http://hook", "P" + i));
+			map.add(Patient.SP_FAMILY, new StringParam("updated" + i));
+			assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map, mySrd)), contains("Patient/P" + i));
+		}
+	}
+
+	private Bundle createBundle(String thePrefix) {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < COUNT; i++) {
+			String patientUuid = IdType.newRandomUuid().getValue();
+
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://patients").setValue(thePrefix + i);
+			patient.addName().setFamily(thePrefix + i).addGiven("Given");
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			patient.setBirthDateElement(new DateType("2000-01-" + (10 + i)));
+			bundle.addEntry()
+					.setFullUrl(patientUuid)
+					.setResource(patient)
+					.getRequest()
+					.setMethod(Bundle.HTTPVerb.POST)
+					.setUrl("Patient");
+
+			Observation observation = new Observation();
+			observation.setStatus(Observation.ObservationStatus.FINAL);
+			observation.getCode().addCoding().setSystem("http://codes").setCode(thePrefix + i);
+			observation.setSubject(new Reference(patientUuid));
+			observation.setEffective(new DateTimeType("2024-01-01T10:00:00Z"));
+			bundle.addEntry()
+					.setResource(observation)
+					.getRequest()
+					.setMethod(Bundle.HTTPVerb.POST)
+					.setUrl("Observation");
+		}
+		return bundle;
+	}
+}
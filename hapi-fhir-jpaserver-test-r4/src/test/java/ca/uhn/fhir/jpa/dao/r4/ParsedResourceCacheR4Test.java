@@ -0,0 +1,138 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.ParsedResourceCache;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ParsedResourceCacheR4Test extends BaseJpaR4Test {
+
+	@Autowired
+	private ParsedResourceCache myParsedResourceCache;
+
+	@BeforeEach
+	public void beforeEnableCache() {
+		myStorageSettings.setParsedResourceCacheMaximumBytes(10 * 1024 * 1024);
+	}
+
+	@AfterEach
+	public void afterDisableCache() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setParsedResourceCacheMaximumBytes(defaults.getParsedResourceCacheMaximumBytes());
+		myStorageSettings.setUpdateWithHistoryRewriteEnabled(defaults.isUpdateWithHistoryRewriteEnabled());
+		myParsedResourceCache.invalidateAll();
+	}
+
+	@Test
+	public void testReadIsCachedByVersion() {
+		IIdType id = createOrganization("Org 1");
+		Long pid = id.getIdPartAsLong();
+
+		Organization first = myOrganizationDao.read(id, mySrd);
+		assertEquals("Org 1", first.getName());
+		assertNotNull(getCached(pid, 1));
+
+		// Changes to a returned resource must not leak into the cache
+		first.setName("Modified");
+		Organization second = myOrganizationDao.read(id, mySrd);
+		assertNotSame(first, second);
+		assertEquals("Org 1", second.getName());
+		assertEquals(id.toUnqualified().getValue(), second.getIdElement().toUnqualified().getValue());
+		assertEquals("1", second.getMeta().getVersionId());
+
+		// A new version gets a new key
+		Organization update = new Organization();
+		update.setId(id.toUnqualifiedVersionless());
+		update.setName("Org 2");
+		myOrganizationDao.update(update, mySrd);
+
+		assertEquals("Org 2", myOrganizationDao.read(id.toVersionless(), mySrd).getName());
+		assertEquals("Org 1", myOrganizationDao.read(id.withVersion("1"), mySrd).getName());
+		assertNotNull(getCached(pid, 2));
+	}
+
+	@Test
+	public void testIncludedResourcesAreCached() {
+		IIdType orgId = createOrganization("Org 1");
+		for (int i = 0; i < 3; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://foo").setValue("P" + i);
+			patient.setManagingOrganization(new org.hl7.fhir.r4.model.Reference(orgId.toUnqualifiedVersionless()));
+			myPatientDao.create(patient, mySrd);
+		}
+
+		for (int i = 0; i < 2; i++) {
+			SearchParameterMap map = SearchParameterMap.newSynchronous()
+				.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", null))
+				.addInclude(Patient.INCLUDE_ORGANIZATION);
+			IBundleProvider outcome = myPatientDao.search(map, mySrd);
+			assertEquals(4, outcome.getResources(0, 10).size());
+			assertEquals("Organization/" + orgId.getIdPart(), toUnqualifiedVersionlessIdValues(outcome).get(3));
+		}
+
+		assertNotNull(getCached(orgId.getIdPartAsLong(), 1));
+	}
+
+	@Test
+	public void testBypassedWhenHistoryRewriteEnabled() {
+		myStorageSettings.setUpdateWithHistoryRewriteEnabled(true);
+		IIdType id = createOrganization("Org 1");
+
+		myOrganizationDao.read(id, mySrd);
+
+		myStorageSettings.setUpdateWithHistoryRewriteEnabled(false);
+		assertNull(getCached(id.getIdPartAsLong(), 1));
+	}
+
+	@Test
+	public void testBodyRewrittenInPlaceIsNotServedFromCache() {
+		IIdType id = createOrganization("Org 1");
+		Long pid = id.getIdPartAsLong();
+		assertEquals("Org 1", myOrganizationDao.read(id, mySrd).getName());
+		assertNotNull(getCached(pid, 1));
+
+		// Rewrite the stored body of version 1 directly, as $meta operations and reindexing can
+		Organization rewritten = new Organization();
+		rewritten.setName("Org 1 Rewritten");
+		String encoded = myFhirContext.newJsonParser().encodeResourceToString(rewritten);
+		runInTransaction(() -> {
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(pid, 1);
+			history.setEncoding(ResourceEncodingEnum.JSON);
+			history.setResource(null);
+			history.setResourceTextVc(encoded);
+			myResourceHistoryTableDao.save(history);
+		});
+
+		assertEquals("Org 1 Rewritten", myOrganizationDao.read(id, mySrd).getName());
+	}
+
+	private Organization getCached(Long thePid, long theVersion) {
+		ResourceHistoryTable history = runInTransaction(
+			() -> myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(thePid, theVersion));
+		long contentHash = ParsedResourceCache.hashContent(
+			history.getEncoding(), history.getResource(), history.getResourceTextVc());
+		return myParsedResourceCache.get(myFhirContext, thePid, theVersion, contentHash, Organization.class);
+	}
+
+	private IIdType createOrganization(String theName) {
+		Organization org = new Organization();
+		org.setName(theName);
+		return myOrganizationDao.create(org, mySrd).getId().toUnqualified();
+	}
+}
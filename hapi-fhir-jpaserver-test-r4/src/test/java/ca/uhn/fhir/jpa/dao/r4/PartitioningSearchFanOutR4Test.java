@@ -0,0 +1,145 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PartitioningSearchFanOutR4Test extends BasePartitioningR4Test {
+
+	private IIdType myPatientIdNull;
+	private IIdType myPatientId1a;
+	private IIdType myPatientId1b;
+	private IIdType myPatientId2;
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setSearchPartitionFanOutThreadCount(4);
+
+		myPatientIdNull = createPatient(withPartition(null), withFamily("FAMILY"));
+		myPatientId1a = createPatient(withPartition(1), withFamily("FAMILY"));
+		myPatientId2 = createPatient(withPartition(2), withFamily("FAMILY"));
+		myPatientId1b = createPatient(withPartition(1), withFamily("FAMILY"));
+		createPatient(withPartition(3), withFamily("FAMILY"));
+		createPatient(withPartition(1), withFamily("BLAH"));
+	}
+
+	@Override
+	@AfterEach
+	public void after() {
+		super.after();
+		myStorageSettings.setSearchPartitionFanOutThreadCount(new JpaStorageSettings().getSearchPartitionFanOutThreadCount());
+	}
+
+	@Test
+	public void testSearch_OneStatementPerPartition() {
+		addReadPartition(1, 2, null);
+
+		myCaptureQueriesListener.clear();
+		List<IIdType> ids = toUnqualifiedVersionlessIds(myPatientDao.search(newFamilyMap(), mySrd));
+		assertThat(ids, containsInAnyOrder(myPatientIdNull, myPatientId1a, myPatientId1b, myPatientId2));
+
+		String searchSql = getSearchSql();
+		assertThat(searchSql, containsString("PARTITION_ID = '1'"));
+		assertThat(searchSql, containsString("PARTITION_ID = '2'"));
+		assertThat(searchSql, containsString("PARTITION_ID IS NULL"));
+		assertEquals(0, countPartitionInClauses(searchSql));
+	}
+
+	@Test
+	public void testSearch_SortedByPid() {
+		List<IIdType> expected = Stream.of(myPatientIdNull, myPatientId1a, myPatientId1b, myPatientId2)
+			.sorted(Comparator.comparing(IIdType::getIdPartAsLong).reversed())
+			.collect(Collectors.toList());
+
+		addReadPartition(1, 2, null);
+		SearchParameterMap map = newFamilyMap();
+		map.setSort(new SortSpec(Constants.PARAM_PID, SortOrderEnum.DESC));
+		List<IIdType> ids = toUnqualifiedVersionlessIds(myPatientDao.search(map, mySrd));
+		assertThat(ids, contains(expected.toArray()));
+	}
+
+	@Test
+	public void testSearch_Async() {
+		addReadPartition(1, 2);
+		SearchParameterMap map = newFamilyMap();
+		map.setLoadSynchronous(false);
+		map.setSort(new SortSpec(Constants.PARAM_PID));
+
+		myCaptureQueriesListener.clear();
+		IBundleProvider outcome = myPatientDao.search(map, mySrd);
+		assertThat(toUnqualifiedVersionlessIds(outcome), contains(myPatientId1a, myPatientId2, myPatientId1b));
+		assertEquals(0, countPartitionInClauses(getSearchSql()));
+	}
+
+	@Test
+	public void testSearch_SummaryCount() {
+		addReadPartition(1, 2, null);
+		SearchParameterMap map = newFamilyMap();
+		map.setSummaryMode(SummaryEnum.COUNT);
+
+		myCaptureQueriesListener.clear();
+		assertEquals(4, myPatientDao.search(map, mySrd).size());
+		assertEquals(0, countPartitionInClauses(getSearchSql()));
+	}
+
+	@Test
+	public void testSearch_SortNotMergeable() {
+		addReadPartition(1, 2);
+		SearchParameterMap map = newFamilyMap();
+		map.setSort(new SortSpec(Patient.SP_BIRTHDATE));
+
+		myCaptureQueriesListener.clear();
+		List<IIdType> ids = toUnqualifiedVersionlessIds(myPatientDao.search(map, mySrd));
+		assertThat(ids, containsInAnyOrder(myPatientId1a, myPatientId1b, myPatientId2));
+		assertEquals(1, countPartitionInClauses(getSearchSql()));
+	}
+
+	@Test
+	public void testSearch_Disabled() {
+		myStorageSettings.setSearchPartitionFanOutThreadCount(1);
+		addReadPartition(1, 2);
+
+		myCaptureQueriesListener.clear();
+		List<IIdType> ids = toUnqualifiedVersionlessIds(myPatientDao.search(newFamilyMap(), mySrd));
+		assertThat(ids, containsInAnyOrder(myPatientId1a, myPatientId1b, myPatientId2));
+		assertEquals(1, countPartitionInClauses(getSearchSql()));
+	}
+
+	private String getSearchSql() {
+		return myCaptureQueriesListener.getSelectQueries().stream()
+			.map(t -> t.getSql(true, false))
+			.filter(t -> t.contains("HFJ_SPIDX_STRING"))
+			.collect(Collectors.joining("\n"));
+	}
+
+	private static int countPartitionInClauses(String theSql) {
+		return theSql.split("PARTITION_ID IN", -1).length - 1;
+	}
+
+	private static SearchParameterMap newFamilyMap() {
+		return SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("FAMILY"));
+	}
+}
@@ -0,0 +1,158 @@
+package ca.uhn.fhir.jpa.interceptor;
+
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.interceptor.auth.AuthorizedList;
+import ca.uhn.fhir.rest.server.interceptor.auth.SearchNarrowingInterceptor;
+import ca.uhn.fhir.rest.server.interceptor.consent.ConsentInterceptor;
+import ca.uhn.fhir.rest.server.interceptor.consent.ConsentOutcome;
+import ca.uhn.fhir.rest.server.interceptor.consent.IConsentContextServices;
+import ca.uhn.fhir.rest.server.interceptor.consent.IConsentService;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StreamingSearchInterceptorTest extends BaseResourceProviderR4Test {
+
+	@Autowired
+	private MatchUrlService myMatchUrlService;
+	@Autowired
+	private IHapiTransactionService myHapiTransactionService;
+	private StreamingSearchInterceptor mySvc;
+	private ConsentInterceptor myConsentInterceptor;
+	private SearchNarrowingInterceptor mySearchNarrowingInterceptor;
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+
+		mySvc = new StreamingSearchInterceptor(myDaoRegistry, myHapiTransactionService, myMatchUrlService);
+		myServer.registerInterceptor(mySvc);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+
+		myServer.unregisterInterceptor(mySvc);
+		if (myConsentInterceptor != null) {
+			myServer.unregisterInterceptor(myConsentInterceptor);
+		}
+		if (mySearchNarrowingInterceptor != null) {
+			myServer.unregisterInterceptor(mySearchNarrowingInterceptor);
+		}
+	}
+
+	@Test
+	public void testStreamingSearch() throws IOException {
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			expected.add(createPatient(withFamily("Simpson")).getValue());
+		}
+		createPatient(withFamily("Flanders"));
+
+		String url = myServerBase + "/Patient?family=Simpson&_format=ndjson&_stream=true";
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(url))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertThat(response.getEntity().getContentType().getValue(), startsWith(Constants.CT_FHIR_NDJSON));
+
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(parseIds(body), containsInAnyOrder(expected.toArray()));
+		}
+
+		// Nothing is stored in the search cache
+		assertEquals(0, runInTransaction(() -> mySearchEntityDao.count()));
+	}
+
+	@Test
+	public void testStreamingSearch_ConsentServiceApplied() throws IOException {
+		IIdType visibleId = createPatient(withFamily("Simpson"));
+		IIdType hiddenId = createPatient(withFamily("Simpson"));
+
+		myConsentInterceptor = new ConsentInterceptor(new IConsentService() {
+			@Override
+			public ConsentOutcome canSeeResource(RequestDetails theRequestDetails, IBaseResource theResource, IConsentContextServices theContextServices) {
+				if (theResource.getIdElement().toUnqualifiedVersionless().getValue().equals(hiddenId.getValue())) {
+					return ConsentOutcome.REJECT;
+				}
+				return ConsentOutcome.PROCEED;
+			}
+		});
+		myServer.registerInterceptor(myConsentInterceptor);
+
+		String url = myServerBase + "/Patient?_format=ndjson&_stream=true";
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(url))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(parseIds(body), containsInAnyOrder(visibleId.getValue()));
+		}
+	}
+
+	@Test
+	public void testStreamingSearch_SearchNarrowingApplied() throws IOException {
+		IIdType visibleId = createPatient(withFamily("Simpson"));
+		createPatient(withFamily("Simpson"));
+
+		mySearchNarrowingInterceptor = new SearchNarrowingInterceptor() {
+			@Override
+			protected AuthorizedList buildAuthorizedList(RequestDetails theRequestDetails) {
+				return new AuthorizedList().addCompartment(visibleId.getValue());
+			}
+		};
+		myServer.registerInterceptor(mySearchNarrowingInterceptor);
+
+		String url = myServerBase + "/Patient?family=Simpson&_format=ndjson&_stream=true";
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(url))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(parseIds(body), containsInAnyOrder(visibleId.getValue()));
+		}
+	}
+
+	@Test
+	public void testStreamingSearch_InvalidRequests() throws IOException {
+		String url = myServerBase + "/Patient?_format=json&_stream=true";
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(url))) {
+			assertEquals(400, response.getStatusLine().getStatusCode());
+			assertThat(IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8), containsString("requires an NDJSON response format"));
+		}
+
+		url = myServerBase + "/Patient?_format=ndjson&_stream=true&_sort=family";
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(url))) {
+			assertEquals(400, response.getStatusLine().getStatusCode());
+			assertThat(IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8), containsString("The _sort parameter can not be used with _stream"));
+		}
+	}
+
+	private List<String> parseIds(String theNdJson) {
+		return Arrays.stream(theNdJson.split("\n"))
+			.filter(t -> !t.isBlank())
+			.map(t -> myFhirContext.newJsonParser().parseResource(Patient.class, t).getIdElement().toUnqualifiedVersionless().getValue())
+			.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,136 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import com.google.common.collect.Lists;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ResourceProviderR4KeysetPaginationTest extends BaseResourceProviderR4Test {
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setSearchKeysetPaginationEnabled(true);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setSearchKeysetPaginationEnabled(new JpaStorageSettings().isSearchKeysetPaginationEnabled());
+	}
+
+	@Test
+	public void testPageThroughUnsorted() {
+		List<String> ids = createPatients(12);
+
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.offset(0)
+			.count(5)
+			.returnBundle(Bundle.class)
+			.execute();
+		assertEquals(ids.subList(0, 5), toUnqualifiedVersionlessIdValues(outcome));
+		assertThat(outcome.getLink("next").getUrl(), containsString(Constants.PARAM_CURSOR + "="));
+
+		// Second page seeks past the last PID of the first page instead of using an offset
+		myCaptureQueriesListener.clear();
+		outcome = myClient.loadPage().next(outcome).execute();
+		assertEquals(ids.subList(5, 10), toUnqualifiedVersionlessIdValues(outcome));
+		String sql = myCaptureQueriesListener.getSelectQueries().get(0).getSql(true, false);
+		assertThat(sql, containsString("RES_ID > '"));
+		assertThat(sql, not(containsString("offset '")));
+		assertThat(outcome.getLink("next").getUrl(), containsString("_offset=10"));
+		assertThat(outcome.getLink("previous").getUrl(), not(containsString(Constants.PARAM_CURSOR)));
+
+		// Last page
+		outcome = myClient.loadPage().next(outcome).execute();
+		assertEquals(ids.subList(10, 12), toUnqualifiedVersionlessIdValues(outcome));
+		assertNull(outcome.getLink("next"));
+	}
+
+	@Test
+	public void testPageThroughSortedByLastUpdatedDescending() {
+		List<String> ids = Lists.reverse(createPatients(7));
+
+		List<String> actual = new ArrayList<>();
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.sort(new SortSpec(Constants.PARAM_LASTUPDATED).setOrder(SortOrderEnum.DESC))
+			.offset(0)
+			.count(3)
+			.returnBundle(Bundle.class)
+			.execute();
+		actual.addAll(toUnqualifiedVersionlessIdValues(outcome));
+		while (outcome.getLink("next") != null) {
+			assertThat(outcome.getLink("next").getUrl(), containsString(Constants.PARAM_CURSOR + "="));
+			outcome = myClient.loadPage().next(outcome).execute();
+			actual.addAll(toUnqualifiedVersionlessIdValues(outcome));
+		}
+
+		assertEquals(ids, actual);
+	}
+
+	@Test
+	public void testUnsupportedSortUsesOffset() {
+		createPatients(4);
+
+		Bundle outcome = myClient
+			.search()
+			.forResource("Patient")
+			.where(Patient.ACTIVE.exactly().code("true"))
+			.sort().ascending(Patient.BIRTHDATE)
+			.offset(0)
+			.count(2)
+			.returnBundle(Bundle.class)
+			.execute();
+
+		assertThat(outcome.getLink("next").getUrl(), containsString("_offset=2"));
+		assertThat(outcome.getLink("next").getUrl(), not(containsString(Constants.PARAM_CURSOR)));
+	}
+
+	@Test
+	public void testInvalidCursor() {
+		createPatients(2);
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> myClient
+			.search()
+			.byUrl("Patient?active=true&_offset=1&_count=1&_cursor=not-a-cursor")
+			.returnBundle(Bundle.class)
+			.execute());
+		assertThat(e.getMessage(), containsString("HAPI-2508: Invalid _cursor value: not-a-cursor"));
+	}
+
+	private List<String> createPatients(int theCount) {
+		List<String> retVal = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			IIdType id = createPatient(withActiveTrue());
+			retVal.add(id.toUnqualifiedVersionless().getValue());
+		}
+		return retVal;
+	}
+}
@@ -1,5 +1,6 @@
 package ca.uhn.fhir.jpa.dao.r5;
 
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.esr.ExternallyStoredResourceAddress;
 import ca.uhn.fhir.jpa.esr.ExternallyStoredResourceAddressMetadataKey;
 import ca.uhn.fhir.jpa.esr.ExternallyStoredResourceServiceRegistry;
@@ -7,6 +8,8 @@ import ca.uhn.fhir.jpa.esr.IExternallyStoredResourceService;
 import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r5.model.Patient;
 import org.junit.jupiter.api.AfterEach;
@@ -15,6 +18,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -40,6 +46,7 @@ public class ExternallyStoredResourceR5Test extends BaseJpaR5Test {
 	@AfterEach
 	public void afterEach() {
 		myProviderRegistry.clearProviders();
+		myStorageSettings.setSearchResultParsingThreadCount(new JpaStorageSettings().getSearchResultParsingThreadCount());
 	}
 
 	@Test
@@ -74,6 +81,27 @@ public class ExternallyStoredResourceR5Test extends BaseJpaR5Test {
 
 	}
 
+	@Test
+	public void testSearch_ParallelParsing_FetchedOnRequestThread() {
+		// Setup
+		myStorageSettings.setSearchResultParsingThreadCount(4);
+		for (int i = 0; i < 120; i++) {
+			storePatientWithExternalAddress();
+		}
+		Set<Thread> fetchThreads = ConcurrentHashMap.newKeySet();
+		when(myProvider.fetchResource(any())).thenAnswer(t -> {
+			fetchThreads.add(Thread.currentThread());
+			return new Patient().setActive(true);
+		});
+
+		// Test
+		IBundleProvider outcome = myPatientDao.search(SearchParameterMap.newSynchronous(), mySrd);
+
+		// Verify
+		assertEquals(120, outcome.getResources(0, 120).size());
+		assertEquals(Set.of(Thread.currentThread()), fetchThreads);
+	}
+
 	private IIdType storePatientWithExternalAddress() {
 		Patient p = new Patient();
 		ExternallyStoredResourceAddress address = new ExternallyStoredResourceAddress(MY_PROVIDER_ID, ADDRESS_123);
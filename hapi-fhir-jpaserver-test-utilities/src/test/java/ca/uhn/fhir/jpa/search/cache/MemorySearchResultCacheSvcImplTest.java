@@ -0,0 +1,166 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemorySearchResultCacheSvcImplTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private MemorySearchResultCacheSvcImpl mySvc;
+
+	@AfterEach
+	public void after() {
+		if (mySvc != null) {
+			mySvc.stop();
+		}
+		DatabaseSearchCacheSvcImpl.setNowForUnitTests(null);
+	}
+
+	@Test
+	public void testStoreAndFetchAcrossChunks() {
+		createSvc(100_000, null);
+		Search search = newSearch();
+
+		int firstBatch = MemorySearchResultCacheSvcImpl.CHUNK_SIZE + 10;
+		List<JpaPid> first = pids(0, firstBatch);
+		List<JpaPid> second = pids(firstBatch, 3000);
+		store(search, Collections.emptyList(), first);
+		store(search, first, second);
+
+		assertEquals(pids(1000, 1100), fetch(search, 1000, 1100));
+		assertEquals(pids(2990, 3000), fetch(search, 2990, 5000));
+		assertEquals(Collections.emptyList(), fetch(search, 3000, 3010));
+		assertEquals(pids(0, 3000), mySvc.fetchAllResultPids(search, null, RequestPartitionId.allPartitions()));
+		assertEquals(3000, mySvc.getPidsInMemory());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsedWithoutSpill() {
+		createSvc(150, null);
+		Search search0 = newSearch();
+		Search search1 = newSearch();
+		Search search2 = newSearch();
+
+		store(search0, Collections.emptyList(), pids(0, 100));
+		store(search1, Collections.emptyList(), pids(100, 150));
+		fetch(search0, 0, 10);
+		store(search2, Collections.emptyList(), pids(200, 250));
+
+		// search1 was the least recently used
+		assertNull(fetch(search1, 0, 10));
+		assertFalse(mySvc.hasResults(search1));
+		assertEquals(pids(0, 10), fetch(search0, 0, 10));
+		assertEquals(pids(200, 250), fetch(search2, 0, 100));
+		assertTrue(mySvc.hasResults(search0));
+		assertTrue(mySvc.hasResults(search2));
+		assertEquals(150, mySvc.getPidsInMemory());
+	}
+
+	@Test
+	public void testDiscardedSearchIsNotReportedAsEmpty() {
+		createSvc(100, null);
+		Search search0 = newSearch();
+		Search search1 = newSearch();
+
+		store(search0, Collections.emptyList(), pids(0, 100));
+		store(search0, pids(0, 100), Collections.emptyList());
+		assertEquals(Collections.emptyList(), fetch(search0, 100, 110));
+
+		// Once discarded, reads must report that the results are gone rather than that there are none
+		store(search1, Collections.emptyList(), pids(100, 150));
+		assertNull(fetch(search0, 100, 110));
+		assertNull(mySvc.fetchAllResultPids(search0, null, RequestPartitionId.allPartitions()));
+		assertFalse(mySvc.hasResults(search0));
+		assertFalse(mySvc.hasResults(newSearch()));
+	}
+
+	@Test
+	public void testSpillToDisk(@TempDir Path theSpillDirectory) throws IOException {
+		createSvc(1000, theSpillDirectory.toString());
+		Search search0 = newSearch();
+		Search search1 = newSearch();
+
+		store(search0, Collections.emptyList(), pids(0, 800));
+		store(search1, Collections.emptyList(), pids(1000, 1500));
+		assertEquals(500, mySvc.getPidsInMemory());
+		assertEquals(1, countFiles(theSpillDirectory));
+
+		// Spilled results can be read and appended to
+		store(search0, pids(0, 800), pids(800, 900));
+		assertEquals(pids(790, 810), fetch(search0, 790, 810));
+		assertEquals(pids(0, 900), mySvc.fetchAllResultPids(search0, null, RequestPartitionId.allPartitions()));
+		assertEquals(pids(1000, 1010), fetch(search1, 0, 10));
+		assertTrue(mySvc.hasResults(search0));
+
+		mySvc.stop();
+		assertEquals(0, countFiles(theSpillDirectory));
+	}
+
+	@Test
+	public void testExpiry() {
+		createSvc(1000, null);
+		Search search0 = newSearch();
+		Search search1 = newSearch();
+
+		DatabaseSearchCacheSvcImpl.setNowForUnitTests(1_000_000_000L);
+		store(search0, Collections.emptyList(), pids(0, 10));
+
+		DatabaseSearchCacheSvcImpl.setNowForUnitTests(1_000_000_000L + myStorageSettings.getExpireSearchResultsAfterMillis() / 2);
+		store(search1, Collections.emptyList(), pids(0, 10));
+
+		DatabaseSearchCacheSvcImpl.setNowForUnitTests(1_000_000_000L + myStorageSettings.getExpireSearchResultsAfterMillis() + 1);
+		assertNull(fetch(search0, 0, 10));
+		assertEquals(pids(0, 10), fetch(search1, 0, 10));
+		assertEquals(10, mySvc.getPidsInMemory());
+	}
+
+	private void createSvc(long theMaximumPids, String theSpillDirectory) {
+		myStorageSettings.setSearchResultMemoryCacheMaximumPids(theMaximumPids);
+		myStorageSettings.setSearchResultMemoryCacheSpillDirectory(theSpillDirectory);
+		mySvc = new MemorySearchResultCacheSvcImpl(myStorageSettings);
+	}
+
+	private void store(Search theSearch, List<JpaPid> thePrevious, List<JpaPid> theNew) {
+		mySvc.storeResults(theSearch, thePrevious, theNew, null, RequestPartitionId.allPartitions());
+	}
+
+	private List<JpaPid> fetch(Search theSearch, int theFrom, int theTo) {
+		return mySvc.fetchResultPids(theSearch, theFrom, theTo, null, RequestPartitionId.allPartitions());
+	}
+
+	private static Search newSearch() {
+		Search retVal = new Search();
+		retVal.setUuid(UUID.randomUUID().toString());
+		return retVal;
+	}
+
+	private static List<JpaPid> pids(long theFrom, long theTo) {
+		return LongStream.range(theFrom, theTo).mapToObj(JpaPid::fromId).collect(Collectors.toList());
+	}
+
+	private static long countFiles(Path theDirectory) throws IOException {
+		try (Stream<Path> files = Files.list(theDirectory)) {
+			return files.count();
+		}
+	}
+}
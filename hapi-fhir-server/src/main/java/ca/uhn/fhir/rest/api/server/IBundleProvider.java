@@ -107,6 +107,19 @@ public interface IBundleProvider {
 		return null;
 	}
 
+	/**
+	 * If the results in this bundle were produced using an offset query (see {@link #getCurrentPageOffset()}),
+	 * this method may return an opaque token marking the position directly after the last result
+	 * of the current page. The server adds it to the next page link as the <code>_cursor</code>
+	 * parameter, alongside <code>_offset</code>, so that the provider can seek directly to the next
+	 * page instead of skipping over all previous results.
+	 *
+	 * @since 7.2.0
+	 */
+	default String getNextPageCursor() {
+		return null;
+	}
+
 	/**
 	 * Returns the instant as of which this result was created. The
 	 * result of this value is used to populate the <code>lastUpdated</code>
@@ -84,6 +84,31 @@ public interface IRestfulResponse {
 	OutputStream getResponseOutputStream(int theStatusCode, String theContentType, @Nullable Integer theContentLength)
 			throws IOException;
 
+	/**
+	 * Initiate a new textual response which the caller will write as bytes that are already encoded using
+	 * the given charset, instead of as characters through {@link #getResponseWriter(int, String, String, boolean)}.
+	 * This avoids a character encoding step for callers that are able to produce encoded bytes directly
+	 * (e.g. the JSON parser). The OutputStream returned by this method must be finalized by calling
+	 * {@link #commitResponse(Closeable)} later, in the same way as for {@link #getResponseWriter(int, String, String, boolean)}.
+	 * <p>
+	 * Implementations are not required to support this. The default implementation returns {@literal null},
+	 * in which case the caller should fall back to {@link #getResponseWriter(int, String, String, boolean)}.
+	 * </p>
+	 *
+	 * @param theStatusCode  The HTTP status code.
+	 * @param theContentType The HTTP response content type.
+	 * @param theCharset     The HTTP response charset. The caller is responsible for writing bytes in this charset.
+	 * @param theRespondGzip Should the response be GZip encoded?
+	 * @return Returns an {@link OutputStream} that can accept the response body, or {@literal null} if
+	 * this response does not support it.
+	 * @since 7.2.0
+	 */
+	@Nullable
+	default OutputStream getResponseTextOutputStream(
+			int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip) throws IOException {
+		return null;
+	}
+
 	/**
 	 * Finalizes the response streaming using the writer that was returned by calling either
 	 * {@link #getResponseWriter(int, String, String, boolean)} or
@@ -1020,6 +1020,26 @@ public class RestfulServerUtils {
 		}
 		String charset = Constants.CHARSET_NAME_UTF8;
 
+		/*
+		 * JSON can be encoded straight to UTF-8 bytes, which saves encoding the whole
+		 * response as characters first. This isn't possible if an interceptor wants to
+		 * wrap the Writer.
+		 */
+		if (theResource != null
+				&& !encodingDomainResourceAsText
+				&& responseEncoding.getEncoding() == EncodingEnum.JSON
+				&& (theServer.getInterceptorService() == null
+						|| !theServer.getInterceptorService().hasHooks(Pointcut.SERVER_OUTGOING_WRITER_CREATED))) {
+			OutputStream outputStream =
+					response.getResponseTextOutputStream(theStatusCode, contentType, charset, respondGzip);
+			if (outputStream != null) {
+				FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
+				IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
+				parser.encodeResourceToOutputStream(theResource, outputStream);
+				return response.commitResponse(outputStream);
+			}
+		}
+
 		Writer writer = response.getResponseWriter(theStatusCode, contentType, charset, respondGzip);
 
 		// Interceptor call: SERVER_OUTGOING_WRITER_CREATED
@@ -41,6 +41,7 @@ public class SimpleBundleProvider implements IBundleProvider {
 	private IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
 	private Integer myCurrentPageOffset;
 	private Integer myCurrentPageSize;
+	private String myNextPageCursor;
 	private ResponsePage.ResponsePageBuilder myPageBuilder;
 
 	/**
@@ -127,6 +128,21 @@ public class SimpleBundleProvider implements IBundleProvider {
 		myCurrentPageSize = theCurrentPageSize;
 	}
 
+	/**
+	 * @since 7.2.0
+	 */
+	@Override
+	public String getNextPageCursor() {
+		return myNextPageCursor;
+	}
+
+	/**
+	 * @since 7.2.0
+	 */
+	public void setNextPageCursor(String theNextPageCursor) {
+		myNextPageCursor = theNextPageCursor;
+	}
+
 	/**
 	 * Returns the results stored in this provider
 	 */
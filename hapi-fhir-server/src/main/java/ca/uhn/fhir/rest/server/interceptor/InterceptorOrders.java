@@ -28,6 +28,14 @@ public class InterceptorOrders {
 	public static final int RESPONSE_TERMINOLOGY_TRANSLATION_INTERCEPTOR = 100;
 	public static final int RESPONSE_TERMINOLOGY_DISPLAY_POPULATION_INTERCEPTOR = 110;
 
+	/**
+	 * Streaming searches are executed while the request is being post-processed, so this needs to run
+	 * after any other interceptors (e.g. search narrowing) which modify or reject the request at that point
+	 *
+	 * @since 7.2.0
+	 */
+	public static final int STREAMING_SEARCH_INTERCEPTOR = 10000;
+
 	/**
 	 * Non instantiable
 	 */
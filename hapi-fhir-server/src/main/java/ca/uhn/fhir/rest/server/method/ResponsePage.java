@@ -20,6 +20,7 @@
 package ca.uhn.fhir.rest.server.method;
 
 import ca.uhn.fhir.rest.api.BundleLinks;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.RestfulServerUtils;
 import org.apache.commons.lang3.ObjectUtils;
@@ -28,7 +29,9 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is an intermediate record object that holds all the fields required to make the final bundle that will be returned to the client.
@@ -282,7 +285,7 @@ public class ResponsePage {
 							myResponseBundleRequest.requestDetails.getTenantId(),
 							myRequestedPage.offset + myRequestedPage.limit,
 							myRequestedPage.limit,
-							myResponseBundleRequest.getRequestParameters());
+							getNextOffsetPageParameters());
 					break;
 				case NONCACHED_OFFSET:
 					next = RestfulServerUtils.createOffsetPagingLink(
@@ -291,7 +294,7 @@ public class ResponsePage {
 							myResponseBundleRequest.requestDetails.getTenantId(),
 							ObjectUtils.defaultIfNull(myRequestedPage.offset, 0) + myNumToReturn,
 							myNumToReturn,
-							myResponseBundleRequest.getRequestParameters());
+							getNextOffsetPageParameters());
 					break;
 				case BUNDLE_PROVIDER_PAGE_IDS:
 					next = RestfulServerUtils.createPagingLink(
@@ -321,6 +324,25 @@ public class ResponsePage {
 		}
 	}
 
+	/**
+	 * A <code>_cursor</code> is only valid for the page directly after the one it was
+	 * generated for, so it is replaced on the next link and dropped from all others
+	 */
+	private Map<String, String[]> getNextOffsetPageParameters() {
+		Map<String, String[]> retVal = getOffsetPageParametersWithoutCursor();
+		String cursor = myBundleProvider != null ? myBundleProvider.getNextPageCursor() : null;
+		if (StringUtils.isNotBlank(cursor)) {
+			retVal.put(Constants.PARAM_CURSOR, new String[] {cursor});
+		}
+		return retVal;
+	}
+
+	private Map<String, String[]> getOffsetPageParametersWithoutCursor() {
+		Map<String, String[]> retVal = new HashMap<>(myResponseBundleRequest.getRequestParameters());
+		retVal.remove(Constants.PARAM_CURSOR);
+		return retVal;
+	}
+
 	private boolean hasPreviousPage() {
 		determinePagingStyle();
 		switch (myPagingStyle) {
@@ -351,7 +373,7 @@ public class ResponsePage {
 							myResponseBundleRequest.requestDetails.getTenantId(),
 							Math.max(ObjectUtils.defaultIfNull(myRequestedPage.offset, 0) - myRequestedPage.limit, 0),
 							myRequestedPage.limit,
-							myResponseBundleRequest.getRequestParameters());
+							getOffsetPageParametersWithoutCursor());
 					break;
 				case NONCACHED_OFFSET:
 					{
@@ -362,7 +384,7 @@ public class ResponsePage {
 								myResponseBundleRequest.requestDetails.getTenantId(),
 								start,
 								myPageSize,
-								myResponseBundleRequest.getRequestParameters());
+								getOffsetPageParametersWithoutCursor());
 					}
 					break;
 				case BUNDLE_PROVIDER_PAGE_IDS:
@@ -41,6 +41,7 @@ import java.util.zip.GZIPOutputStream;
 public class ServletRestfulResponse extends BaseRestfulResponse<ServletRequestDetails> {
 
 	private Writer myWriter;
+	private OutputStream myTextOutputStream;
 	private OutputStream myOutputStream;
 
 	/**
@@ -56,6 +57,8 @@ public class ServletRestfulResponse extends BaseRestfulResponse<ServletRequestDe
 			throws IOException {
 		Validate.isTrue(myWriter == null, "getResponseOutputStream() called multiple times");
 		Validate.isTrue(myOutputStream == null, "getResponseOutputStream() called after getResponseWriter()");
+		Validate.isTrue(
+				myTextOutputStream == null, "getResponseOutputStream() called after getResponseTextOutputStream()");
 
 		addHeaders();
 		HttpServletResponse httpResponse = getRequestDetails().getServletResponse();
@@ -87,10 +90,35 @@ public class ServletRestfulResponse extends BaseRestfulResponse<ServletRequestDe
 			return myWriter;
 		}
 
-		myWriter = theHttpResponse.getWriter();
+		if (myTextOutputStream != null) {
+			// The servlet API doesn't allow getWriter() once getOutputStream() has been called,
+			// which can happen if an error occurs part way through a text output stream response
+			myWriter = new OutputStreamWriter(theHttpResponse.getOutputStream(), theCharset);
+		} else {
+			myWriter = theHttpResponse.getWriter();
+		}
 		return myWriter;
 	}
 
+	@Nonnull
+	@Override
+	public OutputStream getResponseTextOutputStream(
+			int theStatusCode, String theContentType, String theCharset, boolean theRespondGzip) throws IOException {
+		Validate.isTrue(myOutputStream == null, "getResponseTextOutputStream() called after getResponseOutputStream()");
+
+		addHeaders();
+		HttpServletResponse theHttpResponse = getRequestDetails().getServletResponse();
+		theHttpResponse.setCharacterEncoding(theCharset);
+		theHttpResponse.setStatus(theStatusCode);
+		theHttpResponse.setContentType(theContentType);
+		myTextOutputStream = theHttpResponse.getOutputStream();
+		if (theRespondGzip) {
+			theHttpResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			myTextOutputStream = new GZIPOutputStream(myTextOutputStream);
+		}
+		return myTextOutputStream;
+	}
+
 	private void addHeaders() {
 		HttpServletResponse httpResponse = getRequestDetails().getServletResponse();
 		getRequestDetails().getServer().addHeadersToResponse(httpResponse);
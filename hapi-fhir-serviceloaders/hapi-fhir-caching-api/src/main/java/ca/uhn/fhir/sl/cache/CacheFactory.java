@@ -62,4 +62,16 @@ public class CacheFactory {
 		CacheProvider<K, V> cacheProvider = getCacheProvider();
 		return cacheProvider.create(theTimeoutMillis, theMaximumSize, cacheLoader);
 	}
+
+	/**
+	 * Builds a cache which is bounded by the total weight of its entries, as calculated by
+	 * the given weigher (e.g. an approximate size in bytes), instead of by the number of entries.
+	 *
+	 * @since 7.2.0
+	 */
+	public static <K, V> Cache<K, V> buildWeighted(
+			long theTimeoutMillis, long theMaximumWeight, CacheWeigher<K, V> theWeigher) {
+		CacheProvider<K, V> cacheProvider = getCacheProvider();
+		return cacheProvider.createWeighted(theTimeoutMillis, theMaximumWeight, theWeigher);
+	}
 }
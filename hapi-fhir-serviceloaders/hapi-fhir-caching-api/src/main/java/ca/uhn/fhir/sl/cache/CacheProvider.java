@@ -21,6 +21,15 @@ package ca.uhn.fhir.sl.cache;
  */
 
 public interface CacheProvider<K, V> {
+
+	/**
+	 * The maximum number of entries in a cache created by the default implementation of
+	 * {@link #createWeighted(long, long, CacheWeigher)}
+	 *
+	 * @since 7.2.0
+	 */
+	long WEIGHTED_CACHE_FALLBACK_MAXIMUM_SIZE = 10000;
+
 	Cache create(long timeoutMillis);
 
 	Cache create(long timeoutMillis, long maximumSize);
@@ -28,4 +37,18 @@ public interface CacheProvider<K, V> {
 	LoadingCache create(long timeoutMillis, CacheLoader<K, V> cacheLoader);
 
 	LoadingCache create(long timeoutMillis, long maximumSize, CacheLoader<K, V> cacheLoader);
+
+	/**
+	 * Creates a cache which is bounded by the total weight of its entries, as calculated
+	 * by the given weigher, instead of by the number of entries.
+	 * <p>
+	 * Providers which don't support weighing entries get a cache which is bounded by
+	 * {@link #WEIGHTED_CACHE_FALLBACK_MAXIMUM_SIZE} entries instead.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	default Cache createWeighted(long timeoutMillis, long maximumWeight, CacheWeigher<K, V> weigher) {
+		return create(timeoutMillis, Math.min(maximumWeight, WEIGHTED_CACHE_FALLBACK_MAXIMUM_SIZE));
+	}
 }
@@ -0,0 +1,31 @@
+package ca.uhn.fhir.sl.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR - ServiceLoaders - Caching API
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Calculates the weight of a cache entry, for caches that are bounded by a total
+ * weight (e.g. an approximate size in bytes) rather than by a number of entries.
+ *
+ * @since 7.2.0
+ */
+public interface CacheWeigher<K, V> {
+	int weigh(K theKey, V theValue);
+}
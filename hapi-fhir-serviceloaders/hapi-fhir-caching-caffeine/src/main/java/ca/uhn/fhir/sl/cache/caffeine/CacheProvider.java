@@ -22,6 +22,7 @@ package ca.uhn.fhir.sl.cache.caffeine;
 
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheLoader;
+import ca.uhn.fhir.sl.cache.CacheWeigher;
 import ca.uhn.fhir.sl.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
@@ -60,4 +61,12 @@ public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K
 				.maximumSize(maximumSize)
 				.build(loading::load));
 	}
+
+	public Cache<K, V> createWeighted(long timeoutMillis, long maximumWeight, CacheWeigher<K, V> weigher) {
+		return new CacheDelegator<K, V>(Caffeine.newBuilder()
+				.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS)
+				.maximumWeight(maximumWeight)
+				.weigher(weigher::weigh)
+				.build());
+	}
 }
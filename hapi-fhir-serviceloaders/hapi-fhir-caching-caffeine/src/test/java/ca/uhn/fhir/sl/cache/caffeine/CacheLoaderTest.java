@@ -21,6 +21,7 @@ import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class CacheLoaderTest {
@@ -56,4 +57,15 @@ public class CacheLoaderTest {
 		});
 		assertNull(cache.get("1"));
 	}
+
+	@Order(2)
+	@Test
+	void weightedCacheEvictsByWeight() {
+		Cache<String, String> cache = CacheFactory.buildWeighted(60000, 10, (key, value) -> value.length());
+		cache.put("A", "12345");
+		cache.put("B", "12345");
+		cache.put("C", "12345");
+		cache.cleanUp();
+		assertTrue(cache.estimatedSize() <= 2);
+	}
 }
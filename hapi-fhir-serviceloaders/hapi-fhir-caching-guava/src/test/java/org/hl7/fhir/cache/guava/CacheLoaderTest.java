@@ -1,7 +1,9 @@
 package ca.uhn.fhir.sl.cache.guava;
 
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheFactory;
 import ca.uhn.fhir.sl.cache.LoadingCache;
 import org.junit.jupiter.api.Test;
@@ -14,4 +16,14 @@ public class CacheLoaderTest {
 		});
 		assertNull(cache.get("1"));
 	}
+
+	@Test
+	void weightedCacheEvictsByWeight() {
+		Cache<String, String> cache = CacheFactory.buildWeighted(60000, 10, (key, value) -> value.length());
+		cache.put("A", "12345");
+		cache.put("B", "12345");
+		cache.put("C", "12345");
+		cache.cleanUp();
+		assertTrue(cache.estimatedSize() <= 2);
+	}
 }
@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.migrate;
 
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.migrate.taskdef.ColumnTypeEnum;
+import ca.uhn.fhir.jpa.migrate.taskdef.TimeRangePartitionUtil;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -55,6 +56,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -62,6 +64,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 
@@ -548,6 +552,97 @@ public class JdbcUtils {
 		}
 	}
 
+	/**
+	 * Is the given table natively range partitioned, following the conventions described
+	 * in {@link TimeRangePartitionUtil}? Always returns <code>false</code> on platforms where
+	 * native range partitioning isn't supported.
+	 */
+	public static boolean isRangePartitioned(
+			DriverTypeEnum.ConnectionProperties theConnectionProperties, String theTableName) {
+		String sql;
+		Object[] args;
+		switch (theConnectionProperties.getDriverType()) {
+			case POSTGRES_9_4:
+				sql = "SELECT COUNT(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+						+ "WHERE c.relname = ? AND pt.partstrat = 'r' AND pg_table_is_visible(c.oid)";
+				args = new Object[] {theTableName.toLowerCase(Locale.US)};
+				break;
+			case ORACLE_12C:
+				sql = "SELECT COUNT(*) FROM USER_PART_TABLES WHERE TABLE_NAME = ? AND PARTITIONING_TYPE = 'RANGE'";
+				args = new Object[] {theTableName.toUpperCase(Locale.US)};
+				break;
+			case MSSQL_2012:
+				sql = "SELECT COUNT(*) FROM sys.indexes i "
+						+ "JOIN sys.partition_schemes ps ON ps.data_space_id = i.data_space_id "
+						+ "JOIN sys.partition_functions pf ON pf.function_id = ps.function_id "
+						+ "WHERE i.object_id = OBJECT_ID(?) AND i.index_id IN (0, 1) AND ps.name = ? AND pf.name = ?";
+				args = new Object[] {
+					theTableName,
+					TimeRangePartitionUtil.getPartitionSchemeName(theTableName),
+					TimeRangePartitionUtil.getPartitionFunctionName(theTableName)
+				};
+				break;
+			default:
+				return false;
+		}
+
+		Integer count = theConnectionProperties
+				.getTxTemplate()
+				.execute(t -> theConnectionProperties.newJdbcTemplate().queryForObject(sql, Integer.class, args));
+		return count != null && count > 0;
+	}
+
+	/**
+	 * Returns the months for which the given table has a partition, following the conventions
+	 * described in {@link TimeRangePartitionUtil}. Partitions which don't follow these conventions
+	 * are ignored.
+	 */
+	public static SortedSet<YearMonth> getTimeRangePartitions(
+			DriverTypeEnum.ConnectionProperties theConnectionProperties, String theTableName) {
+		String sql;
+		String arg;
+		boolean partitionNames = true;
+		switch (theConnectionProperties.getDriverType()) {
+			case POSTGRES_9_4:
+				sql = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+						+ "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ? AND pg_table_is_visible(p.oid)";
+				arg = theTableName.toLowerCase(Locale.US);
+				break;
+			case ORACLE_12C:
+				sql = "SELECT PARTITION_NAME FROM USER_TAB_PARTITIONS WHERE TABLE_NAME = ?";
+				arg = theTableName.toUpperCase(Locale.US);
+				break;
+			case MSSQL_2012:
+				// Partitions aren't named on MSSQL, so we use the boundary values (yyyy-MM) instead
+				sql =
+						"SELECT CONVERT(VARCHAR(7), CAST(prv.value AS DATETIME2), 126) FROM sys.partition_range_values prv "
+								+ "JOIN sys.partition_functions pf ON pf.function_id = prv.function_id WHERE pf.name = ?";
+				arg = TimeRangePartitionUtil.getPartitionFunctionName(theTableName);
+				partitionNames = false;
+				break;
+			default:
+				return Collections.emptySortedSet();
+		}
+
+		List<String> values = theConnectionProperties
+				.getTxTemplate()
+				.execute(t -> theConnectionProperties.newJdbcTemplate().queryForList(sql, String.class, arg));
+
+		SortedSet<YearMonth> retVal = new TreeSet<>();
+		for (String next : Objects.requireNonNull(values)) {
+			YearMonth month;
+			if (partitionNames) {
+				month = TimeRangePartitionUtil.getPartitionMonth(theTableName, next);
+			} else {
+				month = YearMonth.parse(next);
+			}
+			if (month != null) {
+				retVal.add(month);
+			}
+		}
+		return retVal;
+	}
+
 	private static String massageIdentifier(DatabaseMetaData theMetadata, String theCatalog) throws SQLException {
 		String retVal = theCatalog;
 		if (theCatalog == null) {
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * HAPI FHIR Server - SQL Migration
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.migrate.taskdef;
+
+import ca.uhn.fhir.jpa.migrate.DriverTypeEnum;
+import ca.uhn.fhir.jpa.migrate.JdbcUtils;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.intellij.lang.annotations.Language;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds the partition for one month to a table which has been natively range partitioned by
+ * month, following the conventions described in {@link TimeRangePartitionUtil}.
+ * <p>
+ * This task does nothing if the table isn't range partitioned, if the partition already exists,
+ * or on platforms which don't support native range partitioning. On Oracle, partitions can only
+ * be added above the highest existing partition.
+ * </p>
+ */
+public class AddTimeRangePartitionTask extends BaseTableTask {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(AddTimeRangePartitionTask.class);
+	private YearMonth myMonth;
+
+	public AddTimeRangePartitionTask(String theProductVersion, String theSchemaVersion) {
+		super(theProductVersion, theSchemaVersion);
+	}
+
+	public AddTimeRangePartitionTask setMonth(YearMonth theMonth) {
+		myMonth = theMonth;
+		return this;
+	}
+
+	@Override
+	public void validate() {
+		super.validate();
+		Validate.notNull(myMonth, "The month must not be null");
+
+		setDescription("Add partition for " + myMonth + " to table " + getTableName());
+	}
+
+	@Override
+	protected void doExecute() {
+		if (!TimeRangePartitionUtil.isSupported(getDriverType())) {
+			logInfo(ourLog, "Native range partitioning is not supported on {} - No action needed", getDriverType());
+			return;
+		}
+		if (!JdbcUtils.isRangePartitioned(getConnectionProperties(), getTableName())) {
+			logInfo(ourLog, "Table {} is not range partitioned - No action needed", getTableName());
+			return;
+		}
+		if (JdbcUtils.getTimeRangePartitions(getConnectionProperties(), getTableName())
+				.contains(myMonth)) {
+			logInfo(ourLog, "Table {} already has a partition for {} - No action needed", getTableName(), myMonth);
+			return;
+		}
+
+		logInfo(ourLog, "Adding partition for {} to table {}", myMonth, getTableName());
+		for (@Language("SQL") String next : generateSql(getTableName(), myMonth, getDriverType())) {
+			executeSql(getTableName(), next);
+		}
+	}
+
+	@Nonnull
+	public static List<String> generateSql(String theTableName, YearMonth theMonth, DriverTypeEnum theDriverType) {
+		String partitionName = TimeRangePartitionUtil.getPartitionName(theTableName, theMonth);
+		String lowerBound = TimeRangePartitionUtil.getLowerBound(theMonth);
+		String upperBound = TimeRangePartitionUtil.getLowerBound(theMonth.plusMonths(1));
+
+		List<String> sql = new ArrayList<>();
+		switch (theDriverType) {
+			case POSTGRES_9_4:
+				sql.add("CREATE TABLE " + partitionName + " PARTITION OF " + theTableName + " FOR VALUES FROM ('"
+						+ lowerBound + "') TO ('" + upperBound + "')");
+				break;
+			case ORACLE_12C:
+				sql.add("ALTER TABLE " + theTableName + " ADD PARTITION " + partitionName
+						+ " VALUES LESS THAN (TIMESTAMP '" + upperBound + "')");
+				break;
+			case MSSQL_2012:
+				sql.add("ALTER PARTITION SCHEME " + TimeRangePartitionUtil.getPartitionSchemeName(theTableName)
+						+ " NEXT USED [PRIMARY]");
+				sql.add("ALTER PARTITION FUNCTION " + TimeRangePartitionUtil.getPartitionFunctionName(theTableName)
+						+ "() SPLIT RANGE ('" + lowerBound.replace(' ', 'T') + "')");
+				break;
+			default:
+				break;
+		}
+		return sql;
+	}
+
+	@Override
+	protected void generateEquals(EqualsBuilder theBuilder, BaseTask theOtherObject) {
+		AddTimeRangePartitionTask otherObject = (AddTimeRangePartitionTask) theOtherObject;
+		super.generateEquals(theBuilder, otherObject);
+		theBuilder.append(myMonth, otherObject.myMonth);
+	}
+
+	@Override
+	protected void generateHashCode(HashCodeBuilder theBuilder) {
+		super.generateHashCode(theBuilder);
+		theBuilder.append(myMonth);
+	}
+}
@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * HAPI FHIR Server - SQL Migration
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.migrate.taskdef;
+
+import ca.uhn.fhir.jpa.migrate.DriverTypeEnum;
+import ca.uhn.fhir.jpa.migrate.JdbcUtils;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.intellij.lang.annotations.Language;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detaches and drops the partition for one month from a table which has been natively range
+ * partitioned by month, following the conventions described in {@link TimeRangePartitionUtil}.
+ * All rows in the partition are removed without being individually deleted, so this is much cheaper
+ * than a <code>DELETE</code> of the same rows, but no foreign keys pointing to these rows are checked.
+ * <p>
+ * This task does nothing if the partition doesn't exist, or on platforms which don't support
+ * native range partitioning.
+ * </p>
+ */
+public class DropTimeRangePartitionTask extends BaseTableTask {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(DropTimeRangePartitionTask.class);
+	private YearMonth myMonth;
+
+	public DropTimeRangePartitionTask(String theProductVersion, String theSchemaVersion) {
+		super(theProductVersion, theSchemaVersion);
+	}
+
+	public DropTimeRangePartitionTask setMonth(YearMonth theMonth) {
+		myMonth = theMonth;
+		return this;
+	}
+
+	@Override
+	public void validate() {
+		super.validate();
+		Validate.notNull(myMonth, "The month must not be null");
+
+		setDescription("Drop partition for " + myMonth + " from table " + getTableName());
+	}
+
+	@Override
+	protected void doExecute() {
+		if (!TimeRangePartitionUtil.isSupported(getDriverType())) {
+			logInfo(ourLog, "Native range partitioning is not supported on {} - No action needed", getDriverType());
+			return;
+		}
+		if (!JdbcUtils.getTimeRangePartitions(getConnectionProperties(), getTableName())
+				.contains(myMonth)) {
+			logInfo(ourLog, "Table {} has no partition for {} - No action needed", getTableName(), myMonth);
+			return;
+		}
+
+		logInfo(ourLog, "Dropping partition for {} from table {}", myMonth, getTableName());
+		for (@Language("SQL") String next : generateSql(getTableName(), myMonth, getDriverType())) {
+			executeSql(getTableName(), next);
+		}
+	}
+
+	@Nonnull
+	public static List<String> generateSql(String theTableName, YearMonth theMonth, DriverTypeEnum theDriverType) {
+		String partitionName = TimeRangePartitionUtil.getPartitionName(theTableName, theMonth);
+
+		List<String> sql = new ArrayList<>();
+		switch (theDriverType) {
+			case POSTGRES_9_4:
+				sql.add("ALTER TABLE " + theTableName + " DETACH PARTITION " + partitionName);
+				sql.add("DROP TABLE " + partitionName);
+				break;
+			case ORACLE_12C:
+				sql.add("ALTER TABLE " + theTableName + " DROP PARTITION " + partitionName + " UPDATE GLOBAL INDEXES");
+				break;
+			case MSSQL_2012:
+				String functionName = TimeRangePartitionUtil.getPartitionFunctionName(theTableName);
+				String boundary = TimeRangePartitionUtil.getLowerBound(theMonth).replace(' ', 'T');
+				// TRUNCATE only accepts a literal partition number, so it is resolved first
+				sql.add("DECLARE @sql NVARCHAR(200) = N'TRUNCATE TABLE " + theTableName + " WITH (PARTITIONS (' + "
+						+ "CAST($PARTITION." + functionName + "('" + boundary + "') AS NVARCHAR(10)) + N'))'; "
+						+ "EXEC sp_executesql @sql");
+				sql.add("ALTER PARTITION FUNCTION " + functionName + "() MERGE RANGE ('" + boundary + "')");
+				break;
+			default:
+				break;
+		}
+		return sql;
+	}
+
+	@Override
+	protected void generateEquals(EqualsBuilder theBuilder, BaseTask theOtherObject) {
+		DropTimeRangePartitionTask otherObject = (DropTimeRangePartitionTask) theOtherObject;
+		super.generateEquals(theBuilder, otherObject);
+		theBuilder.append(myMonth, otherObject.myMonth);
+	}
+
+	@Override
+	protected void generateHashCode(HashCodeBuilder theBuilder) {
+		super.generateHashCode(theBuilder);
+		theBuilder.append(myMonth);
+	}
+}
@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * HAPI FHIR Server - SQL Migration
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.migrate.taskdef;
+
+import ca.uhn.fhir.jpa.migrate.DriverTypeEnum;
+import jakarta.annotation.Nullable;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Naming conventions for tables which are natively range partitioned by month on a
+ * timestamp column.
+ * <ul>
+ *    <li>
+ *       On PostgreSQL and Oracle, the partition holding the rows for a given month is named
+ *       <code>[table]_P[yyyyMM]</code>, e.g. <code>HFJ_RES_VER_P202404</code>. It covers the range from
+ *       the first instant of the month (inclusive) to the first instant of the following month (exclusive).
+ *    </li>
+ *    <li>
+ *       On MSSQL, partitions are not named. The table must be stored on a partition scheme named
+ *       <code>PS_[table]</code> using a <code>RANGE RIGHT</code> partition function named <code>PF_[table]</code>,
+ *       whose boundary values are the first instant of each month.
+ *    </li>
+ * </ul>
+ */
+public class TimeRangePartitionUtil {
+
+	private static final DateTimeFormatter PARTITION_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+	private static final String PARTITION_SUFFIX_PREFIX = "_P";
+
+	/**
+	 * Non instantiable
+	 */
+	private TimeRangePartitionUtil() {
+		// nothing
+	}
+
+	/**
+	 * Is native range partitioning supported on the given platform?
+	 */
+	public static boolean isSupported(DriverTypeEnum theDriverType) {
+		return theDriverType == DriverTypeEnum.POSTGRES_9_4
+				|| theDriverType == DriverTypeEnum.ORACLE_12C
+				|| theDriverType == DriverTypeEnum.MSSQL_2012;
+	}
+
+	public static String getPartitionName(String theTableName, YearMonth theMonth) {
+		return theTableName.toUpperCase(Locale.US) + PARTITION_SUFFIX_PREFIX + PARTITION_SUFFIX_FORMAT.format(theMonth);
+	}
+
+	/**
+	 * Returns the month covered by the given partition, or <code>null</code> if the
+	 * partition name doesn't follow the naming convention for the given table
+	 */
+	@Nullable
+	public static YearMonth getPartitionMonth(String theTableName, String thePartitionName) {
+		String prefix = theTableName.toUpperCase(Locale.US) + PARTITION_SUFFIX_PREFIX;
+		String partitionName = thePartitionName.toUpperCase(Locale.US);
+		if (!partitionName.startsWith(prefix)) {
+			return null;
+		}
+		try {
+			return YearMonth.parse(partitionName.substring(prefix.length()), PARTITION_SUFFIX_FORMAT);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	public static String getPartitionFunctionName(String theTableName) {
+		return "PF_" + theTableName.toUpperCase(Locale.US);
+	}
+
+	public static String getPartitionSchemeName(String theTableName) {
+		return "PS_" + theTableName.toUpperCase(Locale.US);
+	}
+
+	/**
+	 * Returns the first instant of the given month, formatted for use in a timestamp literal
+	 */
+	public static String getLowerBound(YearMonth theMonth) {
+		return theMonth.atDay(1) + " 00:00:00";
+	}
+}
@@ -28,6 +28,7 @@ import ca.uhn.fhir.jpa.migrate.taskdef.AddIdGeneratorTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.AddIndexTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.AddTableByColumnTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.AddTableRawSqlTask;
+import ca.uhn.fhir.jpa.migrate.taskdef.AddTimeRangePartitionTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.BaseTableTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.BaseTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.ColumnTypeEnum;
@@ -36,6 +37,7 @@ import ca.uhn.fhir.jpa.migrate.taskdef.DropForeignKeyTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.DropIdGeneratorTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.DropIndexTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.DropTableTask;
+import ca.uhn.fhir.jpa.migrate.taskdef.DropTimeRangePartitionTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.ExecuteRawSqlTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.ExecuteTaskPrecondition;
 import ca.uhn.fhir.jpa.migrate.taskdef.InitializeSchemaTask;
@@ -44,11 +46,13 @@ import ca.uhn.fhir.jpa.migrate.taskdef.ModifyColumnTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.NopTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.RenameColumnTask;
 import ca.uhn.fhir.jpa.migrate.taskdef.RenameIndexTask;
+import ca.uhn.fhir.jpa.migrate.taskdef.TimeRangePartitionUtil;
 import org.apache.commons.lang3.Validate;
 import org.intellij.lang.annotations.Language;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.YearMonth;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -320,6 +324,31 @@ public class Builder {
 			addTask(task);
 		}
 
+		/**
+		 * Adds the partition for the given month, if this table is natively range partitioned by month.
+		 * See {@link TimeRangePartitionUtil} for the naming conventions which must be followed.
+		 */
+		public BuilderCompleteTask addTimeRangePartition(String theVersion, YearMonth theMonth) {
+			AddTimeRangePartitionTask task = new AddTimeRangePartitionTask(myRelease, theVersion);
+			task.setTableName(myTableName);
+			task.setMonth(theMonth);
+			addTask(task);
+			return new BuilderCompleteTask(task);
+		}
+
+		/**
+		 * Detaches and drops the partition for the given month, if this table is natively range
+		 * partitioned by month. See {@link TimeRangePartitionUtil} for the naming conventions which
+		 * must be followed.
+		 */
+		public BuilderCompleteTask dropTimeRangePartition(String theVersion, YearMonth theMonth) {
+			DropTimeRangePartitionTask task = new DropTimeRangePartitionTask(myRelease, theVersion);
+			task.setTableName(myTableName);
+			task.setMonth(theMonth);
+			addTask(task);
+			return new BuilderCompleteTask(task);
+		}
+
 		public void migratePostgresTextClobToBinaryClob(String theVersion, String theColumnName) {
 			MigratePostgresTextClobToBinaryClobTask task =
 					new MigratePostgresTextClobToBinaryClobTask(myRelease, theVersion);
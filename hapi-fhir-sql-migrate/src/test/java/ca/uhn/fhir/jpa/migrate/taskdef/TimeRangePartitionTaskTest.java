@@ -0,0 +1,82 @@
+package ca.uhn.fhir.jpa.migrate.taskdef;
+
+import ca.uhn.fhir.jpa.migrate.DriverTypeEnum;
+import ca.uhn.fhir.jpa.migrate.JdbcUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TimeRangePartitionTaskTest extends BaseTest {
+
+	@Test
+	public void testPartitionNames() {
+		assertEquals("HFJ_RES_VER_P202404", TimeRangePartitionUtil.getPartitionName("hfj_res_ver", YearMonth.of(2024, 4)));
+		assertEquals(YearMonth.of(2024, 4), TimeRangePartitionUtil.getPartitionMonth("HFJ_RES_VER", "hfj_res_ver_p202404"));
+		assertNull(TimeRangePartitionUtil.getPartitionMonth("HFJ_RES_VER", "HFJ_RES_VER_DEFAULT"));
+		assertNull(TimeRangePartitionUtil.getPartitionMonth("HFJ_RES_VER", "HFJ_SPIDX_DATE_P202404"));
+	}
+
+	@Test
+	public void testAddPartitionSql() {
+		YearMonth month = YearMonth.of(2024, 12);
+		assertThat(AddTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.POSTGRES_9_4), contains(
+			"CREATE TABLE HFJ_RES_VER_P202412 PARTITION OF HFJ_RES_VER FOR VALUES FROM ('2024-12-01 00:00:00') TO ('2025-01-01 00:00:00')"));
+		assertThat(AddTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.ORACLE_12C), contains(
+			"ALTER TABLE HFJ_RES_VER ADD PARTITION HFJ_RES_VER_P202412 VALUES LESS THAN (TIMESTAMP '2025-01-01 00:00:00')"));
+		assertThat(AddTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.MSSQL_2012), contains(
+			"ALTER PARTITION SCHEME PS_HFJ_RES_VER NEXT USED [PRIMARY]",
+			"ALTER PARTITION FUNCTION PF_HFJ_RES_VER() SPLIT RANGE ('2024-12-01T00:00:00')"));
+		assertThat(AddTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.H2_EMBEDDED), empty());
+	}
+
+	@Test
+	public void testDropPartitionSql() {
+		YearMonth month = YearMonth.of(2024, 1);
+		assertThat(DropTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.POSTGRES_9_4), contains(
+			"ALTER TABLE HFJ_RES_VER DETACH PARTITION HFJ_RES_VER_P202401",
+			"DROP TABLE HFJ_RES_VER_P202401"));
+		assertThat(DropTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.ORACLE_12C), contains(
+			"ALTER TABLE HFJ_RES_VER DROP PARTITION HFJ_RES_VER_P202401 UPDATE GLOBAL INDEXES"));
+		List<String> sql = DropTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.MSSQL_2012);
+		assertEquals(2, sql.size());
+		assertEquals("DECLARE @sql NVARCHAR(200) = N'TRUNCATE TABLE HFJ_RES_VER WITH (PARTITIONS (' + CAST($PARTITION.PF_HFJ_RES_VER('2024-01-01T00:00:00') AS NVARCHAR(10)) + N'))'; EXEC sp_executesql @sql", sql.get(0));
+		assertEquals("ALTER PARTITION FUNCTION PF_HFJ_RES_VER() MERGE RANGE ('2024-01-01T00:00:00')", sql.get(1));
+		assertThat(DropTimeRangePartitionTask.generateSql("HFJ_RES_VER", month, DriverTypeEnum.DERBY_EMBEDDED), empty());
+	}
+
+	@ParameterizedTest(name = "{index}: {0}")
+	@MethodSource("data")
+	public void testUnsupportedPlatformIsNoOp(Supplier<TestDatabaseDetails> theTestDatabaseDetails) throws SQLException {
+		before(theTestDatabaseDetails);
+
+		executeSql("create table SOMETABLE (PID bigint not null, RES_UPDATED timestamp not null)");
+
+		AddTimeRangePartitionTask addTask = new AddTimeRangePartitionTask("1", "1");
+		addTask.setTableName("SOMETABLE");
+		addTask.setMonth(YearMonth.of(2024, 4));
+		getMigrator().addTask(addTask);
+		DropTimeRangePartitionTask dropTask = new DropTimeRangePartitionTask("1", "2");
+		dropTask.setTableName("SOMETABLE");
+		dropTask.setMonth(YearMonth.of(2024, 4));
+		getMigrator().addTask(dropTask);
+
+		getMigrator().migrate();
+
+		assertThat(addTask.getExecutedStatements(), empty());
+		assertThat(dropTask.getExecutedStatements(), empty());
+		assertFalse(JdbcUtils.isRangePartitioned(getConnectionProperties(), "SOMETABLE"));
+		assertThat(JdbcUtils.getTimeRangePartitions(getConnectionProperties(), "SOMETABLE"), empty());
+	}
+}
@@ -42,7 +42,9 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -360,6 +362,101 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private long myRestDeleteByUrlResourceIdThreshold = DEFAULT_REST_DELETE_BY_URL_RESOURCE_ID_THRESHOLD;
 
+	/**
+	 * @since 7.2.0
+	 */
+	private int mySearchResultParsingThreadCount = 1;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long myParsedResourceCacheMaximumBytes = 0;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean mySearchKeysetPaginationEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long mySearchResultMemoryCacheMaximumPids = 0;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private String mySearchResultMemoryCacheSpillDirectory;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean mySearchIndexBulkInsertEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean mySearchIndexHashOnlyDiffEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long myChainedSearchTargetPidCacheMillis = 0;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean mySearchTotalEstimationEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long mySearchTotalEstimateCacheMillis = DateUtils.MILLIS_PER_MINUTE;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private int mySearchPartitionFanOutThreadCount = 1;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long myReadReplicaLagMillis = 0;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myAdaptiveSearchPreFetchEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private Map<String, Set<String>> mySearchProjectionElements = Collections.emptyMap();
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myDateIndexPartitionPruningEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myResourceHistoryPartitionMaintenanceEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private Integer myResourceHistoryPartitionRetentionMonths = null;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long myCreateGroupCommitWindowMillis = 0;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private int myCreateGroupCommitMaxSize = 100;
+
 	/**
 	 * Constructor
 	 */
@@ -992,10 +1089,38 @@ public class JpaStorageSettings extends StorageSettings {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * The encoding used to store resource bodies in databases where they are stored
+	 * as binaries (currently Oracle). Other databases always store resource bodies as
+	 * uncompressed JSON text. The default is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * {@link ResourceEncodingEnum#LZ4} is considerably cheaper to decompress than
+	 * {@link ResourceEncodingEnum#JSONC} at the cost of somewhat larger stored values.
+	 * </p>
+	 * <p>
+	 * Changing this setting only affects newly written resource versions. Existing
+	 * versions can be converted by running a reindex job with the
+	 * <code>optimizeStorage</code> parameter set.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * The encoding used to store resource bodies in databases where they are stored
+	 * as binaries (currently Oracle). Other databases always store resource bodies as
+	 * uncompressed JSON text. The default is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * {@link ResourceEncodingEnum#LZ4} is considerably cheaper to decompress than
+	 * {@link ResourceEncodingEnum#JSONC} at the cost of somewhat larger stored values.
+	 * </p>
+	 * <p>
+	 * Changing this setting only affects newly written resource versions. Existing
+	 * versions can be converted by running a reindex job with the
+	 * <code>optimizeStorage</code> parameter set.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -2482,6 +2607,714 @@ public class JpaStorageSettings extends StorageSettings {
 		myRestDeleteByUrlResourceIdThreshold = theRestDeleteByUrlResourceIdThreshold;
 	}
 
+	/**
+	 * When a page of search results (including any <code>_include</code>d resources) is loaded from
+	 * the database, each resource body must be decompressed and parsed, which is usually the most
+	 * expensive part of returning a large page. If this setting is greater than 1 (default is 1),
+	 * large pages are split into chunks which are decompressed and parsed in parallel, using a shared
+	 * thread pool with this many threads. The order of the results is not affected.
+	 * <p>
+	 * Only the parsing is parallelized - the results are loaded from the database, and any externally
+	 * stored resources are fetched, on the request thread.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public int getSearchResultParsingThreadCount() {
+		return mySearchResultParsingThreadCount;
+	}
+
+	/**
+	 * When a page of search results (including any <code>_include</code>d resources) is loaded from
+	 * the database, each resource body must be decompressed and parsed, which is usually the most
+	 * expensive part of returning a large page. If this setting is greater than 1 (default is 1),
+	 * large pages are split into chunks which are decompressed and parsed in parallel, using a shared
+	 * thread pool with this many threads. The order of the results is not affected.
+	 * <p>
+	 * Only the parsing is parallelized - the results are loaded from the database, and any externally
+	 * stored resources are fetched, on the request thread.
+	 * This setting is read when the thread pool is first used, so it should be set at startup.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchResultParsingThreadCount(int theSearchResultParsingThreadCount) {
+		Validate.isTrue(theSearchResultParsingThreadCount >= 1, "theSearchResultParsingThreadCount must be >= 1");
+		mySearchResultParsingThreadCount = theSearchResultParsingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is 0, meaning disabled), the server keeps a cache of
+	 * parsed resource bodies keyed by resource PID and version, so that resources which are read
+	 * repeatedly (e.g. frequently <code>_include</code>d Practitioner or Organization resources) are
+	 * not decompressed and parsed again every time they are returned. The value is the approximate
+	 * maximum size of the cache in bytes, estimated from the size of the encoded resources.
+	 * <p>
+	 * Because resource versions are immutable, entries never need to be invalidated when a resource
+	 * is updated. This cache is bypassed when {@link #isUpdateWithHistoryRewriteEnabled() history rewrite}
+	 * is enabled, since that allows the body of an existing version to change.
+	 * </p>
+	 * <p>
+	 * This setting is read when the cache is first used, so it should be set at startup.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public long getParsedResourceCacheMaximumBytes() {
+		return myParsedResourceCacheMaximumBytes;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is 0, meaning disabled), the server keeps a cache of
+	 * parsed resource bodies keyed by resource PID and version, so that resources which are read
+	 * repeatedly (e.g. frequently <code>_include</code>d Practitioner or Organization resources) are
+	 * not decompressed and parsed again every time they are returned. The value is the approximate
+	 * maximum size of the cache in bytes, estimated from the size of the encoded resources.
+	 * <p>
+	 * Because resource versions are immutable, entries never need to be invalidated when a resource
+	 * is updated. This cache is bypassed when {@link #isUpdateWithHistoryRewriteEnabled() history rewrite}
+	 * is enabled, since that allows the body of an existing version to change.
+	 * </p>
+	 * <p>
+	 * This setting is read when the cache is first used, so it should be set at startup.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setParsedResourceCacheMaximumBytes(long theParsedResourceCacheMaximumBytes) {
+		myParsedResourceCacheMaximumBytes = theParsedResourceCacheMaximumBytes;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), synchronous searches which are paged using
+	 * <code>_offset</code> use keyset (also known as "seek") pagination where possible. The next page
+	 * link then carries a <code>_cursor</code> parameter holding the sort key and the resource ID of
+	 * the last result on the current page, and the next page is fetched with a predicate on those
+	 * values instead of an SQL <code>OFFSET</code>, so that deep pages are no slower than the first one.
+	 * <p>
+	 * This applies to searches that are unsorted or sorted only by <code>_lastUpdated</code> or
+	 * <code>_pid</code>. Searches using any other sort continue to use <code>OFFSET</code>. Note that
+	 * unsorted searches are ordered by resource ID when this setting is enabled.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isSearchKeysetPaginationEnabled() {
+		return mySearchKeysetPaginationEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), synchronous searches which are paged using
+	 * <code>_offset</code> use keyset (also known as "seek") pagination where possible. The next page
+	 * link then carries a <code>_cursor</code> parameter holding the sort key and the resource ID of
+	 * the last result on the current page, and the next page is fetched with a predicate on those
+	 * values instead of an SQL <code>OFFSET</code>, so that deep pages are no slower than the first one.
+	 * <p>
+	 * This applies to searches that are unsorted or sorted only by <code>_lastUpdated</code> or
+	 * <code>_pid</code>. Searches using any other sort continue to use <code>OFFSET</code>. Note that
+	 * unsorted searches are ordered by resource ID when this setting is enabled.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchKeysetPaginationEnabled(boolean theSearchKeysetPaginationEnabled) {
+		mySearchKeysetPaginationEnabled = theSearchKeysetPaginationEnabled;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is 0, meaning disabled), the result PIDs of
+	 * cached and asynchronous searches are kept in memory in compact <code>long[]</code> chunks
+	 * instead of being written to the <code>HFJ_SEARCH_RESULT</code> table, which avoids a large
+	 * number of inserts and deletes on servers with a high rate of paged searches. The value is the
+	 * maximum number of PIDs held in memory across all searches. When it is exceeded, the results
+	 * of the least recently used searches are moved to the
+	 * {@link #getSearchResultMemoryCacheSpillDirectory() spill directory} if one is configured, or
+	 * discarded otherwise (in which case clients requesting further pages of those searches
+	 * receive an error).
+	 * <p>
+	 * Results are only held by the server instance that performed the search, so this should only
+	 * be enabled on a single server, or behind a load balancer using sticky sessions.
+	 * </p>
+	 * <p>
+	 * This setting is read at startup.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public long getSearchResultMemoryCacheMaximumPids() {
+		return mySearchResultMemoryCacheMaximumPids;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is 0, meaning disabled), the result PIDs of
+	 * cached and asynchronous searches are kept in memory in compact <code>long[]</code> chunks
+	 * instead of being written to the <code>HFJ_SEARCH_RESULT</code> table, which avoids a large
+	 * number of inserts and deletes on servers with a high rate of paged searches. The value is the
+	 * maximum number of PIDs held in memory across all searches. When it is exceeded, the results
+	 * of the least recently used searches are moved to the
+	 * {@link #getSearchResultMemoryCacheSpillDirectory() spill directory} if one is configured, or
+	 * discarded otherwise (in which case clients requesting further pages of those searches
+	 * receive an error).
+	 * <p>
+	 * Results are only held by the server instance that performed the search, so this should only
+	 * be enabled on a single server, or behind a load balancer using sticky sessions.
+	 * </p>
+	 * <p>
+	 * This setting is read at startup.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchResultMemoryCacheMaximumPids(long theSearchResultMemoryCacheMaximumPids) {
+		mySearchResultMemoryCacheMaximumPids = theSearchResultMemoryCacheMaximumPids;
+	}
+
+	/**
+	 * If the {@link #getSearchResultMemoryCacheMaximumPids() in-memory search result cache} is
+	 * enabled, this is a directory to which the results of the least recently used searches are
+	 * written when the cache exceeds its maximum size, so that clients can continue to page through
+	 * large result sets without holding them on the heap. Default is <code>null</code>, meaning that
+	 * such results are discarded. Spill files are deleted when the search results expire.
+	 *
+	 * @since 7.2.0
+	 */
+	public String getSearchResultMemoryCacheSpillDirectory() {
+		return mySearchResultMemoryCacheSpillDirectory;
+	}
+
+	/**
+	 * If the {@link #getSearchResultMemoryCacheMaximumPids() in-memory search result cache} is
+	 * enabled, this is a directory to which the results of the least recently used searches are
+	 * written when the cache exceeds its maximum size, so that clients can continue to page through
+	 * large result sets without holding them on the heap. Default is <code>null</code>, meaning that
+	 * such results are discarded. Spill files are deleted when the search results expire.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchResultMemoryCacheSpillDirectory(String theSearchResultMemoryCacheSpillDirectory) {
+		mySearchResultMemoryCacheSpillDirectory = theSearchResultMemoryCacheSpillDirectory;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), new search index rows (e.g. rows in
+	 * <code>HFJ_SPIDX_TOKEN</code> or <code>HFJ_RES_LINK</code>) are written using batched JDBC
+	 * inserts instead of being persisted one at a time as Hibernate entities. The rows are
+	 * written right after the Hibernate session is flushed, which reduces the cost of flushing
+	 * and the per-resource write latency for resources with many indexes.
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isSearchIndexBulkInsertEnabled() {
+		return mySearchIndexBulkInsertEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), new search index rows (e.g. rows in
+	 * <code>HFJ_SPIDX_TOKEN</code> or <code>HFJ_RES_LINK</code>) are written using batched JDBC
+	 * inserts instead of being persisted one at a time as Hibernate entities. The rows are
+	 * written right after the Hibernate session is flushed, which reduces the cost of flushing
+	 * and the per-resource write latency for resources with many indexes.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchIndexBulkInsertEnabled(boolean theSearchIndexBulkInsertEnabled) {
+		mySearchIndexBulkInsertEnabled = theSearchIndexBulkInsertEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), updating a resource compares the newly extracted
+	 * token indexes against the existing <code>HFJ_SPIDX_TOKEN</code> rows using only their IDs and
+	 * hash columns, instead of loading every existing row as a Hibernate entity. Rows which are no
+	 * longer needed are deleted by ID, and only changed rows are inserted. This can significantly
+	 * reduce the cost of updating resources with large numbers of token indexes.
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isSearchIndexHashOnlyDiffEnabled() {
+		return mySearchIndexHashOnlyDiffEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), updating a resource compares the newly extracted
+	 * token indexes against the existing <code>HFJ_SPIDX_TOKEN</code> rows using only their IDs and
+	 * hash columns, instead of loading every existing row as a Hibernate entity. Rows which are no
+	 * longer needed are deleted by ID, and only changed rows are inserted. This can significantly
+	 * reduce the cost of updating resources with large numbers of token indexes.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchIndexHashOnlyDiffEnabled(boolean theSearchIndexHashOnlyDiffEnabled) {
+		mySearchIndexHashOnlyDiffEnabled = theSearchIndexHashOnlyDiffEnabled;
+	}
+
+	/**
+	 * If set to a value greater than zero (default is <code>0</code>), the PIDs matched by the target
+	 * side of a chained search (e.g. <code>Patient?identifier=foo</code> for the search
+	 * <code>Observation?subject:Patient.identifier=foo</code>) are cached for this many milliseconds
+	 * and rendered as a list of PIDs instead of a join, as long as the target side matches no more than
+	 * a small number of resources. Cached PIDs are discarded as soon as a resource of the target type
+	 * is created, updated or deleted on this server, but changes made by other servers, as well as
+	 * reindexing, are only reflected once the cached PIDs expire. This value should therefore be kept
+	 * short (e.g. a few seconds).
+	 *
+	 * @since 7.2.0
+	 */
+	public long getChainedSearchTargetPidCacheMillis() {
+		return myChainedSearchTargetPidCacheMillis;
+	}
+
+	/**
+	 * If set to a value greater than zero (default is <code>0</code>), the PIDs matched by the target
+	 * side of a chained search (e.g. <code>Patient?identifier=foo</code> for the search
+	 * <code>Observation?subject:Patient.identifier=foo</code>) are cached for this many milliseconds
+	 * and rendered as a list of PIDs instead of a join, as long as the target side matches no more than
+	 * a small number of resources. Cached PIDs are discarded as soon as a resource of the target type
+	 * is created, updated or deleted on this server, but changes made by other servers, as well as
+	 * reindexing, are only reflected once the cached PIDs expire. This value should therefore be kept
+	 * short (e.g. a few seconds).
+	 *
+	 * @since 7.2.0
+	 */
+	public void setChainedSearchTargetPidCacheMillis(long theChainedSearchTargetPidCacheMillis) {
+		myChainedSearchTargetPidCacheMillis = theChainedSearchTargetPidCacheMillis;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), searches requesting an estimated total
+	 * (<code>_total=estimated</code>, or no <code>_total</code> at all when the
+	 * {@link #getDefaultTotalMode() default total mode} is {@link SearchTotalModeEnum#ESTIMATED})
+	 * return an approximate total instead of no total. On PostgreSQL the total is taken from the
+	 * query planner's row estimate where that estimate is large, so that the matching rows don't
+	 * need to be counted. On other databases, or for small estimates, the matching rows are counted.
+	 * Either way the total is then cached for {@link #getSearchTotalEstimateCacheMillis()} so that
+	 * repeated searches (e.g. <code>_summary=count&amp;_total=estimated</code> dashboards) are answered
+	 * without touching the database.
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isSearchTotalEstimationEnabled() {
+		return mySearchTotalEstimationEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), searches requesting an estimated total
+	 * (<code>_total=estimated</code>, or no <code>_total</code> at all when the
+	 * {@link #getDefaultTotalMode() default total mode} is {@link SearchTotalModeEnum#ESTIMATED})
+	 * return an approximate total instead of no total. On PostgreSQL the total is taken from the
+	 * query planner's row estimate where that estimate is large, so that the matching rows don't
+	 * need to be counted. On other databases, or for small estimates, the matching rows are counted.
+	 * Either way the total is then cached for {@link #getSearchTotalEstimateCacheMillis()} so that
+	 * repeated searches (e.g. <code>_summary=count&amp;_total=estimated</code> dashboards) are answered
+	 * without touching the database.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchTotalEstimationEnabled(boolean theSearchTotalEstimationEnabled) {
+		mySearchTotalEstimationEnabled = theSearchTotalEstimationEnabled;
+	}
+
+	/**
+	 * The number of milliseconds for which estimated search totals are cached (default is one minute)
+	 * when {@link #isSearchTotalEstimationEnabled() estimation is enabled}. Totals are cached per
+	 * resource type, partition and normalized query string, and are not invalidated when resources
+	 * are written. Set to <code>0</code> to disable caching.
+	 *
+	 * @since 7.2.0
+	 */
+	public long getSearchTotalEstimateCacheMillis() {
+		return mySearchTotalEstimateCacheMillis;
+	}
+
+	/**
+	 * The number of milliseconds for which estimated search totals are cached (default is one minute)
+	 * when {@link #isSearchTotalEstimationEnabled() estimation is enabled}. Totals are cached per
+	 * resource type, partition and normalized query string, and are not invalidated when resources
+	 * are written. Set to <code>0</code> to disable caching.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchTotalEstimateCacheMillis(long theSearchTotalEstimateCacheMillis) {
+		mySearchTotalEstimateCacheMillis = theSearchTotalEstimateCacheMillis;
+	}
+
+	/**
+	 * When a search spans an explicit list of partitions, it is normally executed as a single SQL statement
+	 * with a <code>PARTITION_ID IN (...)</code> clause. If this setting is greater than 1 (default is 1),
+	 * such searches are instead executed as one statement per partition, with the statements run in
+	 * parallel using a shared thread pool with this many threads, and the results merged. This lets the
+	 * database use partition-specific index ranges for each statement, and spreads the work of searching
+	 * many partitions across several connections.
+	 * <p>
+	 * Only unsorted searches, and searches sorted by <code>_pid</code>, are fanned out, since those are
+	 * the only orders in which results from several partitions can be merged without loading the sort
+	 * values. Searches using <code>_offset</code>, searches across all partitions, and searches executed
+	 * within a write transaction always use a single statement. Each search can hold up to this many
+	 * database connections at once, so the connection pool should be sized accordingly.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public int getSearchPartitionFanOutThreadCount() {
+		return mySearchPartitionFanOutThreadCount;
+	}
+
+	/**
+	 * When a search spans an explicit list of partitions, it is normally executed as a single SQL statement
+	 * with a <code>PARTITION_ID IN (...)</code> clause. If this setting is greater than 1 (default is 1),
+	 * such searches are instead executed as one statement per partition, with the statements run in
+	 * parallel using a shared thread pool with this many threads, and the results merged. This lets the
+	 * database use partition-specific index ranges for each statement, and spreads the work of searching
+	 * many partitions across several connections.
+	 * <p>
+	 * Only unsorted searches, and searches sorted by <code>_pid</code>, are fanned out, since those are
+	 * the only orders in which results from several partitions can be merged without loading the sort
+	 * values. Searches using <code>_offset</code>, searches across all partitions, and searches executed
+	 * within a write transaction always use a single statement. Each search can hold up to this many
+	 * database connections at once, so the connection pool should be sized accordingly.
+	 * This setting is read when the thread pool is first used, so it should be set at startup.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchPartitionFanOutThreadCount(int theSearchPartitionFanOutThreadCount) {
+		Validate.isTrue(theSearchPartitionFanOutThreadCount >= 1, "theSearchPartitionFanOutThreadCount must be >= 1");
+		mySearchPartitionFanOutThreadCount = theSearchPartitionFanOutThreadCount;
+	}
+
+	/**
+	 * If this setting is greater than 0 (default is 0), then after a client creates, updates or deletes a
+	 * resource, any read-only transactions executed on behalf of that client within this many milliseconds
+	 * are executed as regular transactions instead. When the server is configured with a
+	 * <code>ReadReplicaRoutingDataSource</code>, which sends read-only transactions to read replicas, this
+	 * means that a client reading data immediately after modifying it is served by the primary database
+	 * and sees its own changes. This should be set to a value comfortably above the expected replication
+	 * lag of the replicas.
+	 * <p>
+	 * Clients are identified by the <code>Authorization</code> header of the request if one is present,
+	 * otherwise by the remote address of the request. Requests made by the server itself are never
+	 * tracked.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public long getReadReplicaLagMillis() {
+		return myReadReplicaLagMillis;
+	}
+
+	/**
+	 * If this setting is greater than 0 (default is 0), then after a client creates, updates or deletes a
+	 * resource, any read-only transactions executed on behalf of that client within this many milliseconds
+	 * are executed as regular transactions instead. When the server is configured with a
+	 * <code>ReadReplicaRoutingDataSource</code>, which sends read-only transactions to read replicas, this
+	 * means that a client reading data immediately after modifying it is served by the primary database
+	 * and sees its own changes. This should be set to a value comfortably above the expected replication
+	 * lag of the replicas.
+	 * <p>
+	 * Clients are identified by the <code>Authorization</code> header of the request if one is present,
+	 * otherwise by the remote address of the request. Requests made by the server itself are never
+	 * tracked.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setReadReplicaLagMillis(long theReadReplicaLagMillis) {
+		myReadReplicaLagMillis = theReadReplicaLagMillis;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the server learns how far clients actually page through
+	 * the results of each query shape (the resource type and the names of the search parameters, but not
+	 * their values), and uses this to adjust the {@link #getSearchPreFetchThresholds() pre-fetch thresholds}
+	 * for new searches of that shape. Thresholds which clients generally page past are skipped, so that
+	 * fewer passes are needed, and passes are capped at the expected demand when the next threshold is
+	 * larger, so that fewer results are loaded which are never requested.
+	 * <p>
+	 * The number of results requested by clients is recorded on each search in the <code>HFJ_SEARCH</code>
+	 * table. Thresholds are only adjusted once a few searches of a given shape have been observed, and the
+	 * number of results requested by the client is always loaded.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isAdaptiveSearchPreFetchEnabled() {
+		return myAdaptiveSearchPreFetchEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the server learns how far clients actually page through
+	 * the results of each query shape (the resource type and the names of the search parameters, but not
+	 * their values), and uses this to adjust the {@link #getSearchPreFetchThresholds() pre-fetch thresholds}
+	 * for new searches of that shape. Thresholds which clients generally page past are skipped, so that
+	 * fewer passes are needed, and passes are capped at the expected demand when the next threshold is
+	 * larger, so that fewer results are loaded which are never requested.
+	 * <p>
+	 * The number of results requested by clients is recorded on each search in the <code>HFJ_SEARCH</code>
+	 * table. Thresholds are only adjusted once a few searches of a given shape have been observed, and the
+	 * number of results requested by the client is always loaded.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setAdaptiveSearchPreFetchEnabled(boolean theAdaptiveSearchPreFetchEnabled) {
+		myAdaptiveSearchPreFetchEnabled = theAdaptiveSearchPreFetchEnabled;
+	}
+
+	/**
+	 * Configures a projection of commonly requested elements to store for each resource type, keyed by
+	 * resource type, with each value being a set of top level element names (e.g. <code>code</code>
+	 * or <code>effective</code>). The elements listed here, along with any mandatory elements of the
+	 * resource type, are stored in compact form in the <code>HFJ_RES_PROJECTION</code> table whenever a
+	 * resource of that type is written.
+	 * <p>
+	 * Search results requested with an <code>_elements</code> parameter or with
+	 * <code>_summary=true</code> are loaded from the projection instead of the full resource body
+	 * if the projection covers all of the requested elements. Resources written before the projection
+	 * was configured, and resources which are too large to project, are loaded normally until they are
+	 * next updated or reindexed. Projections are not used if any interceptor is registered for the
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PREACCESS_RESOURCES} or
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PRESHOW_RESOURCES} pointcuts (e.g. consent
+	 * or authorization interceptors), since these may inspect elements which aren't projected.
+	 * </p>
+	 * <p>
+	 * Default is an empty map, meaning that no projections are stored.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	@Nonnull
+	public Map<String, Set<String>> getSearchProjectionElements() {
+		return mySearchProjectionElements;
+	}
+
+	/**
+	 * Configures a projection of commonly requested elements to store for each resource type, keyed by
+	 * resource type, with each value being a set of top level element names (e.g. <code>code</code>
+	 * or <code>effective</code>). The elements listed here, along with any mandatory elements of the
+	 * resource type, are stored in compact form in the <code>HFJ_RES_PROJECTION</code> table whenever a
+	 * resource of that type is written.
+	 * <p>
+	 * Search results requested with an <code>_elements</code> parameter or with
+	 * <code>_summary=true</code> are loaded from the projection instead of the full resource body
+	 * if the projection covers all of the requested elements. Resources written before the projection
+	 * was configured, and resources which are too large to project, are loaded normally until they are
+	 * next updated or reindexed. Projections are not used if any interceptor is registered for the
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PREACCESS_RESOURCES} or
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PRESHOW_RESOURCES} pointcuts (e.g. consent
+	 * or authorization interceptors), since these may inspect elements which aren't projected.
+	 * </p>
+	 * <p>
+	 * Default is an empty map, meaning that no projections are stored.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchProjectionElements(@Nullable Map<String, Set<String>> theSearchProjectionElements) {
+		Map<String, Set<String>> searchProjectionElements = new HashMap<>();
+		if (theSearchProjectionElements != null) {
+			theSearchProjectionElements.forEach((k, v) -> searchProjectionElements.put(k, Set.copyOf(v)));
+		}
+		mySearchProjectionElements = Collections.unmodifiableMap(searchProjectionElements);
+	}
+
+	/**
+	 * If enabled, date search predicates always include an upper bound on the <code>SP_VALUE_LOW</code>
+	 * column of the <code>HFJ_SPIDX_DATE</code> table whenever the search has one, even when the bound
+	 * is already implied by another predicate (e.g. by an upper bound on <code>SP_VALUE_HIGH</code>) or
+	 * when the search is performed against the ordinal date columns. This allows the database to skip
+	 * partitions if the table has been natively range partitioned on <code>SP_VALUE_LOW</code>.
+	 * <p>
+	 * Partitioning the table is a manual step for the database administrator. This setting has no
+	 * effect when {@link #isAccountForDateIndexNulls()} is enabled.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isDateIndexPartitionPruningEnabled() {
+		return myDateIndexPartitionPruningEnabled;
+	}
+
+	/**
+	 * If enabled, date search predicates always include an upper bound on the <code>SP_VALUE_LOW</code>
+	 * column of the <code>HFJ_SPIDX_DATE</code> table whenever the search has one, even when the bound
+	 * is already implied by another predicate (e.g. by an upper bound on <code>SP_VALUE_HIGH</code>) or
+	 * when the search is performed against the ordinal date columns. This allows the database to skip
+	 * partitions if the table has been natively range partitioned on <code>SP_VALUE_LOW</code>.
+	 * <p>
+	 * Partitioning the table is a manual step for the database administrator. This setting has no
+	 * effect when {@link #isAccountForDateIndexNulls()} is enabled.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setDateIndexPartitionPruningEnabled(boolean theDateIndexPartitionPruningEnabled) {
+		myDateIndexPartitionPruningEnabled = theDateIndexPartitionPruningEnabled;
+	}
+
+	/**
+	 * If enabled, a scheduled job maintains the monthly partitions of the <code>HFJ_RES_VER</code> table,
+	 * if the table has been natively range partitioned by month on its <code>RES_UPDATED</code> column
+	 * (see <code>TimeRangePartitionUtil</code> in <code>hapi-fhir-sql-migrate</code> for the naming
+	 * conventions which must be followed). Partitions are created ahead of time for the coming months,
+	 * and partitions older than {@link #getResourceHistoryPartitionRetentionMonths()} are detached
+	 * and dropped.
+	 * <p>
+	 * Partitioning the table is a manual step for the database administrator, and is only
+	 * supported on PostgreSQL, Oracle and MSSQL. This setting has no effect on other platforms,
+	 * or if the table is not partitioned.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isResourceHistoryPartitionMaintenanceEnabled() {
+		return myResourceHistoryPartitionMaintenanceEnabled;
+	}
+
+	/**
+	 * If enabled, a scheduled job maintains the monthly partitions of the <code>HFJ_RES_VER</code> table,
+	 * if the table has been natively range partitioned by month on its <code>RES_UPDATED</code> column
+	 * (see <code>TimeRangePartitionUtil</code> in <code>hapi-fhir-sql-migrate</code> for the naming
+	 * conventions which must be followed). Partitions are created ahead of time for the coming months,
+	 * and partitions older than {@link #getResourceHistoryPartitionRetentionMonths()} are detached
+	 * and dropped.
+	 * <p>
+	 * Partitioning the table is a manual step for the database administrator, and is only
+	 * supported on PostgreSQL, Oracle and MSSQL. This setting has no effect on other platforms,
+	 * or if the table is not partitioned.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setResourceHistoryPartitionMaintenanceEnabled(boolean theResourceHistoryPartitionMaintenanceEnabled) {
+		myResourceHistoryPartitionMaintenanceEnabled = theResourceHistoryPartitionMaintenanceEnabled;
+	}
+
+	/**
+	 * If {@link #isResourceHistoryPartitionMaintenanceEnabled() history partition maintenance} is enabled,
+	 * this is the number of whole months of resource history to keep. Older partitions of the
+	 * <code>HFJ_RES_VER</code> table are detached and dropped, along with the history tags and provenance
+	 * of the versions they contain, as soon as they no longer contain the current version of any resource.
+	 * <p>
+	 * Default is <code>null</code>, meaning that partitions are never dropped.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	@Nullable
+	public Integer getResourceHistoryPartitionRetentionMonths() {
+		return myResourceHistoryPartitionRetentionMonths;
+	}
+
+	/**
+	 * If {@link #isResourceHistoryPartitionMaintenanceEnabled() history partition maintenance} is enabled,
+	 * this is the number of whole months of resource history to keep. Older partitions of the
+	 * <code>HFJ_RES_VER</code> table are detached and dropped, along with the history tags and provenance
+	 * of the versions they contain, as soon as they no longer contain the current version of any resource.
+	 * <p>
+	 * Default is <code>null</code>, meaning that partitions are never dropped.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setResourceHistoryPartitionRetentionMonths(
+			@Nullable Integer theResourceHistoryPartitionRetentionMonths) {
+		Validate.isTrue(
+				theResourceHistoryPartitionRetentionMonths == null || theResourceHistoryPartitionRetentionMonths > 0,
+				"Retention must be a positive number of months");
+		myResourceHistoryPartitionRetentionMonths = theResourceHistoryPartitionRetentionMonths;
+	}
+
+	/**
+	 * If set to a value greater than zero, resource creates (i.e. non-conditional <code>POST</code>
+	 * operations which are not part of a FHIR transaction) arriving concurrently from different
+	 * clients are grouped together and stored in a single database transaction. When other creates
+	 * are already waiting, the first create waits for this many milliseconds for more to arrive before
+	 * the group is committed, so this trades a small amount of latency for each create against much
+	 * higher throughput when many clients are creating resources at the same time. A create which
+	 * arrives on its own is stored immediately.
+	 * <p>
+	 * If any create in a group fails, the group is rolled back and each create is retried in its own
+	 * transaction, so clients see the same outcomes as they would without grouping. Note that storage
+	 * interceptors for grouped creates may be invoked on a different thread than the one processing
+	 * the client request (with the MDC of the client thread), and that the interceptors for the other
+	 * creates of a failed group are invoked again when they are retried.
+	 * </p>
+	 * <p>
+	 * Creates are never grouped when partitioning is enabled.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that creates are never grouped.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public long getCreateGroupCommitWindowMillis() {
+		return myCreateGroupCommitWindowMillis;
+	}
+
+	/**
+	 * If set to a value greater than zero, resource creates (i.e. non-conditional <code>POST</code>
+	 * operations which are not part of a FHIR transaction) arriving concurrently from different
+	 * clients are grouped together and stored in a single database transaction. The first create
+	 * waits for up to this many milliseconds for others to arrive (or until
+	 * {@link #getCreateGroupCommitMaxSize() a full group} has arrived) before the group is committed,
+	 * so this trades a small amount of latency for each create against much higher throughput when
+	 * many clients are creating resources at the same time.
+	 * <p>
+	 * If any create in a group fails, the group is rolled back and each create is retried in its own
+	 * transaction, so clients see the same outcomes as they would without grouping. Note that storage
+	 * interceptors for grouped creates may be invoked on a different thread than the one processing
+	 * the client request.
+	 * </p>
+	 * <p>
+	 * Default is <code>0</code>, meaning that creates are never grouped.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setCreateGroupCommitWindowMillis(long theCreateGroupCommitWindowMillis) {
+		Validate.isTrue(theCreateGroupCommitWindowMillis >= 0, "Window must not be negative");
+		myCreateGroupCommitWindowMillis = theCreateGroupCommitWindowMillis;
+	}
+
+	/**
+	 * If {@link #getCreateGroupCommitWindowMillis() create group commit} is enabled, this is the
+	 * maximum number of creates which will be stored in a single database transaction.
+	 * <p>
+	 * Default is <code>100</code>
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public int getCreateGroupCommitMaxSize() {
+		return myCreateGroupCommitMaxSize;
+	}
+
+	/**
+	 * If {@link #getCreateGroupCommitWindowMillis() create group commit} is enabled, this is the
+	 * maximum number of creates which will be stored in a single database transaction.
+	 * <p>
+	 * Default is <code>100</code>
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setCreateGroupCommitMaxSize(int theCreateGroupCommitMaxSize) {
+		Validate.isTrue(theCreateGroupCommitMaxSize > 0, "Maximum size must be positive");
+		myCreateGroupCommitMaxSize = theCreateGroupCommitMaxSize;
+	}
+
 	public enum StoreMetaSourceInformationEnum {
 		NONE(false, false),
 		SOURCE_URI(true, false),
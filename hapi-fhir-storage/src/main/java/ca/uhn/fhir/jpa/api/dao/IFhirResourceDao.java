@@ -400,6 +400,19 @@ public interface IFhirResourceDao<T extends IBaseResource> extends IDao {
 		return (List<T>) provider.getAllResources();
 	}
 
+	/**
+	 * Search results matching theParams, loaded in chunks as the Stream is consumed, so that
+	 * memory use doesn't depend on the number of results.
+	 * This call invokes both preaccess and preshow interceptors for each chunk.
+	 * The Stream MUST be closed to avoid leaking resources, and MUST only be used within the calling transaction.
+	 * @param theParams the search
+	 * @param theRequest for partition target info
+	 * @since 7.2.0
+	 */
+	default Stream<T> searchForResourceStream(SearchParameterMap theParams, RequestDetails theRequest) {
+		return searchForResources(theParams, theRequest).stream();
+	}
+
 	/**
 	 * Return the FHIR Ids matching theParams.
 	 * This call does not currently invoke any interceptors, so should only be used for infrastructure that
@@ -32,6 +32,7 @@ import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -131,6 +132,19 @@ public interface IIdHelperService<T extends IResourcePersistentId> {
 			boolean theExcludeDeleted)
 			throws ResourceNotFoundException;
 
+	/**
+	 * Given a collection of resource IDs (resource type + id), resolves the resource lookup for each of them
+	 * using as few database queries as possible. This is the batch equivalent of
+	 * {@link #resolveResourceIdentity(RequestPartitionId, String, String, boolean)}.
+	 *
+	 * @return Returns a map keyed by the unqualified versionless ID (e.g. <code>Patient/123</code>). IDs which can
+	 * not be found, or which resolve to a resource of a different type, are not included.
+	 * @since 7.2.0
+	 */
+	@Nonnull
+	Map<String, ? extends IResourceLookup> resolveResourceIdentities(
+			@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theIds, boolean theExcludeDeleted);
+
 	/**
 	 * Returns true if the given resource ID should be stored in a forced ID. Under default config
 	 * (meaning client ID strategy is {@link JpaStorageSettings.ClientIdStrategyEnum#ALPHANUMERIC})
@@ -46,6 +46,8 @@ import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService.PreExtractedSearchIndexParameters;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
@@ -85,6 +87,7 @@ import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -101,6 +104,7 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -109,6 +113,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -123,6 +128,8 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -174,9 +181,14 @@ public abstract class BaseTransactionProcessor {
 
 	private TaskExecutor myExecutor;
 
+	private AsyncTaskExecutor myIndexExtractionExecutor;
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
+	@Autowired
+	private SearchParamExtractorService mySearchParamExtractorService;
+
 	@VisibleForTesting
 	public void setStorageSettings(StorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
@@ -201,6 +213,14 @@ public abstract class BaseTransactionProcessor {
 		return myExecutor;
 	}
 
+	private AsyncTaskExecutor getIndexExtractionExecutor() {
+		if (myIndexExtractionExecutor == null) {
+			int poolSize = myStorageSettings.getBundleIndexExtractionPoolSize();
+			myIndexExtractionExecutor = myThreadPoolFactory.newThreadPool(poolSize, poolSize, "bundle-index-");
+		}
+		return myIndexExtractionExecutor;
+	}
+
 	public <BUNDLE extends IBaseBundle> BUNDLE transaction(
 			RequestDetails theRequestDetails, BUNDLE theRequest, boolean theNestedMode) {
 		String actionName = "Transaction";
@@ -1572,6 +1592,8 @@ public abstract class BaseTransactionProcessor {
 		FhirTerser terser = myContext.newTerser();
 		theTransactionStopWatch.startTask("Index " + theIdToPersistedOutcome.size() + " resources");
 		IdentityHashMap<DaoMethodOutcome, Set<IBaseReference>> deferredIndexesForAutoVersioning = null;
+		boolean preExtractIndexes = myStorageSettings.getBundleIndexExtractionPoolSize() > 1;
+		List<DaoMethodOutcome> resolvedOutcomes = new ArrayList<>();
 		int i = 0;
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 
@@ -1593,7 +1615,18 @@ public abstract class BaseTransactionProcessor {
 
 			Set<IBaseReference> referencesToAutoVersion =
 					BaseStorageDao.extractReferencesToAutoVersion(myContext, myStorageSettings, nextResource);
-			if (referencesToAutoVersion.isEmpty()) {
+			if (referencesToAutoVersion.isEmpty() && preExtractIndexes) {
+				// no references to autoversion - we can resolve them now, and save once the
+				// indexes for all of these resources have been extracted below
+				resolveReferences(
+						theTransactionDetails,
+						theIdSubstitutions,
+						theIdToPersistedOutcome,
+						terser,
+						nextResource,
+						referencesToAutoVersion);
+				resolvedOutcomes.add(nextOutcome);
+			} else if (referencesToAutoVersion.isEmpty()) {
 				// no references to autoversion - we can do the resolve and save now
 				resolveReferencesThenSaveAndIndexResource(
 						theRequest,
@@ -1616,6 +1649,23 @@ public abstract class BaseTransactionProcessor {
 			}
 		}
 
+		if (!resolvedOutcomes.isEmpty()) {
+			preExtractSearchIndexes(
+					theRequest, theTransactionDetails, resolvedOutcomes, nonUpdatedEntities, updatedEntities);
+			for (DaoMethodOutcome nextOutcome : resolvedOutcomes) {
+				saveAndIndexResource(
+						theRequest,
+						theTransactionDetails,
+						theIdSubstitutions,
+						entriesToProcess,
+						nonUpdatedEntities,
+						updatedEntities,
+						nextOutcome,
+						nextOutcome.getResource(),
+						Collections.emptySet());
+			}
+		}
+
 		// If we have any resources we'll be auto-versioning, index these next
 		if (deferredIndexesForAutoVersioning != null) {
 			for (Map.Entry<DaoMethodOutcome, Set<IBaseReference>> nextEntry :
@@ -1652,6 +1702,32 @@ public abstract class BaseTransactionProcessor {
 			DaoMethodOutcome theDaoMethodOutcome,
 			IBaseResource theResource,
 			Set<IBaseReference> theReferencesToAutoVersion) {
+		resolveReferences(
+				theTransactionDetails,
+				theIdSubstitutions,
+				theIdToPersistedOutcome,
+				terser,
+				theResource,
+				theReferencesToAutoVersion);
+		saveAndIndexResource(
+				theRequest,
+				theTransactionDetails,
+				theIdSubstitutions,
+				entriesToProcess,
+				nonUpdatedEntities,
+				updatedEntities,
+				theDaoMethodOutcome,
+				theResource,
+				theReferencesToAutoVersion);
+	}
+
+	private void resolveReferences(
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome,
+			FhirTerser terser,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		// References
 		List<ResourceReferenceInfo> allRefs = terser.getAllResourceReferences(theResource);
 		for (ResourceReferenceInfo nextRef : allRefs) {
@@ -1759,7 +1835,18 @@ public abstract class BaseTransactionProcessor {
 				}
 			}
 		}
+	}
 
+	private void saveAndIndexResource(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			EntriesToProcessMap entriesToProcess,
+			Set<IIdType> nonUpdatedEntities,
+			Set<IBasePersistedResource> updatedEntities,
+			DaoMethodOutcome theDaoMethodOutcome,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		IPrimitiveType<Date> deletedInstantOrNull = ResourceMetadataKeyEnum.DELETED_AT.get(theResource);
 		Date deletedTimestampOrNull = deletedInstantOrNull != null ? deletedInstantOrNull.getValue() : null;
 
@@ -1817,6 +1904,83 @@ public abstract class BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Extracts the search parameter indexes (other than references) for the given resources using a
+	 * pool of threads, so that this CPU intensive work isn't done one resource at a time while the
+	 * resources are being stored. Placeholder references must already have been replaced at this point,
+	 * since URI indexes can contain them. If extracting the indexes for any resource fails here, it is
+	 * simply extracted again when the resource is stored so that the failure is reported as usual.
+	 */
+	private void preExtractSearchIndexes(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			List<DaoMethodOutcome> theOutcomes,
+			Set<IIdType> nonUpdatedEntities,
+			Set<IBasePersistedResource> updatedEntities) {
+		// Updates call the pre-storage hooks again right before being stored, which could modify the resource
+		boolean haveUpdateHooks = CompositeInterceptorBroadcaster.hasHooks(
+				Pointcut.STORAGE_PRESTORAGE_RESOURCE_UPDATED, myInterceptorBroadcaster, theRequest);
+
+		List<IBaseResource> resources = new ArrayList<>();
+		for (DaoMethodOutcome next : theOutcomes) {
+			if (updatedEntities.contains(next.getEntity())) {
+				if (haveUpdateHooks) {
+					continue;
+				}
+			} else if (nonUpdatedEntities.contains(next.getId())) {
+				continue;
+			}
+			if (ResourceMetadataKeyEnum.DELETED_AT.get(next.getResource()) != null) {
+				continue;
+			}
+			resources.add(next.getResource());
+		}
+		if (resources.size() < 2) {
+			return;
+		}
+
+		int poolSize = Math.min(myStorageSettings.getBundleIndexExtractionPoolSize(), resources.size());
+		int chunkSize = (resources.size() + poolSize - 1) / poolSize;
+		List<List<IBaseResource>> chunks = Lists.partition(resources, chunkSize);
+		List<Future<List<PreExtractedSearchIndexParameters>>> futures = new ArrayList<>(chunks.size());
+		for (List<IBaseResource> nextChunk : chunks) {
+			futures.add(getIndexExtractionExecutor().submit(() -> preExtractSearchIndexesForChunk(nextChunk)));
+		}
+
+		for (int chunkIdx = 0; chunkIdx < chunks.size(); chunkIdx++) {
+			List<IBaseResource> chunk = chunks.get(chunkIdx);
+			List<PreExtractedSearchIndexParameters> params;
+			try {
+				params = futures.get(chunkIdx).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				ourLog.debug("Failed to extract search indexes ahead of time", e);
+				continue;
+			}
+			for (int resIdx = 0; resIdx < chunk.size(); resIdx++) {
+				if (params.get(resIdx) != null) {
+					SearchParamExtractorService.addPreExtractedSearchIndexParameters(
+							theTransactionDetails, chunk.get(resIdx), params.get(resIdx));
+				}
+			}
+		}
+	}
+
+	private List<PreExtractedSearchIndexParameters> preExtractSearchIndexesForChunk(List<IBaseResource> theResources) {
+		List<PreExtractedSearchIndexParameters> retVal = new ArrayList<>(theResources.size());
+		for (IBaseResource next : theResources) {
+			try {
+				retVal.add(mySearchParamExtractorService.preExtractSearchIndexParameters(next));
+			} catch (RuntimeException e) {
+				ourLog.debug("Failed to extract search indexes ahead of time for {}", next.getIdElement(), e);
+				retVal.add(null);
+			}
+		}
+		return retVal;
+	}
+
 	private void replaceResourceReference(
 			IIdType theReferenceId, IBaseReference theResourceReference, TransactionDetails theTransactionDetails) {
 		addRollbackReferenceRestore(theTransactionDetails, theResourceReference);
@@ -127,4 +127,16 @@ public interface ISearchBuilder<T extends IResourcePersistentId<?>> {
 	void setFetchSize(int theFetchSize);
 
 	void setPreviouslyAddedResourcePids(List<T> thePreviouslyAddedResourcePids);
+
+	/**
+	 * Indicates that this search runs in a transaction of its own which hasn't modified any
+	 * resources, so its statements may be executed on other database connections (e.g. to
+	 * search several partitions in parallel). Searches in read-only transactions are always
+	 * treated this way.
+	 *
+	 * @since 7.2.0
+	 */
+	default void setSeparateConnectionsAllowed(boolean theSeparateConnectionsAllowed) {
+		// nothing by default
+	}
 }
@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compresses resource bodies using LZ4 for the
+ * {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum#LZ4} encoding.
+ * The high compression variant of LZ4 is used when writing, which keeps the stored
+ * size reasonably close to gzip, while reads get the much cheaper LZ4 decompression.
+ * <p>
+ * The stored format is the length of the uncompressed UTF-8 bytes as a 4 byte
+ * big-endian integer, followed by a single LZ4 block.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class Lz4Util {
+
+	private static final LZ4Factory ourFactory = LZ4Factory.fastestInstance();
+	private static final LZ4Compressor ourCompressor = ourFactory.highCompressor();
+	private static final LZ4SafeDecompressor ourDecompressor = ourFactory.safeDecompressor();
+
+	/**
+	 * An LZ4 block can't expand by more than this factor, so larger stored lengths indicate corrupt data
+	 */
+	private static final int MAX_COMPRESSION_RATIO = 255;
+
+	private Lz4Util() {
+		// nothing
+	}
+
+	public static String decompress(byte[] theResource) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(theResource);
+			int length = buffer.getInt();
+			int compressedLength = theResource.length - 4;
+			if (length < 0 || length > (long) compressedLength * MAX_COMPRESSION_RATIO) {
+				throw new DataFormatException(Msg.code(2522) + "Invalid uncompressed length: " + length);
+			}
+			byte[] retVal = new byte[length];
+			int decompressedLength = ourDecompressor.decompress(theResource, 4, compressedLength, retVal, 0, length);
+			if (decompressedLength != length) {
+				throw new DataFormatException(
+						Msg.code(2523) + "Expected " + length + " bytes but decompressed " + decompressedLength);
+			}
+			return new String(retVal, StandardCharsets.UTF_8);
+		} catch (LZ4Exception | BufferUnderflowException e) {
+			throw new DataFormatException(Msg.code(2507) + "Failed to decompress contents", e);
+		}
+	}
+
+	public static byte[] compress(String theEncoded) {
+		byte[] bytes = theEncoded.getBytes(StandardCharsets.UTF_8);
+		byte[] retVal = new byte[4 + ourCompressor.maxCompressedLength(bytes.length)];
+		ByteBuffer.wrap(retVal).putInt(bytes.length);
+		int compressedLength = ourCompressor.compress(bytes, 0, bytes.length, retVal, 4, retVal.length - 4);
+		return Arrays.copyOf(retVal, 4 + compressedLength);
+	}
+}
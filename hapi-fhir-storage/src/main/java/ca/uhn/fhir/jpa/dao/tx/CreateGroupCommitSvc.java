@@ -0,0 +1,395 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.tx;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Coalesces independent resource creates which arrive at roughly the same time from different
+ * client threads into a single database transaction, so that the cost of committing (and flushing
+ * the database log) is shared by all of them instead of being paid by each create.
+ * <p>
+ * The first thread to arrive becomes the leader. If other creates are already queued, it waits for
+ * more to queue up until the configured window expires or a full group has queued, and then executes
+ * all of the queued creates in one transaction on behalf of their threads, which simply wait for their
+ * outcome (or to become the next leader). If the leader is interrupted while waiting, its own create
+ * fails and the others are executed on their own threads. A create which is
+ * alone in the queue is executed immediately on its own thread. If anything in the group fails, the
+ * group transaction is rolled back and each create is executed again on its own thread, so every
+ * client receives exactly the outcome (or the error) it would have received without group commit.
+ * A create which was itself rejected with a {@link BaseServerResponseException} (e.g. by validation
+ * or an interceptor) fails with that error without being executed again, unless the error is a
+ * {@link ResourceVersionConflictException}, which may have been caused by another create in the group.
+ * </p>
+ * <p>
+ * Grouped creates are executed on the leader thread, but with the {@link MDC} of the thread handling
+ * their client request, and with any other context propagated by the
+ * {@link #setTaskDecorator(TaskDecorator) task decorator}. Group commit is never used when
+ * partitioning is enabled, since creates for different partitions may not share a transaction.
+ * </p>
+ *
+ * @see JpaStorageSettings#setCreateGroupCommitWindowMillis(long)
+ * @since 7.2.0
+ */
+public class CreateGroupCommitSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(CreateGroupCommitSvc.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final PartitionSettings myPartitionSettings;
+	private final IHapiTransactionService myTransactionService;
+	private final LinkedBlockingQueue<PendingCreate<?>> myQueue = new LinkedBlockingQueue<>();
+	private final ReentrantLock myLeaderLock = new ReentrantLock();
+	private final ReentrantLock myQueueLock = new ReentrantLock();
+	private final Condition myGroupFull = myQueueLock.newCondition();
+	private final Condition myLeaderReleased = myQueueLock.newCondition();
+	private TaskDecorator myTaskDecorator;
+
+	/**
+	 * Constructor
+	 */
+	public CreateGroupCommitSvc(
+			JpaStorageSettings theStorageSettings,
+			PartitionSettings thePartitionSettings,
+			IHapiTransactionService theTransactionService) {
+		myStorageSettings = theStorageSettings;
+		myPartitionSettings = thePartitionSettings;
+		myTransactionService = theTransactionService;
+	}
+
+	/**
+	 * Grouped creates are executed on the leader thread. The {@link MDC} of the thread handling each
+	 * client request is always propagated to the leader thread while its create is executed, and the
+	 * given decorator (if any) can be used to propagate any other thread-bound context, such as a
+	 * security context. The decorator is invoked on the client thread.
+	 */
+	public void setTaskDecorator(@Nullable TaskDecorator theTaskDecorator) {
+		myTaskDecorator = theTaskDecorator;
+	}
+
+	/**
+	 * Returns <code>true</code> if group commit is enabled, partitioning is disabled, and the current
+	 * thread isn't already participating in a transaction (in which case the create must be part of
+	 * that transaction)
+	 */
+	public boolean isEnabled() {
+		// With partitioning, each create may open its own transaction (see
+		// HapiTransactionService#setTransactionPropagationWhenChangingPartitions)
+		return myStorageSettings.getCreateGroupCommitWindowMillis() > 0
+				&& !myPartitionSettings.isPartitioningEnabled()
+				&& !TransactionSynchronizationManager.isActualTransactionActive();
+	}
+
+	/**
+	 * Executes a create, possibly in the same database transaction as other concurrent creates.
+	 *
+	 * @param theCreate The create to execute. It must open its own transaction (which will join the group
+	 *                  transaction if there is one), and may be invoked more than once, with a new
+	 *                  {@link TransactionDetails} each time.
+	 */
+	public <T> T execute(Function<TransactionDetails, T> theCreate) {
+		PendingCreate<T> pending = new PendingCreate<>(theCreate, this::decorate);
+		myQueue.add(pending);
+
+		long windowMillis = myStorageSettings.getCreateGroupCommitWindowMillis();
+		int maxSize = myStorageSettings.getCreateGroupCommitMaxSize();
+		if (myQueue.size() >= maxSize) {
+			signal(myGroupFull);
+		}
+
+		while (!pending.myFuture.isDone()) {
+			if (myLeaderLock.tryLock()) {
+				try {
+					// Our create may have been handled by the previous leader in the meantime
+					if (!pending.myFuture.isDone()) {
+						boolean interrupted = myQueue.size() > 1 && !awaitGroup(windowMillis, maxSize);
+						List<PendingCreate<?>> group = new ArrayList<>();
+						myQueue.drainTo(group, maxSize);
+						if (interrupted) {
+							abandonGroup(group, pending);
+						} else {
+							executeGroup(group, pending);
+						}
+					}
+				} finally {
+					myLeaderLock.unlock();
+					signal(myLeaderReleased);
+				}
+			} else {
+				awaitOutcome(pending, windowMillis);
+			}
+		}
+
+		try {
+			return pending.myFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2519) + e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ExecuteIndividuallySignal) {
+				return theCreate.apply(new TransactionDetails());
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2520) + e.getCause());
+		}
+	}
+
+	/**
+	 * Waits for the window to expire, or for the queue to reach the maximum group size
+	 *
+	 * @return Returns <code>false</code> if the thread was interrupted while waiting
+	 */
+	private boolean awaitGroup(long theWindowMillis, int theMaxSize) {
+		long remainingNanos = TimeUnit.MILLISECONDS.toNanos(theWindowMillis);
+		myQueueLock.lock();
+		try {
+			while (myQueue.size() < theMaxSize && remainingNanos > 0) {
+				remainingNanos = myGroupFull.awaitNanos(remainingNanos);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			myQueueLock.unlock();
+		}
+	}
+
+	/**
+	 * The leader was interrupted, so the group's database work must not run on its thread. Every other
+	 * create executes individually on its own thread instead, and the leader's create fails.
+	 */
+	private void abandonGroup(List<PendingCreate<?>> theGroup, PendingCreate<?> theLeader) {
+		ourLog.debug("Interrupted while waiting for {} creates to group", theGroup.size());
+		for (PendingCreate<?> next : theGroup) {
+			if (next != theLeader) {
+				next.signalExecuteIndividually();
+			}
+		}
+		// Our own create may not have been drained if the queue held more than a full group
+		myQueue.remove(theLeader);
+		theLeader.myFuture.completeExceptionally(
+				new InternalErrorException(Msg.code(2525) + "Interrupted while waiting for creates to group"));
+	}
+
+	private void executeGroup(List<PendingCreate<?>> theGroup, PendingCreate<?> theLeader) {
+		if (theGroup.isEmpty()) {
+			return;
+		}
+		if (theGroup.size() == 1) {
+			PendingCreate<?> single = theGroup.get(0);
+			if (single == theLeader) {
+				// We're on the right thread already, and executing while holding the leader lock
+				// gives concurrent creates the chance to queue up
+				single.executeIndividually();
+			} else {
+				single.signalExecuteIndividually();
+			}
+			return;
+		}
+
+		List<Object> outcomes;
+		try {
+			outcomes = myTransactionService.withSystemRequest().execute(() -> {
+				List<Object> retVal = new ArrayList<>(theGroup.size());
+				for (PendingCreate<?> next : theGroup) {
+					retVal.add(next.executeInGroup());
+				}
+				return retVal;
+			});
+		} catch (RuntimeException e) {
+			ourLog.debug("Group commit of {} creates failed, executing them individually", theGroup.size(), e);
+			for (PendingCreate<?> next : theGroup) {
+				next.rollBack();
+				if (isRejection(next.myGroupFailure)) {
+					// This create was rejected on its own merits, so it would fail the same way again
+					next.myFuture.completeExceptionally(next.myGroupFailure);
+				} else {
+					next.signalExecuteIndividually();
+				}
+			}
+			return;
+		}
+
+		ourLog.debug("Committed {} creates in a single transaction", theGroup.size());
+		for (int i = 0; i < theGroup.size(); i++) {
+			theGroup.get(i).complete(outcomes.get(i));
+		}
+	}
+
+	private static boolean isRejection(@Nullable RuntimeException theFailure) {
+		// Conflicts can be caused by flushing the changes of other creates in the group
+		return theFailure instanceof BaseServerResponseException
+				&& !(theFailure instanceof ResourceVersionConflictException);
+	}
+
+	/**
+	 * Invoked on the client thread, to wrap the execution of its create on the leader thread
+	 */
+	private Runnable decorate(Runnable theTask) {
+		Runnable task = theTask;
+		if (myTaskDecorator != null) {
+			task = myTaskDecorator.decorate(task);
+		}
+		return propagateMdc(task);
+	}
+
+	private static Runnable propagateMdc(Runnable theTask) {
+		Map<String, String> context = MDC.getCopyOfContextMap();
+		return () -> {
+			Map<String, String> previous = MDC.getCopyOfContextMap();
+			setMdcContext(context);
+			try {
+				theTask.run();
+			} finally {
+				setMdcContext(previous);
+			}
+		};
+	}
+
+	private static void setMdcContext(@Nullable Map<String, String> theContext) {
+		if (theContext != null) {
+			MDC.setContextMap(theContext);
+		} else {
+			MDC.clear();
+		}
+	}
+
+	/**
+	 * Waits until our create has an outcome, or the current leader is done so that we can try to
+	 * become the leader
+	 */
+	private void awaitOutcome(PendingCreate<?> thePending, long theWindowMillis) {
+		myQueueLock.lock();
+		try {
+			if (!thePending.myFuture.isDone() && myLeaderLock.isLocked()) {
+				myLeaderReleased.await(theWindowMillis * 2, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2521) + e);
+		} finally {
+			myQueueLock.unlock();
+		}
+	}
+
+	private void signal(Condition theCondition) {
+		myQueueLock.lock();
+		try {
+			theCondition.signalAll();
+		} finally {
+			myQueueLock.unlock();
+		}
+	}
+
+	/**
+	 * Tells a waiting client thread to execute its create itself, in its own transaction
+	 */
+	private static class ExecuteIndividuallySignal extends RuntimeException {
+
+		private static final ExecuteIndividuallySignal INSTANCE = new ExecuteIndividuallySignal();
+
+		private ExecuteIndividuallySignal() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static class PendingCreate<T> {
+
+		private final Function<TransactionDetails, T> myCreate;
+		private final Runnable myGroupExecution;
+		private final CompletableFuture<T> myFuture = new CompletableFuture<>();
+		private TransactionDetails myTransactionDetails;
+		private T myGroupOutcome;
+		private RuntimeException myGroupFailure;
+
+		private PendingCreate(Function<TransactionDetails, T> theCreate, Function<Runnable, Runnable> theDecorator) {
+			myCreate = theCreate;
+			myGroupExecution = theDecorator.apply(this::doExecuteInGroup);
+		}
+
+		private void doExecuteInGroup() {
+			myTransactionDetails = new TransactionDetails();
+			try {
+				myGroupOutcome = myCreate.apply(myTransactionDetails);
+			} catch (RuntimeException e) {
+				myGroupFailure = e;
+				throw e;
+			}
+		}
+
+		private T executeInGroup() {
+			myGroupExecution.run();
+			return myGroupOutcome;
+		}
+
+		private void executeIndividually() {
+			try {
+				myFuture.complete(myCreate.apply(new TransactionDetails()));
+			} catch (RuntimeException e) {
+				myFuture.completeExceptionally(e);
+			}
+		}
+
+		private void signalExecuteIndividually() {
+			myFuture.completeExceptionally(ExecuteIndividuallySignal.INSTANCE);
+		}
+
+		/**
+		 * Undo any changes the create made to the resource during the group attempt
+		 */
+		private void rollBack() {
+			if (myTransactionDetails != null) {
+				myTransactionDetails.getRollbackUndoActions().forEach(Runnable::run);
+				myTransactionDetails = null;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void complete(Object theOutcome) {
+			myFuture.complete((T) theOutcome);
+		}
+	}
+}
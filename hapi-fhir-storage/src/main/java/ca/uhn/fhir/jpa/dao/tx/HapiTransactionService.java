@@ -88,6 +88,9 @@ public class HapiTransactionService implements IHapiTransactionService {
 	@Autowired
 	protected PartitionSettings myPartitionSettings;
 
+	@Autowired(required = false)
+	private ReadReplicaLagTracker myReadReplicaLagTracker;
+
 	private Propagation myTransactionPropagationWhenChangingPartitions = Propagation.REQUIRED;
 
 	private SleepUtil mySleepUtil = new SleepUtil();
@@ -102,6 +105,11 @@ public class HapiTransactionService implements IHapiTransactionService {
 		mySleepUtil = theSleepUtil;
 	}
 
+	@VisibleForTesting
+	public void setReadReplicaLagTracker(ReadReplicaLagTracker theReadReplicaLagTracker) {
+		myReadReplicaLagTracker = theReadReplicaLagTracker;
+	}
+
 	@Override
 	public IExecutionBuilder withRequest(@Nullable RequestDetails theRequestDetails) {
 		return buildExecutionBuilder(theRequestDetails);
@@ -428,7 +436,7 @@ public class HapiTransactionService implements IHapiTransactionService {
 				txTemplate.setIsolationLevel(theExecutionBuilder.myIsolation.value());
 			}
 
-			if (theExecutionBuilder.myReadOnly) {
+			if (theExecutionBuilder.myReadOnly && !isPrimaryRequired(theExecutionBuilder.myRequestDetails)) {
 				txTemplate.setReadOnly(true);
 			}
 
@@ -442,6 +450,15 @@ public class HapiTransactionService implements IHapiTransactionService {
 		}
 	}
 
+	/**
+	 * Read-only transactions may be routed to a read replica, so if the client has just
+	 * modified data we run its reads as regular transactions in order to ensure that they
+	 * go to the primary database and see the client's own changes.
+	 */
+	private boolean isPrimaryRequired(@Nullable RequestDetails theRequestDetails) {
+		return myReadReplicaLagTracker != null && myReadReplicaLagTracker.isPrimaryRequired(theRequestDetails);
+	}
+
 	protected class ExecutionBuilder implements IExecutionBuilder, TransactionOperations, Cloneable {
 
 		private final RequestDetails myRequestDetails;
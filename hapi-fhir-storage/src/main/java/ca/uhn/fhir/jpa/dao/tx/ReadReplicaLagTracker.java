@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.tx;
+
+import ca.uhn.fhir.IHapiBootOrder;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
+import static org.apache.commons.lang3.StringUtils.trim;
+
+/**
+ * Keeps track of the clients which have recently created, updated or deleted resources, so
+ * that {@link HapiTransactionService} can avoid sending their read-only transactions to a
+ * read replica which may not have caught up with their changes yet.
+ *
+ * @see JpaStorageSettings#setReadReplicaLagMillis(long)
+ * @since 7.2.0
+ */
+public class ReadReplicaLagTracker {
+
+	private static final int MAXIMUM_ENTRIES = 100000;
+	private static final String HEADER_X_FORWARDED_FOR = "X-Forwarded-For";
+	private static final HashFunction SHA_256 = Hashing.sha256();
+
+	private final JpaStorageSettings myStorageSettings;
+	private volatile Cache<String, Boolean> myCache;
+	private long myCacheMillis;
+
+	@Autowired
+	private IInterceptorService myInterceptorService;
+
+	/**
+	 * Constructor
+	 */
+	public ReadReplicaLagTracker(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@EventListener(classes = {ContextRefreshedEvent.class})
+	@Order(IHapiBootOrder.REGISTER_INTERCEPTORS)
+	public void start() {
+		myInterceptorService.registerInterceptor(this);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myInterceptorService.unregisterInterceptor(this);
+	}
+
+	/**
+	 * Returns <code>true</code> if the client making the given request has modified a resource
+	 * within the configured lag window, meaning that its reads should go to the primary database.
+	 */
+	public boolean isPrimaryRequired(@Nullable RequestDetails theRequestDetails) {
+		Cache<String, Boolean> cache = getCache();
+		if (cache == null) {
+			return false;
+		}
+		String clientKey = getClientKey(theRequestDetails);
+		return clientKey != null && cache.getIfPresent(clientKey) != null;
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_CREATED)
+	public void created(RequestDetails theRequestDetails) {
+		recordWrite(theRequestDetails);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_UPDATED)
+	public void updated(RequestDetails theRequestDetails) {
+		recordWrite(theRequestDetails);
+	}
+
+	@Hook(Pointcut.STORAGE_PRECOMMIT_RESOURCE_DELETED)
+	public void deleted(RequestDetails theRequestDetails) {
+		recordWrite(theRequestDetails);
+	}
+
+	private void recordWrite(RequestDetails theRequestDetails) {
+		Cache<String, Boolean> cache = getCache();
+		String clientKey = getClientKey(theRequestDetails);
+		if (cache == null || clientKey == null) {
+			return;
+		}
+
+		/*
+		 * The lag window needs to start once the change is committed, since that is
+		 * when the replicas start receiving it, so we record the write again then.
+		 */
+		cache.put(clientKey, Boolean.TRUE);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					cache.put(clientKey, Boolean.TRUE);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns a key identifying the client making the given request, or <code>null</code> if
+	 * the client can't be identified (in which case its writes aren't tracked). Subclasses
+	 * may override this to use a different notion of client identity.
+	 * <p>
+	 * By default, clients are identified by a SHA-256 hash of their <code>Authorization</code> header
+	 * (so that credentials are never held in memory longer than the request). Anonymous clients are
+	 * identified by the first address in the <code>X-Forwarded-For</code> header, or by the remote
+	 * address of the connection if there is no such header. Note that if the server is behind a load
+	 * balancer or proxy which doesn't add <code>X-Forwarded-For</code>, all anonymous clients share
+	 * the address of the proxy, so a write by any of them sends the reads of all of them to the
+	 * primary database for the lag window. This only affects where reads are sent, never what they
+	 * return, so a spoofed header can't be used to read stale data.
+	 * </p>
+	 */
+	@Nullable
+	protected String getClientKey(@Nullable RequestDetails theRequestDetails) {
+		if (theRequestDetails == null) {
+			return null;
+		}
+		String authorization = theRequestDetails.getHeader(Constants.HEADER_AUTHORIZATION);
+		if (isNotBlank(authorization)) {
+			return "auth:" + SHA_256.hashString(authorization, StandardCharsets.UTF_8);
+		}
+		String forwardedFor = theRequestDetails.getHeader(HEADER_X_FORWARDED_FOR);
+		if (isNotBlank(forwardedFor)) {
+			return "addr:" + trim(substringBefore(forwardedFor, ","));
+		}
+		if (theRequestDetails instanceof ServletRequestDetails) {
+			ServletRequestDetails servletRequestDetails = (ServletRequestDetails) theRequestDetails;
+			if (servletRequestDetails.getServletRequest() != null) {
+				return "addr:" + servletRequestDetails.getServletRequest().getRemoteAddr();
+			}
+		}
+		return null;
+	}
+
+	@Nullable
+	private Cache<String, Boolean> getCache() {
+		long cacheMillis = myStorageSettings.getReadReplicaLagMillis();
+		if (cacheMillis <= 0) {
+			myCache = null;
+			return null;
+		}
+
+		Cache<String, Boolean> retVal = myCache;
+		if (retVal == null || myCacheMillis != cacheMillis) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null || myCacheMillis != cacheMillis) {
+					retVal = CacheFactory.build(cacheMillis, MAXIMUM_ENTRIES);
+					myCacheMillis = cacheMillis;
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+}
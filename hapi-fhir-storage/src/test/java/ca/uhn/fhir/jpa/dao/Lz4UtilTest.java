@@ -0,0 +1,64 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Lz4UtilTest {
+
+	@Test
+	public void testRoundTrip() {
+		String input = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Smith\",\"given\":[\"Zoë\"]}]}";
+
+		byte[] compressed = Lz4Util.compress(input);
+
+		assertEquals(input, Lz4Util.decompress(compressed));
+	}
+
+	@Test
+	public void testRoundTripEmpty() {
+		assertEquals("", Lz4Util.decompress(Lz4Util.compress("")));
+	}
+
+	@Test
+	public void testCompressesRepetitiveContent() {
+		String input = StringUtils.repeat("{\"system\":\"http://loinc.org\",\"code\":\"1234-5\"},", 200);
+
+		byte[] compressed = Lz4Util.compress(input);
+
+		assertThat(compressed.length, lessThan(input.length() / 10));
+		assertEquals(input, Lz4Util.decompress(compressed));
+	}
+
+	@Test
+	public void testDecompressInvalid() {
+		DataFormatException e = assertThrows(DataFormatException.class, () -> Lz4Util.decompress(new byte[] {0, 0}));
+		assertEquals("HAPI-2507: Failed to decompress contents", e.getMessage());
+	}
+
+	@Test
+	public void testDecompressTruncated() {
+		String input = StringUtils.repeat("{\"system\":\"http://loinc.org\",\"code\":\"1234-5\"},", 200);
+		byte[] compressed = Lz4Util.compress(input);
+		byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+		assertThrows(DataFormatException.class, () -> Lz4Util.decompress(truncated));
+	}
+
+	@Test
+	public void testDecompressInvalidLength() {
+		byte[] compressed = Lz4Util.compress("{\"resourceType\":\"Patient\"}");
+		ByteBuffer.wrap(compressed).putInt(Integer.MAX_VALUE);
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> Lz4Util.decompress(compressed));
+		assertEquals("HAPI-2522: Invalid uncompressed length: " + Integer.MAX_VALUE, e.getMessage());
+	}
+}
@@ -54,7 +54,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
@@ -130,6 +132,33 @@ public class JsonParserR4Test extends BaseTest {
 		ourLog.info(narrative);
 	}
 
+	@Test
+	public void testEncodeResourceToOutputStream() throws IOException {
+		Patient p = new Patient();
+		p.setId("Patient/123");
+		p.addName().setFamily("Müller").addGiven("日本");
+		p.getBirthDateElement().setValueAsString("2020-01-01");
+		p.getBirthDateElement().addExtension("http://foo", new StringType("\"quoted\""));
+		p.addIdentifier().setSystem("http://foo").setValue("bar");
+
+		for (boolean prettyPrint : new boolean[]{false, true}) {
+			IParser parser = ourCtx.newJsonParser().setPrettyPrint(prettyPrint);
+			String expected = parser.encodeResourceToString(p);
+
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			parser.encodeResourceToOutputStream(p, outputStream);
+
+			assertEquals(expected, outputStream.toString(StandardCharsets.UTF_8));
+		}
+
+		// Characters outside the BMP are escaped when writing bytes, but must survive a round trip
+		p.getNameFirstRep().setFamily("\ud83d\ude00");
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ourCtx.newJsonParser().encodeResourceToOutputStream(p, outputStream);
+		Patient parsed = ourCtx.newJsonParser().parseResource(Patient.class, outputStream.toString(StandardCharsets.UTF_8));
+		assertEquals("\ud83d\ude00", parsed.getNameFirstRep().getFamily());
+	}
+
 	@Test
 	public void testEncodeExtensionWithUnknownType() throws IOException {
 
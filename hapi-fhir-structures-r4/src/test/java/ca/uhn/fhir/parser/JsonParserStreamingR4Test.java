@@ -0,0 +1,155 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ScalarType;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifies that {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsing(boolean) streaming}
+ * JSON parsing produces exactly the same resources as the default tree based parsing.
+ */
+public class JsonParserStreamingR4Test {
+	private static final FhirContext ourTreeCtx = FhirContext.forR4();
+	private static final FhirContext ourStreamingCtx = FhirContext.forR4();
+
+	static {
+		ourStreamingCtx.getParserOptions().setStreamingJsonParsing(true);
+	}
+
+	private static <T extends IBaseResource> T assertParsesIdentically(Class<T> theType, String theInput) {
+		T tree = ourTreeCtx.newJsonParser().parseResource(theType, theInput);
+		T streaming = ourStreamingCtx.newJsonParser().parseResource(theType, theInput);
+
+		String expected = ourTreeCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(tree);
+		String actual = ourTreeCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(streaming);
+		assertEquals(expected, actual);
+		return streaming;
+	}
+
+	@Test
+	public void testPrimitiveExtensionsBeforeAndAfterValue() {
+		String input = "{\"resourceType\":\"Patient\",\"id\":\"A\"," +
+			"\"_birthDate\":{\"id\":\"bd\",\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"bar\"}]}," +
+			"\"birthDate\":\"2020-01-01\"," +
+			"\"active\":true," +
+			"\"_active\":{\"extension\":[{\"url\":\"http://active\",\"valueBoolean\":false}]}," +
+			"\"name\":[{\"given\":[\"A\",null,\"C\"],\"_given\":[null,{\"extension\":[{\"url\":\"http://given\",\"valueString\":\"B\"}]},null]}]," +
+			"\"_gender\":{\"extension\":[{\"url\":\"http://gender\",\"valueCode\":\"unknown\"}]}" +
+			"}";
+
+		Patient patient = assertParsesIdentically(Patient.class, input);
+
+		assertEquals("2020-01-01", patient.getBirthDateElement().getValueAsString());
+		assertEquals("bd", patient.getBirthDateElement().getId());
+		assertEquals("bar", patient.getBirthDateElement().getExtensionString("http://foo"));
+		assertEquals(3, patient.getNameFirstRep().getGiven().size());
+		assertEquals("B", patient.getNameFirstRep().getGiven().get(1).getExtensionString("http://given"));
+		assertNull(patient.getGenderElement().getValue());
+		assertTrue(patient.getGenderElement().hasExtension("http://gender"));
+	}
+
+	@Test
+	public void testContainedAndNestedResources() {
+		String input = "{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"total\":2,\"entry\":[" +
+			"{\"fullUrl\":\"http://example.com/Observation/O1\",\"resource\":{\"resourceType\":\"Observation\",\"id\":\"O1\"," +
+			"\"contained\":[{\"resourceType\":\"Patient\",\"id\":\"p1\",\"active\":true}]," +
+			"\"status\":\"final\",\"subject\":{\"reference\":\"#p1\"},\"valueQuantity\":{\"value\":1.50,\"unit\":\"kg\"}}," +
+			"\"search\":{\"mode\":\"match\"}}," +
+			"{\"resource\":{\"id\":\"P2\",\"resourceType\":\"Patient\",\"active\":false}}" +
+			"]}";
+
+		Bundle bundle = assertParsesIdentically(Bundle.class, input);
+
+		Observation obs = (Observation) bundle.getEntry().get(0).getResource();
+		assertEquals("Observation/O1", obs.getIdElement().toUnqualifiedVersionless().getValue());
+		assertEquals(1, obs.getContained().size());
+		assertEquals("1.50", obs.getValueQuantity().getValueElement().getValueAsString());
+		assertEquals("Patient/P2", bundle.getEntry().get(1).getResource().getIdElement().getValue());
+	}
+
+	@Test
+	public void testParametersWithResource() {
+		String input = "{\"resourceType\":\"Parameters\",\"parameter\":[" +
+			"{\"name\":\"resource\",\"resource\":{\"resourceType\":\"Patient\",\"id\":\"A\",\"active\":true}}," +
+			"{\"name\":\"count\",\"valueInteger\":3}" +
+			"]}";
+
+		Parameters parameters = assertParsesIdentically(Parameters.class, input);
+
+		assertEquals("Patient", parameters.getParameterFirstRep().getResource().fhirType());
+		assertEquals("3", parameters.getParameter().get(1).getValue().primitiveValue());
+	}
+
+	@Test
+	public void testResourceTypeNotFirst() {
+		String input = "{\"id\":\"A\",\"active\":true,\"resourceType\":\"Patient\"}";
+
+		Patient patient = assertParsesIdentically(Patient.class, input);
+
+		assertEquals("A", patient.getIdElement().getIdPart());
+		assertTrue(patient.getActive());
+	}
+
+	@Test
+	public void testMissingResourceType() {
+		DataFormatException e = assertThrows(DataFormatException.class,
+			() -> ourStreamingCtx.newJsonParser().parseResource("{\"id\":\"A\"}"));
+		assertThat(e.getMessage(), containsString(Msg.code(1838)));
+
+		String bundle = "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"id\":\"A\"}}]}";
+		e = assertThrows(DataFormatException.class,
+			() -> ourStreamingCtx.newJsonParser().parseResource(bundle));
+		assertThat(e.getMessage(), containsString(Msg.code(1843)));
+	}
+
+	@Test
+	public void testInvalidContent() {
+		IParser parser = ourStreamingCtx.newJsonParser();
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> parser.parseResource(""));
+		assertEquals(treeMessage(""), e.getMessage());
+
+		e = assertThrows(DataFormatException.class, () -> parser.parseResource("{\"resourceType\":\"Patient\"} {}"));
+		assertEquals(treeMessage("{\"resourceType\":\"Patient\"} {}"), e.getMessage());
+
+		e = assertThrows(DataFormatException.class, () -> parser.parseResource("{\"resourceType\":\"Patient\", \"active\": tru}"));
+		assertEquals(treeMessage("{\"resourceType\":\"Patient\", \"active\": tru}"), e.getMessage());
+	}
+
+	private static String treeMessage(String theInput) {
+		return assertThrows(DataFormatException.class, () -> ourTreeCtx.newJsonParser().parseResource(theInput))
+			.getMessage();
+	}
+
+	@Test
+	public void testIncorrectJsonTypesAreReported() {
+		IParserErrorHandler errorHandler = mock(IParserErrorHandler.class);
+		String input = "{\"resourceType\":\"Patient\",\"id\":{\"value\":\"A\"},\"maritalStatus\":[{\"text\":\"M\"}]," +
+			"\"communication\":{\"preferred\":true},\"_gender\":\"male\"}";
+
+		ourStreamingCtx.newJsonParser().setParserErrorHandler(errorHandler).parseResource(Patient.class, input);
+
+		verify(errorHandler).incorrectJsonType(any(), eq("id"), eq(ValueType.SCALAR), eq(ScalarType.STRING), eq(ValueType.OBJECT), any());
+		verify(errorHandler).incorrectJsonType(any(), eq("communication"), eq(ValueType.ARRAY), any(), eq(ValueType.OBJECT), any());
+		verify(errorHandler).incorrectJsonType(any(), eq("_gender"), eq(ValueType.OBJECT), any(), eq(ValueType.SCALAR), any());
+	}
+
+}
@@ -0,0 +1,17 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+
+public class R4StreamingJsonParserErrorHandlerTest extends AbstractJsonParserErrorHandlerTest {
+
+  private static FhirContext ourCtx = FhirContext.forR4();
+
+  static {
+    ourCtx.getParserOptions().setStreamingJsonParsing(true);
+  }
+
+  @Override
+  protected FhirContext getFhirContext() {
+    return ourCtx;
+  }
+}
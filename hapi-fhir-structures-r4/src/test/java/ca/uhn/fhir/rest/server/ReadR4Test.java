@@ -76,6 +76,26 @@ public class ReadR4Test {
 		}
 	}
 
+	@Test
+	public void testReadJsonGzip() throws Exception {
+		myRestfulServerExtension.getRestfulServer().registerProvider(new PatientProvider());
+
+		HttpGet httpGet = new HttpGet("http://localhost:" + myPort + "/Patient/2?_format=json");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, Constants.ENCODING_GZIP);
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info("Response was:\n{}", responseContent);
+
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals(Constants.CT_FHIR_JSON_NEW + ";charset=utf-8", status.getEntity().getContentType().getValue().replace(" ", "").toLowerCase());
+
+			Patient patient = myCtx.newJsonParser().parseResource(Patient.class, responseContent);
+			assertEquals("Patient/2/_history/2", patient.getIdElement().getValue());
+			assertEquals("2011-01-01", ((DateType) patient.getModifierExtension().get(0).getValue()).getValueAsString());
+		}
+	}
+
 	@Test
 	public void testReadUsingPlainProvider() throws Exception {
 		myRestfulServerExtension.getRestfulServer().registerProvider(new PlainGenericPatientProvider());